@@ -0,0 +1,78 @@
+/******************************************************************************
+ * Copyright (c) 2009 - 2015 IBM Corporation.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     IBM Corporation - initial API and implementation
+ *****************************************************************************/
+/**
+ *
+ */
+package bench;
+
+import java.io.File;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.ibm.wala.memsat.Options;
+import com.ibm.wala.memsat.frontEnd.WalaEngine;
+import com.ibm.wala.memsat.frontEnd.WalaInformation;
+import com.ibm.wala.memsat.frontEnd.WalaSession;
+import com.ibm.wala.types.MethodReference;
+import com.ibm.wala.util.graph.Graph;
+
+/**
+ * Measures the front end analysis of the litmus programs:  the cost of a
+ * full front end run, which parses the sources and builds the class hierarchy,
+ * and the cost of analyzing the thread methods with a {@linkplain WalaSession session}
+ * whose class hierarchy and IR have already been built.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(value = 1, jvmArgsAppend = { Workloads.LIBRARY_PATH, "-Xmx2g" })
+public class FrontEndBenchmark {
+	@Param({ "causality.Test01", "causality.Test05", "nemos.Test08", "transforms.RoachMotelSemantics", "linearizability.TreiberClient00" })
+	public String program;
+
+	private List<File> sourceDirs;
+	private Graph<MethodReference> methods;
+	private Options options;
+	private WalaSession session;
+
+	@Setup
+	public void setup() throws Exception {
+		sourceDirs = Workloads.sourceDirs(program);
+		methods = Workloads.methods(program);
+		options = Workloads.options("SC", 0);
+		session = WalaEngine.session(sourceDirs, options);
+		session.analyze(methods, options);
+	}
+
+	@Benchmark
+	public WalaInformation fullFrontEnd() throws Exception {
+		return WalaEngine.analyze(methods, sourceDirs, options);
+	}
+
+	@Benchmark
+	public WalaInformation sharedSession() throws Exception {
+		return session.analyze(methods, options);
+	}
+}
@@ -0,0 +1,72 @@
+/******************************************************************************
+ * Copyright (c) 2009 - 2015 IBM Corporation.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     IBM Corporation - initial API and implementation
+ *****************************************************************************/
+/**
+ *
+ */
+package bench;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.ibm.wala.memsat.Options;
+import com.ibm.wala.memsat.concurrent.Justification;
+import com.ibm.wala.memsat.concurrent.MemoryModel;
+import com.ibm.wala.memsat.concurrent.Program;
+import com.ibm.wala.memsat.frontEnd.WalaEngine;
+import com.ibm.wala.memsat.translation.concurrent.ConcurrentTranslator;
+
+/**
+ * Measures {@linkplain MemoryModel#justify(Program) justification} of the translated
+ * litmus programs by each memory model, separately from the translation of their threads.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(value = 1, jvmArgsAppend = { Workloads.LIBRARY_PATH, "-Xmx2g" })
+public class JustificationBenchmark {
+	@Param({ "causality.Test01", "causality.Test05", "nemos.Test08", "transforms.RoachMotelSemantics", "linearizability.TreiberClient00" })
+	public String program;
+
+	@Param({ "SC", "PRAM", "CausalConsistency", "CacheCoherence", "ProcessorConsistency", "JMMOriginal", "JMMAlt" })
+	public String model;
+
+	@Param({ "3" })
+	public int maxSpeculations;
+
+	private MemoryModel memoryModel;
+	private Program prog;
+
+	@Setup
+	public void setup() throws Exception {
+		final Options options = Workloads.options(model, maxSpeculations);
+		memoryModel = options.memoryModel();
+		prog = ConcurrentTranslator.program(
+				WalaEngine.analyze(Workloads.methods(program), Workloads.sourceDirs(program), options), options);
+	}
+
+	@Benchmark
+	public Justification justify() {
+		return memoryModel.justify(prog);
+	}
+}
@@ -0,0 +1,69 @@
+/******************************************************************************
+ * Copyright (c) 2009 - 2015 IBM Corporation.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     IBM Corporation - initial API and implementation
+ *****************************************************************************/
+/**
+ *
+ */
+package bench;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.ibm.wala.memsat.Options;
+import com.ibm.wala.memsat.frontEnd.WalaEngine;
+import com.ibm.wala.memsat.frontEnd.WalaInformation;
+import com.ibm.wala.memsat.translation.concurrent.ConcurrentTranslation;
+import com.ibm.wala.memsat.translation.concurrent.ConcurrentTranslator;
+
+/**
+ * Measures {@linkplain ConcurrentTranslator#translate(WalaInformation, Options) translation}
+ * of the litmus programs under each memory model, starting from the result of the front end.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(value = 1, jvmArgsAppend = { Workloads.LIBRARY_PATH, "-Xmx2g" })
+public class TranslationBenchmark {
+	@Param({ "causality.Test01", "causality.Test05", "nemos.Test08", "transforms.RoachMotelSemantics", "linearizability.TreiberClient00" })
+	public String program;
+
+	@Param({ "SC", "PRAM", "CausalConsistency", "CacheCoherence", "ProcessorConsistency", "JMMOriginal", "JMMAlt" })
+	public String model;
+
+	@Param({ "3" })
+	public int maxSpeculations;
+
+	private Options options;
+	private WalaInformation info;
+
+	@Setup
+	public void setup() throws Exception {
+		options = Workloads.options(model, maxSpeculations);
+		info = WalaEngine.analyze(Workloads.methods(program), Workloads.sourceDirs(program), options);
+	}
+
+	@Benchmark
+	public ConcurrentTranslation translate() {
+		return ConcurrentTranslator.translate(info, options);
+	}
+}
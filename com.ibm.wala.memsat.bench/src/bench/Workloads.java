@@ -0,0 +1,119 @@
+/******************************************************************************
+ * Copyright (c) 2009 - 2015 IBM Corporation.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     IBM Corporation - initial API and implementation
+ *****************************************************************************/
+/**
+ *
+ */
+package bench;
+
+import static test.TestUtil.threadMethods;
+
+import java.io.File;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Set;
+
+import com.ibm.wala.memsat.Options;
+import com.ibm.wala.memsat.concurrent.MemoryModel;
+import com.ibm.wala.memsat.concurrent.memory.jmm.JMMAlt;
+import com.ibm.wala.memsat.concurrent.memory.jmm.JMMOriginal;
+import com.ibm.wala.memsat.concurrent.memory.simple.CacheCoherence;
+import com.ibm.wala.memsat.concurrent.memory.simple.CausalConsistency;
+import com.ibm.wala.memsat.concurrent.memory.simple.PRAM;
+import com.ibm.wala.memsat.concurrent.memory.simple.ProcessorConsistency;
+import com.ibm.wala.memsat.concurrent.memory.simple.SequentialConsistency;
+import com.ibm.wala.memsat.util.Graphs;
+import com.ibm.wala.types.MethodReference;
+import com.ibm.wala.util.graph.Graph;
+
+import kodkod.engine.satlab.SATFactory;
+
+/**
+ * Describes the benchmark workloads:  the litmus programs in com.ibm.wala.memsat.testdata
+ * and the options with which they are analyzed.  A program is named by its test suite
+ * and class, e.g. "causality.Test01" names the class data.causality.Test01, whose sources
+ * are in source/data/causality.  The benchmarks must therefore be run from the
+ * com.ibm.wala.memsat.testdata directory, just like the tests.
+ */
+final class Workloads {
+	private Workloads() {}
+
+	/**
+	 * JVM argument that lets forked benchmark JVMs find the native SAT solvers.
+	 */
+	static final String LIBRARY_PATH =
+		"-Djava.library.path=../com.ibm.wala.memsat/jni/linux_x86_64:../com.ibm.wala.memsat/jni/darwin_x86_64";
+
+	/**
+	 * Returns the source directories of the given program.
+	 * @return source directories of the given program
+	 */
+	static List<File> sourceDirs(String program) {
+		return Collections.singletonList(new File("source/data/" + program.substring(0, program.indexOf('.'))));
+	}
+
+	/**
+	 * Returns the graph of thread methods of the given program.  As in the transformation
+	 * tests, methods named "thread\d+T" are treated as transformed variants of the
+	 * original threads and are left out.
+	 * @return graph of thread methods of the given program
+	 * @throws IllegalArgumentException - the program does not exist
+	 */
+	static Graph<MethodReference> methods(String program) {
+		final Class<?> klass;
+		try {
+			klass = Class.forName("data." + program);
+		} catch (ClassNotFoundException e) {
+			throw new IllegalArgumentException("unknown program: " + program, e);
+		}
+		final Set<MethodReference> methods = threadMethods(klass);
+		for(Iterator<MethodReference> itr = methods.iterator(); itr.hasNext(); ) {
+			if (itr.next().getName().toString().matches("thread\\d+T")) {
+				itr.remove();
+			}
+		}
+		return Graphs.graph(methods);
+	}
+
+	/**
+	 * Returns the memory model with the given name.  Speculative models use
+	 * the given maximum number of speculations.
+	 * @return memory model with the given name
+	 * @throws IllegalArgumentException - there is no memory model with the given name
+	 */
+	static MemoryModel memoryModel(String name, int maxSpeculations) {
+		final Set<MethodReference> special = Collections.emptySet();
+		switch(name) {
+		case "SC" 					: return new SequentialConsistency();
+		case "PRAM" 				: return new PRAM();
+		case "CausalConsistency" 	: return new CausalConsistency();
+		case "CacheCoherence" 		: return new CacheCoherence();
+		case "ProcessorConsistency" : return new ProcessorConsistency();
+		case "JMMOriginal" 			: return new JMMOriginal(maxSpeculations, special);
+		case "JMMAlt" 				: return new JMMAlt(maxSpeculations, special);
+		default : throw new IllegalArgumentException("unknown memory model: " + name);
+		}
+	}
+
+	/**
+	 * Returns the options used by the concurrent tests, configured
+	 * with the given memory model and the (non-proof-logging) MiniSat solver.
+	 * @return options for analyzing a program with the given memory model
+	 */
+	static Options options(String model, int maxSpeculations) {
+		final Options opts = new Options();
+		opts.setMemoryModel(memoryModel(model, maxSpeculations));
+		opts.setAssertsAreAssumptions(true);
+		opts.kodkodOptions().setBitwidth(3);
+		opts.kodkodOptions().setSolver(SATFactory.MiniSat);
+		return opts;
+	}
+}
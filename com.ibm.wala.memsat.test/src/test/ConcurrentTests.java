@@ -19,12 +19,16 @@ import java.lang.reflect.InvocationTargetException;
 import java.lang.reflect.Method;
 import java.util.Collections;
 import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
 
+import org.junit.Assert;
+
 import com.ibm.wala.memsat.Miniatur;
 import com.ibm.wala.memsat.Options;
+import com.ibm.wala.memsat.Outcomes;
 import com.ibm.wala.memsat.Results;
 import com.ibm.wala.memsat.concurrent.Execution;
 import com.ibm.wala.memsat.concurrent.Justification;
@@ -42,6 +46,7 @@ import kodkod.engine.Solution.Outcome;
 import kodkod.engine.satlab.SATFactory;
 import kodkod.engine.ucore.RCEStrategy;
 import kodkod.instance.Bounds;
+import kodkod.instance.Instance;
 import kodkod.instance.TupleSet;
 
 
@@ -165,6 +170,23 @@ public abstract class ConcurrentTests {
 		
 	}
 	
+	/**
+	 * Checks that the outcomes enumerated by applying the given miniatur instance to the given 
+	 * methods are pairwise distinct, and that there are exactly the given number of them.
+	 */
+	protected final void outcomes(Miniatur miniatur, List<File> srcPath, Graph<MethodReference> methods, int expected) { 
+		try {
+			final Outcomes outcomes = miniatur.outcomes(methods, srcPath);
+			final Set<List<TupleSet>> seen = new LinkedHashSet<List<TupleSet>>();
+			for(Instance instance : outcomes.all()) { 
+				Assert.assertTrue(seen.add(outcomes.outcome(instance)));
+			}
+			Assert.assertEquals(expected, seen.size());
+		} catch (CancelException | IOException e) {
+			throw new AssertionError(e);
+		}
+	}
+	
 	/**
 	 * Returns a miniatur analysis engine generated by calling
 	 * {@linkplain #miniatur(int, Set) miniatur(maxSpeculations, Collections.EMPTY_SET)}.
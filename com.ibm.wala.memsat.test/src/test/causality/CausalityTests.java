@@ -18,12 +18,17 @@ import static test.TestUtil.method;
 import static test.TestUtil.threadMethods;
 
 import java.io.File;
+import java.io.IOException;
+import java.util.Collections;
 
 import org.junit.Ignore;
 import org.junit.Test;
 
 import com.ibm.wala.memsat.Miniatur;
+import com.ibm.wala.memsat.Results;
+import com.ibm.wala.memsat.translation.concurrent.ConcurrentTranslation;
 import com.ibm.wala.types.MethodReference;
+import com.ibm.wala.util.CancelException;
 import com.ibm.wala.util.graph.Graph;
 
 import data.causality.Test00;
@@ -83,6 +88,23 @@ public abstract class CausalityTests extends ConcurrentTests {
 	final void test(Miniatur miniatur, Class<?> testCase, boolean sat) { 
 		test(miniatur, graph(threadMethods(testCase)), sat);
 	}
+	
+	/**
+	 * Returns the result of {@linkplain Miniatur#analyzeSpeculating(Graph, java.util.List) searching} 
+	 * for the smallest speculation depth at which the given miniatur instance finds a 
+	 * legal execution of all thread methods in the given test case.
+	 * @requires miniatur.options.memoryModel in JavaMemoryModel
+	 */
+	final Results<ConcurrentTranslation> speculating(Miniatur miniatur, Class<?> testCase) throws CancelException, IOException { 
+		return miniatur.analyzeSpeculating(graph(threadMethods(testCase)), Collections.singletonList(CAUSALITY_TESTS));
+	}
+	
+	/**
+	 * Calls {@linkplain ConcurrentTests#outcomes(Miniatur, java.util.List, Graph, int) outcomes(miniatur, [CAUSALITY_TESTS], graph(threadMethods(testCase)), expected)}.
+	 */
+	final void outcomes(Miniatur miniatur, Class<?> testCase, int expected) { 
+		outcomes(miniatur, Collections.singletonList(CAUSALITY_TESTS), graph(threadMethods(testCase)), expected);
+	}
 
 	@Test
 	public final void test00() {
@@ -256,4 +278,20 @@ public abstract class CausalityTests extends ConcurrentTests {
 	public final void test26() {
 		test(miniatur(8), Test26.class, true);	
 	}
+	
+	@Test
+	public final void testOutcomes01() {
+		// the write to y is conditional, but the only outcome that satisfies the assumptions is r1 = r2 = 1
+		outcomes(miniatur(5), Test01.class, 1);	
+	}
+	
+	@Test
+	public final void testOutcomes13() {
+		outcomes(miniatur(5), Test13.class, 0);	
+	}
+	
+	@Test
+	public final void testOutcomes16() {
+		outcomes(miniatur(4), Test16.class, 1);	
+	}
 }
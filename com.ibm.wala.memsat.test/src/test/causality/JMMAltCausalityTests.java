@@ -15,10 +15,19 @@ package test.causality;
 
 import java.util.Set;
 
+import org.junit.Assert;
+import org.junit.Test;
+
+import com.ibm.wala.memsat.Results;
 import com.ibm.wala.memsat.concurrent.MemoryModel;
 import com.ibm.wala.memsat.concurrent.memory.jmm.JMMAlt;
+import com.ibm.wala.memsat.translation.concurrent.ConcurrentTranslation;
 import com.ibm.wala.types.MethodReference;
 
+import data.causality.Test00;
+import data.causality.Test01;
+import data.causality.Test04;
+
 /**
  * Executes causality tests using the {@linkplain JMMAlt} memory model.
  * @author etorlak
@@ -33,4 +42,28 @@ public class JMMAltCausalityTests extends CausalityTests {
 	protected MemoryModel memoryModel(int maxSpeculations, Set<MethodReference> special) {
 		return new JMMAlt(maxSpeculations, special);
 	}
+	
+	@Test
+	public final void testSpeculating00() throws Exception {
+		// both writes are committed in C_1 and both reads in C_2, so the search 
+		// stops at depth 3 rather than at the configured maximum of 5
+		final Results<ConcurrentTranslation> results = speculating(miniatur(5), Test00.class);
+		Assert.assertNotNull(results.solution().instance());
+		Assert.assertEquals(3, results.translation().context().speculations().size());
+	}
+	
+	@Test
+	public final void testSpeculating01() throws Exception {
+		// y=1, r2=y, x=r2 and r1=x must be committed in that order, one per commit set after C_0
+		final Results<ConcurrentTranslation> results = speculating(miniatur(5), Test01.class);
+		Assert.assertNotNull(results.solution().instance());
+		Assert.assertEquals(5, results.translation().context().speculations().size());
+	}
+	
+	@Test
+	public final void testSpeculating04() throws Exception {
+		final Results<ConcurrentTranslation> results = speculating(miniatur(5), Test04.class);
+		Assert.assertNull(results.solution().instance());
+		Assert.assertEquals(5, results.translation().context().speculations().size());
+	}
 }
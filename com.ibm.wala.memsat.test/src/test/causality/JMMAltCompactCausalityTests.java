@@ -0,0 +1,38 @@
+/******************************************************************************
+ * Copyright (c) 2009 - 2015 IBM Corporation.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     IBM Corporation - initial API and implementation
+ *****************************************************************************/
+/**
+ * 
+ */
+package test.causality;
+
+import java.util.Set;
+
+import com.ibm.wala.memsat.Options;
+import com.ibm.wala.memsat.concurrent.memory.jmm.JMMAlt;
+import com.ibm.wala.types.MethodReference;
+
+/**
+ * Executes causality tests using the {@linkplain JMMAlt} memory model
+ * and the {@linkplain Options#compactDisjointness() compact} encoding of action disjointness.
+ */
+public class JMMAltCompactCausalityTests extends JMMAltCausalityTests {
+
+	/**
+	 * {@inheritDoc}
+	 * @see test.ConcurrentTests#getOptions(int, java.util.Set)
+	 */
+	@Override
+	protected Options getOptions(int maxSpeculations, Set<MethodReference> special) {
+		final Options opts = super.getOptions(maxSpeculations, special);
+		opts.setCompactDisjointness(true);
+		return opts;
+	}
+}
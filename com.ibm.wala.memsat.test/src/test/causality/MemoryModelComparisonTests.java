@@ -0,0 +1,68 @@
+/******************************************************************************
+ * Copyright (c) 2009 - 2015 IBM Corporation.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     IBM Corporation - initial API and implementation
+ *****************************************************************************/
+/**
+ *
+ */
+package test.causality;
+
+import static com.ibm.wala.memsat.util.Graphs.graph;
+import static test.TestUtil.threadMethods;
+
+import java.io.File;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import com.ibm.wala.memsat.Comparison;
+import com.ibm.wala.memsat.Miniatur;
+import com.ibm.wala.memsat.Options;
+import com.ibm.wala.memsat.concurrent.MemoryModel;
+import com.ibm.wala.memsat.concurrent.memory.jmm.JMMOriginal;
+import com.ibm.wala.memsat.concurrent.memory.simple.PRAM;
+import com.ibm.wala.memsat.concurrent.memory.simple.SequentialConsistency;
+
+import data.causality.Test16;
+import kodkod.engine.satlab.SATFactory;
+
+/**
+ * Compares several memory models on the same causality test, using a single
+ * front end run and thread translation for each kind of action atoms.
+ */
+public final class MemoryModelComparisonTests {
+	private static final File CAUSALITY_TESTS = new File("source/data/causality");
+
+	@Test
+	@SuppressWarnings("unchecked")
+	public void testWeakerThanSC() throws Exception {
+		final Options opts = new Options();
+		opts.setAssertsAreAssumptions(true);
+		opts.kodkodOptions().setBitwidth(3);
+		opts.kodkodOptions().setSolver(SATFactory.MiniSat);
+
+		final MemoryModel sc = new SequentialConsistency(), pram = new PRAM(), jmm = new JMMOriginal(4, Collections.EMPTY_SET);
+		final List<MemoryModel> models = Arrays.asList(sc, pram, jmm);
+		final Comparison comparison = (new Miniatur(opts)).compare(graph(threadMethods(Test16.class)), Collections.singletonList(CAUSALITY_TESTS), models);
+
+		Assert.assertEquals(models, comparison.models());
+		// the assumptions fix the values of both reads, so r1 == 2 and r2 == 1 is the only outcome:  
+		// SC forbids it, since each read precedes the other thread's write, but PRAM and the JMM allow it
+		Assert.assertEquals(1, comparison.outcomes().size());
+		final Map<String, String> outcome = comparison.outcomes().get(0);
+		Assert.assertFalse(comparison.allows(sc, outcome));
+		Assert.assertTrue(comparison.allows(pram, outcome));
+		Assert.assertTrue(comparison.allows(jmm, outcome));
+	}
+
+}
@@ -14,19 +14,32 @@ import static test.TestUtil.method;
 
 import java.io.File;
 import java.io.IOException;
+import java.nio.file.Files;
 import java.util.Collections;
 import java.util.List;
+import java.util.concurrent.Future;
 import java.util.regex.Pattern;
 
 import org.junit.Assert;
 import org.junit.Before;
 import org.junit.Test;
 
+import com.ibm.wala.memsat.BatchAnalysis;
+import com.ibm.wala.memsat.Metrics;
+import com.ibm.wala.memsat.Metrics.Count;
+import com.ibm.wala.memsat.Metrics.Phase;
 import com.ibm.wala.memsat.Miniatur;
 import com.ibm.wala.memsat.Options;
+import com.ibm.wala.memsat.ResultCache;
 import com.ibm.wala.memsat.Results;
+import com.ibm.wala.memsat.frontEnd.IntRanges;
+import com.ibm.wala.memsat.frontEnd.WalaEngine;
+import com.ibm.wala.memsat.frontEnd.WalaInformation;
+import com.ibm.wala.memsat.frontEnd.WalaSession;
 import com.ibm.wala.memsat.math.FloatingPoint;
 import com.ibm.wala.memsat.translation.sequential.SequentialTranslation;
+import com.ibm.wala.memsat.util.Graphs;
+import com.ibm.wala.types.MethodReference;
 import com.ibm.wala.util.CancelException;
 
 import data.little.Little;
@@ -119,6 +132,25 @@ public class MiniaturTests {
 		test(miniatur, SRC_DATA_LITTLE, Little.class, "testMatrix4", false);
 	}
 
+	@Test
+	public void testMatrix2Summarized(){
+		miniatur.options().setSummarizeMethods(true);
+		test(miniatur, SRC_DATA_LITTLE, Little.class, "testMatrix2", true);
+	}
+
+	@Test
+	public void testMatrix3Summarized(){
+		miniatur.options().setSummarizeMethods(true);
+		miniatur.options().kodkodOptions().setSolver(SATFactory.plingeling());
+		test(miniatur, SRC_DATA_LITTLE, Little.class, "testMatrix3", false);
+	}
+
+	@Test
+	public void testReadUnwrittenFieldSummarized(){
+		miniatur.options().setSummarizeMethods(true);
+		test(miniatur, SRC_DATA_LITTLE, Little.class, "testReadUnwrittenField", false);
+	}
+
 	@Test
 	public void testFloatMatrix1(){
 		miniatur.options().kodkodOptions().setSolver(SATFactory.plingeling());
@@ -191,6 +223,20 @@ public class MiniaturTests {
 		test(miniatur, SRC_DATA_LITTLE, Little.class, "testFloatsRound4", false);
 	}
 
+	@Test
+	public void testFloatsRefineFloats(){
+		miniatur.options().kodkodOptions().setBitwidth(32);
+		miniatur.options().setRefineFloats(true);
+		test(miniatur, SRC_DATA_LITTLE, Little.class, "testFloats", true);
+	}
+
+	@Test
+	public void testFloatsRound4RefineFloats(){
+		miniatur.options().kodkodOptions().setBitwidth(32);
+		miniatur.options().setRefineFloats(true);
+		test(miniatur, SRC_DATA_LITTLE, Little.class, "testFloatsRound4", false);
+	}
+
 	@Test
 	public void testIntsRound(){
 		test(miniatur, SRC_DATA_LITTLE, Little.class, "testIntsRound", false);
@@ -300,6 +346,50 @@ public class MiniaturTests {
 		test(miniatur, SRC_DATA_LITTLE, Little.class, "testIntFields2", true);
 	}
 
+	/**
+	 * Returns the bitwidth with which the given method is translated under the given miniatur's options.
+	 */
+	static int bitwidth(Miniatur miniatur, File srcpath, Class<?> klass, String methodname) {
+		try {
+			final WalaInformation info = WalaEngine.analyze(Graphs.graph(method(klass, methodname)), Collections.singletonList(srcpath), miniatur.options());
+			return IntRanges.adjust(info, miniatur.options()).kodkodOptions().bitwidth();
+		} catch (CancelException | IOException | NoSuchMethodException e) {
+			throw new AssertionError(e);
+		}
+	}
+
+	@Test
+	public void testIntFields1InferBitwidth(){
+		miniatur.options().setInferBitwidth(true);
+		miniatur.options().setNumberOfIndexAtoms(3);
+		// the constant 2 is the widest value, and it needs 3 bits, as do the 3 index atoms and the unrolling depth of 3
+		Assert.assertEquals(3, bitwidth(miniatur, SRC_DATA_LITTLE, Little.class, "testIntFields1"));
+		test(miniatur, SRC_DATA_LITTLE, Little.class, "testIntFields1", false);
+	}
+
+	@Test
+	public void testIntFields1InferBitwidthIndexAtoms(){
+		miniatur.options().setInferBitwidth(true);
+		// the constants need 3 bits, but array lengths range up to the 10 index atoms, which need 5
+		Assert.assertEquals(5, bitwidth(miniatur, SRC_DATA_LITTLE, Little.class, "testIntFields1"));
+	}
+
+	@Test
+	public void testIntFields2InferBitwidth(){
+		miniatur.options().setInferBitwidth(true);
+		miniatur.options().setNumberOfIndexAtoms(3);
+		Assert.assertEquals(3, bitwidth(miniatur, SRC_DATA_LITTLE, Little.class, "testIntFields2"));
+		test(miniatur, SRC_DATA_LITTLE, Little.class, "testIntFields2", true);
+	}
+
+	@Test
+	public void testMatrix2InferBitwidth(){
+		miniatur.options().setInferBitwidth(true);
+		// sum_yx adds its arguments and the matrix entries, so the configured bitwidth is kept
+		Assert.assertEquals(miniatur.options().kodkodOptions().bitwidth(), bitwidth(miniatur, SRC_DATA_LITTLE, Little.class, "testMatrix2"));
+		test(miniatur, SRC_DATA_LITTLE, Little.class, "testMatrix2", true);
+	}
+
 	@Test
 	public void testMyArrayList1(){
 		test(miniatur, SRC_DATA_LITTLE, Little.class, "testMyArrayList1", false);
@@ -395,6 +485,24 @@ public class MiniaturTests {
 		test(miniatur, SRC_DATA_LITTLE, Little.class, "testArrayWrite11", true);
 	}
 
+	@Test
+	public void testArrayWrite2Sparse(){
+		miniatur.options().setSparseArrays(true);
+		test(miniatur, SRC_DATA_LITTLE, Little.class, "testArrayWrite2", true);
+	}
+
+	@Test
+	public void testArrayWrite6Sparse(){
+		miniatur.options().setSparseArrays(true);
+		test(miniatur, SRC_DATA_LITTLE, Little.class, "testArrayWrite6", false);
+	}
+
+	@Test
+	public void testArrayParam2Sparse(){
+		miniatur.options().setSparseArrays(true);
+		test(miniatur, SRC_DATA_LITTLE, Little.class, "testArrayParam2", false);
+	}
+
 	@Test
 	public void testArrayCopy1(){
 		test(miniatur, SRC_DATA_LITTLE, Little.class, "testArrayCopy1", false);
@@ -537,9 +645,172 @@ public class MiniaturTests {
 		test(miniatur, SRC_DATA_LITTLE, Little.class, "testListRemoveCounter", true);
 	}
 
+	@Test
+	public void testListRemoveCounterPortfolio(){
+		miniatur.options().setPortfolio(SATFactory.MiniSat, SATFactory.DefaultSAT4J, SATFactory.plingeling());
+		test(miniatur, SRC_DATA_LITTLE, Little.class, "testListRemoveCounter", true);
+	}
+
+	@Test
+	public void testListRemoveOtherPortfolio(){
+		miniatur.options().setPortfolio(SATFactory.MiniSat, SATFactory.DefaultSAT4J, SATFactory.plingeling());
+		test(miniatur, SRC_DATA_LITTLE, Little.class, "testListRemoveOther", false);
+	}
+
+	@Test
+	public void testListRemoveCounterSymmetryBreaking(){
+		miniatur.options().setBreakHeapSymmetries(true);
+		miniatur.options().setOpenWorldScopeSize(6);
+		test(miniatur, SRC_DATA_LITTLE, Little.class, "testListRemoveCounter", true);
+	}
+
+	@Test
+	public void testListRemoveOtherSymmetryBreaking(){
+		miniatur.options().setBreakHeapSymmetries(true);
+		miniatur.options().setOpenWorldScopeSize(6);
+		test(miniatur, SRC_DATA_LITTLE, Little.class, "testListRemoveOther", false);
+	}
+
 	@Test
 	public void testSimpleFields(){
 		test(miniatur, SRC_DATA_LITTLE, Little.class, "testSimpleFields", false);
 	}
 	
+	@Test
+	public void testMetrics() throws Exception {
+		final Results<SequentialTranslation> results = miniatur.analyze(method(Little.class, "testListRemoveCounter"), Collections.singletonList(SRC_DATA_LITTLE));
+		final Metrics metrics = results.metrics();
+		Assert.assertTrue(metrics.nanos(Phase.CALL_GRAPH) > 0);
+		Assert.assertTrue(metrics.nanos(Phase.SLICE) > 0);
+		Assert.assertTrue(metrics.nanos(Phase.TRANSLATION) >= metrics.nanos(Phase.SIMPLIFICATION));
+		Assert.assertTrue(metrics.nanos(Phase.FOL_TO_SAT) > 0);
+		Assert.assertEquals(results.translation().bounds().universe().size(), metrics.count(Count.ATOMS));
+		Assert.assertEquals(results.solution().stats().clauses(), metrics.count(Count.CLAUSES));
+		Assert.assertTrue(metrics.toJSON().startsWith("{\"phases\": {\"class_hierarchy\": {\"nanos\": "));
+	}
+	
+	@Test
+	public void testSharedSession() throws Exception {
+		final WalaSession session = WalaEngine.session(Collections.singletonList(SRC_DATA_LITTLE), miniatur.options());
+		Assert.assertNotNull(miniatur.analyze(method(Little.class, "testListRemoveCounter"), session).solution().instance());
+		Assert.assertNull(miniatur.analyze(method(Little.class, "testListRemoveOther"), session).solution().instance());
+		Assert.assertNotNull(miniatur.analyze(method(Little.class, "testListRemoveCounter"), session).solution().instance());
+	}
+	
+	@Test
+	public void testSharedSessionCallGraphs() throws Exception {
+		final WalaSession session = WalaEngine.session(Collections.singletonList(SRC_DATA_LITTLE), miniatur.options());
+		final MethodReference counter = method(Little.class, "testListRemoveCounter"), other = method(Little.class, "testListRemoveOther");
+		final WalaInformation first = session.analyze(Graphs.graph(counter), miniatur.options());
+		final WalaInformation second = session.analyze(Graphs.graph(other), miniatur.options());
+		// each call graph is built over the session's class hierarchy, from the entrypoints of its own analysis
+		Assert.assertSame(first.callGraph().getClassHierarchy(), second.callGraph().getClassHierarchy());
+		Assert.assertEquals(counter, first.threads().iterator().next().getMethod().getReference());
+		Assert.assertEquals(other, second.threads().iterator().next().getMethod().getReference());
+		Assert.assertTrue(second.callGraph().getNodes(counter).isEmpty());
+	}
+	
+	@Test
+	public void testBatch() throws Exception {
+		final BatchAnalysis batch = new BatchAnalysis(2);
+		try {
+			final List<File> srcpath = Collections.singletonList(SRC_DATA_LITTLE);
+			final Future<Results<SequentialTranslation>> counter = batch.submit(method(Little.class, "testListRemoveCounter"), srcpath, miniatur.options());
+			final Future<Results<SequentialTranslation>> other = batch.submit(method(Little.class, "testListRemoveOther"), srcpath, miniatur.options());
+			final Future<Results<SequentialTranslation>> matrix = batch.submit(method(Little.class, "testMatrix2"), srcpath, miniatur.options());
+			Assert.assertNotNull(counter.get().solution().instance());
+			Assert.assertNull(other.get().solution().instance());
+			Assert.assertNotNull(matrix.get().solution().instance());
+		} finally {
+			batch.shutdown();
+		}
+	}
+	
+	@Test
+	public void testResultCache() throws Exception {
+		final ResultCache cache = new ResultCache(Files.createTempDirectory("memsat-cache").toFile());
+		final List<File> srcpath = Collections.singletonList(SRC_DATA_LITTLE);
+		final MethodReference method = method(Little.class, "testListRemoveOther");
+		Assert.assertNull(cache.lookup(ResultCache.key(Graphs.graph(method), srcpath, miniatur.options())));
+		final Outcome first = miniatur.check(method, srcpath, cache);
+		Assert.assertEquals(first, cache.lookup(ResultCache.key(Graphs.graph(method), srcpath, miniatur.options())));
+		Assert.assertEquals(first, miniatur.check(method, srcpath, cache));
+		miniatur.options().setRecursionLimit(miniatur.options().recursionLimit()+1);
+		Assert.assertNull(cache.lookup(ResultCache.key(Graphs.graph(method), srcpath, miniatur.options())));
+	}
+	
+	@Test
+	public void testResultCacheKeyOfEqualOptions() throws Exception {
+		final List<File> srcpath = Collections.singletonList(SRC_DATA_LITTLE);
+		final MethodReference method = method(Little.class, "testListRemoveOther");
+		final Options first = new Options(), second = new Options();
+		first.kodkodOptions().setReporter(new kodkod.engine.config.AbstractReporter() {});
+		Assert.assertEquals(ResultCache.key(Graphs.graph(method), srcpath, first), 
+				ResultCache.key(Graphs.graph(method), srcpath, second));
+		second.kodkodOptions().setBitwidth(second.kodkodOptions().bitwidth()+1);
+		Assert.assertFalse(ResultCache.key(Graphs.graph(method), srcpath, first).equals(
+				ResultCache.key(Graphs.graph(method), srcpath, second)));
+	}
+	
+	@Test
+	public void testListRemoveCounterIteratively() throws Exception {
+		final Results<SequentialTranslation> results = 
+			miniatur.analyzeIteratively(method(Little.class, "testListRemoveCounter"), Collections.singletonList(SRC_DATA_LITTLE));
+		Assert.assertNotNull(results.solution().instance());
+		Assert.assertTrue(results.translation().factory().options().loopUnrollDepth() <= miniatur.options().loopUnrollDepth());
+		Assert.assertTrue(results.translation().factory().options().openWorldScopeSize() <= miniatur.options().openWorldScopeSize());
+	}
+
+	@Test
+	public void testListRemoveOtherIteratively() throws Exception {
+		final Results<SequentialTranslation> results = 
+			miniatur.analyzeIteratively(method(Little.class, "testListRemoveOther"), Collections.singletonList(SRC_DATA_LITTLE));
+		Assert.assertNull(results.solution().instance());
+		Assert.assertEquals(miniatur.options().loopUnrollDepth(), results.translation().factory().options().loopUnrollDepth());
+		Assert.assertEquals(miniatur.options().openWorldScopeSize(), results.translation().factory().options().openWorldScopeSize());
+	}
+
+	@Test
+	public void testListRemoveCounterRefining() throws Exception {
+		final Results<SequentialTranslation> results = 
+			miniatur.analyzeRefining(method(Little.class, "testListRemoveCounter"), Collections.singletonList(SRC_DATA_LITTLE));
+		Assert.assertNotNull(results.solution().instance());
+		Assert.assertTrue(results.translation().factory().options().loopUnrollDepth() <= miniatur.options().loopUnrollDepth());
+		Assert.assertTrue(results.translation().factory().options().openWorldScopeSize() <= miniatur.options().openWorldScopeSize());
+	}
+
+	@Test
+	public void testListRemoveOtherRefining() throws Exception {
+		final Results<SequentialTranslation> results = 
+			miniatur.analyzeRefining(method(Little.class, "testListRemoveOther"), Collections.singletonList(SRC_DATA_LITTLE));
+		Assert.assertNull(results.solution().instance());
+		Assert.assertTrue(results.translation().factory().options().numberOfIndexAtoms() <= miniatur.options().numberOfIndexAtoms());
+	}
+
+	@Test
+	public void testListRemoveCounterClauseBudget() throws Exception {
+		miniatur.options().budget().setMaxClauses(1);
+		final Results<SequentialTranslation> results = 
+			miniatur.analyze(method(Little.class, "testListRemoveCounter"), Collections.singletonList(SRC_DATA_LITTLE));
+		Assert.assertEquals(Results.Status.UNKNOWN, results.status());
+		Assert.assertNull(results.solution());
+	}
+
+	@Test
+	public void testListRemoveCounterPhaseBudget() throws Exception {
+		miniatur.options().budget().setMillis(Phase.CALL_GRAPH, 1);
+		final Results<SequentialTranslation> results = 
+			miniatur.analyze(method(Little.class, "testListRemoveCounter"), Collections.singletonList(SRC_DATA_LITTLE));
+		Assert.assertEquals(Results.Status.TIMEOUT, results.status());
+		Assert.assertNull(results.solution());
+	}
+
+	@Test
+	public void testListRemoveSatBudget() throws Exception {
+		// with a SAT deadline, the solver runs in a child process that can be killed
+		miniatur.options().budget().setMillis(Phase.SAT, 600000);
+		final WalaSession session = WalaEngine.session(Collections.singletonList(SRC_DATA_LITTLE), miniatur.options());
+		Assert.assertNotNull(miniatur.analyze(method(Little.class, "testListRemoveCounter"), session).solution().instance());
+		Assert.assertNull(miniatur.analyze(method(Little.class, "testListRemoveOther"), session).solution().instance());
+	}
 }
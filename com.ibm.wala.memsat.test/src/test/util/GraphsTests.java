@@ -0,0 +1,155 @@
+/******************************************************************************
+ * Copyright (c) 2009 - 2015 IBM Corporation.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     IBM Corporation - initial API and implementation
+ *****************************************************************************/
+/**
+ *
+ */
+package test.util;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import com.ibm.wala.memsat.util.BitSetGraph;
+import com.ibm.wala.memsat.util.Graphs;
+import com.ibm.wala.memsat.util.LinkedHashGraph;
+import com.ibm.wala.util.graph.Graph;
+
+/**
+ * Compares the closures computed by {@linkplain Graphs} on {@linkplain LinkedHashGraph hash graphs}
+ * and {@linkplain BitSetGraph bit set graphs} with the closures computed by the
+ * Floyd-Warshall algorithm.
+ */
+public final class GraphsTests {
+
+	/**
+	 * Returns the transitive closure of g, computed with the Floyd-Warshall algorithm,
+	 * plus self-edges on each node in g if reflexive is true.
+	 * @return a graph that is the transitive closure of g, plus self-edges on each node in g if reflexive is true.
+	 */
+	private static <T> Graph<T> floydWarshall(Graph<T> g, boolean reflexive) {
+		final Graph<T> ret = new LinkedHashGraph<T>();
+		for(T n : g) {
+			ret.addNode(n);
+			for(Iterator<? extends T> succs = g.getSuccNodes(n); succs.hasNext(); ) {
+				ret.addEdge(n, succs.next());
+			}
+		}
+		for(T nk : g) {
+			for(T ni : g) {
+				for(T nj : g) {
+					if (ret.hasEdge(ni, nk) && ret.hasEdge(nk, nj))
+						ret.addEdge(ni, nj);
+				}
+			}
+		}
+		if (reflexive) {
+			for(T n : g) {
+				ret.addEdge(n, n);
+			}
+		}
+		return ret;
+	}
+
+	/**
+	 * Returns a graph over the nodes [0..size) with the given edges, each of which is a pair of nodes.
+	 * The graph is a BitSetGraph over the universe [0..size] if bitSets is true, and a LinkedHashGraph otherwise.
+	 * @return a graph over the nodes [0..size) with the given edges
+	 */
+	private static Graph<Integer> graph(boolean bitSets, int size, int[][] edges) {
+		final List<Integer> nodes = new ArrayList<Integer>(size);
+		for(int i = 0; i < size; i++) {
+			nodes.add(i);
+		}
+		// the extra node of the universe is not in the graph, so closures must not add it
+		final Graph<Integer> g;
+		if (bitSets) {
+			final List<Integer> universe = new ArrayList<Integer>(nodes);
+			universe.add(size);
+			g = new BitSetGraph<Integer>(universe);
+		} else {
+			g = new LinkedHashGraph<Integer>();
+		}
+		for(Integer n : nodes) {
+			g.addNode(n);
+		}
+		for(int[] edge : edges) {
+			g.addEdge(edge[0], edge[1]);
+		}
+		return g;
+	}
+
+	/**
+	 * Checks that the closures of the graph over the nodes [0..size) with the given edges,
+	 * represented both as a LinkedHashGraph and as a BitSetGraph, are the closures computed
+	 * by the Floyd-Warshall algorithm.
+	 */
+	private static void check(int size, int[][] edges) {
+		for(boolean bitSets : new boolean[]{false, true}) {
+			final Graph<Integer> g = graph(bitSets, size, edges);
+			Assert.assertTrue(Graphs.equal(floydWarshall(g, false), Graphs.transitiveClosure(g)));
+			Assert.assertTrue(Graphs.equal(floydWarshall(g, true), Graphs.reflexiveTransitiveClosure(g)));
+		}
+	}
+
+	@Test
+	public void testEmpty() {
+		check(0, new int[0][]);
+	}
+
+	@Test
+	public void testNoEdges() {
+		check(3, new int[0][]);
+	}
+
+	@Test
+	public void testSelfLoop() {
+		check(2, new int[][]{{0, 0}, {0, 1}});
+		check(1, new int[][]{{0, 0}});
+	}
+
+	@Test
+	public void testChain() {
+		check(4, new int[][]{{0, 1}, {1, 2}, {2, 3}});
+	}
+
+	@Test
+	public void testCycle() {
+		check(4, new int[][]{{0, 1}, {1, 2}, {2, 0}, {2, 3}});
+	}
+
+	@Test
+	public void testNestedCycles() {
+		// two cycles that share node 2, and a cycle reachable from both
+		check(7, new int[][]{{0, 1}, {1, 2}, {2, 0}, {2, 3}, {3, 2}, {3, 4}, {4, 5}, {5, 6}, {6, 4}});
+	}
+
+	@Test
+	public void testDisconnected() {
+		check(6, new int[][]{{0, 1}, {1, 0}, {2, 3}, {4, 4}});
+	}
+
+	@Test
+	public void testRandom() {
+		final Random random = new Random(42);
+		for(int trial = 0; trial < 50; trial++) {
+			final int size = 1 + random.nextInt(12);
+			final int[][] edges = new int[random.nextInt(2 * size)][];
+			for(int i = 0; i < edges.length; i++) {
+				edges[i] = new int[]{random.nextInt(size), random.nextInt(size)};
+			}
+			check(size, edges);
+		}
+	}
+}
@@ -213,6 +213,17 @@ public class Little {
 		return total;
 	}
 	
+	private static int readFoo() {
+		return foo;
+	}
+	
+	public void testReadUnwrittenField() {
+		// the caller never writes foo, so both calls read its initial value
+		int x = readFoo();
+		int y = readFoo();
+		assert x == y;
+	}
+	
 	private static int sum_xy(int[][] a, int y, int x) {
 		int total = 0;
 		for(int j = x - 1; j <= x + 1; j++) {
@@ -0,0 +1,189 @@
+/******************************************************************************
+ * Copyright (c) 2009 - 2015 IBM Corporation.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     IBM Corporation - initial API and implementation
+ *****************************************************************************/
+/**
+ *
+ */
+package com.ibm.wala.memsat;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import com.ibm.wala.memsat.frontEnd.WalaEngine;
+import com.ibm.wala.memsat.frontEnd.WalaSession;
+import com.ibm.wala.memsat.translation.concurrent.ConcurrentTranslation;
+import com.ibm.wala.memsat.translation.sequential.SequentialTranslation;
+import com.ibm.wala.types.MethodReference;
+import com.ibm.wala.util.graph.Graph;
+
+/**
+ * Runs independent Miniatur analyses on a fixed pool of worker threads.
+ *
+ * <p>The workers share one {@linkplain WalaSession front end session} per set of source 
+ * directories and loop unrolling depth, so all jobs for the same sources share one class 
+ * hierarchy and IR cache, which are built once.  A session runs the front end for one job 
+ * at a time (see {@linkplain WalaSession#analyze(Graph, Options)}), but jobs for different 
+ * sources run their front ends in parallel, and translation and solving always proceed 
+ * in parallel.  Each job is analyzed with a private copy of its options, so the same
+ * Options instance may be submitted with several jobs.</p>
+ *
+ * @specfield workers: int // number of worker threads
+ */
+public final class BatchAnalysis {
+	private final ExecutorService executor;
+	private final int workers;
+	private final Map<List<Object>, WalaSession> sessions;
+
+	/**
+	 * Creates a batch analysis that runs jobs on the given number of worker threads.
+	 * @effects this.workers' = workers
+	 * @throws IllegalArgumentException - workers < 1
+	 */
+	public BatchAnalysis(int workers) {
+		if (workers < 1)
+			throw new IllegalArgumentException("workers must be positive: " + workers);
+		this.workers = workers;
+		this.sessions = new LinkedHashMap<List<Object>, WalaSession>();
+		final AtomicInteger count = new AtomicInteger();
+		this.executor = Executors.newFixedThreadPool(workers, new ThreadFactory() {
+			public java.lang.Thread newThread(Runnable r) {
+				final java.lang.Thread t = new java.lang.Thread(r, "miniatur-batch-" + count.incrementAndGet());
+				t.setDaemon(true);
+				return t;
+			}
+		});
+	}
+
+	/**
+	 * Returns the number of worker threads used by this batch analysis.
+	 * @return this.workers
+	 */
+	public int workers() { return workers; }
+
+	/**
+	 * Returns the front end session for the given source directories and options that is
+	 * shared by all workers, creating it if necessary.  Creating a session only configures
+	 * its engine, so the map of sessions is locked only briefly.
+	 * @return front end session for the given source directories and options
+	 */
+	private WalaSession session(List<File> sourceDirs, Options options) throws IOException {
+		final List<Object> key = new ArrayList<Object>(sourceDirs);
+		key.add(options.loopUnrollDepth());
+		key.add(String.valueOf(options.getEclipseProjectName()));
+		synchronized(sessions) {
+			WalaSession session = sessions.get(key);
+			if (session == null) {
+				session = WalaEngine.session(sourceDirs, options);
+				sessions.put(key, session);
+			}
+			return session;
+		}
+	}
+
+	/**
+	 * Schedules the analysis of the given method from the specified source directories,
+	 * using the given options, and returns a future for its results.
+	 * @return a future for new Miniatur(options).analyze(method, sourceDirs)
+	 * @see Miniatur#analyze(MethodReference, List)
+	 */
+	public Future<Results<SequentialTranslation>> submit(final MethodReference method, List<File> sourceDirs, Options options) {
+		final List<File> dirs = Collections.unmodifiableList(new ArrayList<File>(sourceDirs));
+		final Options opts = new Options(options);
+		return executor.submit(new Callable<Results<SequentialTranslation>>() {
+			public Results<SequentialTranslation> call() throws Exception {
+				return new Miniatur(opts).analyze(method, session(dirs, opts));
+			}
+		});
+	}
+
+	/**
+	 * Schedules the analysis of the given methods from the specified source directories,
+	 * using the given options, and returns a future for its results.
+	 * @return a future for new Miniatur(options).analyze(methods, sourceDirs)
+	 * @see Miniatur#analyze(Graph, List)
+	 */
+	public Future<Results<ConcurrentTranslation>> submit(final Graph<MethodReference> methods, List<File> sourceDirs, Options options) {
+		final List<File> dirs = Collections.unmodifiableList(new ArrayList<File>(sourceDirs));
+		final Options opts = new Options(options);
+		return executor.submit(new Callable<Results<ConcurrentTranslation>>() {
+			public Results<ConcurrentTranslation> call() throws Exception {
+				return new Miniatur(opts).analyze(methods, session(dirs, opts));
+			}
+		});
+	}
+
+	/**
+	 * Schedules all of the given jobs and returns a list of futures for their results,
+	 * in the order in which the jobs are given.
+	 * @return [0..jobs.size()) ->  { f: Future | f = this.submit(jobs[i].methods, jobs[i].sourceDirs, jobs[i].options) }
+	 */
+	public List<Future<Results<ConcurrentTranslation>>> submitAll(List<Job> jobs) {
+		final List<Future<Results<ConcurrentTranslation>>> futures = new ArrayList<Future<Results<ConcurrentTranslation>>>(jobs.size());
+		for(Job job : jobs) {
+			futures.add(submit(job.methods, job.sourceDirs, job.options));
+		}
+		return futures;
+	}
+
+	/**
+	 * Stops accepting new jobs.  Jobs that have already been submitted run to completion.
+	 * @effects shuts down the worker pool of this batch analysis
+	 */
+	public void shutdown() { executor.shutdown(); }
+
+	/**
+	 * Returns a string view of this batch analysis.
+	 * @return a string view of this batch analysis.
+	 */
+	public String toString() { return "BatchAnalysis (" + workers + " workers)"; }
+
+	/**
+	 * An analysis job for a {@linkplain BatchAnalysis}, consisting of a graph of
+	 * thread entry methods, the source directories in which they are defined,
+	 * and the options with which they are to be analyzed.
+	 *
+	 * @specfield methods: Graph<MethodReference>
+	 * @specfield sourceDirs: List<File>
+	 * @specfield options: Options
+	 */
+	public static final class Job {
+		final Graph<MethodReference> methods;
+		final List<File> sourceDirs;
+		final Options options;
+
+		/**
+		 * Creates a job for analyzing the given methods from the given sources
+		 * with the given options.
+		 * @effects this.methods' = methods and this.sourceDirs' = sourceDirs and this.options' = options
+		 */
+		public Job(Graph<MethodReference> methods, List<File> sourceDirs, Options options) {
+			this.methods = methods;
+			this.sourceDirs = sourceDirs;
+			this.options = options;
+		}
+
+		/**
+		 * Returns a string view of this job.
+		 * @return a string view of this job.
+		 */
+		public String toString() { return "Job " + methods + " in " + sourceDirs; }
+	}
+}
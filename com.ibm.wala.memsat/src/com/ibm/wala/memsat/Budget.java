@@ -0,0 +1,170 @@
+/******************************************************************************
+ * Copyright (c) 2009 - 2015 IBM Corporation.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     IBM Corporation - initial API and implementation
+ *****************************************************************************/
+/**
+ *
+ */
+package com.ibm.wala.memsat;
+
+import java.util.EnumMap;
+import java.util.Map;
+
+import com.ibm.wala.memsat.Metrics.Phase;
+
+/**
+ * Limits on the resources that a Miniatur analysis may use:  a wall clock deadline
+ * for the entire analysis, a wall clock deadline for each {@linkplain Phase phase}, and
+ * caps on the number of variables and clauses given to the SAT solver.  A limit of 0
+ * means that the corresponding resource is unlimited.  The deadline of the analysis
+ * is measured from the creation of its {@linkplain Metrics}, and the deadline of a phase
+ * bounds the total time spent in that phase.  An analysis that exceeds a limit is
+ * aborted, and its {@linkplain Results results} report the
+ * {@linkplain Results.Status status} of the analysis instead of a solution.
+ *
+ * @specfield millis: long // milliseconds allotted to the entire analysis
+ * @specfield phaseMillis: Phase ->one long // milliseconds allotted to each phase
+ * @specfield maxVariables: int // largest number of SAT variables
+ * @specfield maxClauses: int // largest number of SAT clauses
+ * @invariant millis >= 0 and Phase.phaseMillis >= 0 and maxVariables >= 0 and maxClauses >= 0
+ */
+public final class Budget {
+	private long millis;
+	private final Map<Phase, Long> phaseMillis;
+	private int maxVariables, maxClauses;
+
+	/**
+	 * Creates an unlimited budget.
+	 * @effects this.millis' = 0 and Phase.(this.phaseMillis') = 0 and
+	 * this.maxVariables' = 0 and this.maxClauses' = 0
+	 */
+	public Budget() {
+		this.millis = 0;
+		this.phaseMillis = new EnumMap<Phase, Long>(Phase.class);
+		this.maxVariables = 0;
+		this.maxClauses = 0;
+	}
+
+	/**
+	 * Creates a copy of the given budget.
+	 * @effects this.millis' = other.millis and this.phaseMillis' = other.phaseMillis and
+	 * this.maxVariables' = other.maxVariables and this.maxClauses' = other.maxClauses
+	 */
+	public Budget(Budget other) {
+		this.millis = other.millis;
+		this.phaseMillis = new EnumMap<Phase, Long>(other.phaseMillis);
+		this.maxVariables = other.maxVariables;
+		this.maxClauses = other.maxClauses;
+	}
+
+	/**
+	 * Throws an IllegalArgumentException if the given limit is negative.
+	 * @throws IllegalArgumentException - limit < 0
+	 */
+	private static void checkLimit(long limit) {
+		if (limit < 0)
+			throw new IllegalArgumentException("negative limit: " + limit);
+	}
+
+	/**
+	 * Returns the number of milliseconds allotted to the entire analysis, or 0 if unlimited.
+	 * @return this.millis
+	 */
+	public long millis() { return millis; }
+
+	/**
+	 * Sets the number of milliseconds allotted to the entire analysis.
+	 * @effects this.millis' = millis
+	 * @throws IllegalArgumentException - millis < 0
+	 */
+	public void setMillis(long millis) {
+		checkLimit(millis);
+		this.millis = millis;
+	}
+
+	/**
+	 * Returns the number of milliseconds allotted to the given phase, or 0 if unlimited.
+	 * @return this.phaseMillis[phase]
+	 */
+	public long millis(Phase phase) {
+		final Long limit = phaseMillis.get(phase);
+		return limit == null ? 0 : limit;
+	}
+
+	/**
+	 * Sets the number of milliseconds allotted to the given phase.
+	 * @effects this.phaseMillis' = this.phaseMillis ++ phase->millis
+	 * @throws IllegalArgumentException - millis < 0
+	 */
+	public void setMillis(Phase phase, long millis) {
+		checkLimit(millis);
+		phaseMillis.put(phase, millis);
+	}
+
+	/**
+	 * Returns the largest number of variables that may be given to the SAT solver, or 0 if unlimited.
+	 * @return this.maxVariables
+	 */
+	public int maxVariables() { return maxVariables; }
+
+	/**
+	 * Sets the largest number of variables that may be given to the SAT solver.
+	 * @effects this.maxVariables' = maxVariables
+	 * @throws IllegalArgumentException - maxVariables < 0
+	 */
+	public void setMaxVariables(int maxVariables) {
+		checkLimit(maxVariables);
+		this.maxVariables = maxVariables;
+	}
+
+	/**
+	 * Returns the largest number of clauses that may be given to the SAT solver, or 0 if unlimited.
+	 * @return this.maxClauses
+	 */
+	public int maxClauses() { return maxClauses; }
+
+	/**
+	 * Sets the largest number of clauses that may be given to the SAT solver.
+	 * @effects this.maxClauses' = maxClauses
+	 * @throws IllegalArgumentException - maxClauses < 0
+	 */
+	public void setMaxClauses(int maxClauses) {
+		checkLimit(maxClauses);
+		this.maxClauses = maxClauses;
+	}
+
+	/**
+	 * Returns true if this budget places no limits on an analysis.
+	 * @return this.millis = 0 and Phase.(this.phaseMillis) = 0 and this.maxVariables = 0 and this.maxClauses = 0
+	 */
+	public boolean isUnlimited() {
+		if (millis > 0 || maxVariables > 0 || maxClauses > 0) return false;
+		for(long limit : phaseMillis.values()) {
+			if (limit > 0) return false;
+		}
+		return true;
+	}
+
+	/**
+	 * Returns a string view of this budget.
+	 * @return a string view of this budget.
+	 */
+	public String toString() {
+		if (isUnlimited()) return "unlimited";
+		final StringBuilder s = new StringBuilder();
+		s.append("{millis: ").append(millis);
+		for(Map.Entry<Phase, Long> entry : phaseMillis.entrySet()) {
+			if (entry.getValue() > 0)
+				s.append(", ").append(entry.getKey().name().toLowerCase()).append(": ").append(entry.getValue());
+		}
+		s.append(", maxVariables: ").append(maxVariables);
+		s.append(", maxClauses: ").append(maxClauses).append("}");
+		return s.toString();
+	}
+}
@@ -0,0 +1,174 @@
+/******************************************************************************
+ * Copyright (c) 2009 - 2015 IBM Corporation.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     IBM Corporation - initial API and implementation
+ *****************************************************************************/
+/**
+ *
+ */
+package com.ibm.wala.memsat;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import com.ibm.wala.ipa.callgraph.propagation.rta.CallSite;
+import com.ibm.wala.memsat.concurrent.MemoryModel;
+import com.ibm.wala.memsat.frontEnd.InlinedInstruction;
+
+import kodkod.instance.TupleSet;
+
+/**
+ * A comparison of several memory models on the same concurrent program.  The comparison
+ * is a matrix whose rows are the memory models, whose columns are the outcomes of the
+ * program that are allowed by at least one of the models, and whose cells record
+ * whether a given model allows a given outcome.  An outcome is described by the
+ * values seen by the reads of the program, which are comparable across models even
+ * though each model justifies the program with its own relations.  Since the models 
+ * may be analyzed by different front end runs, whose call graph nodes are distinct,
+ * each read is named by its {@linkplain #descriptor(InlinedInstruction) descriptor}.
+ *
+ * @specfield models: seq MemoryModel
+ * @specfield outcomes: seq (String -> String) // values seen by the reads of the program, keyed by their descriptors
+ * @specfield allows: models -> outcomes
+ * @specfield metrics: Metrics // metrics gathered by the comparison
+ */
+public final class Comparison {
+	private final Map<MemoryModel, Set<Map<String, String>>> allowed;
+	private final List<Map<String, String>> outcomes;
+	private final Metrics metrics;
+
+	/**
+	 * Creates a comparison from the given map, which binds each memory model to the
+	 * outcomes that it allows.
+	 * @effects this.models' = allowed.keySet() and this.allows' = allowed and
+	 * this.outcomes' = allowed.values() in the order in which they are first encountered and
+	 * this.metrics' = metrics
+	 */
+	Comparison(Map<MemoryModel, Set<Map<String, String>>> allowed, Metrics metrics) {
+		this.metrics = metrics;
+		this.allowed = new LinkedHashMap<MemoryModel, Set<Map<String,String>>>(allowed);
+		final Set<Map<String, String>> all = new LinkedHashSet<Map<String,String>>();
+		for(Set<Map<String, String>> outs : allowed.values()) {
+			all.addAll(outs);
+		}
+		this.outcomes = Collections.unmodifiableList(new ArrayList<Map<String,String>>(all));
+	}
+
+	/**
+	 * Returns the outcome described by the given values of the given reads:  a map
+	 * from the descriptor of each read to the string view of the value that it sees.  
+	 * Reads that are not executed see the empty set.
+	 * @requires #reads = #values 
+	 * @return { m: String -> String | all i: [0..#reads) | m[descriptor(reads[i])] = values[i].toString() }
+	 * @see Outcomes#values(com.ibm.wala.memsat.translation.concurrent.ConcurrentTranslation)
+	 */
+	static Map<String, String> valuesRead(List<InlinedInstruction> reads, List<TupleSet> values) {
+		assert reads.size() == values.size();
+		final Map<String, String> outcome = new LinkedHashMap<String, String>();
+		for(int i = 0, max = reads.size(); i < max; i++) {
+			outcome.put(descriptor(reads.get(i)), values.get(i).toString());
+		}
+		return Collections.unmodifiableMap(outcome);
+	}
+
+	/**
+	 * Returns a descriptor of the given instruction that does not depend on the identity 
+	 * of its call graph nodes:  the signature of its method and its index, followed by 
+	 * the signature and program counter of each call site on its call stack.  
+	 * @return a descriptor of the given instruction that is the same for the instructions 
+	 * of different front end runs that have the same method, index and call stack
+	 */
+	static String descriptor(InlinedInstruction inst) {
+		final StringBuilder s = new StringBuilder();
+		s.append(inst.cgNode().getMethod().getSignature()).append("@").append(inst.instructionIndex());
+		for(CallSite site : inst.callStack()) {
+			s.append(" <- ").append(site.getNode().getMethod().getSignature()).append("@").append(site.getSite().getProgramCounter());
+		}
+		return s.toString();
+	}
+
+	/**
+	 * Returns this.models.
+	 * @return this.models
+	 */
+	public List<MemoryModel> models() {
+		return Collections.unmodifiableList(new ArrayList<MemoryModel>(allowed.keySet()));
+	}
+
+	/**
+	 * Returns this.metrics.
+	 * @return this.metrics
+	 */
+	public Metrics metrics() { return metrics; }
+
+	/**
+	 * Returns this.outcomes.
+	 * @return this.outcomes
+	 */
+	public List<Map<String, String>> outcomes() { return outcomes; }
+
+	/**
+	 * Returns true if the given model allows the given outcome.
+	 * @requires model in this.models
+	 * @return model->outcome in this.allows
+	 */
+	public boolean allows(MemoryModel model, Map<String, String> outcome) {
+		return allowed.get(model).contains(outcome);
+	}
+
+	/**
+	 * Returns this comparison as a matrix with a row for each model and a column for each outcome.
+	 * @return { m: boolean[][] | #m = #this.models and all i: [0..#this.models) | #m[i] = #this.outcomes and
+	 *   all j: [0..#this.outcomes) | m[i][j] = this.models[i]->this.outcomes[j] in this.allows }
+	 */
+	public boolean[][] matrix() {
+		final boolean[][] ret = new boolean[allowed.size()][outcomes.size()];
+		int i = 0;
+		for(Set<Map<String, String>> outs : allowed.values()) {
+			for(int j = 0, max = outcomes.size(); j < max; j++) {
+				ret[i][j] = outs.contains(outcomes.get(j));
+			}
+			i++;
+		}
+		return ret;
+	}
+
+	/**
+	 * Returns a string view of this comparison:  a legend that lists the reads seen in
+	 * each outcome, followed by the matrix of models and outcomes.
+	 * @return a string view of this comparison.
+	 */
+	public String toString() {
+		final StringBuilder s = new StringBuilder();
+		for(int j = 0, max = outcomes.size(); j < max; j++) {
+			s.append("outcome ").append(j).append(":");
+			for(Iterator<Map.Entry<String, String>> itr = outcomes.get(j).entrySet().iterator(); itr.hasNext(); ) {
+				final Map.Entry<String, String> read = itr.next();
+				s.append(" ").append(read.getKey()).append(" = ").append(read.getValue());
+				if (itr.hasNext()) s.append(",");
+			}
+			s.append("\n");
+		}
+		final boolean[][] matrix = matrix();
+		int i = 0;
+		for(MemoryModel model : allowed.keySet()) {
+			s.append(model.getClass().getSimpleName());
+			for(boolean allows : matrix[i++]) {
+				s.append("\t").append(allows ? "y" : "n");
+			}
+			s.append("\n");
+		}
+		return s.toString();
+	}
+}
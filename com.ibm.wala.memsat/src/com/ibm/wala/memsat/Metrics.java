@@ -0,0 +1,428 @@
+/******************************************************************************
+ * Copyright (c) 2009 - 2015 IBM Corporation.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     IBM Corporation - initial API and implementation
+ *****************************************************************************/
+/**
+ *
+ */
+package com.ibm.wala.memsat;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.EnumMap;
+import java.util.Map;
+
+import com.ibm.wala.util.CancelRuntimeException;
+import com.ibm.wala.util.MonitorUtil.IProgressMonitor;
+
+import kodkod.engine.Solution;
+import kodkod.engine.config.AbstractReporter;
+import kodkod.engine.config.Reporter;
+import kodkod.instance.Bounds;
+
+/**
+ * Records the time and memory spent in each phase of a Miniatur analysis,
+ * together with the size of the generated problem.  Times are measured in
+ * nanoseconds of wall clock time, and memory is measured as the number of bytes
+ * allocated by the thread that executes a phase.  If the JVM cannot measure
+ * per-thread allocation, the allocated bytes are reported as -1.
+ *
+ * <p>Phases may nest:  the time and memory recorded for a phase include those of
+ * the phases that run inside it.  In particular, {@linkplain Phase#SIMPLIFICATION simplification} 
+ * and {@linkplain Phase#BOUNDS bounds} construction are part of 
+ * {@linkplain Phase#TRANSLATION translation}.  A phase that is entered several times
+ * accumulates the measurements for all of its runs.</p>
+ *
+ * <p>Metrics are not thread-safe:  each analysis records its metrics from the
+ * thread that runs it.  A task that runs on another thread records its metrics in a 
+ * {@linkplain #fork() fork}, which is {@linkplain #merge(Metrics) merged} back once 
+ * the task is done.</p>
+ *
+ * <p>Metrics also enforce the deadlines of a {@linkplain Budget budget}.  The phases 
+ * of an analysis {@linkplain #check() check} the budget as they progress, and the front end 
+ * passes a {@linkplain #monitor() monitor} of the budget to WALA.  The deadline of the 
+ * entire analysis is measured from the creation of the metrics.</p>
+ *
+ * @specfield budget: Budget // limits enforced by these metrics
+ * @specfield start: long // time, in nanoseconds, at which these metrics were created
+ * @specfield nanos: Phase -> one long // nanoseconds spent in each phase
+ * @specfield bytes: Phase -> one long // bytes allocated in each phase
+ * @specfield counts: Count -> lone long // problem size measurements
+ */
+public final class Metrics {
+
+	/**
+	 * The phases of a Miniatur analysis.
+	 */
+	public static enum Phase {
+		/** Analysis scope and class hierarchy construction. */
+		CLASS_HIERARCHY,
+		/** Call graph and pointer analysis construction. */
+		CALL_GRAPH,
+		/** System dependence graph construction and assertion slicing. */
+		SLICE,
+		/** Interprocedural field access analysis. */
+		FIELD_ACCESSES,
+		/** Field SSA construction for the nodes in the slice. */
+		FIELD_SSA,
+		/** Translation of the analyzed code to a Kodkod problem. */
+		TRANSLATION,
+		/** Simplification of the translated formula. */
+		SIMPLIFICATION,
+		/** Construction of the Kodkod bounds; for concurrent code, this includes memory model justification. */
+		BOUNDS,
+		/** Kodkod translation of the problem to CNF. */
+		FOL_TO_SAT,
+		/** SAT solving. */
+		SAT
+	}
+
+	/**
+	 * Measurements of the size of an analysis problem.
+	 */
+	public static enum Count {
+		/** Number of primary variables in the CNF. */
+		PRIMARY_VARIABLES,
+		/** Number of variables in the CNF. */
+		VARIABLES,
+		/** Number of clauses in the CNF. */
+		CLAUSES,
+		/** Number of relations in the bounds. */
+		RELATIONS,
+		/** Number of atoms in the universe. */
+		ATOMS
+	}
+
+	private static final ThreadMXBean THREADS = ManagementFactory.getThreadMXBean();
+
+	private final long[] nanos, bytes, startNanos, startBytes;
+	private final int[] depth;
+	private final Map<Count, Long> counts;
+	private final Budget budget;
+	private final long start;
+
+	/**
+	 * Creates empty metrics with an unlimited budget.
+	 * @effects no this.counts' and all p: Phase | this.nanos'[p] = 0 and this.bytes'[p] = 0 and 
+	 * this.budget'.isUnlimited() and this.start' = System.nanoTime()
+	 */
+	public Metrics() {
+		this(new Budget());
+	}
+
+	/**
+	 * Creates empty metrics that enforce a copy of the given budget.
+	 * @effects no this.counts' and all p: Phase | this.nanos'[p] = 0 and this.bytes'[p] = 0 and 
+	 * this.budget' = budget and this.start' = System.nanoTime()
+	 */
+	public Metrics(Budget budget) {
+		this(budget, System.nanoTime());
+	}
+
+	/**
+	 * Creates empty metrics that enforce a copy of the given budget from the given start time.
+	 * @effects no this.counts' and all p: Phase | this.nanos'[p] = 0 and this.bytes'[p] = 0 and 
+	 * this.budget' = budget and this.start' = start
+	 */
+	private Metrics(Budget budget, long start) {
+		this.budget = new Budget(budget);
+		this.start = start;
+		final int phases = Phase.values().length;
+		this.nanos = new long[phases];
+		this.bytes = new long[phases];
+		this.startNanos = new long[phases];
+		this.startBytes = new long[phases];
+		this.depth = new int[phases];
+		this.counts = new EnumMap<Count, Long>(Count.class);
+	}
+
+	/**
+	 * Returns the number of bytes allocated so far by the current thread,
+	 * or -1 if the JVM does not support allocation measurement.
+	 * @return number of bytes allocated so far by the current thread
+	 */
+	private static long allocatedBytes() {
+		if (THREADS instanceof com.sun.management.ThreadMXBean) {
+			return ((com.sun.management.ThreadMXBean)THREADS).getThreadAllocatedBytes(java.lang.Thread.currentThread().getId());
+		}
+		return -1;
+	}
+
+	/**
+	 * Starts measuring the given phase.  Nested calls for the same phase
+	 * are counted only once:  the measurement of the phase ends with
+	 * the matching outermost call to {@linkplain #end(Phase)}.
+	 * @effects starts measuring the given phase
+	 */
+	public void begin(Phase phase) {
+		final int p = phase.ordinal();
+		if (depth[p]++ == 0) {
+			startBytes[p] = allocatedBytes();
+			startNanos[p] = System.nanoTime();
+		}
+	}
+
+	/**
+	 * Stops measuring the given phase, and adds the measured time and
+	 * allocated bytes to this.nanos[phase] and this.bytes[phase].
+	 * @requires this.begin(phase) has been called more times than this.end(phase)
+	 * @effects adds the time and memory spent in the given phase since the
+	 * matching call to {@linkplain #begin(Phase)} to this.nanos[phase] and this.bytes[phase]
+	 */
+	public void end(Phase phase) {
+		final long endNanos = System.nanoTime();
+		final int p = phase.ordinal();
+		assert depth[p] > 0 : "unmatched end of " + phase;
+		if (--depth[p] == 0) {
+			nanos[p] += endNanos - startNanos[p];
+			if (startBytes[p] >= 0)
+				bytes[p] += allocatedBytes() - startBytes[p];
+		}
+	}
+
+	/**
+	 * Ends the measurement of every phase that is being measured, as if each
+	 * had been ended by the matching number of calls to {@linkplain #end(Phase)}.
+	 * This is used to record the phases of an analysis that was aborted.
+	 * @effects all p: Phase | this.measuring(p) => this.end(p) until !this.measuring(p)
+	 */
+	void endAll() {
+		for(Phase phase : Phase.values()) {
+			final int p = phase.ordinal();
+			if (depth[p] > 0) {
+				depth[p] = 1;
+				end(phase);
+			}
+		}
+	}
+
+	/**
+	 * Returns empty metrics that enforce this.budget and measure the deadline of the entire 
+	 * analysis from this.start.  The fork records the metrics of a task that runs on a thread
+	 * other than the one that records these metrics; each phase deadline applies to the 
+	 * task on its own.
+	 * @return { m: Metrics | no m.counts and all p: Phase | m.nanos[p] = 0 and m.bytes[p] = 0 and 
+	 *   m.budget = this.budget and m.start = this.start }
+	 */
+	Metrics fork() { 
+		return new Metrics(budget, start);
+	}
+
+	/**
+	 * Adds the time and memory recorded by the given metrics to these metrics.  A count 
+	 * that is recorded by both is set to the larger of the two values.
+	 * @requires no p: Phase | other.measuring(p)
+	 * @effects all p: Phase | this.nanos'[p] = this.nanos[p] + other.nanos[p] and 
+	 *   this.bytes'[p] = this.bytes[p] + other.bytes[p] 
+	 * @effects all c: Count | this.counts'[c] = max(this.counts[c] + other.counts[c])
+	 */
+	void merge(Metrics other) { 
+		for(Phase phase : Phase.values()) {
+			final int p = phase.ordinal();
+			assert other.depth[p] == 0 : "merge of " + phase + " while it is measured";
+			nanos[p] += other.nanos[p];
+			bytes[p] += other.bytes[p];
+		}
+		for(Map.Entry<Count, Long> entry : other.counts.entrySet()) { 
+			final Long value = counts.get(entry.getKey());
+			if (value == null || value < entry.getValue()) 
+				counts.put(entry.getKey(), entry.getValue());
+		}
+	}
+
+	/**
+	 * Returns the budget enforced by these metrics.
+	 * @return a copy of this.budget
+	 */
+	public Budget budget() { return new Budget(budget); }
+
+	/**
+	 * Returns the nanoseconds spent in the given phase so far, including the current
+	 * measurement, if any.
+	 * @return this.nanos[phase] + (this.measuring(phase) => time since the phase began else 0)
+	 */
+	private long elapsed(Phase phase) {
+		final int p = phase.ordinal();
+		return nanos[p] + (depth[p] > 0 ? System.nanoTime() - startNanos[p] : 0);
+	}
+
+	/**
+	 * Returns a description of a deadline in this.budget that has passed, or null if none has.
+	 * @return a description of a deadline in this.budget that has passed, or null if none has
+	 */
+	private String exceeded() {
+		final long millis = budget.millis();
+		if (millis > 0 && System.nanoTime() - start > millis * 1000000L)
+			return "analysis exceeded its deadline of " + millis + " ms";
+		for(Phase phase : Phase.values()) {
+			final long phaseMillis = budget.millis(phase);
+			if (phaseMillis > 0 && elapsed(phase) > phaseMillis * 1000000L)
+				return phase.name().toLowerCase() + " exceeded its deadline of " + phaseMillis + " ms";
+		}
+		return null;
+	}
+
+	/**
+	 * Throws a CancelRuntimeException if a deadline in this.budget has passed.
+	 * @throws CancelRuntimeException - the entire analysis, or one of its phases, has exceeded its deadline in this.budget
+	 */
+	public void check() {
+		final String exceeded = exceeded();
+		if (exceeded != null)
+			throw CancelRuntimeException.make(exceeded);
+	}
+
+	/**
+	 * Returns the number of milliseconds left before the given phase or the entire analysis
+	 * exceeds its deadline in this.budget, or Long.MAX_VALUE if neither has a deadline.
+	 * @return milliseconds left before the given phase or the entire analysis exceeds its deadline
+	 */
+	long remainingMillis(Phase phase) {
+		long remaining = Long.MAX_VALUE;
+		if (budget.millis() > 0)
+			remaining = budget.millis() - (System.nanoTime() - start) / 1000000L;
+		if (budget.millis(phase) > 0)
+			remaining = Math.min(remaining, budget.millis(phase) - elapsed(phase) / 1000000L);
+		return Math.max(0, remaining);
+	}
+
+	/**
+	 * Returns a WALA progress monitor that is cancelled as soon as a deadline in this.budget passes.
+	 * The monitor must be polled from the thread that records these metrics.
+	 * @return a WALA progress monitor that is cancelled as soon as a deadline in this.budget passes
+	 */
+	public IProgressMonitor monitor() {
+		return new IProgressMonitor() {
+			public void beginTask(String task, int totalWork) {}
+			public void subTask(String subTask) {}
+			public void cancel() {}
+			public boolean isCanceled() { return exceeded() != null; }
+			public void done() {}
+			public void worked(int units) {}
+			public String getCancelMessage() { return exceeded(); }
+		};
+	}
+
+	/**
+	 * Sets the given count to the given value.
+	 * @effects this.counts' = this.counts ++ count -> value
+	 */
+	public void set(Count count, long value) { counts.put(count, value); }
+
+	/**
+	 * Records the sizes of the given bounds.
+	 * @effects this.counts' = this.counts ++
+	 *  (RELATIONS -> #bounds.relations + ATOMS -> bounds.universe.size())
+	 */
+	void record(Bounds bounds) {
+		set(Count.RELATIONS, bounds.relations().size());
+		set(Count.ATOMS, bounds.universe().size());
+	}
+
+	/**
+	 * Records the CNF sizes reported in the statistics of the given solution.
+	 * @effects this.counts' = this.counts ++
+	 *  (PRIMARY_VARIABLES -> solution.stats.primaryVariables + VARIABLES -> solution.stats.variables +
+	 *   CLAUSES -> solution.stats.clauses)
+	 */
+	void record(Solution solution) {
+		set(Count.PRIMARY_VARIABLES, solution.stats().primaryVariables());
+		set(Count.VARIABLES, solution.stats().variables());
+		set(Count.CLAUSES, solution.stats().clauses());
+	}
+
+	/**
+	 * Returns a reporter that, when used by a Kodkod solver invoked between calls to
+	 * this.begin(FOL_TO_SAT) and this.end(SAT) on the current thread, ends the
+	 * FOL_TO_SAT phase and begins the SAT phase as soon as the solver starts solving the CNF.
+	 * @return a reporter that switches this from the FOL_TO_SAT phase to the SAT phase
+	 */
+	Reporter reporter() {
+		return new AbstractReporter() {
+			@Override
+			public void solvingCNF(int primaryVars, int vars, int clauses) {
+				end(Phase.FOL_TO_SAT);
+				begin(Phase.SAT);
+			}
+		};
+	}
+
+	/**
+	 * Returns true if the given phase is currently being measured.
+	 * @return true if the given phase is currently being measured
+	 */
+	boolean measuring(Phase phase) { return depth[phase.ordinal()] > 0; }
+
+	/**
+	 * Returns the number of nanoseconds spent in the given phase.
+	 * @return this.nanos[phase]
+	 */
+	public long nanos(Phase phase) { return nanos[phase.ordinal()]; }
+
+	/**
+	 * Returns the number of bytes allocated in the given phase, or -1 if
+	 * allocation cannot be measured.
+	 * @return this.bytes[phase]
+	 */
+	public long bytes(Phase phase) {
+		return THREADS instanceof com.sun.management.ThreadMXBean ? bytes[phase.ordinal()] : -1;
+	}
+
+	/**
+	 * Returns the value of the given count, or -1 if it has not been recorded.
+	 * @return some this.counts[count] => this.counts[count] else -1
+	 */
+	public long count(Count count) {
+		final Long value = counts.get(count);
+		return value == null ? -1 : value;
+	}
+
+	/**
+	 * Returns a JSON view of these metrics.  The view is an object with two members:
+	 * "phases", which maps the name of each phase to an object with the members
+	 * "nanos" and "allocatedBytes", and "counts", which maps the name of each
+	 * recorded count to its value.
+	 * @return a JSON view of these metrics
+	 */
+	public String toJSON() {
+		final StringBuilder s = new StringBuilder();
+		s.append("{\"phases\": {");
+		String sep = "";
+		for(Phase phase : Phase.values()) {
+			s.append(sep).append("\"").append(phase.name().toLowerCase()).append("\": {");
+			s.append("\"nanos\": ").append(nanos(phase));
+			s.append(", \"allocatedBytes\": ").append(bytes(phase)).append("}");
+			sep = ", ";
+		}
+		s.append("}, \"counts\": {");
+		sep = "";
+		for(Map.Entry<Count, Long> entry : counts.entrySet()) {
+			s.append(sep).append("\"").append(entry.getKey().name().toLowerCase()).append("\": ").append(entry.getValue());
+			sep = ", ";
+		}
+		s.append("}}");
+		return s.toString();
+	}
+
+	/**
+	 * Returns a string view of these metrics.
+	 * @return a string view of these metrics.
+	 */
+	public String toString() {
+		final StringBuilder s = new StringBuilder();
+		for(Phase phase : Phase.values()) {
+			s.append(phase.name().toLowerCase()).append(": ").append(nanos(phase)).append(" ns, ");
+			s.append(bytes(phase)).append(" bytes\n");
+		}
+		for(Map.Entry<Count, Long> entry : counts.entrySet()) {
+			s.append(entry.getKey().name().toLowerCase()).append(": ").append(entry.getValue()).append("\n");
+		}
+		return s.toString();
+	}
+}
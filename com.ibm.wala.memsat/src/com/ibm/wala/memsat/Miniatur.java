@@ -14,21 +14,59 @@
 package com.ibm.wala.memsat;
 
 import java.io.File;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeoutException;
 
+import com.ibm.wala.memsat.Metrics.Phase;
+import com.ibm.wala.memsat.concurrent.MemoryModel;
+import com.ibm.wala.memsat.concurrent.Program;
+import com.ibm.wala.memsat.concurrent.memory.jmm.JavaMemoryModel;
+import com.ibm.wala.memsat.frontEnd.InlinedInstruction;
 import com.ibm.wala.memsat.frontEnd.WalaEngine;
 import com.ibm.wala.memsat.frontEnd.WalaInformation;
+import com.ibm.wala.memsat.frontEnd.WalaSession;
+import com.ibm.wala.memsat.representation.ExpressionFactory;
+import com.ibm.wala.memsat.representation.FloatAbstraction;
+import com.ibm.wala.memsat.translation.Translation;
 import com.ibm.wala.memsat.translation.concurrent.ConcurrentTranslation;
 import com.ibm.wala.memsat.translation.concurrent.ConcurrentTranslator;
 import com.ibm.wala.memsat.translation.sequential.SequentialTranslation;
 import com.ibm.wala.memsat.translation.sequential.SequentialTranslator;
 import com.ibm.wala.memsat.util.Graphs;
 import com.ibm.wala.memsat.viz.StringVisualizer;
+import com.ibm.wala.memsat.viz.Visualizer;
 import com.ibm.wala.types.MethodReference;
+import com.ibm.wala.util.CancelException;
+import com.ibm.wala.util.CancelRuntimeException;
 import com.ibm.wala.util.graph.Graph;
 
+import kodkod.ast.Formula;
+import kodkod.ast.Node;
+import kodkod.ast.Relation;
+import kodkod.engine.AbortedException;
+import kodkod.engine.Proof;
 import kodkod.engine.Solution;
+import kodkod.engine.Solution.Outcome;
 import kodkod.engine.Solver;
+import kodkod.engine.satlab.SATFactory;
+import kodkod.engine.ucore.RCEStrategy;
+import kodkod.instance.Bounds;
+import kodkod.util.nodes.Nodes;
 
 /**
  * Provides a simple interface to the Miniatur analysis engine.
@@ -68,25 +106,52 @@ public final class Miniatur {
 	 * results of the analysis include a counterexample, if any, to violated assertions,
 	 * and statistics about the various phases of the analysis.
 	 * 
+	 * <p>The analysis is aborted as soon as it exceeds a limit of this.options.budget.  
+	 * The results of an aborted analysis have no solution:  they report the 
+	 * {@linkplain Results#status() status} of the analysis and the metrics gathered so far.</p>
+	 * 
 	 * @return Results of analyzing the given method
 	 */
 	public Results<SequentialTranslation> analyze(MethodReference method, List<File> sourceDirs)  throws com.ibm.wala.util.CancelException, java.io.IOException {	
+		return analyze(method, WalaEngine.session(sourceDirs, options));
+	}
+	
+	/**
+	 * Analyzes the given method using the given front end session and 
+	 * returns the results.  The class hierarchy and IR built by the session
+	 * are reused, so analyzing many methods from the same sources with one 
+	 * session avoids re-parsing those sources for each method.
+	 * @requires session.accepts(session.sourceDirs, this.options)
+	 * @return Results of analyzing the given method
+	 * @see #analyze(MethodReference, List)
+	 * @throws IllegalArgumentException - !session.accepts(session.sourceDirs, this.options)
+	 */
+	public Results<SequentialTranslation> analyze(MethodReference method, WalaSession session)  throws com.ibm.wala.util.CancelException, java.io.IOException {	
+		final Metrics metrics = new Metrics(options.budget());
 		final long startWala = System.currentTimeMillis();
-		final WalaInformation info = WalaEngine.analyze(Graphs.graph(method), sourceDirs, options);
-		final long endWala = System.currentTimeMillis();
-		
-		assert info.threads().getNumberOfNodes()==1;
-		
-		final long startMiniatur = System.currentTimeMillis();
-		final SequentialTranslation translation = SequentialTranslator.translate(info, options);
-		final long endMiniatur = System.currentTimeMillis();
-		
-		final Solver solver = new Solver(options.kodkodOptions());
-		final Solution sol = solver.solve(translation.formula(), translation.bounds());
-		
-		return new Results<SequentialTranslation>(translation, sol, 
-				endWala-startWala, endMiniatur-startMiniatur, 
-				StringVisualizer.viz(translation, sol));
+		long endWala = -1, endMiniatur = -1;
+		SequentialTranslation translation = null;
+		try { 
+			final WalaInformation info = session.analyze(Graphs.graph(method), options, metrics);
+			endWala = System.currentTimeMillis();
+			
+			assert info.threads().getNumberOfNodes()==1;
+			
+			metrics.begin(Phase.TRANSLATION);
+			translation = SequentialTranslator.translate(info, options, metrics);
+			metrics.end(Phase.TRANSLATION);
+			endMiniatur = System.currentTimeMillis();
+			
+			final Solution sol = solve(translation, options, metrics);
+			
+			return new Results<SequentialTranslation>(translation, sol, 
+					endWala-startWala, endMiniatur-endWala, metrics,
+					StringVisualizer.viz(translation, sol));
+		} catch (CancelException | CancelRuntimeException | AbortedException e) { 
+			final long now = System.currentTimeMillis();
+			return aborted(translation, e, (endWala < 0 ? now : endWala) - startWala, 
+					endWala < 0 ? 0 : (endMiniatur < 0 ? now : endMiniatur) - endWala, metrics);
+		}
 	}
 	
 	/**
@@ -103,23 +168,603 @@ public final class Miniatur {
 	 * results of the analysis include a counterexample, if any, to violated assertions,
 	 * and statistics about the various phases of the analysis.
 	 * 
+	 * <p>The analysis is aborted as soon as it exceeds a limit of this.options.budget.  
+	 * The results of an aborted analysis have no solution:  they report the 
+	 * {@linkplain Results#status() status} of the analysis and the metrics gathered so far.</p>
+	 * 
 	 * @return Results of analyzing the given methods
 	 */
 	public Results<ConcurrentTranslation> analyze(Graph<MethodReference> methods, List<File> sourceDirs)  throws com.ibm.wala.util.CancelException, java.io.IOException {
+		return analyze(methods, WalaEngine.session(sourceDirs, options));
+	}
+	
+	/**
+	 * Analyzes the given methods using the given front end session and 
+	 * returns the results.  The class hierarchy and IR built by the session
+	 * are reused, so analyzing many method graphs from the same sources with one 
+	 * session avoids re-parsing those sources for each graph.
+	 * @requires session.accepts(session.sourceDirs, this.options)
+	 * @return Results of analyzing the given methods
+	 * @see #analyze(Graph, List)
+	 * @throws IllegalArgumentException - !session.accepts(session.sourceDirs, this.options)
+	 */
+	public Results<ConcurrentTranslation> analyze(Graph<MethodReference> methods, WalaSession session)  throws com.ibm.wala.util.CancelException, java.io.IOException {
+		final Metrics metrics = new Metrics(options.budget());
 		final long startWala = System.currentTimeMillis();
-		final WalaInformation info = WalaEngine.analyze(methods, sourceDirs, options);
-		final long endWala = System.currentTimeMillis();
-		
-		final long startMiniatur = System.currentTimeMillis();
-		final ConcurrentTranslation translation = ConcurrentTranslator.translate(info, options);
-		final long endMiniatur = System.currentTimeMillis();
-		
-		final Solver solver = new Solver(options.kodkodOptions());
-		final Solution sol = solver.solve(translation.formula(), translation.bounds());
+		long endWala = -1, endMiniatur = -1;
+		ConcurrentTranslation translation = null;
+		try { 
+			final WalaInformation info = session.analyze(methods, options, metrics);
+			endWala = System.currentTimeMillis();
+			
+			metrics.begin(Phase.TRANSLATION);
+			translation = ConcurrentTranslator.translate(info, options, metrics);
+			metrics.end(Phase.TRANSLATION);
+			endMiniatur = System.currentTimeMillis();
+			
+			final Solution sol = solve(translation, options, metrics);
+			
+			return new Results<ConcurrentTranslation>(translation, sol, 
+					endWala-startWala, endMiniatur-endWala, metrics,
+					StringVisualizer.viz(translation, sol));
+		} catch (CancelException | CancelRuntimeException | AbortedException e) { 
+			final long now = System.currentTimeMillis();
+			return aborted(translation, e, (endWala < 0 ? now : endWala) - startWala, 
+					endWala < 0 ? 0 : (endMiniatur < 0 ? now : endMiniatur) - endWala, metrics);
+		}
+	}
+	
+	/**
+	 * Translates the given methods from the specified source directories, as described in 
+	 * {@linkplain #analyze(Graph, List)}, and returns an enumerator for the distinct outcomes 
+	 * of the translation.  The outcomes are projected onto the values seen by the reads of 
+	 * the main execution, and they are all produced by a single solver session.  The budget 
+	 * of this.options limits the front end, the translation and the enumeration, whose 
+	 * iterator fails once a deadline passes or the CNF exceeds a cap.
+	 * @requires this.options.kodkodOptions.solver.incremental()
+	 * @return Outcomes.of(t, m) where t is the translation of the given methods and 
+	 * m is the metrics of the translation, with budget this.options.budget
+	 * @see Outcomes#of(ConcurrentTranslation, Metrics)
+	 * @throws IllegalArgumentException - !this.options.kodkodOptions.solver.incremental()
+	 * @throws CancelRuntimeException - a deadline in this.options.budget passed
+	 * @throws AbortedException - the CNF of the translation exceeds a cap of this.options.budget
+	 */
+	public Outcomes outcomes(Graph<MethodReference> methods, List<File> sourceDirs)  throws com.ibm.wala.util.CancelException, java.io.IOException {
+		final Metrics metrics = new Metrics(options.budget());
+		final WalaInformation info = WalaEngine.session(sourceDirs, options).analyze(methods, options, metrics);
+		metrics.begin(Phase.TRANSLATION);
+		final ConcurrentTranslation translation = ConcurrentTranslator.translate(info, options, metrics);
+		metrics.end(Phase.TRANSLATION);
+		return Outcomes.of(translation, metrics);
+	}
+	
+	/**
+	 * Compares the given memory models on the given methods from the specified source 
+	 * directories, and returns the resulting matrix of models and outcomes.  The methods are 
+	 * treated as described in {@linkplain #analyze(Graph, List)}.  The front end is run, and 
+	 * the threads are translated, once for each group of models that share the same memory 
+	 * instructions and the same kind of action atoms, using this.options with the memory model 
+	 * set to the group's first model.  Each model then justifies its group's translation, and 
+	 * {@linkplain Outcomes enumerates} the outcomes that it allows, projected onto the values 
+	 * seen by the reads of the program.  The 
+	 * justifications share the front end results, so they are built one at a time; the 
+	 * enumerations only use Kodkod, so each runs in a thread of its own, and records its 
+	 * metrics in a {@linkplain Metrics#fork() fork} that is merged into the metrics of the 
+	 * comparison once all enumerations are done.  The budget of 
+	 * this.options limits the whole comparison:  once a deadline passes or a CNF exceeds 
+	 * a cap, the comparison fails and the enumerations that are still running are stopped.  
+	 * All other settings are taken from this.options.
+	 * @requires this.options.kodkodOptions.solver.incremental()
+	 * @return { c: Comparison | c.models = models and c.allows = { m: models, o: c.outcomes | m allows o on the given methods } }
+	 * @throws IllegalArgumentException - !this.options.kodkodOptions.solver.incremental()
+	 * @throws CancelRuntimeException - a deadline in this.options.budget passed
+	 * @throws AbortedException - the CNF of a translation exceeds a cap of this.options.budget
+	 */
+	public Comparison compare(Graph<MethodReference> methods, List<File> sourceDirs, List<? extends MemoryModel> models) throws com.ibm.wala.util.CancelException, java.io.IOException {
+		final Metrics metrics = new Metrics(options.budget());
+		final WalaSession session = WalaEngine.session(sourceDirs, options);
+		final Map<List<?>, Program> programs = new HashMap<List<?>, Program>();
+		for(MemoryModel model : models) { 
+			final List<?> key = Arrays.asList(model.memoryInstructions(), model.usesSpeculation());
+			if (!programs.containsKey(key)) { 
+				final Options modelOptions = new Options(options);
+				modelOptions.setMemoryModel(model);
+				final WalaInformation info = session.analyze(methods, modelOptions, metrics);
+				metrics.begin(Phase.TRANSLATION);
+				programs.put(key, ConcurrentTranslator.program(info, modelOptions));
+				metrics.end(Phase.TRANSLATION);
+				metrics.check();
+			}
+		}
 		
-		return new Results<ConcurrentTranslation>(translation, sol, 
-				endWala-startWala, endMiniatur-startMiniatur, 
-				StringVisualizer.viz(translation, sol));
+		final ExecutorService executor = Executors.newFixedThreadPool(Math.max(1, models.size()), new ThreadFactory() {
+			public java.lang.Thread newThread(Runnable r) {
+				final java.lang.Thread t = new java.lang.Thread(r, "miniatur-comparison");
+				t.setDaemon(true);
+				return t;
+			}
+		});
+		// the enumerations that have started, so that they can be stopped if the comparison fails
+		final List<Outcomes> started = Collections.synchronizedList(new ArrayList<Outcomes>());
+		try { 
+			final Map<MemoryModel, Future<Set<Map<String, String>>>> futures = new LinkedHashMap<MemoryModel, Future<Set<Map<String,String>>>>();
+			// each enumeration records its metrics in a fork of its own, since metrics are not thread-safe
+			final List<Metrics> forks = new ArrayList<Metrics>();
+			for(final MemoryModel model : models) { 
+				final Program prog = programs.get(Arrays.asList(model.memoryInstructions(), model.usesSpeculation()));
+				metrics.begin(Phase.BOUNDS);
+				final ConcurrentTranslation translation = ConcurrentTranslator.translate(prog, model);
+				metrics.end(Phase.BOUNDS);
+				metrics.check();
+				final List<InlinedInstruction> reads = Outcomes.reads(prog.info());
+				final Metrics fork = metrics.fork();
+				forks.add(fork);
+				futures.put(model, executor.submit(new Callable<Set<Map<String, String>>>() {
+					public Set<Map<String, String>> call() {
+						// the outcomes are projected onto the values seen by the reads, so each is distinct
+						final Set<Map<String, String>> allowed = new LinkedHashSet<Map<String,String>>();
+						final Outcomes outcomes = Outcomes.of(translation, fork);
+						started.add(outcomes);
+						while(outcomes.hasNext()) { 
+							allowed.add(Comparison.valuesRead(reads, outcomes.outcome(outcomes.next())));
+						}
+						return allowed;
+					}
+				}));
+			}
+			final Map<MemoryModel, Set<Map<String, String>>> allowed = new LinkedHashMap<MemoryModel, Set<Map<String,String>>>();
+			for(Map.Entry<MemoryModel, Future<Set<Map<String, String>>>> entry : futures.entrySet()) { 
+				try {
+					allowed.put(entry.getKey(), entry.getValue().get());
+				} catch (ExecutionException e) {
+					throw e.getCause() instanceof RuntimeException ? 
+							(RuntimeException) e.getCause() : new RuntimeException(e.getCause());
+				}
+			}
+			for(Metrics fork : forks) { 
+				metrics.merge(fork);
+			}
+			return new Comparison(allowed, metrics);
+		} catch (InterruptedException e) {
+			java.lang.Thread.currentThread().interrupt();
+			throw new RuntimeException(e);
+		} finally { 
+			synchronized(started) { 
+				for(Outcomes outcomes : started) { 
+					outcomes.cancel();
+				}
+			}
+			executor.shutdownNow();
+		}
+	}
+	
+	/**
+	 * Returns the outcome of {@linkplain #analyze(MethodReference, List) analyzing} the 
+	 * given method from the specified source directories.  If the given cache has an entry 
+	 * for this problem, the stored outcome is returned without running the front end, 
+	 * the translator or the solver.  Otherwise, the method is analyzed and the outcome 
+	 * is stored in the cache before being returned.  If the analysis runs out of its
+	 * {@linkplain Options#budget() budget}, nothing is stored and null is returned.
+	 * @effects cache.entries' = cache.entries ++ ResultCache.key(Graphs.graph(method), sourceDirs, this.options) -> 
+	 *  this.analyze(method, sourceDirs).solution.outcome
+	 * @return this.analyze(method, sourceDirs).solution.outcome
+	 */
+	public Outcome check(MethodReference method, List<File> sourceDirs, ResultCache cache) throws com.ibm.wala.util.CancelException, java.io.IOException {
+		final String key = ResultCache.key(Graphs.graph(method), sourceDirs, options);
+		final Outcome cached = cache.lookup(key);
+		if (cached != null) return cached;
+		final Solution sol = analyze(method, sourceDirs).solution();
+		if (sol == null) return null;
+		cache.store(key, sol);
+		return sol.outcome();
+	}
+	
+	/**
+	 * Returns the outcome of {@linkplain #analyze(Graph, List) analyzing} the 
+	 * given methods from the specified source directories.  If the given cache has an entry 
+	 * for this problem, the stored outcome is returned without running the front end, 
+	 * the translator or the solver.  Otherwise, the methods are analyzed and the outcome 
+	 * is stored in the cache before being returned.  If the analysis runs out of its
+	 * {@linkplain Options#budget() budget}, nothing is stored and null is returned.
+	 * @effects cache.entries' = cache.entries ++ ResultCache.key(methods, sourceDirs, this.options) -> 
+	 *  this.analyze(methods, sourceDirs).solution.outcome
+	 * @return this.analyze(methods, sourceDirs).solution.outcome
+	 */
+	public Outcome check(Graph<MethodReference> methods, List<File> sourceDirs, ResultCache cache) throws com.ibm.wala.util.CancelException, java.io.IOException {
+		final String key = ResultCache.key(methods, sourceDirs, options);
+		final Outcome cached = cache.lookup(key);
+		if (cached != null) return cached;
+		final Solution sol = analyze(methods, sourceDirs).solution();
+		if (sol == null) return null;
+		cache.store(key, sol);
+		return sol.outcome();
+	}
+	
+	/**
+	 * Analyzes the given method from the specified source directory using iterative 
+	 * deepening, and returns the results.  The analysis is performed for increasing 
+	 * loop unrolling depths, from 1 up to this.options.loopUnrollDepth, and, for each depth, 
+	 * for increasing open world scope sizes, from 1 (or 0, if this.options.openWorldScopeSize = 0) 
+	 * up to this.options.openWorldScopeSize.  The sweep stops as soon as a counterexample 
+	 * is found.  The front end is run once per unrolling depth and is shared by all scope sizes 
+	 * explored at that depth.
+	 * 
+	 * <p>The translation of the returned results is the one for the bounds at which the sweep 
+	 * stopped, and its options record those bounds.  The analysis and translation times of the 
+	 * returned results are cumulative over the entire sweep.</p>
+	 * 
+	 * @return Results of analyzing the given method at the smallest bounds that yield a 
+	 * counterexample, or at the bounds given by this.options if there is no counterexample.
+	 * @see #analyze(MethodReference, List)
+	 */
+	public Results<SequentialTranslation> analyzeIteratively(MethodReference method, List<File> sourceDirs) throws com.ibm.wala.util.CancelException, java.io.IOException {
+		return deepen(Graphs.graph(method), sourceDirs, new Pipeline<SequentialTranslation>() {
+			public SequentialTranslation translate(WalaInformation info, Options stepOptions, Metrics metrics) {
+				assert info.threads().getNumberOfNodes()==1;
+				return SequentialTranslator.translate(info, stepOptions, metrics);
+			}
+			public Visualizer<String> viz(SequentialTranslation translation, Solution solution) {
+				return StringVisualizer.viz(translation, solution);
+			}
+		});
+	}
+	
+	/**
+	 * Analyzes the given methods from the specified source directory using iterative 
+	 * deepening, and returns the results.  The methods are treated as described in 
+	 * {@linkplain #analyze(Graph, List)}, and the bounds are explored as described in 
+	 * {@linkplain #analyzeIteratively(MethodReference, List)}.
+	 * @return Results of analyzing the given methods at the smallest bounds that yield a 
+	 * counterexample, or at the bounds given by this.options if there is no counterexample.
+	 * @see #analyze(Graph, List)
+	 */
+	public Results<ConcurrentTranslation> analyzeIteratively(Graph<MethodReference> methods, List<File> sourceDirs) throws com.ibm.wala.util.CancelException, java.io.IOException {
+		return deepen(methods, sourceDirs, new Pipeline<ConcurrentTranslation>() {
+			public ConcurrentTranslation translate(WalaInformation info, Options stepOptions, Metrics metrics) {
+				return ConcurrentTranslator.translate(info, stepOptions, metrics);
+			}
+			public Visualizer<String> viz(ConcurrentTranslation translation, Solution solution) {
+				return StringVisualizer.viz(translation, solution);
+			}
+		});
+	}
+	
+	/**
+	 * Analyzes the given methods from the specified source directory with increasing 
+	 * speculation depths, and returns the results.  The methods are treated as described in 
+	 * {@linkplain #analyze(Graph, List)}, except that this.options.memoryModel, which must be 
+	 * a {@linkplain JavaMemoryModel}, bounds the search rather than fixing its depth.  The 
+	 * search starts with two commit sets (the empty one and one committed speculation) and 
+	 * adds one more after each depth that yields no legal counterexample, until it finds one 
+	 * or reaches this.options.memoryModel.maxSpeculations.  Since a commit sequence may repeat 
+	 * a commit set, every execution that is legal at some depth is also legal at all greater 
+	 * depths, so the first depth that yields a counterexample is the minimal one.
+	 * 
+	 * <p>The front end is run and the threads are translated only once;  each depth 
+	 * only justifies the translated program with more speculations.  The translation of 
+	 * the returned results is the one for the depth at which the search stopped, so that 
+	 * depth is given by <tt>results.translation().context().speculations().size()</tt>.  
+	 * The translation time of the returned results is cumulative over all depths.</p>
+	 * 
+	 * @requires this.options.memoryModel in JavaMemoryModel
+	 * @return Results of analyzing the given methods at the smallest speculation depth that yields 
+	 * a counterexample, or at this.options.memoryModel.maxSpeculations if there is no counterexample.
+	 * @throws IllegalArgumentException - this.options.memoryModel !in JavaMemoryModel
+	 * @see #analyze(Graph, List)
+	 */
+	public Results<ConcurrentTranslation> analyzeSpeculating(Graph<MethodReference> methods, List<File> sourceDirs) throws com.ibm.wala.util.CancelException, java.io.IOException {
+		if (!(options.memoryModel() instanceof JavaMemoryModel))
+			throw new IllegalArgumentException("not a speculative memory model: " + options.memoryModel());
+		final JavaMemoryModel model = (JavaMemoryModel) options.memoryModel();
+		final Metrics metrics = new Metrics(options.budget());
+		final long startWala = System.currentTimeMillis();
+		long endWala = -1, translationTime = 0;
+		ConcurrentTranslation translation = null;
+		try { 
+			final WalaInformation info = WalaEngine.session(sourceDirs, options).analyze(methods, options, metrics);
+			endWala = System.currentTimeMillis();
+			
+			metrics.begin(Phase.TRANSLATION);
+			final Program prog = ConcurrentTranslator.program(info, options);
+			metrics.end(Phase.TRANSLATION);
+			translationTime += System.currentTimeMillis() - endWala;
+			
+			for(int depth = Math.min(2, model.maxSpeculations()); ; depth++) { 
+				metrics.check();
+				final long startMiniatur = System.currentTimeMillis();
+				metrics.begin(Phase.BOUNDS);
+				translation = ConcurrentTranslator.translate(prog, model.withMaxSpeculations(depth));
+				metrics.end(Phase.BOUNDS);
+				translationTime += System.currentTimeMillis() - startMiniatur;
+				
+				final Solution sol = solve(translation, options, metrics);
+				if (sol.instance()!=null || depth >= model.maxSpeculations()) { 
+					return new Results<ConcurrentTranslation>(translation, sol, 
+							endWala-startWala, translationTime, metrics,
+							StringVisualizer.viz(translation, sol));
+				}
+			}
+		} catch (CancelException | CancelRuntimeException | AbortedException e) { 
+			final long now = System.currentTimeMillis();
+			return aborted(translation, e, (endWala < 0 ? now : endWala) - startWala, 
+					translationTime, metrics);
+		}
+	}
+	
+	/**
+	 * Analyzes the given method from the specified source directory using unsat core 
+	 * guided bound refinement, and returns the results.  The analysis starts with a 
+	 * loop unrolling depth, open world scope size and number of index atoms of 1 
+	 * (or 0, if the corresponding value in this.options is 0), and uses the sparse 
+	 * array encoding, so that the number of index atoms limits only the initial contents 
+	 * of open world arrays.  The bound-limiting constraints are kept as separate 
+	 * conjuncts of the solved formula:  the {@linkplain ExpressionFactory#heapInvariants() heap invariants}
+	 * depend on the open world scope size, the {@linkplain ExpressionFactory#arrayInvariants() array invariants} 
+	 * on the number of index atoms, and the loop unwinding assumptions on the unrolling depth.
+	 * 
+	 * <p>If a step yields a counterexample, the refinement stops.  Otherwise, the minimal 
+	 * unsat core of the step is used to grow, by one, only those dimensions whose constraints 
+	 * participate in the core and whose values are still below the ones given by this.options.  
+	 * The refinement stops when no such dimension remains.  Note that the core cannot 
+	 * implicate the bitwidth, so this.options.kodkodOptions.bitwidth is used throughout, 
+	 * and float operations are never {@linkplain Options#refineFloats() abstracted}.
+	 * The front end is rerun only when the unrolling depth grows.</p>
+	 * 
+	 * <p>The translation of the returned results is the one for the bounds at which the 
+	 * refinement stopped, and its options record those bounds.  The analysis and translation 
+	 * times of the returned results are cumulative over all refinement steps.</p>
+	 * 
+	 * @return Results of analyzing the given method at the bounds at which the refinement stopped.
+	 * @see #analyzeIteratively(MethodReference, List)
+	 */
+	public Results<SequentialTranslation> analyzeRefining(MethodReference method, List<File> sourceDirs) throws com.ibm.wala.util.CancelException, java.io.IOException {
+		final Graph<MethodReference> methods = Graphs.graph(method);
+		final int maxDepth = options.loopUnrollDepth(), maxScope = options.openWorldScopeSize(), maxAtoms = options.numberOfIndexAtoms();
+		int depth = Math.min(1, maxDepth), scope = Math.min(1, maxScope), atoms = Math.min(1, maxAtoms);
+		long analysisTime = 0, translationTime = 0;
+		final Metrics metrics = new Metrics(options.budget());
+		SequentialTranslation translation = null;
+		WalaInformation base = null;
+		int baseDepth = -1;
+		try { 
+			while(true) { 
+				if (baseDepth != depth) { 
+					final Options depthOptions = new Options(options);
+					depthOptions.setloopUnrollDepth(depth);
+					final long startWala = System.currentTimeMillis();
+					base = WalaEngine.session(sourceDirs, depthOptions).analyze(methods, depthOptions, metrics);
+					analysisTime += System.currentTimeMillis() - startWala;
+					baseDepth = depth;
+				}
+				assert base.threads().getNumberOfNodes()==1;
+			
+				final Options stepOptions = new Options(options);
+				stepOptions.setloopUnrollDepth(depth);
+				stepOptions.setOpenWorldScopeSize(scope);
+				stepOptions.setNumberOfIndexAtoms(atoms);
+				stepOptions.setSparseArrays(true);
+				// a model of abstract float operations may be spurious, so the steps use the precise circuits
+				stepOptions.setRefineFloats(false);
+				stepOptions.setPortfolio();
+				stepOptions.kodkodOptions().setSolver(SATFactory.MiniSatProver);
+				stepOptions.kodkodOptions().setLogTranslation(1);
+				stepOptions.kodkodOptions().setCoreGranularity(0);
+				final WalaInformation info = WalaEngine.withOpenWorldScopeSize(base, scope);
+			
+				final long startMiniatur = System.currentTimeMillis();
+				metrics.begin(Phase.TRANSLATION);
+				translation = SequentialTranslator.translate(info, stepOptions, metrics);
+				metrics.end(Phase.TRANSLATION);
+				translationTime += System.currentTimeMillis() - startMiniatur;
+			
+				// keep the bound-limiting constraints as top-level conjuncts, so that they can be found in the core
+				final ExpressionFactory factory = translation.factory();
+				final Formula heap = factory.heapInvariants(), arrays = factory.arrayInvariants();
+				final Formula unwinding = Formula.and(translation.context().assumptions());
+				final Formula formula = Formula.and(heap, arrays, unwinding, SequentialTranslator.assertions(translation.context(), stepOptions));
+			
+				final Solution sol = solve(formula, translation.bounds(), bitwidthOf(translation, stepOptions), metrics);
+			
+				boolean refined = false;
+				if (sol.instance()==null) { 
+					final Set<Node> core = unsatCore(sol.proof());
+					if (depth < maxDepth && !Collections.disjoint(core, Nodes.roots(unwinding))) { 
+						depth++;
+						refined = true;
+					}
+					if (scope < maxScope && !Collections.disjoint(core, Nodes.roots(heap))) { 
+						scope++;
+						refined = true;
+					}
+					if (atoms < maxAtoms && !Collections.disjoint(core, Nodes.roots(arrays))) { 
+						atoms++;
+						refined = true;
+					}
+				}
+				if (!refined) { 
+					return new Results<SequentialTranslation>(translation, sol, analysisTime, translationTime, metrics, StringVisualizer.viz(translation, sol));
+				}
+			}
+		} catch (CancelException | CancelRuntimeException | AbortedException e) { 
+			return aborted(translation, e, analysisTime, translationTime, metrics);
+		}
+	}
+	
+	/**
+	 * Minimizes the given proof and returns the formulas in its core.
+	 * @effects proof.minimize(new RCEStrategy(proof.log()))
+	 * @return proof.highLevelCore().keySet() + proof.highLevelCore().values()
+	 */
+	private static Set<Node> unsatCore(Proof proof) { 
+		proof.minimize(new RCEStrategy(proof.log()));
+		final Map<Formula, Node> highLevelCore = proof.highLevelCore();
+		final Set<Node> core = new HashSet<Node>(highLevelCore.values());
+		core.addAll(highLevelCore.keySet());
+		return core;
+	}
+	
+	/**
+	 * Translates a front end result to a Kodkod problem of a particular kind.
+	 */
+	private static interface Pipeline<T extends Translation<?>> { 
+		/**
+		 * Returns the translation of the given front end result with respect to the given options,
+		 * recording the translation phases in the given metrics.
+		 * @return translation of the given front end result with respect to the given options.
+		 */
+		public abstract T translate(WalaInformation info, Options stepOptions, Metrics metrics);
+		/**
+		 * Returns a visualizer for the given solution to the given translation.
+		 * @return a visualizer for the given solution to the given translation.
+		 */
+		public abstract Visualizer<String> viz(T translation, Solution solution);
+	}
+	
+	/**
+	 * Performs the iterative deepening sweep described in {@linkplain #analyzeIteratively(MethodReference, List)}
+	 * using the given pipeline, and returns the results.  The budget of this.options limits 
+	 * the entire sweep; if the sweep is aborted, the results carry the last translation, if any.
+	 * @return results of the iterative deepening sweep 
+	 */
+	private <T extends Translation<?>> Results<T> deepen(Graph<MethodReference> methods, List<File> sourceDirs, Pipeline<T> pipeline) throws com.ibm.wala.util.CancelException, java.io.IOException {
+		final int maxDepth = options.loopUnrollDepth(), maxScope = options.openWorldScopeSize();
+		long analysisTime = 0, translationTime = 0;
+		final Metrics metrics = new Metrics(options.budget());
+		T translation = null;
+		try { 
+			for(int depth = 1; depth <= maxDepth; depth++) { 
+				final Options depthOptions = new Options(options);
+				depthOptions.setloopUnrollDepth(depth);
+				
+				final long startWala = System.currentTimeMillis();
+				final WalaInformation base = WalaEngine.session(sourceDirs, depthOptions).analyze(methods, depthOptions, metrics);
+				analysisTime += System.currentTimeMillis() - startWala;
+				
+				for(int scope = Math.min(1, maxScope); scope <= maxScope; scope++) { 
+					final Options stepOptions = new Options(depthOptions);
+					stepOptions.setOpenWorldScopeSize(scope);
+					final WalaInformation info = WalaEngine.withOpenWorldScopeSize(base, scope);
+					
+					final long startMiniatur = System.currentTimeMillis();
+					metrics.begin(Phase.TRANSLATION);
+					translation = pipeline.translate(info, stepOptions, metrics);
+					metrics.end(Phase.TRANSLATION);
+					translationTime += System.currentTimeMillis() - startMiniatur;
+					
+					final Solution sol = solve(translation, stepOptions, metrics);
+					
+					if (sol.instance()!=null || (depth==maxDepth && scope==maxScope)) { 
+						return new Results<T>(translation, sol, analysisTime, translationTime, metrics, pipeline.viz(translation, sol));
+					}
+				}
+			}
+		} catch (CancelException | CancelRuntimeException | AbortedException e) { 
+			return aborted(translation, e, analysisTime, translationTime, metrics);
+		}
+		throw new AssertionError("unreachable");
+	}
+	
+	/**
+	 * Solves the given translation using the given options, and records the size of the 
+	 * problem and the cost of solving it in the given metrics.  If the portfolio of the 
+	 * given options is empty, the problem is solved with a copy of options.kodkodOptions 
+	 * whose reporter separates the FOL_TO_SAT and SAT phases.  Otherwise, it is solved with 
+	 * a {@linkplain Portfolio} that races the solvers in options.portfolio, and the entire 
+	 * race is recorded as the SAT phase.  The same holds if options.budget is limited, so 
+	 * that the solver can be stopped when its deadline passes.  In that case, the SAT 
+	 * deadline of the budget applies to the FOL_TO_SAT phase as well.
+	 * 
+	 * <p>If the translation {@linkplain FloatAbstraction abstracts} some float operations, 
+	 * the formula is solved repeatedly.  Each time a model is found, the abstract operations 
+	 * whose values are spurious in that model are refined, and the refined formula is solved 
+	 * again.  The search ends with the first model that is not spurious, or with an unsatisfiable
+	 * formula.</p>
+	 * @return solution to the given translation
+	 */
+	private static Solution solve(Translation<?> translation, Options options, Metrics metrics) { 
+		final Options solveOptions = bitwidthOf(translation, options);
+		final FloatAbstraction floats = translation.factory().floats();
+		Formula formula = translation.formula();
+		while(true) { 
+			final Solution sol = solve(formula, translation.bounds(), solveOptions, metrics);
+			if (sol.instance()==null || floats.relations().isEmpty()) 
+				return sol;
+			final Set<Relation> spurious = floats.spurious(sol.instance(), translation.getOptions());
+			if (spurious.isEmpty()) 
+				return sol;
+			formula = formula.and(floats.refinement(spurious));
+		}
+	}
+	
+	/**
+	 * Returns the given options if their bitwidth is the one used by the given translation, 
+	 * which may differ from it if the bitwidth was {@linkplain Options#inferBitwidth() inferred}.  
+	 * Otherwise returns a copy of the given options with the translation's bitwidth.
+	 * @return options.kodkodOptions.bitwidth = translation.options.bitwidth => options else 
+	 * { o: Options | o = options ++ kodkodOptions->(options.kodkodOptions ++ bitwidth->translation.options.bitwidth) }
+	 */
+	private static Options bitwidthOf(Translation<?> translation, Options options) { 
+		final int bitwidth = translation.getOptions().bitwidth();
+		if (bitwidth == options.kodkodOptions().bitwidth()) return options;
+		final Options adjusted = new Options(options);
+		adjusted.kodkodOptions().setBitwidth(bitwidth);
+		return adjusted;
+	}
+	
+	/**
+	 * Solves the given formula with respect to the given bounds, as described in 
+	 * {@linkplain #solve(Translation, Options, Metrics)}.
+	 * @return solution to the given formula with respect to the given bounds
+	 */
+	private static Solution solve(Formula formula, Bounds bounds, Options options, Metrics metrics) { 
+		metrics.check();
+		metrics.record(bounds);
+		final Solution sol;
+		final Budget budget = options.budget();
+		if (!budget.isUnlimited()) { 
+			// the solver runs on its own thread, so that the deadline can be enforced while it searches
+			final List<SATFactory> solvers = options.portfolio().isEmpty() ? 
+					Collections.singletonList(options.kodkodOptions().solver()) : options.portfolio();
+			metrics.begin(Phase.SAT);
+			try { 
+				sol = Portfolio.of(options.kodkodOptions(), solvers).solve(formula, bounds, 
+						metrics.remainingMillis(Phase.SAT), budget.maxVariables(), budget.maxClauses());
+			} catch (TimeoutException e) { 
+				throw CancelRuntimeException.make(e.getMessage());
+			} finally { 
+				metrics.end(Phase.SAT);
+			}
+		} else if (options.portfolio().isEmpty()) { 
+			final kodkod.engine.config.Options kodkodOptions = options.kodkodOptions().clone();
+			kodkodOptions.setReporter(metrics.reporter());
+			metrics.begin(Phase.FOL_TO_SAT);
+			sol = new Solver(kodkodOptions).solve(formula, bounds);
+			// the reporter switches to the SAT phase unless the problem is solved during translation
+			metrics.end(metrics.measuring(Phase.FOL_TO_SAT) ? Phase.FOL_TO_SAT : Phase.SAT);
+		} else {
+			metrics.begin(Phase.SAT);
+			sol = Portfolio.of(options.kodkodOptions(), options.portfolio()).solve(formula, bounds);
+			metrics.end(Phase.SAT);
+		}
+		metrics.record(sol);
+		return sol;
+	}
+	
+	/**
+	 * Returns the results of an analysis that was aborted by the given exception.  The
+	 * results have the status UNKNOWN if the exception is an AbortedException, which is 
+	 * thrown when the SAT problem exceeds a cap of the budget, and TIMEOUT otherwise. 
+	 * The phases that were being measured when the analysis was aborted are ended.
+	 * @requires cause in CancelException + CancelRuntimeException + AbortedException
+	 * @effects metrics.endAll()
+	 * @return results of an analysis that was aborted by the given exception
+	 */
+	private static <T extends Translation<?>> Results<T> aborted(T translation, Exception cause, long analysisTime, long translationTime, Metrics metrics) { 
+		metrics.endAll();
+		final Results.Status status = cause instanceof AbortedException ? Results.Status.UNKNOWN : Results.Status.TIMEOUT;
+		final String reason = cause.getCause() != null && cause.getCause().getMessage() != null ? 
+				cause.getCause().getMessage() : cause.getMessage();
+		return new Results<T>(translation, status, reason, analysisTime, translationTime, metrics);
 	}
 	
 	/**
@@ -13,7 +13,11 @@
  */
 package com.ibm.wala.memsat;
 
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
 import java.util.HashSet;
+import java.util.List;
 import java.util.Set;
 
 import com.ibm.wala.memsat.concurrent.MemoryModel;
@@ -35,11 +39,19 @@ import kodkod.engine.satlab.SATFactory;
  * @specfield kodkodOptions:  kodkod.engine.config.Options // options for the Kodkod engine (for defaults, see {@linkplain #Options()})
  * @specfield memoryModel: MemoryModel // memory model used for analyzing concurrent programs (default is JMMAlt)
  * @specfield assertsAreAssumptions: boolean // default is false
+ * @specfield summarizeMethods: boolean // translate each callee once and reuse the translation at its call sites? (default false)
+ * @specfield breakHeapSymmetries: boolean // order interchangeable open world instances? (default false)
+ * @specfield sparseArrays: boolean // encode array stores as a read-over-write chain instead of updating every index slot? (default false)
+ * @specfield inferBitwidth: boolean // replace kodkodOptions.bitwidth with the smallest one that fits the program's integer ranges? (default false)
+ * @specfield refineFloats: boolean // abstract float arithmetic and refine it on spurious counterexamples? (default false)
+ * @specfield compactDisjointness: boolean // require distinct actions of a thread with a linear chain of constraints instead of pairwise ones? (default false)
  * @specified eclipseProjectName: String // the Eclipse project to analyze, if any.  default is null.
+ * @specfield portfolio: seq SATFactory // SAT solvers raced against each other, if non-empty (default is empty)
+ * @specfield budget: Budget // time and SAT size limits for an analysis (default is unlimited)
  * @author Emina Torlak
  */
 public final class Options { 
-	private boolean isContextSensitive,assertsAreAssumptions;
+	private boolean isContextSensitive,assertsAreAssumptions,summarizeMethods,breakHeapSymmetries,sparseArrays,inferBitwidth,refineFloats,compactDisjointness;
 	private int loopUnrollDepth, openWorldScopeSize, numberOfIndexAtoms, recursionLimit;
 	
 	private TypeReference undefinedType;
@@ -48,7 +60,9 @@ public final class Options {
 	private String eclipseProjectName;
 	
 	private final Set<TypeReference> primordialConcreteTypes;
+	private final List<SATFactory> portfolio;
 	private final kodkod.engine.config.Options kodkodOptions;
+	private final Budget budget;
 	
 	/**
 	 * Returns an Options instance initialized with default values.
@@ -62,7 +76,15 @@ public final class Options {
 	 * this.kodkodOptions'.solver = SATFactory.MiniSAT and
 	 * this.kodkodOptions'.bitwidth = 8 and 
 	 * this.memoryModel' = RelaxedModelFactory and
-	 * this.assertsAreAssumptions = false
+	 * this.assertsAreAssumptions = false and
+	 * this.summarizeMethods = false and
+	 * this.breakHeapSymmetries = false and
+	 * this.sparseArrays = false and
+	 * this.inferBitwidth = false and
+	 * this.refineFloats = false and
+	 * this.compactDisjointness = false and
+	 * no this.portfolio' and
+	 * this.budget'.isUnlimited()
 	 */
 	public Options() {
 		this.isContextSensitive = true;
@@ -80,8 +102,47 @@ public final class Options {
 		kodkodOptions.setSolver(SATFactory.MiniSat);
 		this.memoryModel = null;
 		this.assertsAreAssumptions = false;
+		this.summarizeMethods = false;
+		this.breakHeapSymmetries = false;
+		this.sparseArrays = false;
+		this.inferBitwidth = false;
+		this.refineFloats = false;
+		this.compactDisjointness = false;
 		this.eclipseProjectName = null;
+		this.portfolio = new ArrayList<SATFactory>();
+		this.budget = new Budget();
 	}
+	
+	/**
+	 * Returns an Options instance initialized with the values of the given options.
+	 * The primordial concrete types, the kodkod options and the budget of the new instance 
+	 * are copies of those in the given options; the memory model is shared.
+	 * @effects this.isContextSensitive' = other.isContextSensitive and 
+	 * this.loopUnrollDepth' = other.loopUnrollDepth and ... and 
+	 * this.eclipseProjectName' = other.eclipseProjectName
+	 */
+	public Options(Options other) { 
+		this.isContextSensitive = other.isContextSensitive;
+		this.loopUnrollDepth = other.loopUnrollDepth;
+		this.openWorldScopeSize = other.openWorldScopeSize;
+		this.numberOfIndexAtoms = other.numberOfIndexAtoms;
+		this.recursionLimit = other.recursionLimit;
+		this.primordialConcreteTypes = new HashSet<TypeReference>(other.primordialConcreteTypes);
+		this.undefinedType = other.undefinedType;
+		this.kodkodOptions = other.kodkodOptions.clone();
+		this.memoryModel = other.memoryModel;
+		this.assertsAreAssumptions = other.assertsAreAssumptions;
+		this.summarizeMethods = other.summarizeMethods;
+		this.breakHeapSymmetries = other.breakHeapSymmetries;
+		this.sparseArrays = other.sparseArrays;
+		this.inferBitwidth = other.inferBitwidth;
+		this.refineFloats = other.refineFloats;
+		this.compactDisjointness = other.compactDisjointness;
+		this.eclipseProjectName = other.eclipseProjectName;
+		this.portfolio = new ArrayList<SATFactory>(other.portfolio);
+		this.budget = new Budget(other.budget);
+	}
+	
 	/**
 	 * Returns the value of isContextSensitive flag.
 	 * @return this.isContextSensitive
@@ -240,6 +301,144 @@ public final class Options {
 		this.assertsAreAssumptions = assertsAreAssumptions;
 	}
 	
+	/**
+	 * Returns true if the translation of sequential code should translate each 
+	 * called method once, with placeholders for its arguments and heap, and 
+	 * instantiate that summary at every call site that reaches the method with 
+	 * the same recursion depths and heap.  The default is false.  Summaries are 
+	 * not used for concurrent code or for methods that allocate objects.
+	 * @return this.summarizeMethods
+	 */
+	public boolean summarizeMethods() { return summarizeMethods; }
+	
+	/**
+	 * Sets the flag for summarizing called methods.
+	 * @effects this.summarizeMethods' = summarizeMethods
+	 */
+	public void setSummarizeMethods(boolean summarizeMethods) { 
+		this.summarizeMethods = summarizeMethods;
+	}
+	
+	/**
+	 * Returns true if the translation should include predicates that 
+	 * break the symmetries among the open world instances of each type, 
+	 * which are interchangeable in the initial heap.  The default is false.
+	 * @return this.breakHeapSymmetries
+	 */
+	public boolean breakHeapSymmetries() { return breakHeapSymmetries; }
+	
+	/**
+	 * Sets the flag for breaking symmetries among open world instances.
+	 * @effects this.breakHeapSymmetries' = breakHeapSymmetries
+	 */
+	public void setBreakHeapSymmetries(boolean breakHeapSymmetries) { 
+		this.breakHeapSymmetries = breakHeapSymmetries;
+	}
+	
+	/**
+	 * Returns true if array stores should be encoded lazily, as a chain of 
+	 * guarded stores that each read consults from the most recent one back, 
+	 * instead of updating all {@linkplain #numberOfIndexAtoms() index slots} 
+	 * of the array.  The index slots are then used only for the contents of 
+	 * the initial heap, and an access to an array is in bounds if its index
+	 * is between 0 and the array's length, rather than one of its slots.  
+	 * The default is false.  Methods are not summarized when this flag is set.
+	 * @return this.sparseArrays
+	 */
+	public boolean sparseArrays() { return sparseArrays; }
+	
+	/**
+	 * Sets the flag for the sparse encoding of arrays.
+	 * @effects this.sparseArrays' = sparseArrays
+	 */
+	public void setSparseArrays(boolean sparseArrays) { 
+		this.sparseArrays = sparseArrays;
+	}
+	
+	/**
+	 * Returns true if the translators should replace this.kodkodOptions.bitwidth 
+	 * with the smallest bitwidth that fits the {@linkplain com.ibm.wala.memsat.frontEnd.IntRanges integer ranges} 
+	 * of the analyzed code.  The bitwidth in this.kodkodOptions is kept if the 
+	 * ranges cannot be determined or if the code performs arithmetic on inputs.  
+	 * The default is false.
+	 * @return this.inferBitwidth
+	 */
+	public boolean inferBitwidth() { return inferBitwidth; }
+	
+	/**
+	 * Sets the flag for inferring the bitwidth from the integer ranges of the analyzed code.
+	 * @effects this.inferBitwidth' = inferBitwidth
+	 */
+	public void setInferBitwidth(boolean inferBitwidth) { 
+		this.inferBitwidth = inferBitwidth;
+	}
+	
+	/**
+	 * Returns true if the sequential translator should replace the results of float 
+	 * arithmetic and conversions with unconstrained values, and if the analysis should
+	 * add the precise {@linkplain com.ibm.wala.memsat.math.FloatingPoint floating point} 
+	 * circuits only for the operations whose values are wrong in a counterexample.
+	 * The default is false.
+	 * @return this.refineFloats
+	 * @see com.ibm.wala.memsat.representation.FloatAbstraction
+	 */
+	public boolean refineFloats() { return refineFloats; }
+	
+	/**
+	 * Sets the flag for the abstraction and refinement of float arithmetic.
+	 * @effects this.refineFloats' = refineFloats
+	 */
+	public void setRefineFloats(boolean refineFloats) { 
+		this.refineFloats = refineFloats;
+	}
+	
+	/**
+	 * Returns true if the concurrent translator should require the instructions of a thread 
+	 * to perform distinct actions with a chain of constraints that is linear in the length of
+	 * the thread, rather than with a constraint for each pair of ordered instructions that may
+	 * share an action.  The two encodings are equivalent; they differ only in size, which
+	 * matters for memory models that use speculation.  The default is false.
+	 * @return this.compactDisjointness
+	 */
+	public boolean compactDisjointness() { return compactDisjointness; }
+	
+	/**
+	 * Sets the flag for the compact encoding of action disjointness.
+	 * @effects this.compactDisjointness' = compactDisjointness
+	 */
+	public void setCompactDisjointness(boolean compactDisjointness) { 
+		this.compactDisjointness = compactDisjointness;
+	}
+	
+	/**
+	 * Returns the SAT solvers that are raced against each other when solving 
+	 * a translated problem.  If the portfolio is empty, the problem is solved 
+	 * only with this.kodkodOptions.solver.  The translation, including the encoding
+	 * of the memory model, is the same for all solvers in the portfolio.  
+	 * @return this.portfolio
+	 */
+	public List<SATFactory> portfolio() { 
+		return Collections.unmodifiableList(portfolio);
+	}
+	
+	/**
+	 * Sets the SAT solvers that are raced against each other when solving 
+	 * a translated problem.  Each solver runs with a copy of this.kodkodOptions, 
+	 * and the first one to finish provides the solution.  
+	 * @effects this.portfolio' = solvers
+	 */
+	public void setPortfolio(SATFactory... solvers) { 
+		portfolio.clear();
+		portfolio.addAll(Arrays.asList(solvers));
+	}
+	
+	/**
+	 * Returns the resource limits for an analysis performed with these options.  
+	 * The returned budget is backed by these options, so changes to it are 
+	 * reflected in these options.
+	 * @return this.budget
+	 */
+	public Budget budget() { return budget; }
 	
 	public String getEclipseProjectName() {
 		return eclipseProjectName;
@@ -257,6 +456,7 @@ public final class Options {
 		final StringBuilder s = new StringBuilder();
 
 		s.append("Options:\n");
+		s.append(" isContextSensitive: " + isContextSensitive + "\n");
 		s.append(" loopUnrollDepth: " + loopUnrollDepth + "\n");
 		s.append(" openWorldScopeSize: " + openWorldScopeSize + "\n");
 		s.append(" numberOfIndexAtoms: " + numberOfIndexAtoms + "\n");
@@ -266,6 +466,15 @@ public final class Options {
 		s.append(" kodkodOptions: " + kodkodOptions + "\n");
 		s.append(" memoryModel: " + memoryModel + "\n");
 		s.append(" assertsAreAssumptions: " + assertsAreAssumptions + "\n");
+		s.append(" summarizeMethods: " + summarizeMethods + "\n");
+		s.append(" breakHeapSymmetries: " + breakHeapSymmetries + "\n");
+		s.append(" sparseArrays: " + sparseArrays + "\n");
+		s.append(" inferBitwidth: " + inferBitwidth + "\n");
+		s.append(" refineFloats: " + refineFloats + "\n");
+		s.append(" compactDisjointness: " + compactDisjointness + "\n");
+		s.append(" eclipseProjectName: " + eclipseProjectName + "\n");
+		s.append(" portfolio: " + portfolio + "\n");
+		s.append(" budget: " + budget + "\n");
 		return s.toString();
 	}
 }
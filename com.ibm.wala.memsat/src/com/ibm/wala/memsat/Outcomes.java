@@ -0,0 +1,416 @@
+/******************************************************************************
+ * Copyright (c) 2009 - 2015 IBM Corporation.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     IBM Corporation - initial API and implementation
+ *****************************************************************************/
+/**
+ *
+ */
+package com.ibm.wala.memsat;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.Timer;
+import java.util.TimerTask;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import com.ibm.wala.ipa.callgraph.CGNode;
+import com.ibm.wala.memsat.Metrics.Phase;
+import com.ibm.wala.memsat.concurrent.Execution;
+import com.ibm.wala.memsat.frontEnd.InlinedInstruction;
+import com.ibm.wala.memsat.frontEnd.InlinedInstruction.Action;
+import com.ibm.wala.memsat.frontEnd.WalaInformation;
+import com.ibm.wala.memsat.translation.concurrent.ConcurrentTranslation;
+import com.ibm.wala.util.CancelRuntimeException;
+
+import kodkod.ast.Expression;
+import kodkod.ast.Formula;
+import kodkod.ast.Relation;
+import kodkod.engine.AbortedException;
+import kodkod.engine.Evaluator;
+import kodkod.engine.bool.BooleanConstant;
+import kodkod.engine.config.Options;
+import kodkod.engine.fol2sat.Translation;
+import kodkod.engine.fol2sat.Translator;
+import kodkod.engine.fol2sat.TrivialFormulaException;
+import kodkod.engine.satlab.SATAbortedException;
+import kodkod.engine.satlab.SATSolver;
+import kodkod.instance.Bounds;
+import kodkod.instance.Instance;
+import kodkod.instance.TupleSet;
+import kodkod.util.ints.IntIterator;
+
+/**
+ * Enumerates the distinct outcomes of a concurrent translation in a single
+ * SAT solver session.  An outcome is the value of a sequence of expressions, 
+ * the projection, in a satisfying instance.  By default, the projection consists 
+ * of the value seen by each read of the program in the main {@linkplain Execution execution}, 
+ * which is empty if the read is not executed.  Two instances that differ only in 
+ * the remaining relations (e.g. the write-seen bits of unexecuted reads, the choice of 
+ * pooled action atoms, or the commit sets and speculative executions of a justification) 
+ * yield the same outcome.
+ *
+ * <p>The translation is translated to CNF once, together with a fresh relation for each
+ * projected expression that is constrained to equal it.  After each satisfying
+ * assignment is found, the solver is given a clause that blocks its values
+ * for the primary variables of the fresh relations, i.e. for the boolean matrices 
+ * of the projected expressions, and it is then asked for the next assignment.  
+ * The solver of the translation's options must therefore be incremental.</p>
+ * 
+ * <p>The enumeration may be limited by the {@linkplain Budget budget} of a {@linkplain Metrics} 
+ * instance.  The caps of the budget bound the size of the CNF, and its deadlines bound 
+ * the enumeration:  the SAT deadline bounds the time spent in all calls to the solver, 
+ * and the deadline of the analysis bounds the whole enumeration.  A limited enumeration 
+ * runs its solver in a {@linkplain SolverProcess child JVM}, which is killed when a 
+ * deadline passes.</p>
+ *
+ * @specfield translation: ConcurrentTranslation
+ * @specfield projection: seq Expression // expressions whose values distinguish outcomes
+ * @specfield metrics: Metrics // metrics whose budget limits the enumeration, and which record its SAT time
+ * @specfield produced: set Instance // one instance for each outcome produced so far
+ */
+public final class Outcomes implements Iterator<Instance> {
+	private final List<Expression> projection;
+	private final Metrics metrics;
+	private final Portfolio.Cancellable solvers;
+	private final Translation cnf;
+	private final int[] vars;
+	private Instance next;
+	private boolean done;
+
+	/**
+	 * Creates an enumerator for the outcomes of the given translation, projected
+	 * onto the given expressions, within the budget of the given metrics.
+	 * @requires projection.elems.*children & Relation in translation.bounds.relations
+	 * @requires each projected expression is monotone in its relations 
+	 * @effects this.translation' = translation and this.projection' = projection and 
+	 * this.metrics' = metrics and no this.produced'
+	 * @throws IllegalArgumentException - !translation.options.solver.incremental()
+	 * @throws AbortedException - the CNF of the translation exceeds a cap of metrics.budget
+	 */
+	private Outcomes(ConcurrentTranslation translation, List<? extends Expression> projection, Metrics metrics) {
+		if (!translation.getOptions().solver().incremental())
+			throw new IllegalArgumentException("outcome enumeration requires an incremental solver: " + translation.getOptions().solver());
+		this.projection = Collections.unmodifiableList(new ArrayList<Expression>(projection));
+		this.metrics = metrics;
+
+		final Budget budget = metrics.budget();
+		final Options options;
+		if (budget.isUnlimited()) {
+			this.solvers = null;
+			options = translation.getOptions();
+		} else {
+			this.solvers = new Portfolio.Cancellable(translation.getOptions().solver(), budget.maxVariables(), 
+					budget.maxClauses(), metrics.remainingMillis(Phase.SAT) != Long.MAX_VALUE);
+			options = translation.getOptions().clone();
+			options.setSolver(solvers);
+		}
+
+		final Bounds bounds = translation.bounds().clone();
+		final Evaluator upper = new Evaluator(upperBounds(translation.bounds()));
+		final List<Relation> projected = new ArrayList<Relation>(projection.size());
+		final List<Formula> definitions = new ArrayList<Formula>(projection.size() + 1);
+		definitions.add(translation.formula());
+		for(Expression expr : projection) { 
+			final Relation r = Relation.nary("outcome" + projected.size(), expr.arity());
+			bounds.bound(r, upper.evaluate(expr));
+			definitions.add(r.eq(expr));
+			projected.add(r);
+		}
+		
+		Translation cnf;
+		try {
+			cnf = Translator.translate(Formula.and(definitions), bounds, options);
+		} catch (TrivialFormulaException e) {
+			// no search is needed:  the formula is either false or it is true for the lower bounds
+			cnf = null;
+			if (e.value()==BooleanConstant.TRUE) {
+				next = lowerBounds(e.bounds());
+			}
+		} catch (SATAbortedException e) { 
+			throw new AbortedException(e);
+		}
+		this.cnf = cnf;
+		this.vars = cnf==null ? new int[0] : primaryVariables(cnf, projected);
+		this.done = cnf==null;
+	}
+
+	/**
+	 * Returns an enumerator for the outcomes of the given translation, projected onto
+	 * the values seen by the {@linkplain #reads(WalaInformation) reads} of its program 
+	 * in its main execution.
+	 * @return { o: Outcomes | o.translation = translation and 
+	 *   o.projection = values(translation) and no o.produced }
+	 * @throws IllegalArgumentException - !translation.options.solver.incremental()
+	 */
+	public static Outcomes of(ConcurrentTranslation translation) {
+		return new Outcomes(translation, values(translation), new Metrics());
+	}
+
+	/**
+	 * Returns an enumerator for the outcomes of the given translation, projected onto
+	 * the values seen by the {@linkplain #reads(WalaInformation) reads} of its program 
+	 * in its main execution, within the budget of the given metrics.
+	 * @return { o: Outcomes | o.translation = translation and 
+	 *   o.projection = values(translation) and o.metrics = metrics and no o.produced }
+	 * @throws IllegalArgumentException - !translation.options.solver.incremental()
+	 * @throws AbortedException - the CNF of the translation exceeds a cap of metrics.budget
+	 */
+	public static Outcomes of(ConcurrentTranslation translation, Metrics metrics) {
+		return new Outcomes(translation, values(translation), metrics);
+	}
+
+	/**
+	 * Returns an enumerator for the outcomes of the given translation, projected onto
+	 * the given expressions.  Since the bounds of the projected expressions are computed 
+	 * from the upper bounds of their relations, each expression must be monotone in its 
+	 * relations: it may only combine them with joins, products, unions and intersections.
+	 * @requires projection.elems.*children & Relation in translation.bounds.relations
+	 * @requires each projected expression is monotone in its relations 
+	 * @return { o: Outcomes | o.translation = translation and o.projection = projection and no o.produced }
+	 * @throws IllegalArgumentException - !translation.options.solver.incremental()
+	 */
+	public static Outcomes of(ConcurrentTranslation translation, List<? extends Expression> projection) {
+		return new Outcomes(translation, projection, new Metrics());
+	}
+	
+	/**
+	 * Returns the read instructions of the program described by the given information.
+	 * @return { inst: InlinedInstruction | some n: info.threads.nodes | 
+	 *   inst in info.concurrentInformation(n).actions() and inst.action() in NORMAL_READ + VOLATILE_READ }
+	 */
+	public static List<InlinedInstruction> reads(WalaInformation info) {
+		final List<InlinedInstruction> reads = new ArrayList<InlinedInstruction>();
+		for(CGNode thread : info.threads()) {
+			for(InlinedInstruction inst : info.concurrentInformation(thread).actions()) {
+				if (inst.action()==Action.NORMAL_READ || inst.action()==Action.VOLATILE_READ) {
+					reads.add(inst);
+				}
+			}
+		}
+		return reads;
+	}
+	
+	/**
+	 * Returns the expressions that evaluate to the values seen by the reads of the given 
+	 * translation's program in its main execution, in the order of {@linkplain #reads(WalaInformation)}.  
+	 * The expression for a read that is not executed evaluates to the empty set.
+	 * @return let exec = translation.context.execution | 
+	 *   [ r: reads(translation.factory.info) | exec.action[r].(exec.w).(exec.v) ]
+	 */
+	public static List<Expression> values(ConcurrentTranslation translation) { 
+		final Execution exec = translation.context().execution();
+		final List<InlinedInstruction> reads = reads(translation.factory().info());
+		final List<Expression> values = new ArrayList<Expression>(reads.size());
+		for(InlinedInstruction read : reads) { 
+			values.add(exec.action(read).join(exec.w()).join(exec.v()));
+		}
+		return values;
+	}
+
+	/**
+	 * Returns the primary variables that encode the given relations in the given translation,
+	 * in the order of the relations.
+	 * @return the primary variables that encode the given relations in the given translation
+	 */
+	private static int[] primaryVariables(Translation cnf, List<Relation> relations) {
+		int size = 0;
+		for(Relation r : relations) {
+			size += cnf.primaryVariables(r).size();
+		}
+		final int[] vars = new int[size];
+		int i = 0;
+		for(Relation r : relations) {
+			for(IntIterator itr = cnf.primaryVariables(r).iterator(); itr.hasNext(); ) {
+				vars[i++] = itr.next();
+			}
+		}
+		return vars;
+	}
+
+	/**
+	 * Returns the instance that binds each relation in the given bounds to its upper bound, 
+	 * and each integer to its bound.  The value of a monotone expression in the returned 
+	 * instance bounds its value in every instance within the given bounds.
+	 * @return { i: Instance | i.universe = bounds.universe and i.tuples = bounds.upperBound and 
+	 *   i.intTuples = bounds.intBound }
+	 */
+	private static Instance upperBounds(Bounds bounds) {
+		final Instance instance = new Instance(bounds.universe());
+		for(Relation r : bounds.relations()) {
+			instance.add(r, bounds.upperBound(r));
+		}
+		for(IntIterator itr = bounds.ints().iterator(); itr.hasNext(); ) { 
+			final int i = itr.next();
+			instance.add(i, bounds.exactBound(i));
+		}
+		return instance;
+	}
+
+	/**
+	 * Returns the instance that binds each relation in the given bounds to its lower bound.
+	 * @return { i: Instance | i.universe = bounds.universe and i.tuples = bounds.lowerBound }
+	 */
+	private static Instance lowerBounds(Bounds bounds) {
+		final Instance instance = new Instance(bounds.universe());
+		for(Relation r : bounds.relations()) {
+			instance.add(r, bounds.lowerBound(r));
+		}
+		for(IntIterator itr = bounds.ints().iterator(); itr.hasNext(); ) { 
+			final int i = itr.next();
+			instance.add(i, bounds.exactBound(i));
+		}
+		return instance;
+	}
+
+	/**
+	 * Returns this.projection.
+	 * @return this.projection
+	 */
+	public List<Expression> projection() { return projection; }
+
+	/**
+	 * Stops the enumeration:  a search in progress is abandoned, and every 
+	 * subsequent search fails with an AbortedException.  This has no effect 
+	 * if this.metrics.budget is unlimited.
+	 */
+	void cancel() { 
+		if (solvers != null) solvers.cancel();
+	}
+
+	/**
+	 * Returns the result of calling solve on the given solver, and records the time it 
+	 * takes as part of the SAT phase of this.metrics.  If this.metrics.budget 
+	 * has a deadline, the solver is cancelled when the deadline passes.
+	 * @return solver.solve()
+	 * @throws CancelRuntimeException - a deadline in this.metrics.budget passed
+	 * @throws AbortedException - the solver was cancelled or its CNF exceeded a cap of this.metrics.budget
+	 */
+	private boolean solve(SATSolver solver) { 
+		if (solvers == null) { 
+			metrics.begin(Phase.SAT);
+			try { 
+				return solver.solve();
+			} finally { 
+				metrics.end(Phase.SAT);
+			}
+		}
+		metrics.check();
+		final long millis = metrics.remainingMillis(Phase.SAT);
+		final AtomicBoolean expired = new AtomicBoolean(false);
+		final Timer timer = millis == Long.MAX_VALUE ? null : new Timer("miniatur-outcomes", true);
+		if (timer != null) { 
+			timer.schedule(new TimerTask() {
+				public void run() { 
+					expired.set(true);
+					solvers.cancel();
+				}
+			}, millis);
+		}
+		metrics.begin(Phase.SAT);
+		try { 
+			return solver.solve();
+		} catch (SATAbortedException e) { 
+			if (expired.get())
+				throw CancelRuntimeException.make("outcome enumeration exceeded its deadline of " + millis + " ms");
+			throw new AbortedException(e);
+		} finally { 
+			metrics.end(Phase.SAT);
+			if (timer != null) timer.cancel();
+		}
+	}
+
+	/**
+	 * Returns true if there is an outcome that has not been produced yet.
+	 * @return some i: Instance | i is a model of this.translation and
+	 *   no p: this.produced | outcome(p) = outcome(i)
+	 * @throws CancelRuntimeException - a deadline in this.metrics.budget passed
+	 * @throws AbortedException - the enumeration was cancelled or its CNF exceeded a cap of this.metrics.budget
+	 */
+	public boolean hasNext() {
+		if (next==null && !done) {
+			final SATSolver solver = cnf.cnf();
+			if (solve(solver)) {
+				next = cnf.interpret();
+				if (vars.length==0) {
+					// every model has the same outcome
+					done = true;
+				} else {
+					final int[] blocking = new int[vars.length];
+					for(int i = 0; i < vars.length; i++) {
+						blocking[i] = solver.valueOf(vars[i]) ? -vars[i] : vars[i];
+					}
+					try { 
+						solver.addClause(blocking);
+					} catch (SATAbortedException e) { 
+						throw new AbortedException(e);
+					}
+				}
+			} else {
+				done = true;
+			}
+			if (done) {
+				solver.free();
+			}
+		}
+		return next != null;
+	}
+
+	/**
+	 * Returns an instance of this.translation that realizes an outcome not produced so far.
+	 * @return some i: Instance | i is a model of this.translation and
+	 *   no p: this.produced | outcome(p) = outcome(i)
+	 * @effects this.produced' = this.produced + next
+	 * @throws NoSuchElementException - !this.hasNext()
+	 */
+	public Instance next() {
+		if (!hasNext())
+			throw new NoSuchElementException();
+		final Instance ret = next;
+		next = null;
+		return ret;
+	}
+
+	/**
+	 * @throws UnsupportedOperationException
+	 */
+	public void remove() {
+		throw new UnsupportedOperationException();
+	}
+
+	/**
+	 * Produces all remaining outcomes and returns one instance for each.
+	 * @return the instances produced by calling this.next() until !this.hasNext()
+	 * @effects this.produced' = { i: Instance | i is a model of this.translation }
+	 */
+	public List<Instance> all() {
+		final List<Instance> ret = new ArrayList<Instance>();
+		while(hasNext()) {
+			ret.add(next());
+		}
+		return ret;
+	}
+
+	/**
+	 * Returns the values of the expressions in this.projection in the given instance,
+	 * in the order of the expressions.  Instances that realize the same outcome yield equal lists.
+	 * @requires instance is a model of this.translation
+	 * @return [ e: this.projection | instance.eval(e) ]
+	 */
+	public List<TupleSet> outcome(Instance instance) {
+		final Evaluator eval = new Evaluator(instance);
+		final List<TupleSet> ret = new ArrayList<TupleSet>(projection.size());
+		for(Expression expr : projection) {
+			ret.add(eval.evaluate(expr));
+		}
+		return ret;
+	}
+}
@@ -0,0 +1,348 @@
+/******************************************************************************
+ * Copyright (c) 2009 - 2015 IBM Corporation.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     IBM Corporation - initial API and implementation
+ *****************************************************************************/
+/**
+ *
+ */
+package com.ibm.wala.memsat;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import kodkod.ast.Formula;
+import kodkod.engine.Solution;
+import kodkod.engine.Solver;
+import kodkod.engine.config.Options;
+import kodkod.engine.satlab.ReductionStrategy;
+import kodkod.engine.satlab.ResolutionTrace;
+import kodkod.engine.satlab.SATAbortedException;
+import kodkod.engine.satlab.SATFactory;
+import kodkod.engine.satlab.SATProver;
+import kodkod.engine.satlab.SATSolver;
+import kodkod.instance.Bounds;
+
+/**
+ * Solves a Kodkod problem by racing several solver configurations against
+ * each other.  Each configuration runs in its own thread, and the solution
+ * produced by the first configuration to finish is returned.  The remaining
+ * configurations are then cancelled:  a cancelled configuration stops as soon
+ * as it tries to add a variable or a clause to its SAT solver, or to start the
+ * SAT solver.  A SAT solver that is already searching is stopped as well.  Since the 
+ * native solvers cannot be interrupted, a configuration that may be abandoned, because 
+ * it races other configurations or has a deadline, runs its SAT solver in a 
+ * {@linkplain SolverProcess child JVM}, which is killed when the configuration is 
+ * cancelled.  Only solvers that are not held by a public static field of SATFactory, 
+ * and proof-producing solvers, run in the current JVM; such a solver runs to completion 
+ * in the background if it is cancelled while searching, and its result is discarded.  
+ * The same mechanism stops a configuration whose SAT problem grows beyond
+ * the caps of a {@linkplain Budget budget}, and a race that outlives its deadline.
+ *
+ * <p>A portfolio races solver configurations on one translated problem; it does not race
+ * translations.  In particular, the memory model encodings, such as the 
+ * {@linkplain com.ibm.wala.memsat.Options#compactDisjointness() compact encoding} of action
+ * disjointness, are fixed before the problem reaches the portfolio, and the configurations 
+ * differ only in their SAT solvers, since Kodkod's SAT factories expose no random seeds.
+ * To compare encodings, translate the program once with each and solve the translations
+ * separately.</p>
+ *
+ * @specfield configurations: seq kodkod.engine.config.Options
+ */
+public final class Portfolio {
+	private final List<Options> configurations;
+
+	/**
+	 * Creates a portfolio that races the given configurations.
+	 * @effects this.configurations' = configurations
+	 * @throws IllegalArgumentException - configurations.isEmpty()
+	 */
+	public Portfolio(List<Options> configurations) {
+		if (configurations.isEmpty())
+			throw new IllegalArgumentException("empty portfolio");
+		this.configurations = Collections.unmodifiableList(new ArrayList<Options>(configurations));
+	}
+
+	/**
+	 * Returns a portfolio that races one configuration for each of the given
+	 * SAT factories.  Each configuration is a copy of the given base options
+	 * that uses the corresponding factory.
+	 * @return { p: Portfolio | #p.configurations = #solvers and
+	 *   all i: [0..#solvers) | p.configurations[i] = base ++ solver -> solvers[i] }
+	 */
+	public static Portfolio of(Options base, List<SATFactory> solvers) {
+		final List<Options> configurations = new ArrayList<Options>(solvers.size());
+		for(SATFactory solver : solvers) {
+			final Options config = base.clone();
+			config.setSolver(solver);
+			configurations.add(config);
+		}
+		return new Portfolio(configurations);
+	}
+
+	/**
+	 * Returns this.configurations.
+	 * @return this.configurations
+	 */
+	public List<Options> configurations() { return configurations; }
+
+	/**
+	 * Solves the given problem with all configurations in this portfolio, and returns
+	 * the first solution found.
+	 * @return the solution to the given problem produced by the first configuration in
+	 * this.configurations to finish.
+	 * @throws RuntimeException - every configuration failed; the failure of the
+	 * first configuration to fail is rethrown
+	 */
+	public Solution solve(final Formula formula, final Bounds bounds) {
+		try {
+			return solve(formula, bounds, Long.MAX_VALUE, 0, 0);
+		} catch (TimeoutException e) {
+			throw new AssertionError("unreachable");
+		}
+	}
+
+	/**
+	 * Solves the given problem with all configurations in this portfolio, and returns
+	 * the first solution found within the given number of milliseconds.  A configuration
+	 * fails with an {@linkplain kodkod.engine.AbortedException} as soon as its SAT solver is given more
+	 * than maxVariables variables or maxClauses clauses.  A cap of 0 means no cap, and a
+	 * timeout of Long.MAX_VALUE means no timeout.
+	 * @requires timeoutMillis >= 0 and maxVariables >= 0 and maxClauses >= 0
+	 * @return the solution to the given problem produced by the first configuration in
+	 * this.configurations to finish within the given number of milliseconds.
+	 * @throws TimeoutException - no configuration finished within the given number of milliseconds
+	 * @throws RuntimeException - every configuration failed; the failure of the
+	 * first configuration to fail is rethrown
+	 */
+	public Solution solve(final Formula formula, final Bounds bounds, long timeoutMillis, int maxVariables, int maxClauses) throws TimeoutException {
+		final long deadline = timeoutMillis == Long.MAX_VALUE ? Long.MAX_VALUE : System.currentTimeMillis() + timeoutMillis;
+		final boolean abandonable = configurations.size() > 1 || deadline != Long.MAX_VALUE;
+		final List<Cancellable> solvers = new ArrayList<Cancellable>(configurations.size());
+		final ExecutorService executor = Executors.newFixedThreadPool(configurations.size(), new ThreadFactory() {
+			public java.lang.Thread newThread(Runnable r) {
+				final java.lang.Thread t = new java.lang.Thread(r, "miniatur-portfolio");
+				t.setDaemon(true);
+				return t;
+			}
+		});
+		final CompletionService<Solution> racers = new ExecutorCompletionService<Solution>(executor);
+		final List<Future<Solution>> futures = new ArrayList<Future<Solution>>(configurations.size());
+		try {
+			for(Options config : configurations) {
+				final Options racer = config.clone();
+				final Cancellable solver = new Cancellable(config.solver(), maxVariables, maxClauses, abandonable);
+				solvers.add(solver);
+				racer.setSolver(solver);
+				futures.add(racers.submit(new Callable<Solution>() {
+					public Solution call() {
+						return new Solver(racer).solve(formula, bounds);
+					}
+				}));
+			}
+			RuntimeException failure = null;
+			for(int i = 0, max = futures.size(); i < max; i++) {
+				try {
+					final Future<Solution> done;
+					if (deadline == Long.MAX_VALUE) {
+						done = racers.take();
+					} else {
+						done = racers.poll(Math.max(0, deadline - System.currentTimeMillis()), TimeUnit.MILLISECONDS);
+						if (done == null)
+							throw new TimeoutException("no solver finished within " + timeoutMillis + " ms");
+					}
+					return done.get();
+				} catch (ExecutionException e) {
+					if (failure == null) {
+						failure = e.getCause() instanceof RuntimeException ?
+								(RuntimeException) e.getCause() : new RuntimeException(e.getCause());
+					}
+				}
+			}
+			throw failure;
+		} catch (InterruptedException e) {
+			java.lang.Thread.currentThread().interrupt();
+			throw new RuntimeException(e);
+		} finally {
+			for(Cancellable solver : solvers) {
+				solver.cancel();
+			}
+			for(Future<Solution> f : futures) {
+				f.cancel(true);
+			}
+			executor.shutdownNow();
+		}
+	}
+
+	/**
+	 * Returns a string view of this portfolio.
+	 * @return a string view of this portfolio.
+	 */
+	public String toString() {
+		final List<String> solvers = new ArrayList<String>(configurations.size());
+		for(Options config : configurations) {
+			solvers.add(String.valueOf(config.solver()));
+		}
+		return "Portfolio " + solvers;
+	}
+
+	/**
+	 * A SAT factory whose solvers stop with a {@linkplain SATAbortedException}
+	 * once the factory is cancelled, or once they are given more variables or 
+	 * clauses than allowed.  If the solvers may be abandoned, each one that 
+	 * can run in a {@linkplain SolverProcess child JVM} does, and cancelling 
+	 * the factory kills the children that are searching.
+	 * @specfield factory: SATFactory // the wrapped factory
+	 * @specfield cancelled: boolean
+	 */
+	static final class Cancellable extends SATFactory {
+		private final SATFactory factory;
+		private final AtomicBoolean cancelled;
+		private final int maxVariables, maxClauses;
+		private final String child;
+		private final List<SolverProcess.Child> children;
+
+		/**
+		 * Creates a cancellable wrapper for the given factory, with the given caps
+		 * on the number of variables and clauses (0 means no cap).  If abandonable
+		 * is true, the solvers of the given factory are run in child JVMs when possible.
+		 * @effects this.factory' = factory and !this.cancelled'
+		 */
+		Cancellable(SATFactory factory, int maxVariables, int maxClauses, boolean abandonable) {
+			this.factory = factory;
+			this.cancelled = new AtomicBoolean(false);
+			this.maxVariables = maxVariables;
+			this.maxClauses = maxClauses;
+			this.child = abandonable && !factory.prover() ? SolverProcess.name(factory) : null;
+			this.children = new ArrayList<SolverProcess.Child>();
+		}
+
+		/**
+		 * Cancels this factory:  its solvers fail on their next call, and the 
+		 * children that are searching are killed.
+		 * @effects this.cancelled'
+		 */
+		void cancel() {
+			cancelled.set(true);
+			synchronized(children) {
+				for(SolverProcess.Child solver : children) {
+					solver.stop();
+				}
+			}
+		}
+
+		/**
+		 * {@inheritDoc}
+		 * @see kodkod.engine.satlab.SATFactory#instance()
+		 */
+		public SATSolver instance() {
+			if (child != null) {
+				final SolverProcess.Child solver = new SolverProcess.Child(child);
+				synchronized(children) {
+					children.add(solver);
+					if (cancelled.get()) solver.stop();
+				}
+				return new CancellableSolver(solver, this);
+			}
+			final SATSolver solver = factory.instance();
+			return factory.prover() ? new CancellableProver((SATProver) solver, this) :
+				new CancellableSolver(solver, this);
+		}
+
+		/**
+		 * {@inheritDoc}
+		 * @see kodkod.engine.satlab.SATFactory#prover()
+		 */
+		public boolean prover() { return factory.prover(); }
+
+		/**
+		 * {@inheritDoc}
+		 * @see kodkod.engine.satlab.SATFactory#incremental()
+		 */
+		public boolean incremental() { return factory.incremental(); }
+
+		/**
+		 * {@inheritDoc}
+		 * @see java.lang.Object#toString()
+		 */
+		public String toString() { return factory.toString(); }
+	}
+
+	/**
+	 * A SAT solver that delegates to another solver until its factory is cancelled, 
+	 * or until it is given more variables or clauses than its factory allows.
+	 */
+	private static class CancellableSolver implements SATSolver {
+		final SATSolver solver;
+		private final Cancellable factory;
+
+		CancellableSolver(SATSolver solver, Cancellable factory) {
+			this.solver = solver;
+			this.factory = factory;
+		}
+
+		/**
+		 * @throws SATAbortedException - this.factory.cancelled is set
+		 */
+		private void check() {
+			if (factory.cancelled.get() || java.lang.Thread.currentThread().isInterrupted())
+				throw new SATAbortedException("cancelled by portfolio");
+		}
+
+		public int numberOfVariables() { return solver.numberOfVariables(); }
+		public int numberOfClauses() { return solver.numberOfClauses(); }
+		public void addVariables(int numVars) {
+			check();
+			if (factory.maxVariables > 0 && solver.numberOfVariables() + numVars > factory.maxVariables)
+				throw new SATAbortedException("more than " + factory.maxVariables + " variables");
+			solver.addVariables(numVars);
+		}
+		public boolean addClause(int[] lits) {
+			check();
+			if (factory.maxClauses > 0 && solver.numberOfClauses() >= factory.maxClauses)
+				throw new SATAbortedException("more than " + factory.maxClauses + " clauses");
+			return solver.addClause(lits);
+		}
+		public boolean solve() {
+			check();
+			return solver.solve();
+		}
+		public boolean valueOf(int variable) { return solver.valueOf(variable); }
+		public void free() { 
+			solver.free(); 
+			if (solver instanceof SolverProcess.Child) {
+				synchronized(factory.children) {
+					factory.children.remove(solver);
+				}
+			}
+		}
+	}
+
+	/**
+	 * A SAT prover that delegates to another prover until a cancellation flag is set.
+	 */
+	private static final class CancellableProver extends CancellableSolver implements SATProver {
+		CancellableProver(SATProver prover, Cancellable factory) {
+			super(prover, factory);
+		}
+		public ResolutionTrace proof() { return ((SATProver) solver).proof(); }
+		public void reduce(ReductionStrategy strategy) { ((SATProver) solver).reduce(strategy); }
+	}
+}
@@ -0,0 +1,292 @@
+/******************************************************************************
+ * Copyright (c) 2009 - 2015 IBM Corporation.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     IBM Corporation - initial API and implementation
+ *****************************************************************************/
+/**
+ *
+ */
+package com.ibm.wala.memsat;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Properties;
+
+import com.ibm.wala.memsat.concurrent.MemoryModel;
+import com.ibm.wala.types.MethodReference;
+import com.ibm.wala.util.graph.Graph;
+
+import kodkod.engine.Solution;
+import kodkod.engine.Solution.Outcome;
+
+/**
+ * A persistent, content-addressed cache of analysis outcomes.  Each entry is
+ * keyed by a hash of the analyzed sources (including the libraries and exclusions
+ * that the {@linkplain com.ibm.wala.memsat.frontEnd.WalaEngine front end} picks up
+ * for them), the graph of entry methods, and the analysis {@linkplain Options options}
+ * that can affect the outcome, including the relevant Kodkod options and the memory model.
+ * Keys do not depend on the JVM that computes them, so entries written by one process
+ * are found by another.  An entry records the
+ * {@linkplain Outcome outcome} of solving the resulting problem, together with the
+ * size of the SAT encoding.
+ *
+ * <p>Entries are stored as one file per key in this.directory, and they are written
+ * atomically, so a cache directory may be shared by concurrent analyses.</p>
+ *
+ * @specfield directory: File // directory in which the entries are stored
+ * @specfield entries: String -> lone Outcome
+ */
+public final class ResultCache {
+	private static final String OUTCOME = "outcome", PRIMARY_VARIABLES = "primaryVariables",
+		VARIABLES = "variables", CLAUSES = "clauses";
+	private final File directory;
+
+	/**
+	 * Creates a cache that stores its entries in the given directory.  The
+	 * directory is created if it does not exist.
+	 * @effects this.directory' = directory
+	 * @throws IOException - the directory cannot be created
+	 */
+	public ResultCache(File directory) throws IOException {
+		if (!directory.isDirectory() && !directory.mkdirs())
+			throw new IOException("Could not create cache directory " + directory);
+		this.directory = directory;
+	}
+
+	/**
+	 * Returns this.directory.
+	 * @return this.directory
+	 */
+	public File directory() { return directory; }
+
+	/**
+	 * Returns the key for the problem of analyzing the given methods from the
+	 * specified source directories with the given options.
+	 * @return the key for the given analysis problem.
+	 * @throws IOException - a source file could not be read
+	 */
+	public static String key(Graph<MethodReference> methods, List<File> sourceDirs, Options options) throws IOException {
+		final MessageDigest digest;
+		try {
+			digest = MessageDigest.getInstance("SHA-256");
+		} catch (NoSuchAlgorithmException e) {
+			throw new AssertionError(e);
+		}
+
+		final List<String> nodes = new ArrayList<String>();
+		final List<String> edges = new ArrayList<String>();
+		for(MethodReference m : methods) {
+			nodes.add(m.toString());
+			for(Iterator<? extends MethodReference> succs = methods.getSuccNodes(m); succs.hasNext(); ) {
+				edges.add(m + " -> " + succs.next());
+			}
+		}
+		Collections.sort(nodes);
+		Collections.sort(edges);
+		update(digest, "methods " + nodes);
+		update(digest, "edges " + edges);
+
+		for(String option : canonical(options)) {
+			update(digest, option);
+		}
+		update(digest, "java " + System.getProperty("java.version"));
+
+		final String exclusions = System.getProperty("com.ibm.wala.memsat.exclusions");
+		if (exclusions != null) {
+			hashFile(digest, new File(exclusions), "exclusions");
+		}
+		for(File dir : sourceDirs) {
+			update(digest, "source " + dir.getPath());
+			hashTree(digest, dir, "");
+			final String base = System.getProperty("user.dir") + File.separator + dir.getPath();
+			hashTree(digest, new File(base + "Libs"), "Libs/");
+			final File appExclusions = new File(base + "_exclusions.xml");
+			if (appExclusions.exists()) {
+				hashFile(digest, appExclusions, "_exclusions.xml");
+			}
+		}
+
+		final StringBuilder key = new StringBuilder();
+		for(byte b : digest.digest()) {
+			key.append(String.format("%02x", b));
+		}
+		return key.toString();
+	}
+
+	/**
+	 * Returns a canonical description of the given options that includes exactly the
+	 * options that can affect the outcome of an analysis or the size of its SAT encoding.
+	 * The description is the same for equal options constructed in different JVMs:  it
+	 * omits the SAT solver, the portfolio and the budget, which can only affect whether
+	 * (not how) a problem is solved, and the Kodkod reporter and logging settings, whose
+	 * string views include identity hash codes.
+	 * @return a canonical description of the given options
+	 */
+	static List<String> canonical(Options options) {
+		final List<String> canonical = new ArrayList<String>();
+		canonical.add("isContextSensitive " + options.isContextSensitive());
+		canonical.add("loopUnrollDepth " + options.loopUnrollDepth());
+		canonical.add("openWorldScopeSize " + options.openWorldScopeSize());
+		canonical.add("numberOfIndexAtoms " + options.numberOfIndexAtoms());
+		canonical.add("recursionLimit " + options.recursionLimit());
+		canonical.add("primordialConcreteTypes " + sorted(options.primordialConcreteTypes()));
+		canonical.add("undefinedType " + options.undefinedType());
+		canonical.add("assertsAreAssumptions " + options.assertsAreAssumptions());
+		canonical.add("summarizeMethods " + options.summarizeMethods());
+		canonical.add("breakHeapSymmetries " + options.breakHeapSymmetries());
+		canonical.add("sparseArrays " + options.sparseArrays());
+		canonical.add("inferBitwidth " + options.inferBitwidth());
+		canonical.add("refineFloats " + options.refineFloats());
+		canonical.add("compactDisjointness " + options.compactDisjointness());
+		canonical.add("eclipseProjectName " + options.getEclipseProjectName());
+
+		final kodkod.engine.config.Options kodkodOptions = options.kodkodOptions();
+		canonical.add("bitwidth " + kodkodOptions.bitwidth());
+		canonical.add("intEncoding " + kodkodOptions.intEncoding());
+		canonical.add("symmetryBreaking " + kodkodOptions.symmetryBreaking());
+		canonical.add("skolemDepth " + kodkodOptions.skolemDepth());
+		canonical.add("sharing " + kodkodOptions.sharing());
+
+		final MemoryModel model = options.memoryModel();
+		if (model == null) {
+			canonical.add("memoryModel null");
+		} else {
+			// the JMM string view records the speculation depth; the other models have no parameters
+			canonical.add("memoryModel " + model.getClass().getName() + " " + model + " " + sorted(model.memoryInstructions()));
+		}
+		return canonical;
+	}
+
+	/**
+	 * Returns the string views of the given objects, in lexicographic order.
+	 * @return the string views of the given objects, in lexicographic order
+	 */
+	private static List<String> sorted(Collection<?> objects) {
+		final List<String> sorted = new ArrayList<String>(objects.size());
+		for(Object o : objects) {
+			sorted.add(String.valueOf(o));
+		}
+		Collections.sort(sorted);
+		return sorted;
+	}
+
+	/**
+	 * @effects updates the given digest with the UTF-8 bytes of the given string
+	 */
+	private static void update(MessageDigest digest, String s) {
+		digest.update(s.getBytes(StandardCharsets.UTF_8));
+		digest.update((byte)0);
+	}
+
+	/**
+	 * @effects updates the given digest with the relative paths and contents of all
+	 * files in the tree rooted at the given file, visited in lexicographic order.
+	 */
+	private static void hashTree(MessageDigest digest, File file, String path) throws IOException {
+		if (file.isDirectory()) {
+			final String[] children = file.list();
+			Arrays.sort(children);
+			for(String child : children) {
+				hashTree(digest, new File(file, child), path + "/" + child);
+			}
+		} else if (file.isFile()) {
+			hashFile(digest, file, path);
+		}
+	}
+
+	/**
+	 * @effects updates the given digest with the given path and the contents of the given file
+	 */
+	private static void hashFile(MessageDigest digest, File file, String path) throws IOException {
+		update(digest, path);
+		final byte[] buf = new byte[8192];
+		final InputStream in = new FileInputStream(file);
+		try {
+			for(int read = in.read(buf); read >= 0; read = in.read(buf)) {
+				digest.update(buf, 0, read);
+			}
+		} finally {
+			in.close();
+		}
+	}
+
+	/**
+	 * Returns the file that stores the entry for the given key.
+	 * @return file that stores the entry for the given key.
+	 */
+	private File entry(String key) { return new File(directory, key + ".properties"); }
+
+	/**
+	 * Returns the outcome stored for the given key, if any.  Otherwise returns null.
+	 * @return this.entries[key]
+	 */
+	public Outcome lookup(String key) {
+		final File file = entry(key);
+		if (!file.isFile()) return null;
+		final Properties props = new Properties();
+		try {
+			final InputStream in = new FileInputStream(file);
+			try {
+				props.load(in);
+			} finally {
+				in.close();
+			}
+			final String outcome = props.getProperty(OUTCOME);
+			return outcome == null ? null : Outcome.valueOf(outcome);
+		} catch (IOException | IllegalArgumentException e) {
+			return null;
+		}
+	}
+
+	/**
+	 * Stores the outcome of the given solution under the given key.
+	 * @effects this.entries' = this.entries ++ key -> solution.outcome
+	 * @throws IOException - the entry could not be written
+	 */
+	public void store(String key, Solution solution) throws IOException {
+		final Properties props = new Properties();
+		props.setProperty(OUTCOME, solution.outcome().name());
+		props.setProperty(PRIMARY_VARIABLES, String.valueOf(solution.stats().primaryVariables()));
+		props.setProperty(VARIABLES, String.valueOf(solution.stats().variables()));
+		props.setProperty(CLAUSES, String.valueOf(solution.stats().clauses()));
+
+		final File tmp = File.createTempFile(key, ".tmp", directory);
+		try {
+			final OutputStream out = new FileOutputStream(tmp);
+			try {
+				props.store(out, null);
+			} finally {
+				out.close();
+			}
+			Files.move(tmp.toPath(), entry(key).toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+		} finally {
+			tmp.delete();
+		}
+	}
+
+	/**
+	 * Returns a string view of this cache.
+	 * @return a string view of this cache.
+	 */
+	public String toString() { return "ResultCache " + directory; }
+}
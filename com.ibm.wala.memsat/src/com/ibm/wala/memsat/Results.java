@@ -23,33 +23,90 @@ import kodkod.engine.Solution;
  * of a counterexample, if any, to an assertion in the analyzed
  * code, and statistics about various phases of the analysis.
  * 
- * @specfield translation: Translation<T> // output of the Miniatur translator
- * @specfield solution: Solution // kodkod solution
+ * @specfield status: Status // whether the analysis finished within its budget
+ * @specfield reason: String // why the analysis was aborted, if status != SOLVED
+ * @specfield translation: Translation<T> // output of the Miniatur translator, if the translation finished
+ * @specfield solution: Solution // kodkod solution, if status = SOLVED
  * @specfield analysisTime: long // time, in miliseconds, taken by call graph extractions, analysis, etc.
  * @specfield translationTime: long // time, in miliseconds, taken by the Minatur translation to Kodkod
+ * @specfield metrics: Metrics // time and memory spent in each phase of the analysis, and the size of the problem
  * 
  * @author Emina Torlak
  */
 public final class Results<T extends Translation<?>> {
+	private final Status status;
+	private final String reason;
 	private final T translation;
 	private final Solution solution;
 	private final long analysisTime, translationTime;
+	private final Metrics metrics;
 	private final Visualizer<String> viz;
+	
+	/**
+	 * The status of an analysis with respect to its {@linkplain Budget budget}.
+	 */
+	public static enum Status { 
+		/** The analysis finished, and its solution is known. */
+		SOLVED,
+		/** The analysis, or one of its phases, exceeded its deadline. */
+		TIMEOUT,
+		/** The SAT problem exceeded the variable or clause cap, so the outcome is unknown. */
+		UNKNOWN
+	}
+	
 	/**
 	 * Constructs new Results out of the given data.
 	 * @requires all objects are non-null
 	 * @requires all primitives are positive
+	 * @effects this.status' = SOLVED and no this.reason'
 	 */
-	Results(T translation, Solution solution, long analysisTime, long translationTime, Visualizer<String> viz) {
+	Results(T translation, Solution solution, long analysisTime, long translationTime, Metrics metrics, Visualizer<String> viz) {
+		this.status = Status.SOLVED;
+		this.reason = null;
 		this.translation = translation;
 		this.solution = solution;
 		this.analysisTime = analysisTime;
 		this.translationTime = translationTime;
+		this.metrics = metrics;
 		this.viz = viz;
 	}
 	
 	/**
-	 * Returns the translation generated by the Miniatur translator.
+	 * Constructs new Results for an analysis that was aborted with the given 
+	 * status and reason.  The translation is null if the analysis was aborted before
+	 * it was translated.
+	 * @requires status != SOLVED
+	 * @requires reason != null and metrics != null
+	 * @requires all primitives are positive
+	 * @effects this.status' = status and this.reason' = reason and no this.solution'
+	 */
+	Results(T translation, Status status, String reason, long analysisTime, long translationTime, Metrics metrics) {
+		assert status != Status.SOLVED;
+		this.status = status;
+		this.reason = reason;
+		this.translation = translation;
+		this.solution = null;
+		this.analysisTime = analysisTime;
+		this.translationTime = translationTime;
+		this.metrics = metrics;
+		this.viz = null;
+	}
+	
+	/**
+	 * Returns the status of the analysis.
+	 * @return this.status
+	 */
+	public Status status() { return status; }
+	
+	/**
+	 * Returns a description of the limit that aborted the analysis, or null if status = SOLVED.
+	 * @return this.reason
+	 */
+	public String reason() { return reason; }
+	
+	/**
+	 * Returns the translation generated by the Miniatur translator, or null
+	 * if the analysis was aborted before the translation was done.
 	 * @return this.translation
 	 */
 	public T translation() { return translation; }
@@ -57,7 +114,8 @@ public final class Results<T extends Translation<?>> {
 	/**
 	 * Returns the Kodkod solution of the problem consisting of 
 	 * this.translation.bounds and the conjuction of this.translation.invariants
-	 * with the disjunction of the formulas in this.analyzed.
+	 * with the disjunction of the formulas in this.analyzed, or null if 
+	 * the analysis was aborted.
 	 * @return this.solution
 	 */
 	public Solution solution() { return solution; }
@@ -75,6 +133,13 @@ public final class Results<T extends Translation<?>> {
 	 * @return translationTime
 	 */
 	public long translationTime() { return translationTime; }
+	
+	/**
+	 * Returns the time and memory spent in each phase of the
+	 * analysis, and the size of the analyzed problem.
+	 * @return this.metrics
+	 */
+	public Metrics metrics() { return metrics; }
 
 	/**
 	 * Returns a string view of these results.
@@ -88,6 +153,14 @@ public final class Results<T extends Translation<?>> {
 //		s.append(translation.bounds()+"\n");
 		
 	
+		if (status != Status.SOLVED) { 
+			s.append("outcome: " + status + " (" + reason + ")\n");
+			s.append("wala analysis time: " + analysisTime + " ms\n");
+			s.append("miniatur translation time: " + translationTime + " ms\n");
+			s.append(metrics);
+			return s.toString();
+		}
+		
 		s.append("outcome: " + solution.outcome()+ "\n");
 		s.append("wala analysis time: " + analysisTime + " ms\n");
 		s.append("miniatur translation time: " + translationTime + " ms\n");
@@ -0,0 +1,267 @@
+/******************************************************************************
+ * Copyright (c) 2009 - 2015 IBM Corporation.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     IBM Corporation - initial API and implementation
+ *****************************************************************************/
+/**
+ *
+ */
+package com.ibm.wala.memsat;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.PrintWriter;
+import java.io.Writer;
+import java.lang.reflect.Field;
+import java.lang.reflect.Modifier;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import kodkod.engine.satlab.SATAbortedException;
+import kodkod.engine.satlab.SATFactory;
+import kodkod.engine.satlab.SATSolver;
+
+/**
+ * Runs the SAT solvers of a {@linkplain SATFactory} in a child JVM, so that a search
+ * that is no longer needed can be stopped by killing the child.  The native solvers
+ * that Kodkod calls through JNI cannot be interrupted in the JVM that calls them, so a
+ * {@linkplain Portfolio} runs in a child each solver that it may have to abandon.
+ *
+ * <p>The child is started with the class path and library path of the current JVM,
+ * and it finds its factory by the name of the public static field of SATFactory
+ * that holds it.  It keeps a single solver for its whole life, and reads the problem 
+ * from its standard input in DIMACS format, extended so that the problem can be solved
+ * incrementally:  a "p cnf" line gives the number of variables of the problem so far, 
+ * and an "s" line asks for the clauses read so far to be solved.  The child answers 
+ * each request in the format of the SAT competitions:  "s SATISFIABLE", followed by 
+ * a "v" line with the model, or "s UNSATISFIABLE".  If the input ends with clauses 
+ * that have not been solved, the child solves them before it exits, so a plain DIMACS 
+ * file is solved once.</p>
+ */
+public final class SolverProcess {
+	private SolverProcess() {}
+
+	/**
+	 * Returns the name of the public static field of SATFactory whose value is the given
+	 * factory, or null if there is no such field.
+	 * @return { f: SATFactory.class.getFields() | f is static and f.get(null) = factory }.getName(), or null if there is no such field
+	 */
+	static String name(SATFactory factory) {
+		for(Field field : SATFactory.class.getFields()) {
+			if (Modifier.isStatic(field.getModifiers()) && SATFactory.class.isAssignableFrom(field.getType())) {
+				try {
+					if (field.get(null) == factory) return field.getName();
+				} catch (IllegalAccessException e) {
+					continue;
+				}
+			}
+		}
+		return null;
+	}
+
+	/**
+	 * Returns the command that starts a child JVM running the factory with the given name.
+	 * @return the command that starts a child JVM running the factory with the given name
+	 */
+	private static List<String> command(String name) {
+		return Arrays.asList(
+				Paths.get(System.getProperty("java.home"), "bin", "java").toString(),
+				"-cp", System.getProperty("java.class.path"),
+				"-Djava.library.path=" + System.getProperty("java.library.path"),
+				SolverProcess.class.getName(), name);
+	}
+
+	/**
+	 * Solves the given solver and prints the result to the given writer.
+	 * @effects solver.solve() and prints the result to out
+	 */
+	private static void solve(SATSolver solver, PrintWriter out) {
+		if (solver.solve()) {
+			out.println("s SATISFIABLE");
+			out.print("v");
+			for(int i = 1, max = solver.numberOfVariables(); i <= max; i++) {
+				out.print(" " + (solver.valueOf(i) ? i : -i));
+			}
+			out.println(" 0");
+		} else {
+			out.println("s UNSATISFIABLE");
+		}
+		out.flush();
+	}
+
+	/**
+	 * Reads an incremental DIMACS problem from the standard input, solves it with a solver 
+	 * of the factory named by args[0] each time it is asked to, and prints the results to 
+	 * the standard output.
+	 * @requires args[0] = name(f) for some f: SATFactory
+	 */
+	public static void main(String[] args) throws Exception {
+		final SATSolver solver = ((SATFactory) SATFactory.class.getField(args[0]).get(null)).instance();
+		final BufferedReader in = new BufferedReader(new InputStreamReader(System.in));
+		final PrintWriter out = new PrintWriter(new BufferedWriter(new OutputStreamWriter(System.out)));
+		final List<Integer> clause = new ArrayList<Integer>();
+		boolean unsolved = false;
+		for(String line = in.readLine(); line != null; line = in.readLine()) {
+			final String[] tokens = line.trim().split("\\s+");
+			if (tokens[0].isEmpty() || tokens[0].equals("c")) continue;
+			if (tokens[0].equals("p")) {
+				solver.addVariables(Integer.parseInt(tokens[2]) - solver.numberOfVariables());
+				continue;
+			}
+			if (tokens[0].equals("s")) {
+				solve(solver, out);
+				unsolved = false;
+				continue;
+			}
+			for(String token : tokens) {
+				final int lit = Integer.parseInt(token);
+				if (lit != 0) {
+					clause.add(lit);
+				} else {
+					final int[] lits = new int[clause.size()];
+					for(int i = 0; i < lits.length; i++) {
+						lits[i] = clause.get(i);
+					}
+					solver.addClause(lits);
+					clause.clear();
+					unsolved = true;
+				}
+			}
+		}
+		if (unsolved) solve(solver, out);
+		solver.free();
+	}
+
+	/**
+	 * A SAT solver that runs a solver of a named factory in a child JVM.  The child is 
+	 * started by the first call to solve and lives until the solver is freed, so that it 
+	 * keeps what its solver learned:  each call to solve hands the child only the variables 
+	 * and clauses added since the previous call.  The child can be killed from another 
+	 * thread, which stops the search.
+	 * @specfield name: String // name of the factory that the child runs
+	 * @specfield stopped: boolean // has the solver been stopped?
+	 */
+	static final class Child implements SATSolver {
+		private final String name;
+		private final List<int[]> pending = new ArrayList<int[]>();
+		private int vars, clauses;
+		private boolean[] model;
+		private Process process;
+		private Writer out;
+		private BufferedReader in;
+		private boolean stopped;
+
+		/**
+		 * Creates a solver that runs the factory with the given name in a child JVM.
+		 * @requires name = name(f) for some f: SATFactory
+		 * @effects this.name' = name and !this.stopped'
+		 */
+		Child(String name) {
+			this.name = name;
+		}
+
+		/**
+		 * Kills the child, if any, and makes every subsequent call to solve
+		 * fail with a SATAbortedException.
+		 * @effects this.stopped'
+		 */
+		synchronized void stop() {
+			stopped = true;
+			if (process != null) process.destroyForcibly();
+		}
+
+		public int numberOfVariables() { return vars; }
+		public int numberOfClauses() { return clauses; }
+		public void addVariables(int numVars) {
+			if (numVars < 0) throw new IllegalArgumentException("numVars < 0: " + numVars);
+			vars += numVars;
+		}
+		public boolean addClause(int[] lits) {
+			pending.add(lits.clone());
+			clauses++;
+			return true;
+		}
+
+		/**
+		 * Starts the child if it is not running yet.
+		 * @throws SATAbortedException - this.stopped, or the child could not be started
+		 */
+		private synchronized void start() {
+			if (stopped) throw new SATAbortedException("solver process stopped");
+			if (process != null) return;
+			try {
+				process = new ProcessBuilder(command(name)).redirectError(ProcessBuilder.Redirect.INHERIT).start();
+			} catch (IOException e) {
+				stopped = true;
+				throw new SATAbortedException(e);
+			}
+			out = new BufferedWriter(new OutputStreamWriter(process.getOutputStream()));
+			in = new BufferedReader(new InputStreamReader(process.getInputStream()));
+		}
+
+		/**
+		 * @throws SATAbortedException - this.stopped, or the child could not be run
+		 */
+		public boolean solve() throws SATAbortedException {
+			start();
+			try {
+				out.write("p cnf " + vars + " " + clauses + "\n");
+				for(int[] clause : pending) {
+					for(int lit : clause) {
+						out.write(lit + " ");
+					}
+					out.write("0\n");
+				}
+				pending.clear();
+				out.write("s\n");
+				out.flush();
+				final String status = in.readLine();
+				if ("s SATISFIABLE".equals(status)) {
+					final boolean[] values = new boolean[vars + 1];
+					for(String line = in.readLine(); line != null && line.startsWith("v"); line = in.readLine()) {
+						for(String token : line.substring(1).trim().split("\\s+")) {
+							final int lit = Integer.parseInt(token);
+							if (lit > 0) {
+								values[lit] = true;
+							} else if (lit == 0) {
+								model = values;
+								return true;
+							}
+						}
+					}
+				} else if ("s UNSATISFIABLE".equals(status)) {
+					model = null;
+					return false;
+				}
+			} catch (IOException e) {
+				// the child was killed, or it failed while the problem was being written
+			}
+			final boolean killed;
+			synchronized(this) { killed = stopped; }
+			stop();
+			throw new SATAbortedException(killed ? "solver process stopped" : "solver process failed");
+		}
+
+		public boolean valueOf(int variable) {
+			if (model == null) throw new IllegalStateException("no model");
+			if (variable < 1 || variable > vars) throw new IllegalArgumentException("no such variable: " + variable);
+			return model[variable];
+		}
+
+		public void free() {
+			stop();
+			pending.clear();
+			model = null;
+		}
+	}
+}
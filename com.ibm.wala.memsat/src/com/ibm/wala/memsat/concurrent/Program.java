@@ -144,6 +144,22 @@ public interface Program {
 		 */
 		public abstract void boundOrdering(Relation r, Graph<InlinedInstruction> upper);
 		
+		/**
+		 * Bounds the given relation, which must be a total order over the executed actions of 
+		 * upper.nodes, from above as {@linkplain #boundOrdering(Relation, Graph)} does.  The lower bound 
+		 * contains the edges that every such order must include:  given two instructions i1 and i2 that 
+		 * are always executed and that can perform only one action each, the edge i1->i2 is in the lower
+		 * bound if it is in upper and i2->i1 is not (or if i1 = i2, for an order that is reflexive).
+		 * @requires r.arity = 2
+		 * @requires r is constrained to be a total order over the executed actions of upper.nodes,
+		 * which is reflexive iff upper has self edges
+		 * @effects this.bounds.relations' = this.bounds.relations' + r
+		 * @effects this.bounds.upperBound' = this.bounds.upperBound' ++ 
+		 *  r->{t: Tuple | some i1, i2: InlinedInstruction | upper.hasEdge(i1, i2) && t in this.upper[i1]->this.upper[i2] }
+		 * @effects this.bounds.lowerBound'[r] in this.bounds.upperBound'[r]
+		 */
+		public abstract void boundTotalOrdering(Relation r, Graph<InlinedInstruction> upper);
+		
 		/**
 		 * Bounds the given relation from above using the upper bounds on the given instructions.
 		 * @requires r.arity = 1
@@ -51,6 +51,15 @@ public final class JMMAlt extends JavaMemoryModel {
 		super(maxSpeculations, memoryInstructions);
 	}
 
+	/**
+	 * {@inheritDoc}
+	 * @see com.ibm.wala.memsat.concurrent.memory.jmm.JavaMemoryModel#withMaxSpeculations(int)
+	 */
+	@Override
+	public JMMAlt withMaxSpeculations(int maxSpeculations) {
+		return new JMMAlt(maxSpeculations, memoryInstructions());
+	}
+
 	/**
 	 * Returns the JMMAlt rule for the hb relations: for all reads r in C_i,
 	 * W(r) <=_{hb} r iff W(r) <=_{hb_i} r, and not r <=_{hb_i} W(r)
@@ -127,12 +136,4 @@ public final class JMMAlt extends JavaMemoryModel {
 		}
 		return Formula.and(ret);
 	}
-	
-	/**
-	 * {@inheritDoc}
-	 * @see java.lang.Object#toString()
-	 */
-	public String toString() {
-		return "JMMAlt";
-	}
 }
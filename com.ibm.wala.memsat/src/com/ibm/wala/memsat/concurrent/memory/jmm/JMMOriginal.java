@@ -53,6 +53,15 @@ public final class JMMOriginal extends JavaMemoryModel {
 		super(maxSpeculations, memoryInstructions);
 	}
 
+	/**
+	 * {@inheritDoc}
+	 * @see com.ibm.wala.memsat.concurrent.memory.jmm.JavaMemoryModel#withMaxSpeculations(int)
+	 */
+	@Override
+	public JMMOriginal withMaxSpeculations(int maxSpeculations) {
+		return new JMMOriginal(maxSpeculations, memoryInstructions());
+	}
+
 	/**
 	 * @return relation & (set -> set)
 	 */
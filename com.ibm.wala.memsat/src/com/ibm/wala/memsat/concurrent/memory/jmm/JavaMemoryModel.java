@@ -95,11 +95,11 @@ public abstract class JavaMemoryModel implements MemoryModel {
 //		assert Graphs.equal(so, Programs.syncOrder(info, EnumSet.of(START,END,VOLATILE_READ,VOLATILE_WRITE,LOCK,UNLOCK)));
 		
 		builder.boundExecution(main);
-		builder.boundOrdering(main.so(), so);
+		builder.boundTotalOrdering(main.so(), so);
 		
 		for(JMMExecution exec : speculations) {
 			builder.boundExecution(exec);
-			builder.boundOrdering(exec.so(), so);
+			builder.boundTotalOrdering(exec.so(), so);
 		}
 		
 		builder.boundActions(commits.get(0), Collections.EMPTY_SET);
@@ -363,5 +363,22 @@ public abstract class JavaMemoryModel implements MemoryModel {
 	 * JavaMemoryModel to justify a program.
 	 */
 	public final int maxSpeculations() { return maxSpeculations; }
-
+	
+	/**
+	 * Returns an instance of this memory model that uses at most the given number of speculations
+	 * and treats the same methods as external instructions.
+	 * @requires maxSpeculations > 0
+	 * @return { m: JavaMemoryModel | m.getClass() = this.getClass() and 
+	 *  m.maxSpeculations() = maxSpeculations and m.memoryInstructions() = this.memoryInstructions() }
+	 */
+	public abstract JavaMemoryModel withMaxSpeculations(int maxSpeculations);
+	
+	/**
+	 * Returns the name of this memory model's class, followed by
+	 * the maximum number of speculations it uses.
+	 * @see java.lang.Object#toString()
+	 */
+	public String toString() {
+		return getClass().getSimpleName() + "(" + maxSpeculations + ")";
+	}
 }
@@ -13,13 +13,17 @@
  */
 package com.ibm.wala.memsat.concurrent.memory.simple;
 
+import static com.ibm.wala.memsat.util.Programs.executionOrder;
+
 import java.util.Collections;
 
 import com.ibm.wala.memsat.concurrent.Program;
+import com.ibm.wala.memsat.concurrent.Program.BoundsBuilder;
 
 import kodkod.ast.Expression;
 import kodkod.ast.Formula;
 import kodkod.ast.Relation;
+import kodkod.instance.Bounds;
 
 /**
  * Implements the sequential consistency specification from [1]
@@ -45,6 +49,22 @@ public final class SequentialConsistency extends SimpleMemoryModel<Object> {
 		return Formula.and(exec.programOrder(acts, ord), exec.serialization(acts, ord), exec.properLocking(ord));
 	}
 
+	/**
+	 * {@inheritDoc}
+	 * Since the ordering of a sequentially consistent execution is a total order over all executed
+	 * actions, its bounds also include the edges between always-executed actions that are forced 
+	 * by the thread structure.
+	 * @see com.ibm.wala.memsat.concurrent.memory.simple.SimpleMemoryModel#bounds(com.ibm.wala.memsat.concurrent.Program, com.ibm.wala.memsat.concurrent.memory.simple.SimpleExecution)
+	 * @see BoundsBuilder#boundTotalOrdering(Relation, com.ibm.wala.util.graph.Graph)
+	 */
+	@Override
+	protected Bounds bounds(Program prog, SimpleExecution<Object> exec) {
+		final BoundsBuilder builder = prog.builder();
+		builder.boundExecution(exec);
+		builder.boundTotalOrdering(exec.ordering(prog.info().threads()), executionOrder(prog.info()));
+		return builder.build();
+	}
+	
 	/**
 	 * {@inheritDoc}
 	 * @see com.ibm.wala.memsat.concurrent.memory.simple.SimpleMemoryModel#execution(com.ibm.wala.memsat.concurrent.Program)
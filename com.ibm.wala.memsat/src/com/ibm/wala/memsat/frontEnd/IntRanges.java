@@ -0,0 +1,284 @@
+/******************************************************************************
+ * Copyright (c) 2009 - 2015 IBM Corporation.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     IBM Corporation - initial API and implementation
+ *****************************************************************************/
+/**
+ *
+ */
+package com.ibm.wala.memsat.frontEnd;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.Set;
+
+import com.ibm.wala.ipa.callgraph.CGNode;
+import com.ibm.wala.memsat.Options;
+import com.ibm.wala.shrikeBT.IBinaryOpInstruction;
+import com.ibm.wala.shrikeBT.IShiftInstruction;
+import com.ibm.wala.shrikeBT.IUnaryOpInstruction;
+import com.ibm.wala.ssa.SSABinaryOpInstruction;
+import com.ibm.wala.ssa.SSAConversionInstruction;
+import com.ibm.wala.ssa.SSAInstruction;
+import com.ibm.wala.ssa.SSAPhiInstruction;
+import com.ibm.wala.ssa.SSAUnaryOpInstruction;
+import com.ibm.wala.ssa.SymbolTable;
+import com.ibm.wala.types.ClassLoaderReference;
+import com.ibm.wala.util.collections.Iterator2Collection;
+import com.ibm.wala.util.graph.traverse.DFS;
+import com.ibm.wala.util.intset.IndexedEntry;
+
+/**
+ * An interval analysis over the relevant instructions of the non-primordial methods
+ * reachable from the threads of a {@linkplain WalaInformation}.  The analysis computes
+ * the range of every integer constant, and of every local whose value is computed from
+ * constants alone (e.g. loop counters in unrolled code, array sizes and the results of
+ * arithmetic on constants).  Locals that depend on inputs, such as arguments,
+ * fields, array elements and return values, range over all integers of the chosen
+ * bitwidth, and so do the phis that merge them.  Since arithmetic on such a local
+ * may overflow at any bitwidth narrower than the configured one, a method that
+ * performs input-dependent arithmetic is translated with the configured bitwidth.
+ * Otherwise, the smallest two's complement bitwidth that fits all computed ranges is
+ * the smallest bitwidth at which the analyzed code can be translated without wrapping
+ * any of its constants, constant expressions or loop bounds.  The translation itself
+ * also creates integers, which the inferred bitwidth must fit as well:  array lengths
+ * and indices range up to the number of index atoms, loop counters up to the loop 
+ * unrolling depth, and the memory models of concurrent code count the lock and unlock 
+ * actions of the threads.
+ */
+public final class IntRanges {
+	/** The largest bitwidth supported by Kodkod, which is also the width of Java ints. */
+	private static final int MAX_BITWIDTH = 32;
+	/** The smallest bitwidth that represents the integers 0 and 1 (i.e. booleans) in two's complement. */
+	private static final int MIN_BITWIDTH = 2;
+	/** The number of passes after which the analysis of a method gives up, if its ranges have not stabilized. */
+	private static final int MAX_PASSES = 8;
+	/** The range of a local that depends on inputs, which spans all integers of the chosen bitwidth. */
+	private static final long[] INPUT = new long[0];
+
+	private IntRanges() {}
+
+	/**
+	 * Returns the given options if !options.inferBitwidth() or if the bitwidth of
+	 * options.kodkodOptions is already equal to bitwidth(info, options).  Otherwise
+	 * returns a copy of the given options whose kodkodOptions.bitwidth is bitwidth(info, options).
+	 * @return !options.inferBitwidth() || options.kodkodOptions.bitwidth = bitwidth(info, options) => options else
+	 * { o: Options | o = options ++ kodkodOptions->(options.kodkodOptions ++ bitwidth->bitwidth(info, options)) }
+	 */
+	public static Options adjust(WalaInformation info, Options options) {
+		if (!options.inferBitwidth()) return options;
+		final int bitwidth = bitwidth(info, options);
+		if (bitwidth == options.kodkodOptions().bitwidth()) return options;
+		final Options adjusted = new Options(options);
+		adjusted.kodkodOptions().setBitwidth(bitwidth);
+		return adjusted;
+	}
+
+	/**
+	 * Returns the smallest two's complement bitwidth, between 2 and 32, that fits the range
+	 * of every integer constant and constant expression in the relevant instructions of the
+	 * non-primordial methods reachable from info.threads.  If these methods use real numbers,
+	 * which are encoded with integers of the full bitwidth, if they perform arithmetic on
+	 * inputs, or if their ranges do not stabilize, options.kodkodOptions.bitwidth is returned
+	 * instead.  The result is therefore smaller than options.kodkodOptions.bitwidth only if
+	 * all arithmetic in the analyzed code is on constants.  It is never smaller than the 
+	 * bitwidth that fits the integers created by the translation:  options.numberOfIndexAtoms,
+	 * options.loopUnrollDepth and, if info has several threads, the number of their actions.
+	 * @return smallest two's complement bitwidth that fits the integer ranges of the code described by info
+	 */
+	public static int bitwidth(WalaInformation info, Options options) {
+		final Set<CGNode> nodes = DFS.getReachableNodes(info.callGraph(), Iterator2Collection.toSet(info.threads().iterator()));
+		int bits = Math.max(MIN_BITWIDTH, Math.max(bits(options.numberOfIndexAtoms()), bits(options.loopUnrollDepth())));
+		if (info.threads().getNumberOfNodes() > 1) {
+			// the memory models compare the counts of lock and unlock actions, which are bounded by the number of actions
+			long actions = 0;
+			for(CGNode thread : info.threads()) {
+				actions += info.concurrentInformation(thread).actions().size();
+			}
+			bits = Math.max(bits, bits(actions));
+		}
+		for(CGNode node : nodes) {
+			if (node.getIR() == null || 
+				ClassLoaderReference.Primordial.equals(node.getMethod().getDeclaringClass().getClassLoader().getReference())) 
+				continue;
+			final int nodeBits = bitwidth(info.cgNodeInformation(node));
+			if (nodeBits < 0)
+				return options.kodkodOptions().bitwidth();
+			bits = Math.max(bits, nodeBits);
+		}
+		return bits;
+	}
+
+	/**
+	 * Returns the smallest bitwidth that fits the ranges of the integer constants and constant
+	 * expressions in the relevant instructions of the given method, or -1 if the method uses
+	 * reals, performs arithmetic on inputs, or its ranges do not stabilize after MAX_PASSES
+	 * passes over its instructions.  A local that is not a constant and is not defined by a
+	 * relevant instruction of the method, such as an argument, is an input.
+	 * @return smallest bitwidth that fits the integer ranges of the given method, or -1 if there is no such bitwidth
+	 */
+	private static int bitwidth(WalaCGNodeInformation nodeInfo) {
+		final SymbolTable symbols = nodeInfo.cgNode().getIR().getSymbolTable();
+		final FieldSSATable fieldSSA = nodeInfo.fieldSSA();
+		final Map<Integer, long[]> ranges = new HashMap<Integer, long[]>();
+		final Set<Integer> defs = new HashSet<Integer>();
+		for(Iterator<? extends IndexedEntry<SSAInstruction>> itr = nodeInfo.relevantInstructions(); itr.hasNext(); ) {
+			final SSAInstruction inst = itr.next().value();
+			if (inst.hasDef() && !(inst instanceof SSAPhiInstruction && fieldSSA.isHeapPhi((SSAPhiInstruction)inst))) 
+				defs.add(inst.getDef());
+		}
+
+		for(int pass = 0; pass < MAX_PASSES; pass++) {
+			boolean changed = false;
+			for(Iterator<? extends IndexedEntry<SSAInstruction>> itr = nodeInfo.relevantInstructions(); itr.hasNext(); ) {
+				final SSAInstruction inst = itr.next().value();
+				// synthetic field phis merge heap values, whose numbers are not locals of the IR
+				if (inst instanceof SSAPhiInstruction && fieldSSA.isHeapPhi((SSAPhiInstruction)inst)) continue;
+				for(int i = 0, uses = inst.getNumberOfUses(); i < uses; i++) {
+					final int use = inst.getUse(i);
+					if (use < 0) continue;
+					if (nodeInfo.typeOf(use) == IRType.REAL) return -1;
+					if (symbols.isIntegerConstant(use)) {
+						final long c = symbols.getIntValue(use);
+						changed |= join(ranges, use, new long[]{c, c});
+					} else if (!defs.contains(use)) {
+						changed |= join(ranges, use, INPUT);
+					}
+				}
+				if (inst.hasDef()) {
+					final int def = inst.getDef();
+					if (nodeInfo.typeOf(def) == IRType.REAL) return -1;
+					final long[] range = range(inst, ranges);
+					if (range == null) continue;
+					// arithmetic on inputs may overflow at any width below the configured one
+					if (range == INPUT && (inst instanceof SSAUnaryOpInstruction || inst instanceof SSABinaryOpInstruction))
+						return -1;
+					changed |= join(ranges, def, range);
+				}
+			}
+			if (!changed) {
+				int bits = MIN_BITWIDTH;
+				for(long[] range : ranges.values()) {
+					if (range == INPUT) continue;
+					bits = Math.max(bits, Math.max(bits(range[0]), bits(range[1])));
+				}
+				return bits;
+			}
+		}
+		return -1;
+	}
+
+	/**
+	 * Joins the given range into the range of the given value number.  The join of 
+	 * INPUT with any range is INPUT.
+	 * @effects ranges.put(vn, ranges.get(vn) join range)
+	 * @return true if the range of the given value number has changed
+	 */
+	private static boolean join(Map<Integer, long[]> ranges, int vn, long[] range) {
+		final long[] old = ranges.get(vn);
+		if (old == INPUT) return false;
+		final long[] joined = old == null || range == INPUT ? range : 
+			new long[]{ Math.min(old[0], range[0]), Math.max(old[1], range[1]) };
+		if (old != null && Arrays.equals(old, joined)) return false;
+		ranges.put(vn, joined);
+		return true;
+	}
+
+	/**
+	 * Returns the range of the value defined by the given instruction, computed from the
+	 * given ranges of its operands.  Returns INPUT if the value depends on an input, and 
+	 * null if the ranges of its operands have not been computed yet.  The operands of a phi
+	 * whose ranges have not been computed yet, such as the values carried around a loop, 
+	 * are skipped:  the phi is joined with their ranges on a later pass.
+	 * @requires inst.hasDef()
+	 * @return range of the value defined by the given instruction, INPUT if it depends on an input, 
+	 * or null if it is not determined yet
+	 */
+	private static long[] range(SSAInstruction inst, Map<Integer, long[]> ranges) {
+		if (inst instanceof SSAPhiInstruction) {
+			long lo = Long.MAX_VALUE, hi = Long.MIN_VALUE;
+			for(int i = 0, uses = inst.getNumberOfUses(); i < uses; i++) {
+				final long[] r = ranges.get(inst.getUse(i));
+				if (r == null) continue;
+				if (r == INPUT) return INPUT;
+				lo = Math.min(lo, r[0]);
+				hi = Math.max(hi, r[1]);
+			}
+			return lo <= hi ? new long[]{lo, hi} : null;
+		} else if (inst instanceof SSAConversionInstruction) {
+			return ranges.get(inst.getUse(0));
+		} else if (inst instanceof SSAUnaryOpInstruction) {
+			final long[] r = ranges.get(inst.getUse(0));
+			if (r == null || r == INPUT) return r;
+			return ((SSAUnaryOpInstruction)inst).getOpcode() == IUnaryOpInstruction.Operator.NEG ? 
+					clamp(-r[1], -r[0]) : clamp(-r[1]-1, -r[0]-1);
+		} else if (inst instanceof SSABinaryOpInstruction) {
+			final long[] a = ranges.get(inst.getUse(0)), b = ranges.get(inst.getUse(1));
+			if (a == INPUT || b == INPUT) return INPUT;
+			if (a == null || b == null) return null;
+			final IBinaryOpInstruction.IOperator op = ((SSABinaryOpInstruction)inst).getOperator();
+			if (op == IBinaryOpInstruction.Operator.ADD) {
+				return clamp(a[0] + b[0], a[1] + b[1]);
+			} else if (op == IBinaryOpInstruction.Operator.SUB) {
+				return clamp(a[0] - b[1], a[1] - b[0]);
+			} else if (op == IBinaryOpInstruction.Operator.MUL) {
+				final long p0 = a[0]*b[0], p1 = a[0]*b[1], p2 = a[1]*b[0], p3 = a[1]*b[1];
+				return clamp(Math.min(Math.min(p0, p1), Math.min(p2, p3)), Math.max(Math.max(p0, p1), Math.max(p2, p3)));
+			} else if (op == IBinaryOpInstruction.Operator.DIV) {
+				final long m = magnitude(a);
+				return clamp(-m, m);
+			} else if (op == IBinaryOpInstruction.Operator.REM) {
+				final long m = Math.min(magnitude(a), Math.max(0, magnitude(b) - 1));
+				return clamp(-m, m);
+			} else if (op == IShiftInstruction.Operator.SHL) {
+				return b[0] < 0 || b[1] > 31 ? clamp(Long.MIN_VALUE, Long.MAX_VALUE) :
+					clamp(Math.min(a[0], a[0] << b[1]), Math.max(a[1], a[1] << b[1]));
+			} else if (op == IShiftInstruction.Operator.SHR) {
+				return clamp(Math.min(a[0], 0), Math.max(a[1], 0));
+			} else {
+				// bitwise and, or, xor, and unsigned shifts:  the result fits the width of the widest operand,
+				// unless an unsigned shift moves the sign bit of a negative operand into the value bits
+				if (op == IShiftInstruction.Operator.USHR && a[0] < 0)
+					return clamp(Integer.MIN_VALUE, Integer.MAX_VALUE);
+				final int bits = Math.max(Math.max(bits(a[0]), bits(a[1])), Math.max(bits(b[0]), bits(b[1])));
+				return clamp(-(1L << (bits-1)), (1L << (bits-1)) - 1);
+			}
+		}
+		// values of other instructions, such as field and array reads and calls, are inputs
+		return INPUT;
+	}
+
+	/**
+	 * Returns the largest absolute value in the given range.
+	 * @return max(|range[0]|, |range[1]|)
+	 */
+	private static long magnitude(long[] range) {
+		return Math.max(Math.abs(range[0]), Math.abs(range[1]));
+	}
+
+	/**
+	 * Returns the range [lo, hi] if it fits in a Java int, and the range of all Java ints otherwise,
+	 * since an overflowing int operation wraps around.
+	 * @return Integer.MIN_VALUE <= lo && hi <= Integer.MAX_VALUE => [lo, hi] else [Integer.MIN_VALUE, Integer.MAX_VALUE]
+	 */
+	private static long[] clamp(long lo, long hi) {
+		return lo < Integer.MIN_VALUE || hi > Integer.MAX_VALUE ?
+				new long[]{ Integer.MIN_VALUE, Integer.MAX_VALUE } : new long[]{ lo, hi };
+	}
+
+	/**
+	 * Returns the number of bits needed to represent the given value in two's complement.
+	 * @return the number of bits needed to represent the given value in two's complement
+	 */
+	private static int bits(long value) {
+		return Math.min(MAX_BITWIDTH, 65 - Long.numberOfLeadingZeros(value < 0 ? ~value : value));
+	}
+}
@@ -75,7 +75,8 @@ public interface WalaConcurrentInformation {
 	
 	/**
 	 * Returns all write instructions to action.instruction.getDeclaredField() 
-	 * that might be seen by the given read action.
+	 * that might be seen by the given read action.  Writes performed by threads
+	 * that start after this thread ends are excluded, since the read happens before them.
 	 * @requires action in this.actions
 	 * @requires action.instruction in SSAGetInstruction + SSAArrayLoadInstruction
 	 * @return all write instructions to action.instruction.getDeclaredField() 
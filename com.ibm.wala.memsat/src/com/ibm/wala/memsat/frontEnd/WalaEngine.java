@@ -16,6 +16,7 @@ package com.ibm.wala.memsat.frontEnd;
 import java.io.File;
 import java.io.FilenameFilter;
 import java.io.IOException;
+import java.util.Collections;
 import java.util.List;
 import java.util.jar.JarFile;
 import java.util.zip.ZipException;
@@ -31,9 +32,9 @@ import com.ibm.wala.memsat.Options;
 import com.ibm.wala.memsat.frontEnd.core.WalaInformationImpl;
 import com.ibm.wala.memsat.frontEnd.engine.MiniaturAnalysisEngine;
 import com.ibm.wala.memsat.frontEnd.engine.MiniaturECJJavaAnalysisEngine;
+import com.ibm.wala.memsat.frontEnd.engine.MiniaturJavaAnalysisEngine;
 import com.ibm.wala.memsat.frontEnd.engine.MiniaturJDTJavaAnalysisEngine;
 import com.ibm.wala.types.MethodReference;
-import com.ibm.wala.util.collections.Iterator2Collection;
 import com.ibm.wala.util.graph.Graph;
 
 /**
@@ -139,12 +140,34 @@ public final class WalaEngine {
 	 * @return { wInfo: WalaInformation | wInfo.methods = methods }
 	 */
 	public static WalaInformation analyze(Graph<MethodReference> methods, List<File> sourceDirs, Options options) throws com.ibm.wala.util.CancelException, java.io.IOException {
-		MiniaturAnalysisEngine engine = null;
+		return session(sourceDirs, options).analyze(methods, options);
+	}
+	
+	/**
+	 * Returns a new {@linkplain WalaSession front end session} for the given source directories.
+	 * The session builds the analysis scope, class hierarchy and IR for the sources once, 
+	 * and shares them among all subsequent analyses of entry methods from those sources.
+	 * @return { s: WalaSession | s.sourceDirs = sourceDirs and 
+	 *   s.loopUnrollDepth = options.loopUnrollDepth and 
+	 *   s.eclipseProjectName = options.eclipseProjectName }
+	 */
+	public static WalaSession session(List<File> sourceDirs, Options options) throws IOException { 
+		return new WalaSession(sourceDirs, options, engine(sourceDirs, options));
+	}
+	
+	/**
+	 * Returns a new analysis engine for the given source directories, configured according to
+	 * the given options.  The entrypoints of the returned engine are not set.
+	 * @return a new analysis engine for the given source directories
+	 */
+	private static MiniaturJavaAnalysisEngine engine(List<File> sourceDirs, Options options) throws IOException { 
+		final List<MethodReference> methods = Collections.emptyList();
+		MiniaturJavaAnalysisEngine engine = null;
 		
 		if (options.getEclipseProjectName() == null) {
 			MiniaturECJJavaAnalysisEngine e = new MiniaturECJJavaAnalysisEngine(
 				options.loopUnrollDepth(),
-				Iterator2Collection.toList(methods.iterator()));
+				methods);
 			
 			setPolyglotJavaEngineScope(e, sourceDirs);
 			
@@ -154,7 +177,7 @@ public final class WalaEngine {
 				engine = new MiniaturJDTJavaAnalysisEngine(
 					options.getEclipseProjectName(),
 					options.loopUnrollDepth(),
-					Iterator2Collection.toList(methods.iterator()));
+					methods);
 			} catch (IllegalArgumentException e) {
 				assert false : e;
 			} catch (CoreException e) {
@@ -163,8 +186,23 @@ public final class WalaEngine {
 		}	
 		
 		setExclusions(engine, sourceDirs);
-
-		return new WalaInformationImpl(options, engine, methods);
+		
+		return engine;
+	}
+	
+	/**
+	 * Returns a view of the given analysis result in which every equivalence class 
+	 * that reaches into the open world is represented with the specified number of 
+	 * initial heap instances.  The call graph, slice and field accesses of the 
+	 * returned view are shared with the given result, so the front end does not 
+	 * need to be re-run when only the open world scope size changes.
+	 * @requires info was returned by {@linkplain #analyze(Graph, List, Options)}
+	 * @requires openWorldScopeSize >= 0
+	 * @return { wInfo: WalaInformation | wInfo.methods = info.methods and 
+	 *   wInfo.options.openWorldScopeSize = openWorldScopeSize }
+	 */
+	public static WalaInformation withOpenWorldScopeSize(WalaInformation info, int openWorldScopeSize) { 
+		return ((WalaInformationImpl)info).withOpenWorldScopeSize(openWorldScopeSize);
 	}
 	
 }
@@ -0,0 +1,144 @@
+/******************************************************************************
+ * Copyright (c) 2009 - 2015 IBM Corporation.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     IBM Corporation - initial API and implementation
+ *****************************************************************************/
+/**
+ * 
+ */
+package com.ibm.wala.memsat.frontEnd;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import com.ibm.wala.memsat.Metrics;
+import com.ibm.wala.memsat.Metrics.Phase;
+import com.ibm.wala.memsat.Options;
+import com.ibm.wala.memsat.frontEnd.core.WalaInformationImpl;
+import com.ibm.wala.memsat.frontEnd.engine.MiniaturJavaAnalysisEngine;
+import com.ibm.wala.types.MethodReference;
+import com.ibm.wala.util.collections.Iterator2Collection;
+import com.ibm.wala.util.graph.Graph;
+
+/**
+ * A front end session for a fixed set of source directories.  A session 
+ * owns a single analysis engine, so the analysis scope, the class hierarchy 
+ * and the IR of the sources are built once and shared by all 
+ * {@linkplain WalaInformation analysis results} that the session hands out.  Only the 
+ * artifacts that depend on the entry methods (call graph, pointer analysis, 
+ * slice, field accesses) are recomputed for each call to {@linkplain #analyze(Graph, Options)}.
+ * 
+ * <p>The loop unrolling depth is applied while the sources are translated to IR, 
+ * so a session can only be used with options that agree with it on 
+ * the unrolling depth and the Eclipse project, if any.</p>
+ * 
+ * <p>A session may be shared by several threads.  Calls to {@linkplain #analyze(Graph, Options)} 
+ * on the same session are serialized, since they set the entrypoints of its engine and share 
+ * its IR cache, but different sessions analyze their entry methods in parallel.  Only the 
+ * construction of the analysis scope and class hierarchy, which runs the source loaders,
+ * is serialized across all sessions, since the loaders are not safe for concurrent use.  
+ * The returned {@linkplain WalaInformation} objects may be used concurrently by different threads 
+ * once they have been constructed, as long as each is used by one thread at a time.</p>
+ * 
+ * @specfield sourceDirs: List<File> // source directories analyzed by this session
+ * @specfield loopUnrollDepth: int // loop unrolling depth used to build the IR
+ * @specfield eclipseProjectName: String // Eclipse project analyzed by this session, if any
+ */
+public final class WalaSession {
+	private final List<File> sourceDirs;
+	private final int loopUnrollDepth;
+	private final String eclipseProjectName;
+	private final MiniaturJavaAnalysisEngine engine;
+	
+	/**
+	 * Creates a new session for the given source directories and engine.
+	 * @requires engine was configured for the given directories and options 
+	 * @effects this.sourceDirs' = sourceDirs and this.loopUnrollDepth' = options.loopUnrollDepth and
+	 * this.eclipseProjectName' = options.eclipseProjectName
+	 */
+	WalaSession(List<File> sourceDirs, Options options, MiniaturJavaAnalysisEngine engine) {
+		this.sourceDirs = Collections.unmodifiableList(new ArrayList<File>(sourceDirs));
+		this.loopUnrollDepth = options.loopUnrollDepth();
+		this.eclipseProjectName = options.getEclipseProjectName();
+		this.engine = engine;
+	}
+	
+	/**
+	 * Returns the source directories analyzed by this session.
+	 * @return this.sourceDirs
+	 */
+	public List<File> sourceDirs() { return sourceDirs; }
+	
+	/**
+	 * Returns the loop unrolling depth used to build the IR for this.sourceDirs.
+	 * @return this.loopUnrollDepth
+	 */
+	public int loopUnrollDepth() { return loopUnrollDepth; }
+	
+	/**
+	 * Returns true if this session can be used to analyze code from the given 
+	 * source directories with the given options.
+	 * @return this.sourceDirs.equals(sourceDirs) and this.loopUnrollDepth = options.loopUnrollDepth and
+	 * this.eclipseProjectName = options.eclipseProjectName
+	 */
+	public boolean accepts(List<File> sourceDirs, Options options) { 
+		return this.sourceDirs.equals(sourceDirs) && loopUnrollDepth == options.loopUnrollDepth() && 
+			(eclipseProjectName == null ? options.getEclipseProjectName() == null : 
+				eclipseProjectName.equals(options.getEclipseProjectName()));
+	}
+	
+	/**
+	 * Returns the {@linkplain WalaInformation result} of analyzing the given methods
+	 * from this.sourceDirs.  
+	 * @requires all of the given method references are in this.sourceDirs
+	 * @return { wInfo: WalaInformation | wInfo.methods = methods and wInfo.options = options }
+	 * @throws IllegalArgumentException - options.loopUnrollDepth != this.loopUnrollDepth or 
+	 * options.eclipseProjectName != this.eclipseProjectName
+	 */
+	public WalaInformation analyze(Graph<MethodReference> methods, Options options) throws com.ibm.wala.util.CancelException, java.io.IOException {
+		return analyze(methods, options, new Metrics());
+	}
+	
+	/**
+	 * Returns the {@linkplain WalaInformation result} of analyzing the given methods
+	 * from this.sourceDirs, and records the cost of each front end phase in the given metrics.
+	 * The field SSA tables of the analyzed nodes are built before this method returns, 
+	 * while the session is locked, since they are computed from the IRs cached by the session.
+	 * @requires all of the given method references are in this.sourceDirs
+	 * @return { wInfo: WalaInformation | wInfo.methods = methods and wInfo.options = options }
+	 * @effects records the front end phases of the analysis in the given metrics
+	 * @throws IllegalArgumentException - options.loopUnrollDepth != this.loopUnrollDepth or 
+	 * options.eclipseProjectName != this.eclipseProjectName
+	 * @see #analyze(Graph, Options)
+	 */
+	public WalaInformation analyze(Graph<MethodReference> methods, Options options, Metrics metrics) throws com.ibm.wala.util.CancelException, java.io.IOException {
+		if (!accepts(sourceDirs, options))
+			throw new IllegalArgumentException("options " + options + " are incompatible with this session.");
+		synchronized(this) { 
+			metrics.begin(Phase.CLASS_HIERARCHY);
+			synchronized(WalaSession.class) { 
+				// builds the scope and class hierarchy on the first call, and returns them afterwards
+				engine.buildAnalysisScope();
+				engine.getClassHierarchy();
+			}
+			metrics.end(Phase.CLASS_HIERARCHY);
+			engine.setEntrypointMethods(Iterator2Collection.toList(methods.iterator()));
+			return new WalaInformationImpl(options, engine, methods, metrics);
+		}
+	}
+	
+	/**
+	 * Returns a string view of this session.
+	 * @return a string view of this session.
+	 */
+	public String toString() { 
+		return "WalaSession " + sourceDirs + " (loopUnrollDepth: " + loopUnrollDepth + ")";
+	}
+}
@@ -12,13 +12,17 @@ package com.ibm.wala.memsat.frontEnd.core;
 
 import static com.ibm.wala.memsat.util.Strings.prettyPrint;
 
+import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Iterator;
+import java.util.LinkedHashSet;
+import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.function.Function;
 import java.util.function.Predicate;
 
@@ -49,6 +53,8 @@ import com.ibm.wala.ipa.slicer.PDG;
 import com.ibm.wala.ipa.slicer.ParamCaller;
 import com.ibm.wala.ipa.slicer.SDG;
 import com.ibm.wala.ipa.slicer.Statement;
+import com.ibm.wala.memsat.Metrics;
+import com.ibm.wala.memsat.Metrics.Phase;
 import com.ibm.wala.memsat.Options;
 import com.ibm.wala.memsat.frontEnd.DependenceGraph;
 import com.ibm.wala.memsat.frontEnd.FieldSSATable;
@@ -131,16 +137,61 @@ public class WalaInformationImpl implements WalaInformation {
 
 	private final Set openWorldTypes = new HashSet();
 
+	private final Set<InstanceKey> relevantClasses = new LinkedHashSet<InstanceKey>();
+
 	private final Options opt;
 	
+	/**
+	 * Concurrent information for each thread root, created on first request.  Each 
+	 * entry memoizes the inlining of its thread, so the cache lives exactly as long as 
+	 * this information and is shared with its {@linkplain #withOpenWorldScopeSize(int) views},
+	 * whose thread roots, call graph and slice are the same.
+	 */
+	private final Map<CGNode, WalaConcurrentInformationInternal> concurrentInfos;
+	
+	/**
+	 * Information for each call graph node, created on first request.  The field SSA,
+	 * relevant instructions, control dependences and type data of a node do not depend
+	 * on the open world scope, so the cache is shared with the views of this information.
+	 */
+	private final Map<CGNode, WalaCGNodeInformation> cgNodeInfos;
+	
+	/**
+	 * Creates a view of the given information that uses the specified 
+	 * initial heap size for open world types.
+	 * @see #withOpenWorldScopeSize(int)
+	 */
+	private WalaInformationImpl(WalaInformationImpl base, int initialHeapSize) {
+		this.opt = new Options(base.opt);
+		this.opt.setOpenWorldScopeSize(initialHeapSize);
+		this.threadRoots = base.threadRoots;
+		this.sdg = base.sdg;
+		this.slice = base.slice;
+		this.callGraph = base.callGraph;
+		this.cha = base.cha;
+		this.pointerAnalysis = base.pointerAnalysis;
+		this.analysisOptions = base.analysisOptions;
+		this.typeDataFactory = base.typeDataFactory;
+		this.ipFieldAccesses = base.ipFieldAccesses;
+		this.initialHeapSize = initialHeapSize;
+		this.possiblyAccessedFields.addAll(base.possiblyAccessedFields);
+		this.allocatedObjectCounts.putAll(base.allocatedObjectCounts);
+		this.openWorldTypes.addAll(base.openWorldTypes);
+		this.relevantClasses.addAll(base.relevantClasses);
+		this.concurrentInfos = base.concurrentInfos;
+		this.cgNodeInfos = base.cgNodeInfos;
+	}
+	
 	public WalaInformationImpl(Options opt, MiniaturAnalysisEngine engine,
-			Graph<MethodReference> rootReferences)
+			Graph<MethodReference> rootReferences, Metrics metrics)
 			throws com.ibm.wala.util.CancelException,
 			java.io.IOException {
 		CallGraphCreation cgEngine = new CallGraphCreation(engine);
-		CallGraph fullCG = cgEngine.createCallGraph();
+		CallGraph fullCG = cgEngine.createCallGraph(metrics);
 
 		this.opt = opt;
+		this.concurrentInfos = new ConcurrentHashMap<CGNode, WalaConcurrentInformationInternal>();
+		this.cgNodeInfos = new ConcurrentHashMap<CGNode, WalaCGNodeInformation>();
 		
 		this.threadRoots = SlowSparseNumberedGraph.make();
 		for (MethodReference m : rootReferences) {
@@ -175,6 +226,7 @@ public class WalaInformationImpl implements WalaInformation {
 			}
 		}
 
+		metrics.begin(Phase.SLICE);
 		Pair<Collection<Statement>, SDG<? extends InstanceKey>> sliceData = AstJavaSlicer
 				.computeAssertionSlice(fullCG, engine.getPointerAnalysis(),
 						Iterator2Collection.toList(threadRoots.iterator()),
@@ -189,6 +241,8 @@ public class WalaInformationImpl implements WalaInformation {
 				this.slice.add(inst);
 			}
 		}
+		metrics.end(Phase.SLICE);
+		metrics.check();
 
 		this.callGraph = PartialCallGraph.make(fullCG, Iterator2Collection
 				.toSet(threadRoots.iterator()));
@@ -203,6 +257,7 @@ public class WalaInformationImpl implements WalaInformation {
 
 		this.initialHeapSize = opt.openWorldScopeSize();
 
+		metrics.begin(Phase.FIELD_ACCESSES);
 		this.ipFieldAccesses = (new IPFieldAccessAnalysis(callGraph,
 				new FieldAccessesFactory() {
 					public FieldAccesses get(CGNode node) {
@@ -230,6 +285,16 @@ public class WalaInformationImpl implements WalaInformation {
 						});
 			}
 		}).solve();
+		metrics.end(Phase.FIELD_ACCESSES);
+		metrics.check();
+
+		// the field SSA of every node is built now, while the session that runs this analysis 
+		// is locked, since it reads the IRs that the session caches for all of its analyses
+		for (CGNode node : callGraph) {
+			if (node.getIR() != null) {
+				((CGNodeInformation) cgNodeInformation(node)).fieldSSA(metrics);
+			}
+		}
 
 		computeRelevantStuff();
 	}
@@ -317,13 +382,6 @@ public class WalaInformationImpl implements WalaInformation {
 			Object k = allKeys.next();
 			if (k instanceof InstanceKey) {
 				openWorldTypes.add(k);
-				if (!allocatedObjectCounts.containsKey(k)) {
-					allocatedObjectCounts.put(k, new Integer(initialHeapSize));
-				} else {
-					allocatedObjectCounts.put(k, new Integer(initialHeapSize
-							+ ((Integer) allocatedObjectCounts.get(k))
-									.intValue()));
-				}
 			}
 		}
 	}
@@ -338,18 +396,34 @@ public class WalaInformationImpl implements WalaInformation {
 	private void computeRelevantStuff() {
 		computeRelevantStuffInSlice();
 		computeTypesPossiblyReachedFromInitialHeap();
+		relevantClasses.addAll(allocatedObjectCounts.keySet());
+		relevantClasses.addAll(openWorldTypes);
+	}
+
+	/**
+	 * Returns a view of this information in which each equivalence class that
+	 * reaches into the open world is given the specified number of initial heap 
+	 * instances.  The view shares the call graph, slice, field accesses and all 
+	 * other scope-independent results with this object, so changing the open world 
+	 * scope does not require re-running the front end.
+	 * @requires size >= 0
+	 * @return { w: WalaInformationImpl | w.options.openWorldScopeSize = size and 
+	 *  all eqClass: this.relevantClasses() | w.cardinality(eqClass) = 
+	 *   this.cardinality(eqClass) + (this.openWorldType(eqClass) ? size - this.options.openWorldScopeSize : 0) }
+	 */
+	public WalaInformationImpl withOpenWorldScopeSize(int size) {
+		assert size >= 0;
+		return size == initialHeapSize ? this : new WalaInformationImpl(this, size);
 	}
 
 	public Set<InstanceKey> relevantClasses() {
-		return allocatedObjectCounts.keySet();
+		return relevantClasses;
 	}
 
 	public int cardinality(InstanceKey eqClass) {
-		if (allocatedObjectCounts.containsKey(eqClass)) {
-			return ((Integer) allocatedObjectCounts.get(eqClass)).intValue();
-		} else {
-			return 0;
-		}
+		final int allocated = allocatedObjectCounts.containsKey(eqClass) ? 
+				((Integer) allocatedObjectCounts.get(eqClass)).intValue() : 0;
+		return openWorldTypes.contains(eqClass) ? allocated + initialHeapSize : allocated;
 	}
 
 	public boolean openWorldType(InstanceKey ik) {
@@ -360,35 +434,92 @@ public class WalaInformationImpl implements WalaInformation {
 		return possiblyAccessedFields;
 	}
 
+	/**
+	 * Returns the information for the given call graph node.  The information for 
+	 * each node is created once and cached.  The field SSA of each node with an IR is 
+	 * computed when this information is constructed; its relevant instructions, 
+	 * control dependences and type data are computed on first use.  The returned 
+	 * graphs and tables are shared by all callers and must not be modified.
+	 */
 	public WalaCGNodeInformation cgNodeInformation(final CGNode node) {
-		return new WalaCGNodeInformation() {
-			private FieldSSATable fieldSSA;
+		WalaCGNodeInformation info = cgNodeInfos.get(node);
+		if (info == null) {
+			info = new CGNodeInformation(node);
+			final WalaCGNodeInformation prev = cgNodeInfos.putIfAbsent(node, info);
+			if (prev != null) 
+				info = prev;
+		}
+		return info;
+	}
+	
+	/**
+	 * Memoizing information for a single call graph node.  Each piece of 
+	 * information is computed at most once, under the lock of this object, 
+	 * so translations that share the enclosing information may request it
+	 * concurrently.
+	 */
+	private final class CGNodeInformation implements WalaCGNodeInformation {
+		private final CGNode node;
 
-			private MiniaturTypeData typeData;
+		private FieldSSATable fieldSSA;
 
-			public CGNode cgNode() {
-				return node;
-			}
+		private List<IndexedEntry<SSAInstruction>> relevantInstructions;
 
-			public PointerKey pointerKeyFor(int valueNumber) {
-				return new LocalPointerKey(node, valueNumber);
-			}
+		private DependenceGraph<SSACFG.BasicBlock> controlDependences;
 
-			public FieldSSATable fieldSSA() {
-				if (fieldSSA == null) {
-					fieldSSA = PartialSlice.sliceFieldSSA(node,
-							pointerAnalysis, cha, ipFieldAccesses, sdg, slice);
-				}
+		private MiniaturTypeData typeData;
 
-				return fieldSSA;
+		CGNodeInformation(CGNode node) {
+			this.node = node;
+		}
+
+		public CGNode cgNode() {
+			return node;
+		}
+
+		public PointerKey pointerKeyFor(int valueNumber) {
+			return new LocalPointerKey(node, valueNumber);
+		}
+
+		/**
+		 * Returns the field SSA of this.node.  The table is built by the constructor 
+		 * of the enclosing information, which records its cost in the metrics of the run 
+		 * that builds it; a table that is only built on request is not measured.
+		 */
+		public synchronized FieldSSATable fieldSSA() {
+			return fieldSSA == null ? fieldSSA(new Metrics()) : fieldSSA;
+		}
+
+		/**
+		 * Returns the field SSA of this.node, and records the cost of building it, 
+		 * if it has not been built yet, in the given metrics.
+		 */
+		synchronized FieldSSATable fieldSSA(Metrics metrics) {
+			if (fieldSSA == null) {
+				metrics.begin(Phase.FIELD_SSA);
+				fieldSSA = PartialSlice.sliceFieldSSA(node,
+						pointerAnalysis, cha, ipFieldAccesses, sdg, slice);
+				metrics.end(Phase.FIELD_SSA);
+				metrics.check();
 			}
 
-			public Iterator<? extends IndexedEntry<SSAInstruction>> relevantInstructions() {
-				return PartialSlice.relevantInstructions(node, fieldSSA(), sdg,
-						slice);
+			return fieldSSA;
+		}
+
+		public synchronized Iterator<? extends IndexedEntry<SSAInstruction>> relevantInstructions() {
+			if (relevantInstructions == null) {
+				final List<IndexedEntry<SSAInstruction>> insts = new ArrayList<IndexedEntry<SSAInstruction>>();
+				for (Iterator<? extends IndexedEntry<SSAInstruction>> itr = PartialSlice.relevantInstructions(node, 
+						fieldSSA(), sdg, slice); itr.hasNext();) {
+					insts.add(itr.next());
+				}
+				relevantInstructions = Collections.unmodifiableList(insts);
 			}
+			return relevantInstructions.iterator();
+		}
 
-			public DependenceGraph<SSACFG.BasicBlock> controlDependences() {
+		public synchronized DependenceGraph<SSACFG.BasicBlock> controlDependences() {
+			if (controlDependences == null) {
 				final ControlDependenceGraph cdg = new ControlDependenceGraph(
 						node.getIR().getControlFlowGraph(), true);
 
@@ -420,22 +551,18 @@ public class WalaInformationImpl implements WalaInformation {
 				}
 				;
 
-				return new CDG();
+				controlDependences = new CDG();
 			}
+			return controlDependences;
+		}
 
-			public IRType typeOf(int valueNumber) {
-				if (typeData == null) {
-					typeData = typeDataFactory.get(node);
-					
-//					Trace.println("type data for " + node);
-//					Trace.println(node.getIR().toString());
-//					Trace.println(typeData.toString());
-
-				}
-
-				return typeData.typeOf(valueNumber);
+		public synchronized IRType typeOf(int valueNumber) {
+			if (typeData == null) {
+				typeData = typeDataFactory.get(node);
 			}
-		};
+
+			return typeData.typeOf(valueNumber);
+		}
 	}
 
 	enum Recurse {
@@ -454,11 +581,33 @@ public class WalaInformationImpl implements WalaInformation {
 		
 	}
 	
+	/**
+	 * Returns the concurrent information for the given thread root.  The information
+	 * for each root is created once and cached, and its actions, thread order and memory
+	 * dependences are computed on first use.  The returned sets and graphs are shared 
+	 * by all callers and must not be modified.
+	 */
 	public WalaConcurrentInformationInternal concurrentInformation(
 			final CGNode threadRoot) {
+		WalaConcurrentInformationInternal info = concurrentInfos.get(threadRoot);
+		if (info == null) {
+			info = createConcurrentInformation(threadRoot);
+			final WalaConcurrentInformationInternal prev = concurrentInfos.putIfAbsent(threadRoot, info);
+			if (prev != null) 
+				info = prev;
+		}
+		return info;
+	}
+	
+	private WalaConcurrentInformationInternal createConcurrentInformation(
+			final CGNode threadRoot) {
 		return new WalaConcurrentInformationInternal() {
 
 			private final Map instructionMaps = new HashMap();
+			
+			private Set<InlinedInstruction> actions;
+			
+			private Graph<InlinedInstruction> threadOrder, memoryDependences;
 
 			class InlinedInstructionImpl implements InlinedInstruction {
 				private final CGNode node;
@@ -653,7 +802,7 @@ public class WalaInformationImpl implements WalaInformation {
 				return result;
 			}
 
-			private int getInstructionIndex(CGNode node, SSAInstruction inst) {
+			private synchronized int getInstructionIndex(CGNode node, SSAInstruction inst) {
 				if (!instructionMaps.containsKey(node)) {
 					instructionMaps.put(node, new ObjectArrayMapping(node
 							.getIR().getInstructions()));
@@ -663,7 +812,14 @@ public class WalaInformationImpl implements WalaInformation {
 						.getMappedIndex(inst);
 			}
 
-			public Set<InlinedInstruction> actions() {
+			public synchronized Set<InlinedInstruction> actions() {
+				if (actions == null) {
+					actions = Collections.unmodifiableSet(computeActions());
+				}
+				return actions;
+			}
+			
+			private Set<InlinedInstruction> computeActions() {
 				Set<InlinedInstruction> mostActions = instructions(
 						new Function<InlinedInstructionImpl, InlinedInstruction>() {
 							public InlinedInstruction apply(
@@ -698,7 +854,14 @@ public class WalaInformationImpl implements WalaInformation {
 			//
 			// TODO: how to treat heap phi nodes, interprocedrual edges?
 			//
-			public Graph<InlinedInstruction> memoryDependences() {
+			public synchronized Graph<InlinedInstruction> memoryDependences() {
+				if (memoryDependences == null) {
+					memoryDependences = computeMemoryDependences();
+				}
+				return memoryDependences;
+			}
+			
+			private Graph<InlinedInstruction> computeMemoryDependences() {
 				return instructions(
 						new Function<InlinedInstructionImpl, InlinedInstructionImpl>() {
 							public InlinedInstructionImpl apply(
@@ -746,7 +909,14 @@ public class WalaInformationImpl implements WalaInformation {
 						}, Recurse.Pre);
 			}
 			
-			public Graph<InlinedInstruction> threadOrder() {
+			public synchronized Graph<InlinedInstruction> threadOrder() {
+				if (threadOrder == null) {
+					threadOrder = computeThreadOrder();
+				}
+				return threadOrder;
+			}
+			
+			private Graph<InlinedInstruction> computeThreadOrder() {
 				final Graph<InlinedInstruction> G = instructions(
 						new Function<InlinedInstructionImpl, InlinedInstructionImpl>() {
 							public InlinedInstructionImpl apply(
@@ -848,9 +1018,13 @@ public class WalaInformationImpl implements WalaInformation {
 				result.addAll(visibleWritesSameThread(action, node));
 				
 				Object field = getField(inst);
+				
+				// a thread that starts after this one ends cannot write a value read by this thread, 
+				// since the read happens before the write under every supported memory model
+				final Set<CGNode> later = DFS.getReachableNodes(threadRoots, Collections.singleton(threadRoot));
 							
 				for (CGNode otherRoot : threadRoots) {
-					if (otherRoot != threadRoot) {
+					if (otherRoot != threadRoot && !later.contains(otherRoot)) {
 						WalaConcurrentInformation info = concurrentInformation(otherRoot);
 						for (Iterator x = info.actions().iterator(); x.hasNext();) {
 							InlinedInstruction oinst = (InlinedInstruction) x.next();
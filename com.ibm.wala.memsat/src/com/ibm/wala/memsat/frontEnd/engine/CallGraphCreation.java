@@ -19,6 +19,8 @@ import com.ibm.wala.ipa.callgraph.Entrypoint;
 import com.ibm.wala.ipa.callgraph.impl.ClassHierarchyMethodTargetSelector;
 import com.ibm.wala.ipa.callgraph.propagation.PropagationCallGraphBuilder;
 import com.ibm.wala.ipa.cha.IClassHierarchy;
+import com.ibm.wala.memsat.Metrics;
+import com.ibm.wala.memsat.Metrics.Phase;
 
 public class CallGraphCreation {
   private final MiniaturAnalysisEngine engine;
@@ -33,9 +35,18 @@ public class CallGraphCreation {
   }
 
   public CallGraph createCallGraph() throws com.ibm.wala.util.CancelException, IOException {
+    return createCallGraph(new Metrics());
+  }
+
+  public CallGraph createCallGraph(Metrics metrics) throws com.ibm.wala.util.CancelException, IOException {
+    metrics.begin(Phase.CLASS_HIERARCHY);
     engine.buildAnalysisScope();
     
     IClassHierarchy cha = engine.getClassHierarchy();
+    metrics.end(Phase.CLASS_HIERARCHY);
+    metrics.check();
+
+    metrics.begin(Phase.CALL_GRAPH);
 
     Iterable<Entrypoint> entrypoints = engine.getEntrypoints();
 
@@ -45,9 +56,11 @@ public class CallGraphCreation {
     options.setSelector(new ClassHierarchyMethodTargetSelector(cha));
     
     PropagationCallGraphBuilder builder = 
-      (PropagationCallGraphBuilder)engine.buildCallGraph(cha, options, true, null);
+      (PropagationCallGraphBuilder)engine.buildCallGraph(cha, options, true, metrics.monitor());
 
-    CallGraph CG = builder.makeCallGraph(options);
+    // the monitor cancels the pointer analysis as soon as the budget of the metrics runs out
+    CallGraph CG = builder.makeCallGraph(options, metrics.monitor());
+    metrics.end(Phase.CALL_GRAPH);
 
     return CG;
   }
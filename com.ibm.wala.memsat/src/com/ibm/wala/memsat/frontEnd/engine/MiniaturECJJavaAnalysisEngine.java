@@ -35,6 +35,7 @@ import com.ibm.wala.classLoader.SourceDirectoryTreeModule;
 import com.ibm.wala.ipa.callgraph.AnalysisOptions;
 import com.ibm.wala.ipa.callgraph.CallGraphBuilder;
 import com.ibm.wala.ipa.callgraph.Entrypoint;
+import com.ibm.wala.ipa.callgraph.IAnalysisCacheView;
 import com.ibm.wala.ipa.callgraph.propagation.InstanceKey;
 import com.ibm.wala.ipa.callgraph.propagation.PointerAnalysis;
 import com.ibm.wala.ipa.cha.IClassHierarchy;
@@ -45,7 +46,7 @@ import com.ibm.wala.util.config.SetOfClasses;
 
 public class MiniaturECJJavaAnalysisEngine
 	extends ECJJavaSourceAnalysisEngine
-	implements MiniaturAnalysisEngine
+	implements MiniaturJavaAnalysisEngine
 {
 	// private final static int defaultLoopUnrollDepth = 3;
 
@@ -53,7 +54,9 @@ public class MiniaturECJJavaAnalysisEngine
 
 	private List<MethodReference> methods;
 
-	private CallGraphBuilder<InstanceKey> builder;
+	private CallGraphBuilder<? super InstanceKey> builder;
+	
+	private IAnalysisCacheView irCache;
 	
 	public MiniaturECJJavaAnalysisEngine(int unrollDepth, List<MethodReference> methods) {
 		super();
@@ -97,19 +100,41 @@ public class MiniaturECJJavaAnalysisEngine
 		};
 	}
 
+	/**
+	 * Sets the entrypoint methods used for subsequent call graph construction.  
+	 * The analysis scope, class hierarchy and IR cache of this engine are 
+	 * unaffected.
+	 */
+	public void setEntrypointMethods(List<MethodReference> methods) {
+		this.methods = methods;
+	}
+
+	/**
+	 * Builds the analysis scope the first time it is called; subsequent 
+	 * calls are no-ops, so that the class hierarchy built for the scope
+	 * can be shared by all call graphs constructed with this engine.
+	 */
 	@Override
   public void buildAnalysisScope() throws IOException {
-		super.buildAnalysisScope();
+		if (scope == null) {
+			super.buildAnalysisScope();
+		}
 	}
 
+	/**
+	 * Returns a builder for the call graph of the current entrypoints over the given class 
+	 * hierarchy and options.  Unlike defaultCallGraphBuilder(), which rebuilds the analysis
+	 * scope and class hierarchy and makes its own options from the default entrypoints,  
+	 * this uses the shared class hierarchy, the options made by the caller for the 
+	 * entrypoints set by {@linkplain #setEntrypointMethods(List)}, and an IR cache that 
+	 * is created once and shared by all call graphs built with this engine.
+	 */
 	@Override
-  public CallGraphBuilder<InstanceKey> buildCallGraph(IClassHierarchy cha, AnalysisOptions options, boolean savePointerAnalysis, IProgressMonitor monitor) throws com.ibm.wala.util.CancelException {
-	  try {
-      return builder = this.defaultCallGraphBuilder();
-    } catch (IllegalArgumentException | IOException e) {
-      assert false : e;
-      return null;
-    }
+  public CallGraphBuilder<? super InstanceKey> buildCallGraph(IClassHierarchy cha, AnalysisOptions options, boolean savePointerAnalysis, IProgressMonitor monitor) {
+		if (irCache == null) {
+			irCache = makeDefaultCache();
+		}
+		return builder = getCallGraphBuilder(cha, options, irCache);
 	}
 
 	@Override
@@ -122,7 +147,7 @@ public class MiniaturECJJavaAnalysisEngine
 	}
 
 	@Override
-  public PointerAnalysis<InstanceKey> getPointerAnalysis() {
+  public PointerAnalysis<? super InstanceKey> getPointerAnalysis() {
 		return builder.getPointerAnalysis();
 	}
 
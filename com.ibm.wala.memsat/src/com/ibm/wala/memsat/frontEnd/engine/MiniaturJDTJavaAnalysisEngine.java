@@ -44,7 +44,7 @@ import com.ibm.wala.util.config.SetOfClasses;
 
 public class MiniaturJDTJavaAnalysisEngine
 	extends JDTJavaSourceAnalysisEngine
-	implements MiniaturAnalysisEngine
+	implements MiniaturJavaAnalysisEngine
 {
 	// private final static int defaultLoopUnrollDepth = 3;
 
@@ -92,6 +92,26 @@ public class MiniaturJDTJavaAnalysisEngine
 		};
 	}
 
+	/**
+	 * Sets the entrypoint methods used for subsequent call graph construction.  
+	 * The analysis scope and class hierarchy of this engine are unaffected.
+	 */
+	public void setEntrypointMethods(List<MethodReference> methods) {
+		this.methods = methods;
+	}
+
+	/**
+	 * Builds the analysis scope the first time it is called; subsequent 
+	 * calls are no-ops, so that the class hierarchy built for the scope
+	 * can be shared by all call graphs constructed with this engine.
+	 */
+	@Override
+	public void buildAnalysisScope() throws IOException {
+		if (scope == null) {
+			super.buildAnalysisScope();
+		}
+	}
+
 	public CallGraphBuilder buildCallGraph(IClassHierarchy cha, AnalysisOptions options, boolean savePointerAnalysis, IProgressMonitor monitor) throws com.ibm.wala.util.CancelException {
 		return super.buildCallGraph(cha, options, savePointerAnalysis, monitor);
 	}
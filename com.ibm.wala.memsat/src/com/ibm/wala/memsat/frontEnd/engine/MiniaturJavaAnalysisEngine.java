@@ -0,0 +1,29 @@
+/******************************************************************************
+ * Copyright (c) 2009 - 2015 IBM Corporation.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     IBM Corporation - initial API and implementation
+ *****************************************************************************/
+package com.ibm.wala.memsat.frontEnd.engine;
+
+import java.util.List;
+
+import com.ibm.wala.types.MethodReference;
+
+/**
+ * An analysis engine for Java sources whose entrypoints are given by
+ * method references, so that they can be changed between call graph
+ * constructions without rebuilding the analysis scope or the class hierarchy.
+ */
+public interface MiniaturJavaAnalysisEngine extends MiniaturAnalysisEngine {
+
+  /**
+   * Sets the entrypoint methods used for subsequent call graph construction.
+   */
+  void setEntrypointMethods(List<MethodReference> methods);
+
+}
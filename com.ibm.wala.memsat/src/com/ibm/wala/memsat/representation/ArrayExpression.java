@@ -16,16 +16,21 @@ package com.ibm.wala.memsat.representation;
 import static com.ibm.wala.memsat.util.Strings.prettyPrint;
 
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collection;
+import java.util.Collections;
 import java.util.Iterator;
 import java.util.List;
 
+import com.ibm.wala.memsat.util.NodeFactory;
 import com.ibm.wala.memsat.util.Nodes;
 
 import kodkod.ast.Expression;
 import kodkod.ast.Formula;
+import kodkod.ast.IntConstant;
 import kodkod.ast.IntExpression;
 import kodkod.ast.Relation;
+import kodkod.ast.visitor.AbstractReplacer;
 import kodkod.engine.Evaluator;
 import kodkod.util.ints.SparseSequence;
 import kodkod.util.ints.TreeSequence;
@@ -39,7 +44,10 @@ import kodkod.util.ints.TreeSequence;
  * @specfield indices: [0..maxCard) lone->one Expression // indices[i] maps each member of this.arrays to a bitset encoding of its ith index
  * @specfield values: [0..maxCard) lone->one (Node+RealExpression) // values[i] maps each member of this.arrays to the value it stores at the ith index
  * @specfield zero: Expression // default value
+ * @specfield sparse: boolean // true if stores are recorded in this.stores rather than applied to this.values
+ * @specfield stores: seq (Formula -> Expression -> IntExpression -> Expression) // guarded stores of values to reference/index pairs, oldest first 
  * @invariant all i: [0..maxCard) | indices[i].arity() = 2 and values[i].arity() = zero.arity() + 1
+ * @invariant !sparse => no stores
 
  * @author Emina Torlak
  */
@@ -48,6 +56,8 @@ public final class ArrayExpression<T> extends HeapExpression<T>  {
 	private final Expression[] indices, values;
 	private final Interpreter<T> valMeaning;
 	private final Interpreter<IntExpression> idxMeaning;
+	private final boolean sparse;
+	private final Store stores;
 	
 	/**
 	 * Constructs a new array from the given arguments.
@@ -55,18 +65,21 @@ public final class ArrayExpression<T> extends HeapExpression<T>  {
 	 * this.refs' = refs and
 	 * this.card' = card and
 	 * this.zero' = valMeaning.zero() and
+	 * this.sparse' = sparse and no this.stores' and
 	 * all i: [0..card) | 
 	 *   this.indeces'[i] = Relation.binary(name+"@idx"+i) and 
 	 *   this.values'[i] = Relation.nary(name+"@val"+i,this.zero'.arity+1)
 	 */
 	private ArrayExpression(String name, int card, Expression refs,
 			Interpreter<IntExpression> idxMeaning,  
-			Interpreter<T> valMeaning) { 
+			Interpreter<T> valMeaning, boolean sparse) { 
 		this.idxMeaning = idxMeaning;
 		this.valMeaning = valMeaning;
 		this.indices = new Expression[card];
 		this.values = new Expression[card];
 		this.domain = refs;
+		this.sparse = sparse;
+		this.stores = null;
 		final int valArity = valMeaning.defaultObj().arity() + 1;
 		for(int i = 0; i < card; i++) {
 			indices[i] = Relation.binary(name+"@idx"+i);
@@ -78,16 +91,20 @@ public final class ArrayExpression<T> extends HeapExpression<T>  {
 	 * Constructs a new array expression using the given template and values.
 	 * specified instance at the specified index.
 	 * @requires values.length = old.values.length
+	 * @requires old.sparse || no stores
 	 * @effects this.indeces' = old.indeces' and this.refs' = old.refs and
 	 * this.zero' = old.zero and this.card' = old.card and
-	 * this.values' = values
+	 * this.sparse' = old.sparse and 
+	 * this.values' = values and this.stores' = stores
 	 */
-	private ArrayExpression(ArrayExpression<T> old, Expression[] values) { 
+	private ArrayExpression(ArrayExpression<T> old, Expression[] values, Store stores) { 
 		this.idxMeaning = old.idxMeaning;
 		this.valMeaning = old.valMeaning;
 		this.indices = old.indices;
 		this.domain = old.domain;
+		this.sparse = old.sparse;
 		this.values = values;
+		this.stores = stores;
 	}
 	
 	
@@ -96,13 +113,13 @@ public final class ArrayExpression<T> extends HeapExpression<T>  {
 	 * Returns an array expression constructed from the given arguments.
 	 * @return { a: ArrayExpression<T> | 
 	 *   a.card = card and a.zero = valM.zero() and
-	 *   a.refs = refs and 
+	 *   a.refs = refs and a.sparse = sparse and no a.stores and
 	 *   all i: [0..card) | 
 	 *     a.indeces[i] = Relation.binary(name+"@idx"+i) and 
 	 *     a.values[i] = Relation.nary(name+"@val"+i,this.zero'.arity+1) }
 	 */
-	static <T> ArrayExpression<T> array(String name, int card, Expression refs, Interpreter<IntExpression> intM, Interpreter<T> valM) {
-		return new ArrayExpression<T>(name,card,refs,intM,valM);
+	static <T> ArrayExpression<T> array(String name, int card, Expression refs, Interpreter<IntExpression> intM, Interpreter<T> valM, boolean sparse) {
+		return new ArrayExpression<T>(name,card,refs,intM,valM,sparse);
 	}
 
 	
@@ -143,6 +160,12 @@ public final class ArrayExpression<T> extends HeapExpression<T>  {
 	 */
 	public final int cardinality() { return indices.length; }
 	
+	/**
+	 * Returns this.sparse.
+	 * @return this.sparse
+	 */
+	public final boolean isSparse() { return sparse; }
+	
 	/**
 	 * Returns the Expression encoding the set of instances whose contents field is 
 	 * represented by this array expression.
@@ -150,13 +173,52 @@ public final class ArrayExpression<T> extends HeapExpression<T>  {
 	 */
 	public final Expression instances() { return domain; }
 	
+	/**
+	 * Returns an unmodifiable view of this.values.
+	 * @requires no this.stores
+	 * @return this.values
+	 * @see com.ibm.wala.memsat.representation.HeapExpression#contents()
+	 */
+	public final List<Expression> contents() { 
+		assert stores == null : "the contents of a sparse array with pending stores are not a list of expressions";
+		return Collections.unmodifiableList(Arrays.asList(values)); 
+	}
+	
+	/**
+	 * {@inheritDoc}
+	 * The returned array shares this.indices, and it has no stores.
+	 * @see com.ibm.wala.memsat.representation.HeapExpression#placeholder(java.lang.String)
+	 */
+	public final ArrayExpression<T> placeholder(String name) { 
+		final Expression[] fresh = new Expression[values.length];
+		for(int i = 0; i < values.length; i++) { 
+			fresh[i] = Relation.nary(name + "@val" + i, values[i].arity());
+		}
+		return new ArrayExpression<T>(this, fresh, null);
+	}
+	
+	/**
+	 * {@inheritDoc}
+	 * @see com.ibm.wala.memsat.representation.HeapExpression#substitute(kodkod.ast.visitor.AbstractReplacer)
+	 */
+	public final ArrayExpression<T> substitute(AbstractReplacer replacer) { 
+		final Expression[] sub = new Expression[values.length];
+		boolean changed = false;
+		for(int i = 0; i < values.length; i++) { 
+			sub[i] = values[i].accept(replacer);
+			changed |= sub[i] != values[i];
+		}
+		final Store subStores = stores==null ? null : stores.substitute(replacer);
+		return changed || subStores != stores ? new ArrayExpression<T>(this, changed ? sub : values, subStores) : this;
+	}
+	
 	/**
 	 * Returns the ith non-default index for the specified array reference.
 	 * @requires 0 <= i < this.card
 	 * @return [[ref]] . [[ this.indices[i] ]]
 	 */
 	public final IntExpression index(Expression ref, int i) { 
-		return idxMeaning.fromObj(ref.join(indices[i]));
+		return idxMeaning.fromObj(idxMeaning.nodes().join(ref, indices[i]));
 	}
 	
 	/**
@@ -165,11 +227,34 @@ public final class ArrayExpression<T> extends HeapExpression<T>  {
 	 * @return [[ref]] . [[ this.values[i] ]]
 	 */
 	public final T value(Expression ref, int i) { 
-		return valMeaning.fromObj(ref.join(values[i]));
+		return valMeaning.fromObj(valMeaning.nodes().join(ref, values[i]));
+	}
+	
+	/**
+	 * Returns a formula that is true if the given index of the given array
+	 * may be accessed, without taking the array's length into account.  Only the 
+	 * indices held in the slots of the array may be accessed in the dense encoding; 
+	 * any non-negative index may be accessed in the sparse encoding. 
+	 * @requires ref.arity = 1 
+	 * @return this.sparse => [[index]] >= 0 else 
+	 *  some i: [0..this.card) | [[ref]].[[this.indices[i]]] = [[index]]
+	 */
+	public final Formula accessible(Expression ref, IntExpression index) { 
+		if (sparse) 
+			return index.gte(IntConstant.constant(0));
+		final NodeFactory nodes = idxMeaning.nodes();
+		final List<Formula> idxMatches = new ArrayList<Formula>(indices.length);
+		for(int i = 0; i < indices.length; i++) { 
+			idxMatches.add(nodes.eq(index(ref, i), index));
+		}
+		return nodes.or(idxMatches);
 	}
 	
 	/**
 	 * Returns the value that the given array stores at the specified index.  
+	 * If this.stores is not empty, the value is read from the most recent 
+	 * store whose guard is true and whose reference and index match the given 
+	 * ones, if any.  Otherwise, it is read from this.values as follows.
 	 * @requires ref.arity = 1 
 	 * @return 
 	 * let i = this.indices, v = this.values, c = this.card, empty = Utils.empty(this.zero.arity)) | 
@@ -180,6 +265,33 @@ public final class ArrayExpression<T> extends HeapExpression<T>  {
 	 *    zero else empty) }
 	 */
 	public final T read(Expression ref, IntExpression index) {
+		if (stores==null) 
+			return valMeaning.fromObj(slotRead(ref, index));
+		
+		final NodeFactory nodes = valMeaning.nodes();
+		final Expression empty = Nodes.empty(valMeaning.defaultObj().arity());
+		final List<Expression> parts = new ArrayList<Expression>(stores.size+1);
+		Formula missed = Formula.TRUE;
+		for(Store store = stores; store != null; store = store.prev) { 
+			final Formula hit = nodes.and(Arrays.asList(store.guard, 
+					nodes.eq(ref, store.ref), nodes.eq(index, store.index)));
+			parts.add(nodes.thenElse(nodes.and(missed, hit), store.value, empty));
+			missed = nodes.and(missed, nodes.not(hit));
+		}
+		parts.add(nodes.thenElse(missed, slotRead(ref, index), empty));
+		return valMeaning.fromObj(nodes.union(parts));
+	}
+	
+	/**
+	 * Returns the expression encoding the value that this.values store at the specified index 
+	 * of the given array.
+	 * @requires ref.arity = 1
+	 * @return expression encoding the value that this.values store at the specified index 
+	 * of the given array
+	 * @see #read(Expression, IntExpression)
+	 */
+	private Expression slotRead(Expression ref, IntExpression index) {
+		final NodeFactory nodes = valMeaning.nodes();
 		final int size = indices.length;
 		final Expression zero = valMeaning.defaultObj();
 		final Expression idx = idxMeaning.toObj(index);
@@ -189,22 +301,24 @@ public final class ArrayExpression<T> extends HeapExpression<T>  {
 		final Expression empty = Nodes.empty(zero.arity());
 		
 		for(int i = 0; i < size; i++) {
-			idxTest[i] = ref.join(indices[i]).eq(idx);
-			valsAtIdx[i] = idxTest[i].thenElse(ref.join(values[i]), empty);
+			idxTest[i] = nodes.eq(nodes.join(ref, indices[i]), idx);
+			valsAtIdx[i] = nodes.thenElse(idxTest[i], nodes.join(ref, values[i]), empty);
 		}
 		
 		for(int i = 0; i < size; i++) {
-			idxTest[i] = idxTest[i].not();
+			idxTest[i] = nodes.not(idxTest[i]);
 		}
 		
-		valsAtIdx[size] = Formula.and(idxTest).thenElse(zero, empty);
-		return valMeaning.fromObj(Expression.union(valsAtIdx));
+		valsAtIdx[size] = nodes.thenElse(nodes.and(Arrays.asList(idxTest)), zero, empty);
+		return nodes.union(Arrays.asList(valsAtIdx));
 
 	}
 
 	/**
 	 * Returns an array expression that represents the state of this ArrayExpression
 	 * after the specified value has been written to the given index of <tt>ref</tt>.  
+	 * If this array is sparse, the store is appended to this.stores, and the 
+	 * values are left unchanged.  Otherwise, the store is applied to the values as follows.
 	 * @requires ref.arity = 1 
 	 * @return 
 	 * let i = this.indices, v = this.values, c = this.card, empty = Utils.empty(this.zero.arity)  |
@@ -213,23 +327,28 @@ public final class ArrayExpression<T> extends HeapExpression<T>  {
 	 *     [[v[j]]] ++ ([[ref]].[[i[j]]] = [[index]] => [[ref]]->[[value]] else empty)) }
 	 */
 	public final ArrayExpression<T> write(Expression ref, IntExpression index, T value) {
+		if (sparse) { 
+			return new ArrayExpression<T>(this, values, new Store(stores, Formula.TRUE, ref, index, valMeaning.toObj(value)));
+		}
 		final Expression idx = idxMeaning.toObj(index), val = valMeaning.toObj(value);
 		final Expression[] retValues = new Expression[values.length];
 		
+		final NodeFactory nodes = valMeaning.nodes();
 		final Expression empty = Nodes.empty(valMeaning.defaultObj().arity()+1);
-		final Expression overrider = ref.product(val);
+		final Expression overrider = nodes.product(ref, val);
 		for(int i = 0; i < values.length; i++) {
-			Formula idxTest = ref.join(indices[i]).eq(idx);
-			retValues[i] = values[i].override(idxTest.thenElse(overrider, empty));
+			Formula idxTest = nodes.eq(nodes.join(ref, indices[i]), idx);
+			retValues[i] = nodes.override(values[i], nodes.thenElse(idxTest, overrider, empty));
 		}
 		
-		return new ArrayExpression<T>(this, retValues);
+		return new ArrayExpression<T>(this, retValues, null);
 	}
 	
 	/**
 	 * Returns the sparse sequence mapping each index in this.indeces[ref]
 	 * to its corresponding value in this.values[ref], as given by the
-	 * specified evaluator. In particular, if the
+	 * specified evaluator, and updated with the stores in this.stores 
+	 * whose guards are true and whose references match ref. In particular, if the
 	 * type if this.values is RealExpression, then the returned value will be 
 	 * a sequence of Floats; if the type of 
 	 * this value is an IntExpression, the returned value will be a sequence of Integers; 
@@ -250,6 +369,14 @@ public final class ArrayExpression<T> extends HeapExpression<T>  {
 			V value = (V) valMeaning.evaluate(valMeaning.fromObj(ref.join(values[i])),eval);
 			ret.put(idx, value);
 		}
+		if (stores != null) { 
+			for(Store store : stores.since(null)) { 
+				if (eval.evaluate(store.guard.and(ref.eq(store.ref)))) { 
+					final V value = (V) valMeaning.evaluate(valMeaning.fromObj(store.value), eval);
+					ret.put(eval.evaluate(store.index), value);
+				}
+			}
+		}
 		return ret;
 	}
 
@@ -259,7 +386,11 @@ public final class ArrayExpression<T> extends HeapExpression<T>  {
 	 * to true.  This method assumes that at most one of the given guards 
 	 * evaluates to true.  If none do, the returned value will evaluate to 
 	 * an empty array (i.e. an array that maps everything in its domain to 
-	 * a T whose Expression value is the empty set).
+	 * a T whose Expression value is the empty set), unless the arrays are sparse
+	 * and share their values, in which case the meaning of the returned value is 
+	 * undefined.  The stores of sparse arrays that follow their most recent common 
+	 * store are conjoined with the guards of their arrays and appended to the 
+	 * common stores.  
 	 * @requires guards and values contain the same (positive) number of objects
 	 * @requires at most one of the guards can ever evaluate to true.
 	 * @requires all array expressions in the given collection represent the same array
@@ -274,32 +405,58 @@ public final class ArrayExpression<T> extends HeapExpression<T>  {
 		assert phiNum > 0;
 		
 		final ArrayExpression<T> first = arrays.iterator().next();
-		final Expression empty = Nodes.empty(first.valMeaning.defaultObj().arity()+1);
+		final NodeFactory nodes = first.valMeaning.nodes();
 		
-		final int card = first.cardinality();
-		final List<Expression>[] phis = new ArrayList[card];
-		for(int i = 0; i < card; i++) { 
-			phis[i] = new ArrayList<Expression>(phiNum);
+		boolean sameValues = first.sparse;
+		Store common = first.stores;
+		for(ArrayExpression<T> array : arrays) { 
+			assert array.indices == first.indices && array.sparse == first.sparse;
+			sameValues = sameValues && array.values == first.values;
+			common = Store.common(common, array.stores);
 		}
 		
-		final Iterator<Formula> gItr = guards.iterator();
-		final Iterator<ArrayExpression<T>> aItr = arrays.iterator();
-		
-		while(gItr.hasNext()) { 
-			Formula guard = gItr.next();
-			ArrayExpression<T> array = aItr.next();
-			assert array.indices == first.indices;
+		final Expression[] phiVals;
+		if (sameValues) { 
+			phiVals = first.values;
+		} else { 
+			common = null;
+			final Expression empty = Nodes.empty(first.valMeaning.defaultObj().arity()+1);
+			
+			final int card = first.cardinality();
+			final List<Expression>[] phis = new ArrayList[card];
+			for(int i = 0; i < card; i++) { 
+				phis[i] = new ArrayList<Expression>(phiNum);
+			}
+			
+			final Iterator<Formula> gItr = guards.iterator();
+			final Iterator<ArrayExpression<T>> aItr = arrays.iterator();
+			
+			while(gItr.hasNext()) { 
+				Formula guard = gItr.next();
+				ArrayExpression<T> array = aItr.next();
+				for(int i = 0; i < card; i++) { 
+					phis[i].add(nodes.thenElse(guard, array.values[i], empty));
+				}
+			}
+			
+			phiVals = new Expression[card];
 			for(int i = 0; i < card; i++) { 
-				phis[i].add(guard.thenElse(array.values[i], empty));
+				phiVals[i] = phis[i].isEmpty() ? empty : nodes.union(phis[i]);
 			}
 		}
 		
-		final Expression[] phiVals = new Expression[card];
-		for(int i = 0; i < card; i++) { 
-			phiVals[i] = phis[i].isEmpty() ? empty : Expression.union(phis[i]);
+		Store phiStores = common;
+		final Iterator<Formula> gItr = guards.iterator();
+		for(ArrayExpression<T> array : arrays) { 
+			final Formula guard = gItr.next();
+			if (array.stores != null) { 
+				for(Store store : array.stores.since(common)) { 
+					phiStores = new Store(phiStores, nodes.and(guard, store.guard), store.ref, store.index, store.value);
+				}
+			}
 		}
 		
-		return new ArrayExpression<T>(first, phiVals);
+		return new ArrayExpression<T>(first, phiVals, phiStores);
 	}
 	
 	public String toString(){
@@ -311,4 +468,80 @@ public final class ArrayExpression<T> extends HeapExpression<T>  {
 		res += "]";
 		return res;
 	}
+	
+	/**
+	 * A guarded store of a value to an index of an array, linked to the 
+	 * store that precedes it.  Chains of stores are immutable and may share prefixes.
+	 * @specfield prev: lone Store
+	 * @specfield guard: Formula // the store takes effect only if the guard is true
+	 * @specfield ref: Expression // array to which the value is stored
+	 * @specfield index: IntExpression // index to which the value is stored
+	 * @specfield value: Expression // expression encoding of the stored value
+	 * @specfield size: int // number of stores in the chain that ends with this store
+	 */
+	private static final class Store { 
+		final Store prev;
+		final int size;
+		final Formula guard;
+		final Expression ref;
+		final IntExpression index;
+		final Expression value;
+		
+		/**
+		 * Constructs a new store from the given arguments.
+		 * @effects this.prev' = prev and this.guard' = guard and this.ref' = ref and 
+		 * this.index' = index and this.value' = value and this.size' = #prev.*(prev) + 1 
+		 */
+		Store(Store prev, Formula guard, Expression ref, IntExpression index, Expression value) { 
+			this.prev = prev;
+			this.size = prev==null ? 1 : prev.size + 1;
+			this.guard = guard;
+			this.ref = ref;
+			this.index = index;
+			this.value = value;
+		}
+		
+		/**
+		 * Returns the stores in the chain that ends with this store, which follow 
+		 * the given ancestor, oldest first.
+		 * @requires ancestor in this.^prev + null
+		 * @return the stores in this.*prev - ancestor.*prev, oldest first
+		 */
+		List<Store> since(Store ancestor) { 
+			final int count = size - (ancestor==null ? 0 : ancestor.size);
+			final Store[] ret = new Store[count];
+			Store store = this;
+			for(int i = count-1; i >= 0; i--, store = store.prev) { 
+				ret[i] = store;
+			}
+			assert store == ancestor;
+			return Arrays.asList(ret);
+		}
+		
+		/**
+		 * Returns the result of applying the given replacer to this chain of stores.
+		 * @return the result of applying the given replacer to this chain of stores
+		 */
+		Store substitute(AbstractReplacer replacer) { 
+			final Store subPrev = prev==null ? null : prev.substitute(replacer);
+			final Formula subGuard = guard.accept(replacer);
+			final Expression subRef = ref.accept(replacer);
+			final IntExpression subIndex = index.accept(replacer);
+			final Expression subValue = value.accept(replacer);
+			return subPrev==prev && subGuard==guard && subRef==ref && subIndex==index && subValue==value ? 
+					this : new Store(subPrev, subGuard, subRef, subIndex, subValue);
+		}
+		
+		/**
+		 * Returns the most recent store shared by the given chains, if any.
+		 * @return (a.*prev & b.*prev) - (a.*prev & b.*prev).^prev
+		 */
+		static Store common(Store a, Store b) { 
+			while(a != null && b != null && a != b) { 
+				if (a.size >= b.size) a = a.prev;
+				else b = b.prev;
+			}
+			return a==null || b==null ? null : a;
+		}
+	}
 }
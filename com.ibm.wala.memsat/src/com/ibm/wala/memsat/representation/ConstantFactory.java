@@ -18,7 +18,9 @@ import static com.ibm.wala.memsat.frontEnd.IRType.INTEGER;
 import static com.ibm.wala.memsat.frontEnd.IRType.OBJECT;
 
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collection;
+import java.util.Collections;
 import java.util.HashSet;
 import java.util.Iterator;
 import java.util.LinkedHashMap;
@@ -32,6 +34,7 @@ import com.ibm.wala.ipa.cha.IClassHierarchy;
 import com.ibm.wala.memsat.Options;
 import com.ibm.wala.memsat.frontEnd.IRType;
 import com.ibm.wala.memsat.frontEnd.WalaInformation;
+import com.ibm.wala.memsat.util.NodeFactory;
 import com.ibm.wala.memsat.util.Strings;
 import com.ibm.wala.types.TypeReference;
 
@@ -63,6 +66,7 @@ import kodkod.util.collections.Containers;
  *  REAL ->one Interpreter<RealExpression> + BOOLEAN ->one Interpreter<Formula> + 
  *  OBJECT ->one Interpreter<Expression>  
  * @specfield instances: info.relevantClasses() + String + null ->one Expression
+ * @specfield nodes: NodeFactory // hash-conses the terms built by this.interpreters
  * @author Emina Torlak
  */
 public final class ConstantFactory {
@@ -70,6 +74,7 @@ public final class ConstantFactory {
 	static final Relation FALSE = Relation.unary("false");
 	static final Relation NULL = Relation.unary("null");
 	
+	private final NodeFactory nodes;
 	private final Interpreter<Formula> bools;
 	private final Interpreter<Expression> objects;
 
@@ -88,10 +93,11 @@ public final class ConstantFactory {
 	 * @effects this.options' = options
 	 */
 	 ConstantFactory(WalaInformation info, Options options) {
-		this.bools = bools();
-		this.objects = objects();
+		this.nodes = new NodeFactory();
+		this.bools = bools(nodes);
+		this.objects = objects(nodes);
 		this.bitwidth = options.kodkodOptions().bitwidth();
-		this.ints = ints();
+		this.ints = ints(nodes);
 		this.reals = RealExpression.interpreter(ints);
 		this.sets = new LinkedHashMap<InstanceKey, Relation>();
 		this.instances = new LinkedHashMap<InstanceKey, Relation[]>();
@@ -266,6 +272,23 @@ public final class ConstantFactory {
 		return s;
 	}
 	
+	/**
+	 * Returns the relations that represent the instances of the given type partition 
+	 * that are in the open world, in the order of their atoms in the universe.  These 
+	 * instances are interchangeable:  allocations are modeled with the closed world 
+	 * instances, and the bounds generated for the open world instances treat them alike.
+	 * @return the relations that represent the instances of the given type partition 
+	 * that are in the open world
+	 */
+	List<Relation> openInstances(InstanceKey typeKey) { 
+		if (openWorldKeys.contains(typeKey)) { 
+			final Relation[] values = instances.get(typeKey);
+			return Arrays.asList(values).subList(values.length-openWorldScopeSize, values.length);
+		} else {
+			return Collections.emptyList();
+		}
+	}
+	
 	/**
 	 * Returns an expression that evaluates to all instances of the given type partition
 	 * that are in the closed world.
@@ -471,6 +494,13 @@ public final class ConstantFactory {
 	 * @return this.interpreters[BOOLEAN]
 	 */
 	public final Interpreter<Formula> boolInterpreter() { return bools; }
+	
+	/**
+	 * Returns the node factory that hash-conses the terms built by this factory's 
+	 * interpreters and by the heap expressions that use them.
+	 * @return this.nodes
+	 */
+	public final NodeFactory nodes() { return nodes; }
 
 	/**
 	 * Returns a string representation of this value factory.
@@ -496,51 +526,53 @@ public final class ConstantFactory {
 	/*------------------ STATIC METHODS ------------------ */
 
 	/** @return an interpreter for boolean values. */
-	private static Interpreter<Formula> bools() { 
+	private static Interpreter<Formula> bools(final NodeFactory nodes) { 
 		return new Interpreter<Formula>() {
 			public IRType type() { return BOOLEAN; }
-			public Expression toObj(Formula f) { return f.thenElse(TRUE, FALSE); }
-			public Formula fromObj(Expression e) { return e.eq(TRUE); }
+			public Expression toObj(Formula f) { return nodes.thenElse(f, TRUE, FALSE); }
+			public Formula fromObj(Expression e) { return nodes.eq(e, TRUE); }
 			public Expression defaultObj() { return FALSE; }
-			public Formula guardedValue(Formula guard, Formula value) { return guard.and(value); }
+			public Formula guardedValue(Formula guard, Formula value) { return nodes.and(guard, value); }
 			public Formula defaultValue() { return Formula.FALSE; }
 			public Boolean evaluate(Formula value, Evaluator eval) { return eval.evaluate(value); }
 			public boolean singletonEncoding() { return true; }
+			NodeFactory nodes() { return nodes; }
 			Formula phi(Collection<? extends Formula> phis) { 
 				assert !phis.isEmpty();
-				return Formula.or(phis); 
+				return nodes.or(phis); 
 			}
 		};
 	}
 	
 	/** @return an interpreter for integer values.  */
-	private static Interpreter<IntExpression> ints() { 
+	private static Interpreter<IntExpression> ints(final NodeFactory nodes) { 
 		final IntConstant zero = IntConstant.constant(0);
 		return new Interpreter<IntExpression>() {
 			public IRType type() { return INTEGER; }
-			public Expression toObj(IntExpression intExpr) { return intExpr.toBitset(); }
-			public IntExpression fromObj(Expression e) { return e.sum(); }
+			public Expression toObj(IntExpression intExpr) { return nodes.toBitset(intExpr); }
+			public IntExpression fromObj(Expression e) { return nodes.sum(e); }
 			public Expression defaultObj() { return Expression.NONE; }
-			public IntExpression guardedValue(Formula guard, IntExpression value) { return guard.thenElse(value, zero); }
+			public IntExpression guardedValue(Formula guard, IntExpression value) { return nodes.thenElse(guard, value, zero); }
 			public IntExpression defaultValue() { return zero; }
 			public Integer evaluate(IntExpression value, Evaluator eval) { return eval.evaluate(value); }
 			public boolean singletonEncoding() { return false; }
+			NodeFactory nodes() { return nodes; }
 			IntExpression phi(Collection<? extends IntExpression> phis) { 
 				assert !phis.isEmpty();
-				return IntExpression.or(phis); 
+				return nodes.bitOr(phis); 
 			}
 		};
 	}
 		
 	/** @return an interpreter for reference values. */
-	private static Interpreter<Expression> objects() { 
+	private static Interpreter<Expression> objects(final NodeFactory nodes) { 
 		return new Interpreter<Expression>() {
 			public IRType type() { return OBJECT; }
 			public Expression toObj(Expression t) { return t; }
 			public Expression fromObj(Expression e) { return e; }
 			public Expression defaultObj() { return NULL; }
 			public Expression guardedValue(Formula guard, Expression value) {
-				return guard.thenElse(value, Expression.NONE);
+				return nodes.thenElse(guard, value, Expression.NONE);
 			}
 			public Expression defaultValue() { return NULL; }
 			public Object evaluate(Expression value, Evaluator eval) { 
@@ -550,9 +582,10 @@ public final class ConstantFactory {
 				return v.isEmpty() ? "()" : v.iterator().next().atom(0);
 			}
 			public boolean singletonEncoding() { return true; }
+			NodeFactory nodes() { return nodes; }
 			Expression phi(Collection<? extends Expression> phis) { 
 				assert !phis.isEmpty();
-				return Expression.union(phis); 
+				return nodes.union(phis); 
 			}
 		};
 	}
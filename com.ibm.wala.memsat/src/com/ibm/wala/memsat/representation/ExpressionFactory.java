@@ -20,6 +20,7 @@ import static com.ibm.wala.memsat.frontEnd.IRType.REAL;
 
 import java.util.ArrayList;
 import java.util.Collection;
+import java.util.Collections;
 import java.util.EnumMap;
 import java.util.LinkedHashMap;
 import java.util.List;
@@ -65,10 +66,12 @@ import kodkod.instance.TupleSet;
  * @specfield fields: info.relevantFields() ->one HeapExpression
  * @specfield systemHashCode: FieldExpression<IntExpression> // binary field that models the system hashcode values
  * @specfield arguments: CGNode -> seq[ Node + RealExpression ]
+ * @specfield floats: FloatAbstraction // abstraction of the float operations translated with this factory
  * 
  * @invariant all f: info.relevantFields() & ArrayContentsKey | fields[f] in FieldExpression
  * @invariant all f: info.relevantFields() - ArrayContentsKey | fields[f] in ArrayExpression
  * @invariant constants.info = this.info && constants.options = this.options  
+ * @invariant floats.enabled = (options.refineFloats() && info.threads().getNumberOfNodes() = 1 && !options.summarizeMethods())
  * 
  * @author Emina Torlak
  */
@@ -80,6 +83,7 @@ public final class ExpressionFactory {
 	private final Map<PointerKey, HeapExpression<?>> fields;
 	private final FieldExpression<IntExpression> hash;	
 	private final Map<CGNode, Relation[]> arguments;
+	private final FloatAbstraction floats;
 	
 	/**
 	 * Constructs an expression factory from the given info and options
@@ -107,7 +111,8 @@ public final class ExpressionFactory {
 				Expression dom = constants.valueOf(((ArrayContentsKey)key).getInstanceKey());
 				fields.put(key, ArrayExpression.array(name, card, dom, 
 						constants.intInterpreter(),
-						constants.interpreter(valType)));
+						constants.interpreter(valType), 
+						options.sparseArrays()));
 			
 			} else if (key instanceof InstanceFieldKey) {
 				InstanceFieldKey instanceField = (InstanceFieldKey) key;
@@ -145,6 +150,11 @@ public final class ExpressionFactory {
 			arguments.put(node, args);
 		}
 		
+		// speculative executions and method summaries substitute the values that their 
+		// code computes, so they would share an abstract value between distinct operations
+		this.floats = new FloatAbstraction(constants.intInterpreter(), 
+				options.refineFloats() && info.threads().getNumberOfNodes()==1 && !options.summarizeMethods());
+		
 //		System.out.println(toString());
 	}
 	
@@ -207,6 +217,13 @@ public final class ExpressionFactory {
 	 */
 	public ConstantFactory constants() { return constants; }
 	
+	/**
+	 * Returns the abstraction of the float operations that are
+	 * translated with this factory.
+	 * @return this.floats
+	 */
+	public FloatAbstraction floats() { return floats; }
+	
 	
 	/**
 	 * Returns a field or array expression that models the initial heap value 
@@ -239,16 +256,68 @@ public final class ExpressionFactory {
 	 * @return a formula that expresses the representation
 	 * invariants over all Kodkod relations that make up 
 	 * the expressions generated in this factory
+	 * @see #heapInvariants()
+	 * @see #arrayInvariants()
 	 */
 	public final Formula invariants() { 
+		return heapInvariants().and(arrayInvariants());
+	}
+	
+	/**
+	 * Returns a formula that expresses the representation 
+	 * invariants over the fields and arguments generated by 
+	 * this factory, together with the heap symmetry breaking 
+	 * predicates, if this.options.breakHeapSymmetries().
+	 * These constraints restrict the initial heap to 
+	 * this.options.openWorldScopeSize instances of each 
+	 * open world type.
+	 * @return a formula that expresses the representation 
+	 * invariants over the fields and arguments generated by 
+	 * this factory
+	 */
+	public final Formula heapInvariants() { 
+		final List<Formula> formulas = new ArrayList<Formula>();
+		
+		for(HeapExpression<?> heapExpr : fields.values()) { 
+			if (!heapExpr.isArray()) { 
+				formulas.add(invariants((FieldExpression<?>)heapExpr));
+			}
+		}
+		
+		// argument constraints -- constraint cardinality of refs and bools to one
+		for(Map.Entry<CGNode, Relation[]> entry : arguments.entrySet()) { 
+			WalaCGNodeInformation nodeInfo = info.cgNodeInformation(entry.getKey());
+			Relation[] args = entry.getValue();
+			for(int i = 0; i < args.length; i++) { 
+				if (constants.interpreter(nodeInfo.typeOf(i+1)).singletonEncoding()) { 
+					formulas.add(args[i].one());
+				}
+			}
+		}
 		
+		if (options.breakHeapSymmetries()) { 
+			formulas.add(symmetryBreakers());
+		}
+		
+		return Formula.and(formulas);
+	}
+	
+	/**
+	 * Returns a formula that expresses the representation 
+	 * invariants over the contents of the non-empty open world 
+	 * arrays generated by this factory.  These constraints 
+	 * restrict the initial contents of each such array to 
+	 * this.options.numberOfIndexAtoms index slots.
+	 * @return a formula that expresses the representation 
+	 * invariants over the contents of the non-empty open world 
+	 * arrays generated by this factory
+	 */
+	public final Formula arrayInvariants() { 
 		final List<Formula> formulas = new ArrayList<Formula>();
 		final Map<ArrayContentsKey,FieldExpression<IntExpression>> lengths = lengths();
-//		System.out.println("lengths: " + lengths);
 
 		for(Map.Entry<PointerKey, HeapExpression<?>> entry : fields.entrySet()) { 
 			final HeapExpression<?> heapExpr = entry.getValue();
-			
 			if (heapExpr.isArray()) { 
 				final InstanceKey dom = ((ArrayContentsKey)entry.getKey()).getInstanceKey();
 				// only add rep invariants for non-empty arrays in the open world
@@ -259,25 +328,99 @@ public final class ExpressionFactory {
 						formulas.add(invariants(constants.openValuesOf(dom), array, length));
 					}
 				}
-			} else { 
-				final FieldExpression<?> field = (FieldExpression<?>)heapExpr;
-				formulas.add(invariants(field));
-			}
+			} 
 		}
 		
-		// argument constraints -- constraint cardinality of refs and bools to one
+		return Formula.and(formulas);
+	}
+	
+	/**
+	 * Returns predicates that break the symmetries among the open world instances 
+	 * of each relevant class.  Any permutation of the open world instances of a class 
+	 * maps a solution to another solution, so every solution can be permuted into one in 
+	 * which these instances are sorted, first by whether they are referenced from the 
+	 * initial heap or the arguments, and then lexicographically by the values of their 
+	 * integer and boolean fields.  Sorting the instances of one class does not change 
+	 * the sort keys of any other class, since neither the referenced instances of a class 
+	 * nor the primitive field values of an instance are affected by permuting other instances.  
+	 * The predicates name the individual instances, which also keeps Kodkod from adding its own, 
+	 * possibly conflicting, symmetry breaking predicates for them.
+	 * @return predicates that break the symmetries among the open world instances 
+	 * of each relevant class
+	 */
+	private Formula symmetryBreakers() { 
+		final List<Expression> refs = new ArrayList<Expression>();
 		for(Map.Entry<CGNode, Relation[]> entry : arguments.entrySet()) { 
-			WalaCGNodeInformation nodeInfo = info.cgNodeInformation(entry.getKey());
-			Relation[] args = entry.getValue();
+			final WalaCGNodeInformation nodeInfo = info.cgNodeInformation(entry.getKey());
+			final Relation[] args = entry.getValue();
 			for(int i = 0; i < args.length; i++) { 
-				if (constants.interpreter(nodeInfo.typeOf(i+1)).singletonEncoding()) { 
-					formulas.add(args[i].one());
+				if (nodeInfo.typeOf(i+1)==OBJECT) { 
+					refs.add(args[i]);
+				}
+			}
+		}
+		final Map<InstanceKey, List<FieldExpression<?>>> primitiveFields = new LinkedHashMap<InstanceKey, List<FieldExpression<?>>>();
+		for(Map.Entry<PointerKey, HeapExpression<?>> entry : fields.entrySet()) { 
+			final HeapExpression<?> heapExpr = entry.getValue();
+			final IRType valType = heapExpr.valueInterpreter().type();
+			if (heapExpr.isArray()) { 
+				if (valType==OBJECT) { 
+					for(Expression value : heapExpr.contents()) { 
+						refs.add(Expression.UNIV.join(value));
+					}
+				}
+			} else if (!((FieldExpression<?>)heapExpr).isStatic()) { 
+				final FieldExpression<?> field = (FieldExpression<?>) heapExpr;
+				if (valType==OBJECT) { 
+					refs.add(Expression.UNIV.join(field.field()));
+				} else if (valType==INTEGER || valType==BOOLEAN) { 
+					final InstanceKey domKey = ((InstanceFieldPointerKey) entry.getKey()).getInstanceKey();
+					List<FieldExpression<?>> domFields = primitiveFields.get(domKey);
+					if (domFields==null) { 
+						domFields = new ArrayList<FieldExpression<?>>();
+						primitiveFields.put(domKey, domFields);
+					}
+					domFields.add(field);
 				}
 			}
 		}
+		final Expression referenced = refs.isEmpty() ? Expression.NONE : Expression.union(refs);
 		
+		final List<Formula> formulas = new ArrayList<Formula>();
+		for(InstanceKey key : info.relevantClasses()) { 
+			final List<Relation> open = constants.openInstances(key);
+			final List<FieldExpression<?>> domFields = primitiveFields.containsKey(key) ? 
+					primitiveFields.get(key) : Collections.<FieldExpression<?>>emptyList();
+			for(int i = 1, max = open.size(); i < max; i++) { 
+				final Relation prev = open.get(i-1), next = open.get(i);
+				final Formula prevRef = prev.in(referenced), nextRef = next.in(referenced);
+				formulas.add(nextRef.implies(prevRef));
+				formulas.add(prevRef.iff(nextRef).implies(lexLeq(prev, next, domFields, 0)));
+			}
+		}
 		return Formula.and(formulas);
- 
+	}
+	
+	/**
+	 * Returns a formula that evaluates to true if the values of the given fields, 
+	 * starting at the given position, are lexicographically no greater for the first 
+	 * instance than for the second.  Integers are ordered numerically, and false is 
+	 * ordered before true.
+	 * @requires all f: fields[int] | f.valueInterpreter().type() in INTEGER + BOOLEAN
+	 * @return a formula that evaluates to true if the values of fields[start..) are 
+	 * lexicographically no greater for the first instance than for the second
+	 */
+	private static Formula lexLeq(Expression first, Expression second, List<FieldExpression<?>> fields, int start) { 
+		if (start==fields.size()) return Formula.TRUE;
+		final FieldExpression<?> field = fields.get(start);
+		final Formula rest = lexLeq(first, second, fields, start+1);
+		if (field.valueInterpreter().type()==INTEGER) { 
+			final IntExpression a = (IntExpression) field.read(first), b = (IntExpression) field.read(second);
+			return a.lt(b).or(a.eq(b).and(rest));
+		} else { 
+			final Formula a = (Formula) field.read(first), b = (Formula) field.read(second);
+			return a.not().and(b).or(a.iff(b).and(rest));
+		}
 	}
 	
 	/**
@@ -407,6 +550,9 @@ public final class ExpressionFactory {
 			}
 		}
 		
+		// bound abstract float values
+		floats.boundAll(bounds, primitives.get(REAL));
+		
 		// bound system hashcode
 		bounds.bound((Relation)hash.field(), constants.instanceAtoms(f, info.relevantClasses()).product(primitives.get(INTEGER)));
 
@@ -15,14 +15,17 @@ package com.ibm.wala.memsat.representation;
 
 import java.util.ArrayList;
 import java.util.Collection;
+import java.util.Collections;
 import java.util.Iterator;
 import java.util.List;
 
+import com.ibm.wala.memsat.util.NodeFactory;
 import com.ibm.wala.memsat.util.Nodes;
 
 import kodkod.ast.Expression;
 import kodkod.ast.Formula;
 import kodkod.ast.Relation;
+import kodkod.ast.visitor.AbstractReplacer;
 import kodkod.engine.Evaluator;
 
 /**
@@ -106,6 +109,30 @@ public final class FieldExpression<T> extends HeapExpression<T> {
 	 * @return this.isStatic
 	 */
 	public final boolean isStatic() { return domain==null; }
+	
+	/**
+	 * Returns a singleton list containing this.field.
+	 * @return [this.field]
+	 * @see com.ibm.wala.memsat.representation.HeapExpression#contents()
+	 */
+	public final List<Expression> contents() { return Collections.singletonList(field); }
+	
+	/**
+	 * {@inheritDoc}
+	 * @see com.ibm.wala.memsat.representation.HeapExpression#placeholder(java.lang.String)
+	 */
+	public final FieldExpression<T> placeholder(String name) { 
+		return new FieldExpression<T>(this, Relation.nary(name, field.arity()));
+	}
+	
+	/**
+	 * {@inheritDoc}
+	 * @see com.ibm.wala.memsat.representation.HeapExpression#substitute(kodkod.ast.visitor.AbstractReplacer)
+	 */
+	public final FieldExpression<T> substitute(AbstractReplacer replacer) { 
+		final Expression sub = field.accept(replacer);
+		return sub==field ? this : new FieldExpression<T>(this, sub);
+	}
 		
 	/**
 	 * Returns the value of this field at the given location.
@@ -115,7 +142,7 @@ public final class FieldExpression<T> extends HeapExpression<T> {
 	 * @return { t: T | [[n]]= (this.isStatic => this.field else ref.join(this.field)) }
 	 */
 	public final T read(Expression ref) {
-		return meaning.fromObj(isStatic() ? field : ref.join(field));
+		return meaning.fromObj(isStatic() ? field : meaning.nodes().join(ref, field));
 	}
 	
 	/**
@@ -130,10 +157,11 @@ public final class FieldExpression<T> extends HeapExpression<T> {
 	 *  f.field = this.field++(this.isStatic => [[value]] else ref->[[value]]) }
 	 */
 	public final FieldExpression<T> write(Expression ref, T value) { 
+		final NodeFactory nodes = meaning.nodes();
 		final Expression expr = meaning.toObj(value);
-		final Expression overrider = isStatic() ? expr : ref.product(expr);  
+		final Expression overrider = isStatic() ? expr : nodes.product(ref, expr);  
 		return new FieldExpression<T>(this, isStatic() ? overrider : 
-												field.difference(ref.product(ref.join(field))).union(overrider));
+												nodes.union(nodes.difference(field, nodes.product(ref, nodes.join(ref, field))), overrider));
 	}
 	
 	/**
@@ -180,15 +208,16 @@ public final class FieldExpression<T> extends HeapExpression<T> {
 		final Iterator<FieldExpression<T>> fItr = fields.iterator();
 		
 		final FieldExpression<T> first = fItr.next();
+		final NodeFactory nodes = first.meaning.nodes();
 		final Expression empty = Nodes.empty(first.field.arity());
 		
-		phis.add(gItr.next().thenElse(first.field, empty));
+		phis.add(nodes.thenElse(gItr.next(), first.field, empty));
 		
 		while(gItr.hasNext()) { 
-			phis.add(gItr.next().thenElse(fItr.next().field, empty));
+			phis.add(nodes.thenElse(gItr.next(), fItr.next().field, empty));
 		}
 		
-		return new FieldExpression<T>(first, phis.isEmpty() ? empty : Expression.union(phis));
+		return new FieldExpression<T>(first, phis.isEmpty() ? empty : nodes.union(phis));
 	}
 
 }
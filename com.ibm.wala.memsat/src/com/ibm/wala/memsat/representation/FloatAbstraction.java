@@ -0,0 +1,149 @@
+/******************************************************************************
+ * Copyright (c) 2009 - 2015 IBM Corporation.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     IBM Corporation - initial API and implementation
+ *****************************************************************************/
+/**
+ *
+ */
+package com.ibm.wala.memsat.representation;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import kodkod.ast.Formula;
+import kodkod.ast.IntExpression;
+import kodkod.ast.Relation;
+import kodkod.engine.Evaluator;
+import kodkod.engine.config.Options;
+import kodkod.instance.Bounds;
+import kodkod.instance.Instance;
+import kodkod.instance.TupleSet;
+
+/**
+ * An abstraction of the float arithmetic and conversions in a translation.  When enabled,
+ * the result of each abstracted operation is replaced with a fresh relation that encodes
+ * an arbitrary int, which stands for the bits of the result.  The precise
+ * {@linkplain com.ibm.wala.memsat.math.FloatingPoint floating point} circuit for the operation
+ * is recorded but not added to the translation.  A formula over the abstract values therefore
+ * allows every behavior of the precise formula:  if it is unsatisfiable, so is the precise formula.
+ *
+ * <p>A model of the abstract formula is spurious if it assigns to some abstract operation a value
+ * that differs from the value of its circuit, evaluated over the same model.  The
+ * {@linkplain #refinement(Set) refinement} of such operations equates their abstract values
+ * with their circuits, so each operation is refined at most once.</p>
+ *
+ * @specfield enabled: boolean // true if operations are abstracted
+ * @specfield operations: Relation ->one IntExpression // maps each abstract value to the circuit that it replaces
+ * @invariant !enabled => no operations
+ */
+public final class FloatAbstraction {
+	private final Interpreter<IntExpression> ints;
+	private final boolean enabled;
+	private final Map<Relation, IntExpression> operations;
+
+	/**
+	 * Creates an abstraction that encodes abstract values with the given interpreter.
+	 * @effects this.enabled' = enabled and no this.operations'
+	 */
+	FloatAbstraction(Interpreter<IntExpression> ints, boolean enabled) {
+		this.ints = ints;
+		this.enabled = enabled;
+		this.operations = new LinkedHashMap<Relation, IntExpression>();
+	}
+
+	/**
+	 * Returns this.enabled.
+	 * @return this.enabled
+	 */
+	public boolean enabled() { return enabled; }
+
+	/**
+	 * Returns the relations that encode the abstract values of this.operations.
+	 * @return this.operations.IntExpression
+	 */
+	public Set<Relation> relations() {
+		return Collections.unmodifiableSet(operations.keySet());
+	}
+
+	/**
+	 * Returns the given real expression if !this.enabled.  Otherwise returns
+	 * a real expression whose bits are the value of a fresh relation, which
+	 * is recorded as the abstraction of the given expression.
+	 * @return !this.enabled => precise else
+	 *  { r: RealExpression | r.intBits() = integer(precise.intBits()) }
+	 * @effects this.enabled => this.operations' = this.operations + r->precise.intBits()
+	 *  for some fresh relation r
+	 */
+	public RealExpression real(RealExpression precise) {
+		return enabled ? new RealExpression(integer(precise.intBits())) : precise;
+	}
+
+	/**
+	 * Returns the given int expression if !this.enabled.  Otherwise returns the
+	 * value of a fresh relation, which is recorded as the abstraction of the given expression.
+	 * @return !this.enabled => precise else { i: IntExpression | i = sum(r) }
+	 * @effects this.enabled => this.operations' = this.operations + r->precise
+	 *  for some fresh relation r
+	 */
+	public IntExpression integer(IntExpression precise) {
+		if (!enabled) return precise;
+		final Relation r = Relation.unary("float" + operations.size());
+		operations.put(r, precise);
+		return ints.fromObj(r);
+	}
+
+	/**
+	 * Returns the relations whose values in the given instance differ from
+	 * the values of the circuits that they abstract.
+	 * @requires this.relations() in instance.relations
+	 * @requires options.bitwidth is the bitwidth with which the instance was found
+	 * @return { r: this.relations() | [[ sum(r) ]] != [[ this.operations[r] ]] w.r.t. instance }
+	 */
+	public Set<Relation> spurious(Instance instance, Options options) {
+		final Evaluator eval = new Evaluator(instance, options);
+		final Set<Relation> spurious = new LinkedHashSet<Relation>();
+		for(Map.Entry<Relation, IntExpression> op : operations.entrySet()) {
+			if (eval.evaluate(ints.fromObj(op.getKey())) != eval.evaluate(op.getValue())) {
+				spurious.add(op.getKey());
+			}
+		}
+		return spurious;
+	}
+
+	/**
+	 * Returns the formula that equates the abstract values encoded by the given
+	 * relations with the circuits that they abstract.
+	 * @requires refined in this.relations()
+	 * @return Formula.and({ f: Formula | some r: refined | f = sum(r).eq(this.operations[r]) })
+	 */
+	public Formula refinement(Set<Relation> refined) {
+		final List<Formula> formulas = new ArrayList<Formula>(refined.size());
+		for(Relation r : refined) {
+			formulas.add(ints.fromObj(r).eq(operations.get(r)));
+		}
+		return Formula.and(formulas);
+	}
+
+	/**
+	 * Bounds each relation in this.relations() by the given set of int atoms.
+	 * @requires reals = the atoms that encode the bits of real values
+	 * @effects bounds.relations' = bounds.relations + this.relations() and
+	 *  all r: this.relations() | no bounds.lowerBound'[r] and bounds.upperBound'[r] = reals
+	 */
+	void boundAll(Bounds bounds, TupleSet reals) {
+		for(Relation r : operations.keySet()) {
+			bounds.bound(r, reals);
+		}
+	}
+}
@@ -13,7 +13,10 @@
  */
 package com.ibm.wala.memsat.representation;
 
+import java.util.List;
+
 import kodkod.ast.Expression;
+import kodkod.ast.visitor.AbstractReplacer;
 
 
 
@@ -48,4 +51,34 @@ public abstract class HeapExpression<T> {
 	 * @return Expression encoding this.walaField.getInstanceKey()
 	 */
 	public abstract Expression instances();
+	
+	/**
+	 * Returns the expressions that encode the contents of this heap expression:
+	 * the field relation of a field, or the value expressions of an array, 
+	 * one for each index.  The contents of heap expressions that represent 
+	 * the same field or array line up by position.
+	 * @return expressions that encode the contents of this heap expression
+	 */
+	public abstract List<Expression> contents();
+	
+	/**
+	 * Returns a heap expression that represents the same field or array as 
+	 * this one, but whose contents are encoded by fresh relations with the 
+	 * given name prefix.  The returned expression serves as a placeholder 
+	 * for any value of this field or array.
+	 * @return { h: HeapExpression<T> | h.walaField = this.walaField and 
+	 *  h.valueInterpreter = this.valueInterpreter and h.instances() = this.instances() and
+	 *  all i: [0..#h.contents()) | h.contents()[i] in Relation and 
+	 *   h.contents()[i].arity = this.contents()[i].arity }
+	 */
+	public abstract HeapExpression<T> placeholder(String name);
+	
+	/**
+	 * Returns the heap expression obtained by applying the given replacer
+	 * to the contents of this heap expression.
+	 * @return { h: HeapExpression<T> | h.walaField = this.walaField and 
+	 *  h.valueInterpreter = this.valueInterpreter and h.instances() = this.instances() and
+	 *  all i: [0..#h.contents()) | h.contents()[i] = this.contents()[i].accept(replacer) }
+	 */
+	public abstract HeapExpression<T> substitute(AbstractReplacer replacer);
 }
@@ -16,6 +16,7 @@ package com.ibm.wala.memsat.representation;
 import java.util.Collection;
 
 import com.ibm.wala.memsat.frontEnd.IRType;
+import com.ibm.wala.memsat.util.NodeFactory;
 
 import kodkod.ast.Expression;
 import kodkod.ast.Formula;
@@ -75,6 +76,13 @@ public abstract class Interpreter<T> {
 	 */
 	abstract T phi(Collection<? extends T> phis);
 	
+	/**
+	 * Returns the node factory used to build the values of this.type, and 
+	 * the heap expressions that hold them, in the translation that owns this interpreter.
+	 * @return node factory used by this interpreter
+	 */
+	abstract NodeFactory nodes();
+	
 	/**
 	 * Returns the expression corresponding to this.defaultValue
 	 * @return toExpr(this.defalutValue)
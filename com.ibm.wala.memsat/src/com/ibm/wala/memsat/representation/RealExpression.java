@@ -20,11 +20,13 @@ import java.util.stream.Collectors;
 
 import com.ibm.wala.memsat.frontEnd.IRType;
 import com.ibm.wala.memsat.math.FloatingPoint;
+import com.ibm.wala.memsat.util.NodeFactory;
 
 import kodkod.ast.Expression;
 import kodkod.ast.Formula;
 import kodkod.ast.IntConstant;
 import kodkod.ast.IntExpression;
+import kodkod.ast.visitor.AbstractReplacer;
 import kodkod.engine.Evaluator;
 import kodkod.instance.Bounds;
 import kodkod.instance.TupleSet;
@@ -48,9 +50,9 @@ public final class RealExpression  {
 	}
 	
 	/**
-	 * Constructs a new real expression from the given int expression.
+	 * Constructs a new real expression whose bits are given by the specified int expression.
 	 */
-	private RealExpression(IntExpression expr) { 
+	RealExpression(IntExpression expr) { 
 		this.value = expr;
 	}
 	
@@ -83,12 +85,14 @@ public final class RealExpression  {
 			@Override
       public boolean singletonEncoding() { return intInterpreter.singletonEncoding(); }
 			@Override
+      NodeFactory nodes() { return intInterpreter.nodes(); }
+			@Override
       RealExpression phi(Collection<? extends RealExpression> phis) {
 			  final List<IntExpression> ints = phis.stream().map(phi -> phi.intBits()).collect(Collectors.toList());
 				if (phis.size() == 1) {
 				  return phis.iterator().next();
 				} else {
-				  return new RealExpression(IntExpression.or(ints));
+				  return new RealExpression(intInterpreter.phi(ints));
 				}
 			}
 		};
@@ -260,4 +264,14 @@ public final class RealExpression  {
 	public IntExpression intBits() {
 	  return value;
 	}
+	
+	/**
+	 * Returns the real expression obtained by applying the given 
+	 * replacer to the int expression that represents this real value.
+	 * @return { r: RealExpression | r.intBits() = this.intBits().accept(replacer) }
+	 */
+	public final RealExpression substitute(AbstractReplacer replacer) { 
+		final IntExpression sub = value.accept(replacer);
+		return sub==value ? this : new RealExpression(sub);
+	}
 }
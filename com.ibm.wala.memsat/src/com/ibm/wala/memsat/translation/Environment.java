@@ -15,6 +15,7 @@ package com.ibm.wala.memsat.translation;
 
 import java.util.ArrayList;
 import java.util.EmptyStackException;
+import java.util.HashMap;
 import java.util.Iterator;
 import java.util.LinkedHashMap;
 import java.util.List;
@@ -63,6 +64,7 @@ import kodkod.util.collections.Stack;
  * @specfield top: lone frames.elems[0]
  * @specfield factory: ExpressionFactory // factory for creating Kodkod representations of constants, initial heap values, etc.
  * @specfield instantiated: factory.info.relevantClasses ->one int 
+ * @specfield allocations: int // total number of instances handed out so far, i.e. sum(instantiated[factory.info.relevantClasses])
  * 
  * @invariant no top.call // the entry point method doesn't have a call instruction associated with it.
  * @invariant all c: factory.info.relevantClasses | 0 <= instantiated[c] < factory.info.cardinality(c)
@@ -74,10 +76,11 @@ public final class Environment {
 	private Frame top;
 	private Stack<CallSite> callStack;
 	private final Map<InstanceKey, Iterator<Expression>> nextObj;
+	private int allocations;
 	/**
 	 * Creates a new empty environment that will generate initial values using the given expression factory.
 	 * @effects no this.frames' and this.factory' = factory and
-	 * this.instantiated' = factory.info.relevantClasses -> 0
+	 * this.instantiated' = factory.info.relevantClasses -> 0 and this.allocations' = 0
 	 */
 	public Environment(ExpressionFactory factory) {
 		assert factory != null;
@@ -90,6 +93,7 @@ public final class Environment {
 		for(InstanceKey key : factory.info().relevantClasses()) { 
 			nextObj.put(key, factory.constants().instances(key));
 		}
+		this.allocations = 0;
 	}
 	
 	/**
@@ -119,6 +123,30 @@ public final class Environment {
 		return count;
 	}
 	
+	/**
+	 * Returns the number of recursive occurrences of each of the given nodes 
+	 * in this environment.  Nodes that do not occur in this environment are 
+	 * not mapped.
+	 * @return { n: nodes, c: int | c = this.recursionCount(n) && c > 0 }
+	 */
+	public Map<CGNode, Integer> recursionCounts(Set<CGNode> nodes) { 
+		final Map<CGNode, Integer> counts = new HashMap<CGNode, Integer>();
+		for(Frame frame : frames) { 
+			final CGNode node = frame.callInfo.cgNode();
+			if (nodes.contains(node)) { 
+				final Integer count = counts.get(node);
+				counts.put(node, count==null ? 1 : count+1);
+			}
+		}
+		return counts;
+	}
+	
+	/**
+	 * Returns the total number of instances handed out by this environment so far.
+	 * @return this.allocations
+	 */
+	public int allocations() { return allocations; }
+	
 	/**
 	 * Returns an unmodifiable view of this environment's call stack, given
 	 * as a stack of call site references.  The view
@@ -230,11 +258,14 @@ public final class Environment {
 	 * given key.
 	 * @requires key in this.factory.info.relevantClasses()
 	 * @requires this.instantiated[key] < this.factory.info.cardinality(key)
-	 * @effects this.instantiated' = this.instantiated ++ key -> (this.instantiated[key]+1)
+	 * @effects this.instantiated' = this.instantiated ++ key -> (this.instantiated[key]+1) and
+	 * this.allocations' = this.allocations + 1
 	 * @return this.factory.instance(key, this.instantiated[key])
 	 */
 	public Expression instantiate(InstanceKey key) { 
-		return nextObj.get(key).next();
+		final Expression obj = nextObj.get(key).next();
+		allocations++;
+		return obj;
 	}
 	
 	/**
@@ -327,35 +358,68 @@ public final class Environment {
 		assert !frames.empty();
 		assert call != null;
 		
-		final Frame caller = top;
-		top = frames.push(new Frame(call, callInfo));
-		
 		// get args 
 		final Object[] args = new Object[call.getNumberOfPositionalParameters()];
 		for(int i = 0; i < args.length; i++) { 
-			args[i] = caller.localUse(call.getUse(i));
+			args[i] = top.localUse(call.getUse(i));
 		}
 		
+		return push(call, callInfo, args, heapArguments(call, callInfo));
+	}
+	
+	/**
+	 * Returns the values of the caller's heap variables that are passed to 
+	 * the given callee by the given call:  i.e. the values of the fields that 
+	 * are used by both the call and the callee, as seen by the caller just 
+	 * before the call.
+	 * @requires some this.frames.elems
+	 * @requires call in this.top.callInfo.cgNode.getIR().getInstructions
+	 * @return { f: PointerKey, h: HeapExpression<?> | some i: this.top.callInfo.fieldSSA.getUses(call) | 
+	 *   f = this.top.callInfo.fieldSSA.getField(i) and f in callInfo.fieldSSA.getFields() and 
+	 *   h = this.top.heapEnv[i] }
+	 */
+	public Map<PointerKey, HeapExpression<?>> heapArguments(SSAAbstractInvokeInstruction call, WalaCGNodeInformation callInfo) { 
+		final FieldSSATable callerFSSA = top.callInfo.fieldSSA();
+		final Set<PointerKey> used = Iterator2Collection.toSet(callInfo.fieldSSA().getFields());
+		final Map<PointerKey, HeapExpression<?>> heap = new LinkedHashMap<PointerKey, HeapExpression<?>>();
+		for(int use : callerFSSA.getUses(call)) {
+		    final PointerKey field = callerFSSA.getField(use);
+		    if (used.contains(field)) {
+		    	heap.put(field, top.heapUse(use));
+		    }
+		}
+		return heap;
+	}
+	
+	/**
+	 * Pushes a new frame for the given call onto the existing environment stack and 
+	 * returns this environment.  The local and heap environment are populated 
+	 * using the given argument and heap values, instead of the caller's environment.
+	 * @requires some this.frames.elems
+	 * @requires call in this.top.callInfo.cgNode.getIR().getInstructions
+	 * @requires callInfo in this.top.callInfo.cgNode.getPossibleTargets(call.getCallSite())
+	 * @requires args.length = call.getNumberOfPositionalParameters()
+	 * @requires heap.keySet() in callInfo.fieldSSA.getFields()
+	 * @effects this.frames.push(this.top') and
+	 * this.top'.call = call and this.top'.callInfo = callInfo and 
+	 * (all i: [1..args.length] | this.top'.localEnv[i] = args[i-1]) and 
+	 * (all f: heap.keySet() | this.top'.heapEnv[callInfo.fieldSSA.getEntryValue(f)] = heap.get(f))
+	 * @return this
+	 */
+	public Environment push(SSAAbstractInvokeInstruction call, WalaCGNodeInformation callInfo, 
+			Object[] args, Map<PointerKey, ? extends HeapExpression<?>> heap) {
+		assert !frames.empty();
+		assert call != null;
+		
+		top = frames.push(new Frame(call, callInfo));
+		
 		// define the args and constants
 		defConstants(args);
 		
 		// initialize heap
 		final FieldSSATable calleeFSSA = callInfo.fieldSSA();
-		final FieldSSATable callerFSSA = caller.callInfo.fieldSSA();
-		
-		final Set<PointerKey> used = Iterator2Collection.toSet(calleeFSSA.getFields());
-		for(int use : callerFSSA.getUses(call)) {
-//			System.out.println("used field: " + callerFSSA.getField(use));
-//			System.out.println("used field value: " + caller.heapUse(use));
-//			if (caller.heapUse(use)==null) { 
-//				System.out.println("relevant field? " + factory.info().relevantFields().contains(callerFSSA.getField(use)));
-//				System.out.println("factory field value: " + factory.valueOf(callerFSSA.getField(use)));
-//			}
-//			System.out.println("HERE::"+callerFSSA.getField(use)+"::"+calleeFSSA.getEntryValue(callerFSSA.getField(use)));
-		    PointerKey field = callerFSSA.getField(use);
-		    if (used.contains(field)) {
-		    	top.heapDef(calleeFSSA.getEntryValue(field), caller.heapUse(use));
-		    }
+		for(Map.Entry<PointerKey, ? extends HeapExpression<?>> entry : heap.entrySet()) { 
+			top.heapDef(calleeFSSA.getEntryValue(entry.getKey()), entry.getValue());
 		}
 		
 		return this;
@@ -14,6 +14,7 @@
 package com.ibm.wala.memsat.translation;
 
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Iterator;
 import java.util.LinkedHashMap;
 import java.util.List;
@@ -30,6 +31,7 @@ import com.ibm.wala.memsat.frontEnd.FieldSSATable;
 import com.ibm.wala.memsat.frontEnd.IRType;
 import com.ibm.wala.memsat.representation.ArrayExpression;
 import com.ibm.wala.memsat.representation.FieldExpression;
+import com.ibm.wala.memsat.util.NodeFactory;
 import com.ibm.wala.shrike.shrikeBT.ConditionalBranchInstruction;
 import com.ibm.wala.ssa.ISSABasicBlock;
 import com.ibm.wala.ssa.SSAAbstractInvokeInstruction;
@@ -82,6 +84,7 @@ final class GuardHandler {
 	private final FieldSSATable fieldSSA;
 	private final Set<TranslationWarning> warnings;
 	private final Expression nil;
+	private final NodeFactory nodes;
 	
 	
 	/**
@@ -101,6 +104,7 @@ final class GuardHandler {
 		this.instructionToBlock = new LinkedHashMap<SSAInstruction, SSACFG.BasicBlock>();
 		this.nonNullGuards = new LinkedHashMap<Expression, Formula>();
 		this.nil = env.factory().constants().nil();
+		this.nodes = env.factory().constants().nodes();
 		
 		for(Iterator<ISSABasicBlock> bbs = node.getIR().getControlFlowGraph().iterator(); bbs.hasNext(); ) {
 			SSACFG.BasicBlock bb = (SSACFG.BasicBlock)bbs.next();
@@ -132,7 +136,7 @@ final class GuardHandler {
 	 * @return this.methodEntryGuard && relativeEntryGuard(inst)
 	 */
 	final Formula absoluteEntryGuard(SSAInstruction inst) { 
-		return methodEntryGuard.and(relativeEntryGuard(inst));
+		return nodes.and(methodEntryGuard, relativeEntryGuard(inst));
 	}
 	
 	/**
@@ -162,12 +166,12 @@ final class GuardHandler {
 				normalExits.add(relativeEntryGuard((SSACFG.BasicBlock)normal));
 			} else {
 				normalExits.add(
-						relativeEntryGuard((SSACFG.BasicBlock)normal)
-						.and(edgeGuard((SSACFG.BasicBlock)normal,exit,EdgeType.NORMAL)));
+						nodes.and(relativeEntryGuard((SSACFG.BasicBlock)normal),
+										edgeGuard((SSACFG.BasicBlock)normal,exit,EdgeType.NORMAL)));
 			}
 		}
 		assert !normalExits.isEmpty();
-		return Formula.or(normalExits);
+		return nodes.or(normalExits);
 	}
 	
 	/**
@@ -186,7 +190,7 @@ final class GuardHandler {
 			SSACFG.BasicBlock pb = (SSACFG.BasicBlock)itr.next();
 			int which = com.ibm.wala.cast.ir.cfg.Util.whichPred(cfg, bb, pb);
 			if (cfg.getSuccNodeCount(pb) > 1) { 
-				ret[which] = edgeGuard(pb,bb,type).and(relativeEntryGuard(pb));
+				ret[which] = nodes.and(edgeGuard(pb,bb,type), relativeEntryGuard(pb));
 			} else {
 				ret[which] = relativeEntryGuard(pb);
 			}
@@ -228,9 +232,9 @@ final class GuardHandler {
 						labelGuards.add(edgeGuard(pb, label, EdgeType.NOT_APPLICABLE));
 					}
 					assert !labelGuards.isEmpty();
-					guards.add(relativeEntryGuard(pb).and(Formula.or(labelGuards)));                                        
+					guards.add(nodes.and(relativeEntryGuard(pb), nodes.or(labelGuards)));                                        
 				}
-				guard = Formula.or(guards);
+				guard = nodes.or(guards);
 			}
 
 			blockEntryGuards.put(bb, guard);
@@ -248,7 +252,7 @@ final class GuardHandler {
 	private final Formula nonNullGuard(Expression ref) { 
 		Formula guard = nonNullGuards.get(ref);
 		if (guard==null) { 
-			guard = ref.eq(nil).not();
+			guard = nodes.not(nodes.eq(ref, nil));
 			nonNullGuards.put(ref, guard);
 		} 
 		return guard;
@@ -345,15 +349,15 @@ final class GuardHandler {
 					if (Util.isSwitchDefault(cfg, pb, bb)) {
 						List<Formula> negated = new ArrayList<Formula>();
 						for(IntIterator itr = inst.iterateLabels(); itr.hasNext(); ) {
-							negated.add(v.eq(IntConstant.constant(itr.next())).not());
+							negated.add(nodes.not(nodes.eq(v, IntConstant.constant(itr.next()))));
 						}
-						cases.add(Formula.and(negated));
+						cases.add(nodes.and(negated));
 					} else {
-						cases.add(v.eq(IntConstant.constant(Util.getSwitchLabel(cfg, pb, bb))));
+						cases.add(nodes.eq(v, IntConstant.constant(Util.getSwitchLabel(cfg, pb, bb))));
 					}
 					
 					assert !cases.isEmpty(); // must be true if bb is a successor of pb
-					guard = Formula.or(cases);
+					guard = nodes.or(cases);
 				}
 			}
 			
@@ -379,7 +383,7 @@ final class GuardHandler {
 				if (formula==null) { 
 					guard = trueSucc ? Formula.TRUE : Formula.FALSE;
 				} else {
-					guard = (trueSucc ^ eqTest) ? env.boolUse(left) : env.boolUse(left).not();
+					guard = (trueSucc ^ eqTest) ? env.boolUse(left) : nodes.not(env.boolUse(left));
 				}
 			}
 					
@@ -474,20 +478,14 @@ final class GuardHandler {
 					final IntExpression idx = env.intUse(inst.getIndex());
 				
 					final ArrayExpression<IntExpression> array = env.arrayUse(fieldSSA.getUse(inst, 0));
-					final int card = array.cardinality();
-					final List<Formula> idxMatches = new ArrayList<Formula>(card);
-					for(int i = 0; i < card; i++) { 
-						idxMatches.add( array.index(ref, i).eq(idx) );
-					}
-					
 					final FieldExpression<IntExpression> length = env.fieldUse(fieldSSA.getUse(inst, 1));
 					
 					final Formula nonNullGuard = nonNullGuard(ref);
 					final Formula lengthGuard = idx.lt(length.read(ref));
-					final Formula accessGuard = Formula.or(idxMatches);
-					final Formula normalGuard = Formula.and(nonNullGuard, lengthGuard, accessGuard);	
+					final Formula accessGuard = array.accessible(ref, idx);
+					final Formula normalGuard = nodes.and(Arrays.asList(nonNullGuard, lengthGuard, accessGuard));	
 					
-					guard = normal ? normalGuard : normalGuard.not();
+					guard = normal ? normalGuard : nodes.not(normalGuard);
 				}
 				
 			}
@@ -521,9 +519,9 @@ final class GuardHandler {
 					Formula typeGuard = nullGuard(ref);
 					for(TypeReference t : inst.getDeclaredResultTypes()) {
 						final Expression type = env.factory().constants().valueOf(t);
-						typeGuard = typeGuard.or(ref.in(type));
+						typeGuard = nodes.or(typeGuard, nodes.in(ref, type));
 					}
-					guard = normal ? typeGuard : typeGuard.not();
+					guard = normal ? typeGuard : nodes.not(typeGuard);
 				}
 			}
 						
@@ -553,7 +551,7 @@ final class GuardHandler {
 					}
 				} else if (exceptional){
 					if (callExitGuards.containsKey(inst)){
-						guard = callExitGuards.get(inst).not();
+						guard = nodes.not(callExitGuards.get(inst));
 					} else {
 						guard = Formula.FALSE;
 					}
@@ -16,7 +16,10 @@ package com.ibm.wala.memsat.translation;
 import static com.ibm.wala.memsat.util.Strings.repeat;
 
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
 import java.util.Iterator;
 import java.util.LinkedHashMap;
 import java.util.LinkedHashSet;
@@ -50,6 +53,7 @@ import com.ibm.wala.memsat.frontEnd.WalaInformation;
 import com.ibm.wala.memsat.representation.ExpressionFactory;
 import com.ibm.wala.memsat.representation.FieldExpression;
 import com.ibm.wala.memsat.representation.HeapExpression;
+import com.ibm.wala.memsat.representation.Interpreter;
 import com.ibm.wala.memsat.representation.PhiExpression;
 import com.ibm.wala.memsat.representation.RealExpression;
 import com.ibm.wala.memsat.translation.Environment.Frame;
@@ -84,10 +88,14 @@ import com.ibm.wala.ssa.SSAThrowInstruction;
 import com.ibm.wala.ssa.SSAUnaryOpInstruction;
 import com.ibm.wala.types.MethodReference;
 import com.ibm.wala.types.TypeReference;
+import com.ibm.wala.util.graph.traverse.DFS;
 
 import kodkod.ast.Expression;
 import kodkod.ast.Formula;
 import kodkod.ast.IntExpression;
+import kodkod.ast.Node;
+import kodkod.ast.Relation;
+import kodkod.ast.visitor.AbstractReplacer;
 import kodkod.util.ints.IndexedEntry;
 
 /**
@@ -98,18 +106,32 @@ import kodkod.util.ints.IndexedEntry;
  * the method's loop-unrolled body. If a specialized translator is available,
  * however, it will be used instead.
  * 
+ * <p>If {@linkplain com.ibm.wala.memsat.Options#summarizeMethods() method summaries} are 
+ * enabled and the code is sequential, a called method is translated only once for all 
+ * call sites that reach it with the same recursion depths and the same set of heap 
+ * arguments.  The translation is computed with respect to placeholders for the 
+ * arguments and the heap, and a true entry guard, and then instantiated at each 
+ * call site by replacing the placeholders with the actual values.  The instances 
+ * share all subformulas that do not depend on the placeholders.</p>
+ * 
  * @author Emina Torlak
  */
 @SuppressWarnings("unused")
 public final class Translator implements MethodTranslator {
 
 	private final SpecialTranslatorFactory specialTransls;
+	private final Map<List<Object>, Summary> summaries;
+	private final Map<CGNode, Set<CGNode>> reachable;
+	private final Set<CGNode> allocating;
 	
 	/**
 	 * Constructs a new generic method translator.
 	 */
 	Translator(SpecialTranslatorFactory specialTranslFactory) {
 		this.specialTransls =specialTranslFactory;
+		this.summaries = new HashMap<List<Object>, Summary>();
+		this.reachable = new HashMap<CGNode, Set<CGNode>>();
+		this.allocating = new HashSet<CGNode>();
 	}
 
 	/**
@@ -398,8 +420,11 @@ public final class Translator implements MethodTranslator {
 				typeGuard = Formula.TRUE;
 			}
 			
-			final MethodTranslation result = translate(guardHandler.absoluteEntryGuard(call).and(typeGuard),
-					env.push(call, info.cgNodeInformation(target)), memoryHandler);
+			final Formula entryGuard = guardHandler.absoluteEntryGuard(call).and(typeGuard);
+			final WalaCGNodeInformation targetInfo = info.cgNodeInformation(target);
+			final MethodTranslation result = summarize(target) ? 
+					instantiate(entryGuard, call, targetInfo) :
+					translate(entryGuard, env.push(call, targetInfo), memoryHandler);
 			
 			// get all assertions and warnings
 			assertions.addAll(result.assertions());
@@ -444,6 +469,78 @@ public final class Translator implements MethodTranslator {
 			return true;
 		}
 	
+		/**
+		 * Returns true if calls to the given target should be translated by 
+		 * instantiating its summary.  Summaries are used only for generic translations 
+		 * of sequential code, and only for targets that do not allocate objects.  They
+		 * are not used with sparse arrays, whose pending stores cannot be bound to placeholders.
+		 * @return factory.options.summarizeMethods() && !factory.options.sparseArrays() && 
+		 *  no factory.options.memoryModel() && 
+		 *  no specialTransls.translatorFor(target.getMethod().getReference()) && target !in allocating
+		 */
+		private boolean summarize(CGNode target) { 
+			return factory.options().summarizeMethods() && !factory.options().sparseArrays() && 
+				factory.options().memoryModel()==null &&
+				!specialTransls.hasTranslatorFor(target.getMethod().getReference()) && 
+				!allocating.contains(target);
+		}
+		
+		/**
+		 * Returns the nodes reachable from the given node in the call graph, including the node itself.
+		 * @return target.*(factory.info.callGraph.edges)
+		 */
+		private Set<CGNode> reachable(CGNode target) { 
+			Set<CGNode> nodes = reachable.get(target);
+			if (nodes==null) { 
+				nodes = DFS.getReachableNodes(factory.info().callGraph(), Collections.singleton(target));
+				reachable.put(target, nodes);
+			}
+			return nodes;
+		}
+		
+		/**
+		 * Returns the translation of the given call to the method described by targetInfo, 
+		 * obtained by instantiating the method's summary with the given entry guard and 
+		 * with the call's arguments and heap.  The summary is computed first, if needed.  
+		 * It is keyed by the target, the number of times that each method reachable from 
+		 * the target occurs in this.env, and the fields passed to the target, since these 
+		 * determine how the target's body (including nested calls, which are cut off at 
+		 * factory.options.recursionLimit) is translated.  A summary whose computation 
+		 * allocates objects is not reused, and its target is never summarized again.
+		 * @requires this.summarize(targetInfo.cgNode())
+		 * @effects computes the summary for the given call, if needed, and caches it if possible
+		 * @return translation of the given call, as given by the summary of its target
+		 */
+		private MethodTranslation instantiate(Formula entryGuard, SSAAbstractInvokeInstruction call, WalaCGNodeInformation targetInfo) { 
+			final CGNode target = targetInfo.cgNode();
+			final Object[] args = new Object[call.getNumberOfPositionalParameters()];
+			for(int i = 0; i < args.length; i++) { 
+				args[i] = env.localUse(call.getUse(i));
+			}
+			final Map<PointerKey, HeapExpression<?>> heap = env.heapArguments(call, targetInfo);
+			// a field that the caller has not defined before the call has no value to pass, 
+			// so the callee reads it as it would without a summary:  from an undefined heap entry
+			for(Iterator<HeapExpression<?>> itr = heap.values().iterator(); itr.hasNext(); ) { 
+				if (itr.next()==null) itr.remove();
+			}
+			
+			final List<Object> key = Arrays.<Object>asList(target, 
+					env.recursionCounts(reachable(target)), new HashSet<PointerKey>(heap.keySet()));
+			Summary summary = summaries.get(key);
+			if (summary==null) { 
+				summary = new Summary(factory, target, args, heap);
+				final int allocations = env.allocations();
+				summary.translation = translate(Formula.TRUE, 
+						env.push(call, targetInfo, summary.args, summary.heap), memoryHandler);
+				if (env.allocations()==allocations) { 
+					summaries.put(key, summary);
+				} else {
+					allocating.add(target);
+				}
+			}
+			return summary.instantiate(entryGuard, call, args, heap, factory.options().assertsAreAssumptions());
+		}
+		
 		/** @effects translates the code for the given call instruction and sets inst.getDef(),
 		 * if any, to the returned value */
 		public final void visitAbstractInvoke(SSAAbstractInvokeInstruction inst) { 
@@ -730,11 +827,11 @@ public final class Translator implements MethodTranslator {
 			case REAL : 
 				final RealExpression r0 = env.realUse(use0), r1 = env.realUse(use1);
 				switch(op) { 
-				case ADD	: env.localDef(def, r0.plus(r1)); break;
-				case DIV	: env.localDef(def, r0.divide(r1)); break;
-				case MUL	: env.localDef(def, r0.multiply(r1)); break;
+				case ADD	: env.localDef(def, factory.floats().real(r0.plus(r1))); break;
+				case DIV	: env.localDef(def, factory.floats().real(r0.divide(r1))); break;
+				case MUL	: env.localDef(def, factory.floats().real(r0.multiply(r1))); break;
 				case REM	: env.localDef(def, r0.modulo(r1)); break; 
-				case SUB	: env.localDef(def, r0.minus(r1)); break;
+				case SUB	: env.localDef(def, factory.floats().real(r0.minus(r1))); break;
 				default		: throw new AssertionError("unreachable"); }
 				break;				
 			default : throw new AssertionError("unreachable");
@@ -818,13 +915,13 @@ public final class Translator implements MethodTranslator {
 				final IntExpression i = env.intUse(use);
 				switch(to) {
 				case INTEGER 	: env.localDef(def, i); break;
-				case REAL 		: env.localDef(def, RealExpression.fromIntExpr(i)); break;
+				case REAL 		: env.localDef(def, factory.floats().real(RealExpression.fromIntExpr(i))); break;
 				default			: throw new AssertionError("unreachable"); }
 				break;			
 			case REAL : 
 				final RealExpression r = env.realUse(use);
 				switch(to) {
-				case INTEGER 	: env.localDef(def, r.toIntExpr()); break;
+				case INTEGER 	: env.localDef(def, factory.floats().integer(r.toIntExpr())); break;
 				case REAL 		: env.localDef(def, r); break;
 				default			: throw new AssertionError("unreachable"); }
 				break;			
@@ -860,4 +957,139 @@ public final class Translator implements MethodTranslator {
 			warn(inst, "operator not modelled");
 		}	
 	}
+	
+	/*------------------ METHOD SUMMARIES ------------------ */
+	
+	/**
+	 * The translation of a method with respect to placeholder arguments 
+	 * and heap values, and a true entry guard.
+	 * 
+	 * @specfield args: Object[] // placeholders for the arguments
+	 * @specfield heap: PointerKey -> HeapExpression // placeholders for the heap arguments
+	 * @specfield translation: MethodTranslation // translation of the method with respect to this.args and this.heap
+	 */
+	private static final class Summary { 
+		final Object[] args;
+		final Relation[] argRelations;
+		final Interpreter<?>[] argInterpreters;
+		final Map<PointerKey, HeapExpression<?>> heap;
+		MethodTranslation translation;
+		
+		/**
+		 * Creates placeholders for the given arguments and heap values of the given target.  
+		 * Each argument placeholder is obtained by interpreting a fresh relation as a value 
+		 * of the argument's type.
+		 * @requires null !in heap.values()
+		 * @effects this.args'.length = args.length and this.heap'.keySet() = heap.keySet() and 
+		 * no this.translation'
+		 */
+		Summary(ExpressionFactory factory, CGNode target, Object[] args, Map<PointerKey, HeapExpression<?>> heap) { 
+			final String name = target.getMethod().getName().toString();
+			this.args = new Object[args.length];
+			this.argRelations = new Relation[args.length];
+			this.argInterpreters = new Interpreter<?>[args.length];
+			for(int i = 0; i < args.length; i++) { 
+				final Interpreter<Object> interpreter = factory.constants().interpreter(typeOf(args[i]));
+				argInterpreters[i] = interpreter;
+				argRelations[i] = Relation.nary(name + "@arg" + i, interpreter.defaultObj().arity());
+				this.args[i] = interpreter.fromObj(argRelations[i]);
+			}
+			this.heap = new LinkedHashMap<PointerKey, HeapExpression<?>>();
+			int i = 0;
+			for(Map.Entry<PointerKey, HeapExpression<?>> entry : heap.entrySet()) { 
+				this.heap.put(entry.getKey(), entry.getValue().placeholder(name + "@heap" + (i++)));
+			}
+		}
+		
+		/**
+		 * Returns the IRType of the given value.
+		 * @return IRType of the given value
+		 */
+		private static IRType typeOf(Object value) { 
+			if (value instanceof Formula) return IRType.BOOLEAN;
+			else if (value instanceof IntExpression) return IRType.INTEGER;
+			else if (value instanceof RealExpression) return IRType.REAL;
+			else return IRType.OBJECT;
+		}
+		
+		/**
+		 * Returns the result of replacing the placeholders in the given value 
+		 * using the given replacer.
+		 * @requires value in Node + RealExpression
+		 * @return value with its placeholders replaced
+		 */
+		private static Object substitute(Object value, AbstractReplacer replacer) { 
+			if (value==null) return null;
+			else if (value instanceof RealExpression) return ((RealExpression)value).substitute(replacer);
+			else return ((Node)value).accept(replacer);
+		}
+		
+		/**
+		 * Returns the translation of the given call, obtained by replacing this.args and 
+		 * this.heap in this.translation with the given arguments and heap values.  The 
+		 * assertions and assumptions are conjoined with, or implied by, the given entry guard, 
+		 * as they would have been had the call been translated with that guard. 
+		 * @requires some this.translation 
+		 * @requires args.length = this.args.length and heap.keySet() = this.heap.keySet()
+		 * @requires null !in heap.values()
+		 * @return translation of the given call, obtained by instantiating this summary
+		 */
+		@SuppressWarnings("unchecked")
+		MethodTranslation instantiate(final Formula entryGuard, SSAAbstractInvokeInstruction call, 
+				Object[] args, Map<PointerKey, HeapExpression<?>> heap, boolean assertsAreAssumptions) { 
+			final Map<Node, Node> bindings = new HashMap<Node, Node>();
+			for(int i = 0; i < args.length; i++) { 
+				bindings.put(argRelations[i], ((Interpreter<Object>)argInterpreters[i]).toObj(args[i]));
+				if (args[i] instanceof RealExpression) { 
+					bindings.put(((RealExpression)this.args[i]).intBits(), ((RealExpression)args[i]).intBits());
+				} else {
+					bindings.put((Node)this.args[i], (Node)args[i]);
+				}
+			}
+			for(Map.Entry<PointerKey, HeapExpression<?>> entry : this.heap.entrySet()) { 
+				final List<Expression> placeholders = entry.getValue().contents();
+				final List<Expression> actuals = heap.get(entry.getKey()).contents();
+				assert placeholders.size()==actuals.size();
+				for(int i = 0, max = placeholders.size(); i < max; i++) { 
+					bindings.put(placeholders.get(i), actuals.get(i));
+				}
+			}
+			final AbstractReplacer replacer = Nodes.replacer(bindings);
+			
+			final Set<Formula> assertions = new LinkedHashSet<Formula>();
+			for(Formula assertion : translation.assertions()) { 
+				final Formula sub = assertion.accept(replacer);
+				assertions.add(Nodes.simplify(assertsAreAssumptions ? entryGuard.implies(sub) : entryGuard.and(sub)));
+			}
+			final Set<Formula> assumes = new LinkedHashSet<Formula>();
+			for(Formula assume : translation.assumptions()) { 
+				assumes.add(Nodes.simplify(entryGuard.implies(assume.accept(replacer))));
+			}
+			
+			final Frame summaryFrame = translation.frame();
+			final Frame frame = new Frame(call, summaryFrame.callInfo());
+			final FieldSSATable fieldSSA = frame.callInfo().fieldSSA();
+			for(Iterator<PointerKey> itr = fieldSSA.getFields(); itr.hasNext(); ) { 
+				final int exit = fieldSSA.getExitValue(itr.next());
+				if (exit != -1 && summaryFrame.heapUse(exit) != null) { 
+					frame.heapDef(exit, summaryFrame.heapUse(exit).substitute(replacer));
+				}
+			}
+			
+			final Formula exitGuard = translation.normalExitGuard().accept(replacer);
+			final Object returnValue = substitute(translation.returnValue(), replacer);
+			final Expression exceptionValue = (Expression) substitute(translation.exceptionValue(), replacer);
+			final Set<TranslationWarning> warnings = translation.warnings();
+			
+			return new MethodTranslation() {
+				public Set<Formula> assertions() { return assertions; }
+				public Set<Formula> assumptions() { return assumes; }
+				public Expression exceptionValue() { return exceptionValue; }
+				public Frame frame() { return frame; }
+				public Formula normalExitGuard() { return exitGuard; }
+				public <T> T returnValue() { return (T) returnValue; }
+				public Set<TranslationWarning> warnings() { return warnings; } 
+			};
+		}
+	}
 }
@@ -23,14 +23,19 @@ import static com.ibm.wala.memsat.util.Programs.instructions;
 import static com.ibm.wala.memsat.util.Programs.instructionsOfType;
 import static com.ibm.wala.memsat.util.Programs.visibleWrites;
 
+import java.util.BitSet;
 import java.util.EnumSet;
+import java.util.HashMap;
 import java.util.Iterator;
+import java.util.LinkedHashSet;
+import java.util.Map;
 import java.util.Set;
 
 import com.ibm.wala.memsat.concurrent.Execution;
 import com.ibm.wala.memsat.concurrent.Program.BoundsBuilder;
 import com.ibm.wala.memsat.frontEnd.InlinedInstruction;
 import com.ibm.wala.memsat.frontEnd.WalaInformation;
+import com.ibm.wala.memsat.util.BitSetGraph;
 import com.ibm.wala.ssa.SSAFieldAccessInstruction;
 import com.ibm.wala.util.graph.Graph;
 
@@ -38,6 +43,8 @@ import kodkod.ast.Relation;
 import kodkod.instance.Bounds;
 import kodkod.instance.TupleFactory;
 import kodkod.instance.TupleSet;
+import kodkod.util.ints.IntSet;
+import kodkod.util.ints.Ints;
 
 /**
  * Implementation of the {@linkplain BoundsBuilder} interface based on the
@@ -48,13 +55,14 @@ final class ConcurrentBoundsBuilder implements BoundsBuilder {
 	private final Bounds bounds;
 	private final TupleFactory tuples;
 	private final ConcurrentFactory factory;
-	private final Set<InlinedInstruction> all, writes, memoryAccesses, monitorAccesses;
+	private final Set<InlinedInstruction> all, writes, memoryAccesses, monitorAccesses, executed;
 	private final Graph<InlinedInstruction> visibleWrites;
+	private final Map<InlinedInstruction, int[]> atomIndices;
 	/**
 	 * Constructs a new bounds builder with the given expression factory, initial bounds, and 
-	 * action factory.
+	 * action factory.  The given instructions are those that are executed in every execution.
 	 */
-	public ConcurrentBoundsBuilder(Bounds bounds, ConcurrentFactory acts) {
+	public ConcurrentBoundsBuilder(Bounds bounds, ConcurrentFactory acts, Set<InlinedInstruction> executed) {
 		this.bounds = bounds;
 		this.tuples = bounds.universe().factory();
 		this.factory = acts;
@@ -65,6 +73,12 @@ final class ConcurrentBoundsBuilder implements BoundsBuilder {
 		this.writes = instructionsOfType(all, EnumSet.of(NORMAL_WRITE,VOLATILE_WRITE));
 		this.memoryAccesses = instructionsOfType(all, EnumSet.of(NORMAL_WRITE,VOLATILE_WRITE,NORMAL_READ,VOLATILE_READ));
 		this.monitorAccesses = instructionsOfType(all, EnumSet.of(LOCK, UNLOCK));
+		this.atomIndices = new HashMap<InlinedInstruction, int[]>();
+		this.executed = new LinkedHashSet<InlinedInstruction>();
+		for(InlinedInstruction inst : executed) { 
+			if (actionAtoms(inst).size()==1) 
+				this.executed.add(inst);
+		}
 	}
 	
 
@@ -105,14 +119,93 @@ final class ConcurrentBoundsBuilder implements BoundsBuilder {
 	 * @see com.ibm.wala.memsat.concurrent.Program.BoundsBuilder#boundOrdering(kodkod.ast.Relation, com.ibm.wala.util.graph.Graph)
 	 */
 	public void boundOrdering(Relation r, Graph<InlinedInstruction> insts) {
-		final TupleSet u = tuples.noneOf(2);
-		for(InlinedInstruction inst : insts) { 
-			for(Iterator<? extends InlinedInstruction> succs = insts.getSuccNodes(inst); succs.hasNext(); ) { 
-				final InlinedInstruction succ = succs.next();
-				u.addAll( actionAtoms(inst).product(actionAtoms(succ)) );
+		bounds.bound(r, tuples.setOf(2, upper(insts)));
+	}
+	
+	/**
+	 * {@inheritDoc}
+	 * @see com.ibm.wala.memsat.concurrent.Program.BoundsBuilder#boundTotalOrdering(kodkod.ast.Relation, com.ibm.wala.util.graph.Graph)
+	 */
+	public void boundTotalOrdering(Relation r, Graph<InlinedInstruction> insts) {
+		final int usize = tuples.universe().size();
+		final IntSet l = Ints.bestSet(usize*usize);
+		for(InlinedInstruction i1 : executed) { 
+			if (!insts.containsNode(i1)) continue;
+			for(InlinedInstruction i2 : executed) { 
+				if (!insts.containsNode(i2) || !insts.hasEdge(i1, i2)) continue;
+				if (i1.equals(i2) || (!insts.hasEdge(i2, i1) && !factory.mayShareActions(i1, i2))) { 
+					addProduct(l, usize, atomIndices(i1), atomIndices(i2));
+				}
+			}
+		}
+		bounds.bound(r, tuples.setOf(2, l), tuples.setOf(2, upper(insts)));
+	}
+	
+	/**
+	 * Returns the indices of the tuples in the upper bound on an ordering over the given instructions.
+	 * @return { i: int | some i1, i2: InlinedInstruction | insts.hasEdge(i1, i2) && 
+	 *  i in actionAtoms(i1).indexView()*usize + actionAtoms(i2).indexView() }
+	 */
+	private IntSet upper(Graph<InlinedInstruction> insts) {
+		final int usize = tuples.universe().size();
+		final IntSet u = Ints.bestSet(usize*usize);
+		if (insts instanceof BitSetGraph) { 
+			final BitSetGraph<InlinedInstruction> g = (BitSetGraph<InlinedInstruction>) insts;
+			final int[][] atoms = new int[g.universeSize()][];
+			for(int i = g.nextNode(0); i >= 0; i = g.nextNode(i+1)) { 
+				final BitSet succs = g.successors(i);
+				if (succs.isEmpty()) continue;
+				final int[] src = atomIndices(atoms, g, i);
+				for(int j = succs.nextSetBit(0); j >= 0; j = succs.nextSetBit(j+1)) { 
+					addProduct(u, usize, src, atomIndices(atoms, g, j));
+				}
+			}
+		} else {
+			for(InlinedInstruction inst : insts) { 
+				final int[] src = atomIndices(inst);
+				for(Iterator<? extends InlinedInstruction> succs = insts.getSuccNodes(inst); succs.hasNext(); ) { 
+					addProduct(u, usize, src, atomIndices(succs.next()));
+				}
+			}
+		}
+		return u;
+	}
+	
+	/**
+	 * Returns the indices of the atoms that represent the actions that can be performed by the given instruction.
+	 * @return actionAtoms(inst).indexView().toArray()
+	 */
+	private int[] atomIndices(InlinedInstruction inst) { 
+		int[] indices = atomIndices.get(inst);
+		if (indices == null) { 
+			indices = actionAtoms(inst).indexView().toArray();
+			atomIndices.put(inst, indices);
+		}
+		return indices;
+	}
+	
+	/**
+	 * Returns the indices of the atoms that represent the actions that can be performed by the 
+	 * instruction with the given index in g, caching them in the given array.
+	 * @return atomIndices(g.node(index))
+	 */
+	private int[] atomIndices(int[][] atoms, BitSetGraph<InlinedInstruction> g, int index) { 
+		if (atoms[index] == null) 
+			atoms[index] = atomIndices(g.node(index));
+		return atoms[index];
+	}
+	
+	/**
+	 * Adds the indices of the binary tuples in the cross product of the given atoms to the given set.
+	 * @effects u.elements' = u.elements + { i: int | some a: src, b: dst | i = a*usize + b }
+	 */
+	private static void addProduct(IntSet u, int usize, int[] src, int[] dst) { 
+		for(int a : src) { 
+			final int base = a * usize;
+			for(int b : dst) { 
+				u.add(base + b);
 			}
 		}
-		bounds.bound(r,u);
 	}
 
 	/**
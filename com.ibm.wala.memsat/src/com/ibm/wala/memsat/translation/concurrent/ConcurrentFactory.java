@@ -25,11 +25,15 @@ import static com.ibm.wala.memsat.util.Programs.valueFor;
 import static com.ibm.wala.memsat.util.Strings.fieldNames;
 import static com.ibm.wala.memsat.util.Strings.instructionNames;
 
+import java.util.ArrayList;
+import java.util.Collection;
 import java.util.Collections;
 import java.util.EnumMap;
+import java.util.HashMap;
 import java.util.Iterator;
 import java.util.LinkedHashMap;
 import java.util.LinkedHashSet;
+import java.util.List;
 import java.util.Map;
 import java.util.Set;
 
@@ -294,6 +298,33 @@ final class ConcurrentFactory {
 		return intersects( instAtoms.get(inst1), instAtoms.get(inst2) );
 	}
 	
+	/**
+	 * Returns the instructions in the given collection whose upper bounds on the actions 
+	 * (as given by {@linkplain #actionAtoms(TupleFactory, InlinedInstruction)}) intersect
+	 * the upper bound of some other instruction in the collection, in the order of the collection.
+	 * @requires insts in this.insts
+	 * @return { i: insts | some j: insts - i | mayShareActions(i, j) }
+	 */
+	public final List<InlinedInstruction> sharingActions(Collection<InlinedInstruction> insts) { 
+		final Map<Object, Integer> uses = new HashMap<Object, Integer>();
+		for(InlinedInstruction inst : insts) { 
+			for(Object atom : instAtoms.get(inst)) { 
+				final Integer count = uses.get(atom);
+				uses.put(atom, count==null ? 1 : count+1);
+			}
+		}
+		final List<InlinedInstruction> sharing = new ArrayList<InlinedInstruction>();
+		for(InlinedInstruction inst : insts) { 
+			for(Object atom : instAtoms.get(inst)) { 
+				if (uses.get(atom) > 1) { 
+					sharing.add(inst);
+					break;
+				}
+			}
+		}
+		return sharing;
+	}
+	
 	/**
 	 * Returns a tupleset containing all actions that the given instruction may perform.
 	 * @requires inst in this.insts 
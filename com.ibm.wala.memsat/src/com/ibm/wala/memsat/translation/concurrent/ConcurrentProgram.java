@@ -16,11 +16,14 @@ package com.ibm.wala.memsat.translation.concurrent;
 import static com.ibm.wala.memsat.util.Graphs.nodes;
 import static com.ibm.wala.memsat.util.Graphs.root;
 import static com.ibm.wala.memsat.util.Graphs.transitiveClosure;
+import static com.ibm.wala.memsat.util.Programs.instructions;
 
+import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Iterator;
 import java.util.LinkedHashMap;
 import java.util.LinkedHashSet;
+import java.util.List;
 import java.util.Map;
 import java.util.Set;
 
@@ -58,6 +61,7 @@ final class ConcurrentProgram implements Program {
 	private final Map<CGNode, Relation> threads;
 	private final Relation /* Action ->one Thread */ thread;
 	private final Relation /* Thread -> Thread */ endsBefore;
+	private ValidityTemplate template;
 	/**
 	 * Constructs a new ConcurrentProgram using the provided memory handler and translation that
 	 * were generation using the given handler.
@@ -79,6 +83,18 @@ final class ConcurrentProgram implements Program {
 		this.endsBefore = Relation.binary("endsBefore");
 	}
 
+	/**
+	 * Returns the memory handler used to translate this program.
+	 * @return this.handler
+	 */
+	ConcurrentMemoryHandler handler() { return handler; }
+	
+	/**
+	 * Returns the translations of this program's threads.
+	 * @return this.transls
+	 */
+	Map<CGNode,MethodTranslation> translations() { return transls; }
+	
 	/**
 	 * {@inheritDoc}
 	 * @see com.ibm.wala.memsat.concurrent.Program#allOf(com.ibm.wala.memsat.frontEnd.InlinedInstruction.Action[])
@@ -137,86 +153,196 @@ final class ConcurrentProgram implements Program {
 
 	/**
 	 * {@inheritDoc}
+	 * <p>The validity constraints are generated once, over placeholder execution relations, 
+	 * and each call instantiates them by substituting the relations of the given execution 
+	 * for the placeholders.</p>
 	 * @see com.ibm.wala.memsat.concurrent.Program#sequentiallyValid(com.ibm.wala.memsat.concurrent.Execution)
 	 */
 	public Formula sequentiallyValid(Execution exec) {
-		final Collection<Formula> sv = new LinkedHashSet<Formula>();
-		
-//		System.out.println("----------------------------");
-//		System.out.println(handler);
+		return template(exec).instantiate(exec);
+	}
+	
+	/**
+	 * Returns the validity template for this program, creating it if necessary.
+	 * @requires exec is an execution of this program
+	 * @return this.template
+	 */
+	private synchronized ValidityTemplate template(Execution exec) { 
+		if (template==null) { 
+			template = new ValidityTemplate(exec);
+		}
+		return template;
+	}
+	
+	/**
+	 * The sequential validity constraints of a program, expressed in terms of placeholder
+	 * relations that stand for the action, location, value, monitor and write-seen relations
+	 * of an execution.  The constraints that hold for every execution are kept separately
+	 * from the assertions, which constrain only non-speculative executions.
+	 * @specfield actions: InlinedInstruction ->one Relation
+	 * @specfield v, w, location, monitor: Relation
+	 * @specfield common, assertions: Formula
+	 */
+	private final class ValidityTemplate { 
+		private final Map<InlinedInstruction, Relation> actions;
+		private final Relation v, w, location, monitor;
+		private final Formula common, assertions;
 		
-		for(Iterator<CGNode> nodes = DFS.iterateDiscoverTime(info.threads(), root(info.threads())); nodes.hasNext(); ) { 
-			final CGNode node = nodes.next();
-			final MethodTranslation transl = transls.get(node);
-			final WalaConcurrentInformation tInfo = info.concurrentInformation(node);
-			final Graph<InlinedInstruction> to = tInfo.threadOrder();
-			final Graph<InlinedInstruction> toClosure = transitiveClosure(to);
+		/**
+		 * Creates the validity template for this program, using placeholders whose
+		 * arities match those of the relations of the given execution.
+		 * @effects this.common' and this.assertions' are the validity constraints of this program 
+		 * for an execution whose relations are this.actions', this.v', this.w', this.location' and this.monitor'
+		 */
+		ValidityTemplate(Execution exec) { 
+			this.actions = new LinkedHashMap<InlinedInstruction, Relation>();
+			this.v = Relation.nary("v", exec.v().arity());
+			this.w = Relation.nary("w", exec.w().arity());
+			this.location = Relation.nary("location", exec.location().arity());
+			this.monitor = Relation.nary("monitor", exec.monitor().arity());
 			
-			for(Iterator<InlinedInstruction> insts = DFS.iterateDiscoverTime(to, tInfo.start()); insts.hasNext(); ) { 
-				final InlinedInstruction inst = insts.next();
-				final Expression action = exec.action(inst);
-				final Formula guard = handler.guardFor(inst);
-				
-//				System.out.println("----------------------------");
-//				System.out.println("INLINED INSTRUCTION: " + inst);
-//				System.out.println("CALL STACK: " + inst.callStack());
-//				System.out.println("INSTRUCTION: " + inst.instruction());
-//				System.out.println("ACTION: " + action);
-//				System.out.println("GUARD: " + guard);
-				
-				sv.add( action.lone() );
-				sv.add( guard.iff(action.some()) );
+			final Collection<Formula> sv = new LinkedHashSet<Formula>();
+			final Collection<Formula> asserts = new LinkedHashSet<Formula>();
+			final boolean compact = factory.base().options().compactDisjointness();
+			
+			for(Iterator<CGNode> nodes = DFS.iterateDiscoverTime(info.threads(), root(info.threads())); nodes.hasNext(); ) { 
+				final CGNode node = nodes.next();
+				final MethodTranslation transl = transls.get(node);
+				final WalaConcurrentInformation tInfo = info.concurrentInformation(node);
+				final Graph<InlinedInstruction> to = tInfo.threadOrder();
+				final Graph<InlinedInstruction> toClosure = compact ? null : transitiveClosure(to);
 				
-				final Expression location = handler.locationOf(inst);
-				if (location!=null) { 
-					sv.add( guard.implies(action.join(exec.location()).eq(location)) );
-					final Expression value = handler.valueWritten(inst);
-					if (value!=null) { 
-						sv.add( guard.implies(action.join(exec.v()).eq(value) ) );
+				final List<InlinedInstruction> threadInsts = new ArrayList<InlinedInstruction>();
+				for(Iterator<InlinedInstruction> insts = DFS.iterateDiscoverTime(to, tInfo.start()); insts.hasNext(); ) { 
+					final InlinedInstruction inst = insts.next();
+					final Expression action = action(inst);
+					threadInsts.add(inst);
+					final Formula guard = handler.guardFor(inst);
+					
+					sv.add( action.lone() );
+					sv.add( guard.iff(action.some()) );
+					
+					final Expression loc = handler.locationOf(inst);
+					if (loc!=null) { 
+						sv.add( guard.implies(action.join(location).eq(loc)) );
+						final Expression value = handler.valueWritten(inst);
+						if (value!=null) { 
+							sv.add( guard.implies(action.join(v).eq(value) ) );
+						}
+					} else {
+						final Expression mon = handler.monitorOf(inst);
+						if (mon!=null) { 
+							sv.add( guard.implies(action.join(monitor).eq(mon)) );
+						}
 					}
-				} else {
-					final Expression monitor = handler.monitorOf(inst);
-					if (monitor!=null) { 
-						sv.add( guard.implies(action.join(exec.monitor()).eq(monitor)) );
+					
+					if (!compact) { 
+						for(Iterator<? extends InlinedInstruction> succs = toClosure.getSuccNodes(inst); succs.hasNext(); ) { 
+							final InlinedInstruction succ = succs.next();
+							if (factory.mayShareActions(inst, succ)) { 
+								sv.add( action.intersection(action(succ)).no() );
+							}
+						}
 					}
 				}
 				
-				for(Iterator<? extends InlinedInstruction> succs = toClosure.getSuccNodes(inst); succs.hasNext(); ) { 
-					final InlinedInstruction succ = succs.next();
-					if (factory.mayShareActions(inst, succ)) { 
-						sv.add( action.intersection(exec.action(succ)).no() );
-					}
+				if (compact) { 
+					sv.addAll( disjoint(factory.sharingActions(threadInsts)) );
+				}
+				
+				sv.addAll( transl.assumptions() );
+			
+				if (factory.base().options().assertsAreAssumptions()) {
+					asserts.addAll(transl.assertions());
+				} else {
+					asserts.add(Formula.or(transl.assertions()));
 				}
 			}
 			
-			sv.addAll( transl.assumptions() );
+			final Map<Relation, Expression> reads = executedReads();
+			this.common = Nodes.replaceAll(Formula.and(sv), reads);
+			this.assertions = Nodes.replaceAll(Formula.and(asserts), reads);
+		}
 		
-			if (!exec.isSpeculative()) { 
-				if (factory.base().options().assertsAreAssumptions()) {
-					sv.addAll(transl.assertions());
+		/**
+		 * Returns constraints that require the actions of the given instructions to be pairwise 
+		 * disjoint.  The constraints form a sequential counter over the action atoms:  the 
+		 * action of each instruction must be disjoint from the union of the actions of the 
+		 * instructions that precede it in the given list, and each union extends the previous one,
+		 * so the size of the constraints is linear in the number of instructions.  Since the 
+		 * instructions of a thread that are not ordered by its thread order are never executed 
+		 * together, these constraints are equivalent to requiring disjointness only for the 
+		 * ordered pairs that may share actions.
+		 * @requires insts are instructions of a single thread
+		 * @return { f: Formula | some i: [1..#insts) | 
+		 *   f = action(insts[i]).intersection(action(insts[0]) + ... + action(insts[i-1])).no() }
+		 */
+		private List<Formula> disjoint(List<InlinedInstruction> insts) { 
+			final List<Formula> formulas = new ArrayList<Formula>();
+			Expression seen = null;
+			for(InlinedInstruction inst : insts) { 
+				final Expression action = action(inst);
+				if (seen==null) { 
+					seen = action;
 				} else {
-					sv.add(Formula.or(transl.assertions()));
+					formulas.add( action.intersection(seen).no() );
+					seen = seen.union(action);
 				}
 			}
+			return formulas;
 		}
-				
-		return Nodes.replaceAll(Formula.and(sv), executedReads(exec));
-	}
-
-	/**
-	 * Returns a map that maps each Relation representing the value of a read instruction
-	 * to an expression for that value in terms of exec.w and exec.v.
-	 * @return a map that maps each Relation representing the value of a read instruction
-	 * to an expression for that value in terms of exec.w and exec.v.
-	 */
-	private final Map<Relation,Expression> executedReads(final Execution exec) { 
-		final Map<Relation, Expression> substitution = new LinkedHashMap<Relation, Expression>();
-		for(Map.Entry<InlinedInstruction, Relation> read : handler.valuesRead().entrySet()) { 
-			final Expression action = exec.action(read.getKey());
-			final Expression val = action.join(exec.w()).join(exec.v());
-			substitution.put(read.getValue(), val);
+		
+		/**
+		 * Returns the placeholder for the action performed by the given instruction,
+		 * creating it if necessary.
+		 * @effects this.actions' = this.actions + (inst in this.actions.Relation => none else inst->r)
+		 *  for some fresh unary relation r
+		 * @return this.actions'[inst]
+		 */
+		private Relation action(InlinedInstruction inst) { 
+			Relation r = actions.get(inst);
+			if (r==null) { 
+				r = Relation.unary("action" + actions.size());
+				actions.put(inst, r);
+			}
+			return r;
+		}
+		
+		/**
+		 * Returns a map that maps each Relation representing the value of a read instruction
+		 * to an expression for that value in terms of this.w and this.v.
+		 * @effects adds a placeholder to this.actions for each read instruction that does not have one
+		 * @return a map that maps each Relation representing the value of a read instruction
+		 * to an expression for that value in terms of this.w and this.v.
+		 */
+		private Map<Relation,Expression> executedReads() { 
+			final Map<Relation, Expression> substitution = new LinkedHashMap<Relation, Expression>();
+			for(Map.Entry<InlinedInstruction, Relation> read : handler.valuesRead().entrySet()) { 
+				substitution.put(read.getValue(), action(read.getKey()).join(w).join(v));
+			}
+			return substitution;
+		}
+		
+		/**
+		 * Returns the validity constraints of this program for the given execution.
+		 * @requires exec is an execution of this program
+		 * @return exec.isSpeculative() ? this.common : this.common and this.assertions, 
+		 * with the placeholders replaced by the corresponding relations of exec
+		 */
+		Formula instantiate(Execution exec) { 
+			assert exec.v().arity()==v.arity() && exec.w().arity()==w.arity();
+			assert exec.location().arity()==location.arity() && exec.monitor().arity()==monitor.arity();
+			final Map<Relation, Relation> substitution = new LinkedHashMap<Relation, Relation>();
+			for(Map.Entry<InlinedInstruction, Relation> action : actions.entrySet()) { 
+				substitution.put(action.getValue(), exec.action(action.getKey()));
+			}
+			substitution.put(v, exec.v());
+			substitution.put(w, exec.w());
+			substitution.put(location, exec.location());
+			substitution.put(monitor, exec.monitor());
+			final Formula formula = exec.isSpeculative() ? common : common.and(assertions);
+			return Nodes.replaceAll(formula, substitution);
 		}
-		return substitution;
 	}
 
 	/**
@@ -232,7 +358,13 @@ final class ConcurrentProgram implements Program {
 		boundThreads(bounds);
 		boundEndsBefore(bounds);
 		
-		return new ConcurrentBoundsBuilder(bounds, factory);
+		final Set<InlinedInstruction> executed = new LinkedHashSet<InlinedInstruction>();
+		for(InlinedInstruction inst : instructions(info)) { 
+			if (handler.guardFor(inst)==Formula.TRUE)
+				executed.add(inst);
+		}
+		
+		return new ConcurrentBoundsBuilder(bounds, factory, executed);
 	}
 
 	/**
@@ -24,10 +24,15 @@ import java.util.Set;
 
 import com.ibm.wala.ipa.callgraph.CGNode;
 import com.ibm.wala.ipa.callgraph.propagation.PointerKey;
+import com.ibm.wala.memsat.Metrics;
+import com.ibm.wala.memsat.Metrics.Phase;
 import com.ibm.wala.memsat.Options;
 import com.ibm.wala.memsat.concurrent.Justification;
+import com.ibm.wala.memsat.concurrent.MemoryModel;
+import com.ibm.wala.memsat.concurrent.Program;
 import com.ibm.wala.memsat.frontEnd.FieldSSATable;
 import com.ibm.wala.memsat.frontEnd.InlinedInstruction;
+import com.ibm.wala.memsat.frontEnd.IntRanges;
 import com.ibm.wala.memsat.frontEnd.WalaConcurrentInformation;
 import com.ibm.wala.memsat.frontEnd.WalaInformation;
 import com.ibm.wala.memsat.representation.HeapExpression;
@@ -44,6 +49,8 @@ import com.ibm.wala.util.collections.Iterator2Set;
 import com.ibm.wala.util.graph.Graph;
 import com.ibm.wala.util.graph.traverse.DFS;
 
+import kodkod.ast.Formula;
+
 /**
  * A translator for concurrent Wala programs.
  * 
@@ -60,6 +67,22 @@ public final class ConcurrentTranslator {
 	 * @return { t : Translation | t.info = info and t.options = options}
 	 */
 	public static ConcurrentTranslation translate(final WalaInformation info, final Options options) { 
+		return translate(info, options, new Metrics());
+	}
+	
+	/**
+	 * Returns the translation of the method described by the 
+	 * given wala information instance, with respect to the 
+	 * specified translation options, and records the cost of 
+	 * justifying the program and simplifying the formula in the given metrics.  
+	 * Since the memory model builds the bounds while justifying the program, 
+	 * justification is recorded as the BOUNDS phase.
+	 * @requires info.threads() > 1
+	 * @return { t : Translation | t.info = info and t.options = options}
+	 * @effects records the BOUNDS and SIMPLIFICATION phases in the given metrics
+	 * @throws com.ibm.wala.util.CancelRuntimeException - the budget of the given metrics runs out before the translation is done
+	 */
+	public static ConcurrentTranslation translate(final WalaInformation info, final Options options, final Metrics metrics) { 
 		
 	  /*
 		System.out.println("RELEVANT CLASSES: " + info.relevantClasses());
@@ -67,18 +90,76 @@ public final class ConcurrentTranslator {
 		System.out.println("THREADS: " + info.threads());
 		*/
 	  
-		final ConcurrentMemoryHandler handler = new ConcurrentMemoryHandler(info,options);
-		final Map<CGNode, MethodTranslation> transls = translate(handler);
-//		System.out.println(handler);
-		final ConcurrentProgram prog = new ConcurrentProgram(handler, transls);
+		final ConcurrentProgram prog = (ConcurrentProgram) program(info, options);
+		metrics.check();
+		metrics.begin(Phase.BOUNDS);
 		final Justification just = options.memoryModel().justify(prog);
+		metrics.end(Phase.BOUNDS);
+		metrics.check();
+		metrics.begin(Phase.SIMPLIFICATION);
+		final ConcurrentTranslation translation = translation(prog, just);
+		metrics.end(Phase.SIMPLIFICATION);
+		return translation;
+	}
+	
+	/**
+	 * Returns the translation obtained by justifying the given program with the given 
+	 * memory model.  The threads of the program are not retranslated, so a program 
+	 * returned by {@linkplain #program(WalaInformation, Options) program(info, options)} 
+	 * can be justified by every memory model that uses the same kind of action atoms as 
+	 * options.memoryModel.  Distinct models may justify the same program concurrently.
+	 * The returned translation shares the expression factory of the program, so its 
+	 * factory's options are the options with which the program was translated:  in particular, 
+	 * t.factory.options.memoryModel is options.memoryModel rather than the given model.  The 
+	 * justification by the given model is t.context.
+	 * @requires prog = program(info, options) for some info and options
+	 * @requires model.usesSpeculation() = options.memoryModel().usesSpeculation()
+	 * @requires model.memoryInstructions() = options.memoryModel().memoryInstructions()
+	 * @return { t : Translation | t.factory.info = info and t.factory.options = options and 
+	 *   t.options = options.kodkodOptions and t.context = model.justify(prog) }
+	 * @throws IllegalArgumentException - prog was not returned by {@linkplain #program(WalaInformation, Options)}, or 
+	 * model.usesSpeculation() != options.memoryModel().usesSpeculation()
+	 */
+	public static ConcurrentTranslation translate(final Program prog, final MemoryModel model) { 
+		if (!(prog instanceof ConcurrentProgram))
+			throw new IllegalArgumentException("not a translated program: " + prog);
+		final ConcurrentProgram cprog = (ConcurrentProgram) prog;
+		if (cprog.handler().factory.base().options().memoryModel().usesSpeculation() != model.usesSpeculation())
+			throw new IllegalArgumentException(model + " and " + cprog.handler().factory.base().options().memoryModel() + " use different action atoms");
+		return translation(cprog, model.justify(cprog));
+	}
+	
+	/**
+	 * Returns the translation that combines the given justification of the given program 
+	 * with the representation invariants of the program's expressions.
+	 * @requires just.prog = prog
+	 * @return the translation that combines the given justification of the given program 
+	 * with the representation invariants of the program's expressions
+	 */
+	private static ConcurrentTranslation translation(ConcurrentProgram prog, Justification just) { 
+		final ConcurrentMemoryHandler handler = prog.handler();
 		final Set<TranslationWarning> warnings = new LinkedHashSet<TranslationWarning>();
-		for(MethodTranslation transl : transls.values()) { 
+		for(MethodTranslation transl : prog.translations().values()) { 
 			warnings.addAll(transl.warnings());
 		}
 		//System.out.println(Strings.prettyPrint(just.formula().and(handler.factory.invariants()), 2));
-		return new ConcurrentTranslation(handler.factory.base(), 
-					Nodes.simplify(just.formula().and(handler.factory.invariants()), just.bounds()), just, warnings, options.kodkodOptions());
+		final Formula formula = Nodes.simplify(just.formula().and(handler.factory.invariants()), just.bounds());
+		return new ConcurrentTranslation(handler.factory.base(), formula, just, warnings, handler.factory.base().options().kodkodOptions());
+	}
+	
+	/**
+	 * Returns the program obtained by translating the threads described by the given 
+	 * wala information instance with respect to the specified options, before it is 
+	 * justified by options.memoryModel.  This lets clients measure or compare 
+	 * {@linkplain MemoryModel#justify(Program) justification} separately from the 
+	 * translation of the threads.  If options.inferBitwidth(), the threads are 
+	 * translated with the bitwidth inferred by {@linkplain IntRanges#adjust(WalaInformation, Options)}.
+	 * @requires info.threads() > 1
+	 * @return the program obtained by translating info.threads with respect to IntRanges.adjust(info, options)
+	 */
+	public static Program program(final WalaInformation info, final Options options) { 
+		final ConcurrentMemoryHandler handler = new ConcurrentMemoryHandler(info, IntRanges.adjust(info, options));
+		return new ConcurrentProgram(handler, translate(handler));
 	}
 	
 	/**
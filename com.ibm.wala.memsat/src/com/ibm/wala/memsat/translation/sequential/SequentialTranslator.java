@@ -13,7 +13,10 @@
  */
 package com.ibm.wala.memsat.translation.sequential;
 
+import com.ibm.wala.memsat.Metrics;
+import com.ibm.wala.memsat.Metrics.Phase;
 import com.ibm.wala.memsat.Options;
+import com.ibm.wala.memsat.frontEnd.IntRanges;
 import com.ibm.wala.memsat.frontEnd.WalaInformation;
 import com.ibm.wala.memsat.representation.ExpressionFactory;
 import com.ibm.wala.memsat.translation.Environment;
@@ -41,27 +44,56 @@ public final class SequentialTranslator {
 	 * @return { t : Translation | t.info = info and t.options = options}
 	 */
 	public static SequentialTranslation translate(final WalaInformation info, final Options options) { 
+		return translate(info, options, new Metrics());
+	}
+	
+	/**
+	 * Returns the translation of the method described by the 
+	 * given wala information instance, with respect to the 
+	 * specified translation options, and records the cost of 
+	 * building the bounds and simplifying the formula in the given metrics.
+	 * If requested.inferBitwidth(), the translation uses the bitwidth 
+	 * inferred by {@linkplain IntRanges#adjust(WalaInformation, Options)}.
+	 * @requires info.threads() = 1
+	 * @return { t : Translation | t.info = info and t.options = IntRanges.adjust(info, requested)}
+	 * @effects records the BOUNDS and SIMPLIFICATION phases in the given metrics
+	 * @throws com.ibm.wala.util.CancelRuntimeException - the budget of the given metrics runs out before the translation is done
+	 */
+	public static SequentialTranslation translate(final WalaInformation info, final Options requested, final Metrics metrics) { 
 		assert info.threads().getNumberOfNodes() == 1;
+		final Options options = IntRanges.adjust(info, requested);
 
 		final ExpressionFactory factory = new ExpressionFactory(info, options);
 		final MethodTranslation transl = Translator.translate(
 				(new Environment(factory)).push(info.threads().iterator().next()), 
 				new SequentialMemoryHandler());				
+		metrics.check();
+		metrics.begin(Phase.BOUNDS);
 		final Bounds bounds = new Bounds(new Universe(factory.atoms()));
 		factory.boundAll(bounds);
+		metrics.end(Phase.BOUNDS);
+		metrics.check();
 
 		final Formula invariants = factory.invariants();
 		final Formula assumptions = Formula.and(transl.assumptions());
-		final Formula assertions;
-		if (options.assertsAreAssumptions()) {
-			assertions = Formula.and(transl.assertions());
-		} else {
-			assertions = Formula.or(transl.assertions());
-		}
+		final Formula assertions = assertions(transl, options);
 
+		metrics.begin(Phase.SIMPLIFICATION);
 		final Formula formula = Nodes.simplify(Formula.and(invariants, assumptions, assertions), bounds);
+		metrics.end(Phase.SIMPLIFICATION);
 
 		return new SequentialTranslation(formula, bounds, factory, transl, options.kodkodOptions());
 	}
 	
+	/**
+	 * Returns the formula that combines the translations of the 
+	 * user-level assertions in the given method translation:  their 
+	 * conjunction if options.assertsAreAssumptions(), and their 
+	 * disjunction otherwise.
+	 * @return options.assertsAreAssumptions() => Formula.and(transl.assertions()) else Formula.or(transl.assertions())
+	 */
+	public static Formula assertions(final MethodTranslation transl, final Options options) { 
+		return options.assertsAreAssumptions() ? Formula.and(transl.assertions()) : Formula.or(transl.assertions());
+	}
+	
 }
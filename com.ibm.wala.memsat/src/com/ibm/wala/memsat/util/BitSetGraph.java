@@ -0,0 +1,412 @@
+/******************************************************************************
+ * Copyright (c) 2009 - 2015 IBM Corporation.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     IBM Corporation - initial API and implementation
+ *****************************************************************************/
+/**
+ *
+ */
+package com.ibm.wala.memsat.util;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.function.Predicate;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+import com.ibm.wala.util.graph.Graph;
+
+/**
+ * A graph over a fixed universe of nodes, each of which is identified by a dense index
+ * from 0 to the size of the universe minus one.  The nodes of the graph are a subset of the
+ * universe, stored as a bit set, and the successors of each node are stored as a bit set
+ * of indices.  Graphs {@linkplain #BitSetGraph(BitSetGraph) copied} from one another share
+ * the same universe, so their indices are interchangeable.
+ *
+ * <p>This representation is meant for the dense ordering graphs over the inlined instructions
+ * of a concurrent program:  unions, closures and restrictions are computed with word-wide
+ * bit set operations, and clients that know the universe can read the edges as index pairs
+ * without hashing the nodes.  Like {@linkplain LinkedHashGraph}, this graph does not store
+ * predecessors, so they are computed by scanning the nodes.</p>
+ *
+ * @specfield universe: [0..#universe) one->one T
+ * @specfield nodes: set universe[int]
+ * @specfield edges: nodes -> nodes
+ */
+public final class BitSetGraph<T> implements Graph<T> {
+	private final List<T> universe;
+	private final Map<T, Integer> indices;
+	private final BitSet nodes;
+	private final BitSet[] succs;
+
+	/**
+	 * Constructs an empty graph over the given universe of nodes, which are indexed
+	 * in the iteration order of the given collection.
+	 * @requires no duplicates in universe
+	 * @effects this.universe' = universe and no this.nodes'
+	 */
+	public BitSetGraph(Collection<? extends T> universe) {
+		this.universe = Collections.unmodifiableList(new ArrayList<T>(universe));
+		this.indices = new HashMap<T, Integer>(universe.size() * 4 / 3 + 1);
+		for(T n : this.universe) {
+			final Integer old = indices.put(n, indices.size());
+			assert old == null : "duplicate node " + n;
+		}
+		this.nodes = new BitSet(universe.size());
+		this.succs = new BitSet[universe.size()];
+	}
+
+	/**
+	 * Constructs a copy of the given graph, over the same universe.
+	 * @effects this.universe' = g.universe and this.nodes' = g.nodes and this.edges' = g.edges
+	 */
+	public BitSetGraph(BitSetGraph<T> g) {
+		this.universe = g.universe;
+		this.indices = g.indices;
+		this.nodes = (BitSet) g.nodes.clone();
+		this.succs = new BitSet[g.succs.length];
+		for(int i = 0; i < succs.length; i++) {
+			if (g.succs[i] != null)
+				succs[i] = (BitSet) g.succs[i].clone();
+		}
+	}
+
+	/**
+	 * Returns the size of this.universe.
+	 * @return #this.universe
+	 */
+	public int universeSize() { return universe.size(); }
+
+	/**
+	 * Returns the element of this.universe with the given index.
+	 * @requires 0 <= index < this.universeSize()
+	 * @return this.universe[index]
+	 */
+	public T node(int index) { return universe.get(index); }
+
+	/**
+	 * Returns the index of the given element of this.universe, or -1 if it is not in the universe.
+	 * @return some this.universe.n => this.universe.n else -1
+	 */
+	public int indexOf(T n) {
+		final Integer index = indices.get(n);
+		return index == null ? -1 : index;
+	}
+
+	/**
+	 * Returns the index of the first node of this graph whose index is greater than or equal to
+	 * the given index, or -1 if there is no such node.  The nodes of this graph are therefore
+	 * enumerated by <code>for(int i = g.nextNode(0); i >= 0; i = g.nextNode(i+1))</code>.
+	 * @return min { i: this.universe.(this.nodes) | i >= from } or -1 if there is no such index
+	 */
+	public int nextNode(int from) { return nodes.nextSetBit(from); }
+
+	/**
+	 * Returns the indices of the successors of the node with the given index.
+	 * The returned set must not be modified.
+	 * @requires 0 <= index < this.universeSize()
+	 * @return this.universe.(this.edges[this.universe[index]])
+	 */
+	public BitSet successors(int index) {
+		final BitSet s = succs[index];
+		return s == null ? EMPTY : s;
+	}
+	private static final BitSet EMPTY = new BitSet(0);
+
+	/**
+	 * Returns the successor set of the node with the given index, creating it if necessary.
+	 * @return this.succs[index]
+	 */
+	private BitSet succs(int index) {
+		if (succs[index] == null)
+			succs[index] = new BitSet(universe.size());
+		return succs[index];
+	}
+
+	/**
+	 * Returns the index of the given node.
+	 * @return this.universe.n
+	 * @throws IllegalArgumentException - n !in this.universe[int]
+	 */
+	private int index(T n) {
+		final Integer index = indices.get(n);
+		if (index == null)
+			throw new IllegalArgumentException(n + " is not in the universe of this graph.");
+		return index;
+	}
+
+	/**
+	 * Adds the edge between the nodes with the given indices to this graph.
+	 * @requires 0 <= src, dst < this.universeSize()
+	 * @effects this.nodes' = this.nodes + this.universe[src] + this.universe[dst] and
+	 * this.edges' = this.edges + this.universe[src]->this.universe[dst]
+	 */
+	public void addEdge(int src, int dst) {
+		nodes.set(src);
+		nodes.set(dst);
+		succs(src).set(dst);
+	}
+
+	/**
+	 * Adds the edges from the node with the given source index to all nodes whose
+	 * indices are in the given set.
+	 * @requires 0 <= src < this.universeSize() and dsts in [0..this.universeSize())
+	 * @effects this.nodes' = this.nodes + this.universe[src] + this.universe[dsts] and
+	 * this.edges' = this.edges + this.universe[src]->this.universe[dsts]
+	 */
+	public void addEdges(int src, BitSet dsts) {
+		nodes.set(src);
+		nodes.or(dsts);
+		succs(src).or(dsts);
+	}
+
+	/**
+	 * Returns the transitive closure of this graph, which is also reflexive if the given flag is set.
+	 * @return { g: BitSetGraph | g.universe = this.universe and g.nodes = this.nodes and
+	 *   g.edges = ^(this.edges) + (reflexive => iden & this.nodes->this.nodes else none) }
+	 */
+	public BitSetGraph<T> closure(boolean reflexive) {
+		final int size = universe.size();
+		final int[][] adj = new int[size][];
+		for(int i = 0; i < size; i++) {
+			adj[i] = succs[i] == null ? new int[0] : succs[i].stream().toArray();
+		}
+		final BitSet[] reach = IndexedGraph.transitiveClosure(adj);
+		final BitSetGraph<T> ret = new BitSetGraph<T>(this, (BitSet) nodes.clone());
+		for(int i = nodes.nextSetBit(0); i >= 0; i = nodes.nextSetBit(i+1)) {
+			if (!reach[i].isEmpty() || reflexive) {
+				final BitSet s = ret.succs(i);
+				s.or(reach[i]);
+				if (reflexive) s.set(i);
+			}
+		}
+		return ret;
+	}
+
+	/**
+	 * Returns the restriction of this graph onto the nodes accepted by the given filter.
+	 * @return { g: BitSetGraph | g.universe = this.universe and
+	 *   g.nodes = { n: this.nodes | filter.test(n) } and g.edges = this.edges & g.nodes->g.nodes }
+	 */
+	public BitSetGraph<T> restrict(Predicate<? super T> filter) {
+		final BitSet kept = new BitSet(universe.size());
+		for(int i = nodes.nextSetBit(0); i >= 0; i = nodes.nextSetBit(i+1)) {
+			if (filter.test(universe.get(i)))
+				kept.set(i);
+		}
+		final BitSetGraph<T> ret = new BitSetGraph<T>(this, kept);
+		for(int i = kept.nextSetBit(0); i >= 0; i = kept.nextSetBit(i+1)) {
+			if (succs[i] != null && succs[i].intersects(kept)) {
+				final BitSet s = ret.succs(i);
+				s.or(succs[i]);
+				s.and(kept);
+			}
+		}
+		return ret;
+	}
+
+	/**
+	 * Constructs a graph over the universe of the given graph, with the given
+	 * nodes and no edges.
+	 * @effects this.universe' = g.universe and this.nodes' = this.universe[nodes] and no this.edges'
+	 */
+	private BitSetGraph(BitSetGraph<T> g, BitSet nodes) {
+		this.universe = g.universe;
+		this.indices = g.indices;
+		this.nodes = nodes;
+		this.succs = new BitSet[g.succs.length];
+	}
+
+	/** {@inheritDoc}
+	 * @see com.ibm.wala.util.graph.NodeManager#iterator()
+	 */
+	public Iterator<T> iterator() {
+		return new Iterator<T>() {
+			int next = nodes.nextSetBit(0);
+			public boolean hasNext() { return next >= 0; }
+			public T next() {
+				if (next < 0) throw new NoSuchElementException();
+				final T ret = universe.get(next);
+				next = nodes.nextSetBit(next+1);
+				return ret;
+			}
+			public void remove() { throw new UnsupportedOperationException(); }
+		};
+	}
+
+	/** {@inheritDoc}
+	 * @see com.ibm.wala.util.graph.NodeManager#stream()
+	 */
+	public Stream<T> stream() {
+		return StreamSupport.stream(Spliterators.spliterator(iterator(), getNumberOfNodes(),
+				Spliterator.ORDERED | Spliterator.DISTINCT | Spliterator.NONNULL), false);
+	}
+
+	/** {@inheritDoc}
+	 * @see com.ibm.wala.util.graph.NodeManager#getNumberOfNodes()
+	 */
+	public int getNumberOfNodes() { return nodes.cardinality(); }
+
+	/** {@inheritDoc}
+	 * @throws IllegalArgumentException - n !in this.universe[int]
+	 * @see com.ibm.wala.util.graph.NodeManager#addNode(java.lang.Object)
+	 */
+	public void addNode(T n) { nodes.set(index(n)); }
+
+	/** {@inheritDoc}
+	 * @see com.ibm.wala.util.graph.NodeManager#containsNode(java.lang.Object)
+	 */
+	public boolean containsNode(T n) {
+		final Integer index = indices.get(n);
+		return index != null && nodes.get(index);
+	}
+
+	/** {@inheritDoc}
+	 * @see com.ibm.wala.util.graph.NodeManager#removeNode(java.lang.Object)
+	 */
+	public void removeNode(T n) { removeNodeAndEdges(n); }
+
+	/** {@inheritDoc}
+	 * @see com.ibm.wala.util.graph.Graph#removeNodeAndEdges(java.lang.Object)
+	 */
+	public void removeNodeAndEdges(T n) {
+		if (containsNode(n)) {
+			removeAllIncidentEdges(n);
+			nodes.clear(indices.get(n));
+		}
+	}
+
+	/** {@inheritDoc}
+	 * @throws IllegalArgumentException - src + dst !in this.universe[int]
+	 * @see com.ibm.wala.util.graph.EdgeManager#addEdge(java.lang.Object, java.lang.Object)
+	 */
+	public void addEdge(T src, T dst) { addEdge(index(src), index(dst)); }
+
+	/** {@inheritDoc}
+	 * @see com.ibm.wala.util.graph.EdgeManager#hasEdge(java.lang.Object, java.lang.Object)
+	 */
+	public boolean hasEdge(T src, T dst) {
+		final Integer s = indices.get(src), d = indices.get(dst);
+		return s != null && d != null && succs[s] != null && succs[s].get(d);
+	}
+
+	/** {@inheritDoc}
+	 * @see com.ibm.wala.util.graph.EdgeManager#removeEdge(java.lang.Object, java.lang.Object)
+	 */
+	public void removeEdge(T src, T dst) {
+		final Integer s = indices.get(src), d = indices.get(dst);
+		if (s != null && d != null && succs[s] != null)
+			succs[s].clear(d);
+	}
+
+	/** {@inheritDoc}
+	 * @see com.ibm.wala.util.graph.EdgeManager#getSuccNodeCount(java.lang.Object)
+	 */
+	public int getSuccNodeCount(T n) {
+		final Integer index = indices.get(n);
+		return index == null ? 0 : successors(index).cardinality();
+	}
+
+	/** {@inheritDoc}
+	 * @see com.ibm.wala.util.graph.EdgeManager#getSuccNodes(java.lang.Object)
+	 */
+	public Iterator<T> getSuccNodes(T n) {
+		final Integer index = indices.get(n);
+		return index == null ? Collections.<T>emptyIterator() : elements(successors(index));
+	}
+
+	/** {@inheritDoc}
+	 * @see com.ibm.wala.util.graph.EdgeManager#getPredNodeCount(java.lang.Object)
+	 */
+	public int getPredNodeCount(T n) {
+		final Integer index = indices.get(n);
+		return index == null ? 0 : predecessors(index).cardinality();
+	}
+
+	/** {@inheritDoc}
+	 * @see com.ibm.wala.util.graph.EdgeManager#getPredNodes(java.lang.Object)
+	 */
+	public Iterator<T> getPredNodes(T n) {
+		final Integer index = indices.get(n);
+		return index == null ? Collections.<T>emptyIterator() : elements(predecessors(index));
+	}
+
+	/**
+	 * Returns the indices of the predecessors of the node with the given index.
+	 * @return this.universe.(this.edges.(this.universe[index]))
+	 */
+	private BitSet predecessors(int index) {
+		final BitSet preds = new BitSet(universe.size());
+		for(int i = nodes.nextSetBit(0); i >= 0; i = nodes.nextSetBit(i+1)) {
+			if (succs[i] != null && succs[i].get(index))
+				preds.set(i);
+		}
+		return preds;
+	}
+
+	/**
+	 * Returns an unmodifiable iterator over the elements of this.universe with the given indices.
+	 * @return an iterator over this.universe[bits]
+	 */
+	private Iterator<T> elements(final BitSet bits) {
+		return new Iterator<T>() {
+			int next = bits.nextSetBit(0);
+			public boolean hasNext() { return next >= 0; }
+			public T next() {
+				if (next < 0) throw new NoSuchElementException();
+				final T ret = universe.get(next);
+				next = bits.nextSetBit(next+1);
+				return ret;
+			}
+			public void remove() { throw new UnsupportedOperationException(); }
+		};
+	}
+
+	/** {@inheritDoc}
+	 * @see com.ibm.wala.util.graph.EdgeManager#removeAllIncidentEdges(java.lang.Object)
+	 */
+	public void removeAllIncidentEdges(T n) {
+		removeIncomingEdges(n);
+		removeOutgoingEdges(n);
+	}
+
+	/** {@inheritDoc}
+	 * @see com.ibm.wala.util.graph.EdgeManager#removeIncomingEdges(java.lang.Object)
+	 */
+	public void removeIncomingEdges(T n) {
+		final Integer index = indices.get(n);
+		if (index != null) {
+			for(BitSet s : succs) {
+				if (s != null) s.clear(index);
+			}
+		}
+	}
+
+	/** {@inheritDoc}
+	 * @see com.ibm.wala.util.graph.EdgeManager#removeOutgoingEdges(java.lang.Object)
+	 */
+	public void removeOutgoingEdges(T n) {
+		final Integer index = indices.get(n);
+		if (index != null) {
+			succs[index] = null;
+		}
+	}
+
+	public String toString() {
+		return Strings.prettyPrint(this);
+	}
+}
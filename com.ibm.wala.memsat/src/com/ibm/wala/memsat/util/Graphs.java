@@ -15,6 +15,7 @@ package com.ibm.wala.memsat.util;
 
 import java.util.AbstractCollection;
 import java.util.AbstractSet;
+import java.util.BitSet;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.HashSet;
@@ -133,26 +134,14 @@ public final class Graphs {
 	}
 	
 	/**
-	 * Returns a graph that is the transitive closure of g.
+	 * Returns a graph that is the transitive closure of g.  The closure is computed
+	 * on an {@linkplain IndexedGraph indexed} snapshot of g, so it takes time linear 
+	 * in the size of g and of the closure.  The closure of a {@linkplain BitSetGraph} is
+	 * a BitSetGraph over the same universe.
 	 * @return a graph that is the transitive closure of g.
 	 */
 	public static final <T> Graph<T> transitiveClosure(Graph<T> g) { 
-		final Graph<T> ret = new LinkedHashGraph<T>();
-		for(T n : g) { 
-			ret.addNode(n); 
-			for(Iterator<? extends T> succs = g.getSuccNodes(n); succs.hasNext(); ) { 
-				ret.addEdge(n, succs.next());
-			}
-		}
-		for(T nk : g) { 
-			for(T ni : g) { 
-				for(T nj : g) { 
-					if (ret.hasEdge(ni, nk) && ret.hasEdge(nk, nj))
-						ret.addEdge(ni, nj);
-				}
-			}
-		}
-		return ret;
+		return closure(g, false);
 	}
 
 	 
@@ -161,18 +150,41 @@ public final class Graphs {
 	 * @return a graph that is the reflexive transitive closure of g.
 	 */
 	public static final <T> Graph<T> reflexiveTransitiveClosure(Graph<T> g) { 
-		final Graph<T> ret = transitiveClosure(g);
-		for(T n : g) { 
-			ret.addEdge(n, n);
+		return closure(g, true);
+	}
+	
+	/**
+	 * Returns the transitive closure of g, which is also reflexive if the given flag is set.
+	 * @return a graph that is the transitive closure of g, plus self-edges on each node in g if reflexive is true.
+	 */
+	private static final <T> Graph<T> closure(Graph<T> g, boolean reflexive) { 
+		if (g instanceof BitSetGraph) 
+			return ((BitSetGraph<T>) g).closure(reflexive);
+		final IndexedGraph<T> indexed = new IndexedGraph<T>(g);
+		final Graph<T> ret = new LinkedHashGraph<T>();
+		for(int i = 0, size = indexed.size(); i < size; i++) { 
+			ret.addNode(indexed.node(i));
+		}
+		for(int i = 0, size = indexed.size(); i < size; i++) { 
+			final T n = indexed.node(i);
+			if (reflexive) 
+				ret.addEdge(n, n);
+			final BitSet reach = indexed.reachable(i);
+			for(int j = reach.nextSetBit(0); j >= 0; j = reach.nextSetBit(j+1)) { 
+				ret.addEdge(n, indexed.node(j));
+			}
 		}
 		return ret;
 	}
 	
 	/**
 	 * Returns a restriction of the given graph onto the nodes accepted by the given filter.
+	 * The restriction of a {@linkplain BitSetGraph} is a BitSetGraph over the same universe.
 	 * @return a restriction of the given graph onto the nodes accepted by the given filter.
 	 */
 	public static final <T> Graph<T> restrict(Graph<T> g, Predicate<T> filter) { 
+		if (g instanceof BitSetGraph)
+			return ((BitSetGraph<T>) g).restrict(filter);
 		final Graph<T> ret = new LinkedHashGraph<T>();
 		for(T n : g) { 
 			if (filter.test(n)) { 
@@ -193,7 +205,7 @@ public final class Graphs {
 	 * @return a new graph whose edge set consists of the edges in g, plus self-edges on each node in g.
 	 */
 	public static final <T> Graph<T> reflexive(final Graph<T> g) {
-		final Graph<T> ret = union(Collections.singleton(g));
+		final Graph<T> ret = copy(g);
 		for(T n : g) { 
 			ret.addEdge(n, n);
 		}
@@ -205,13 +217,24 @@ public final class Graphs {
 	 * @return a new graph whose edge set consists of the edges in g, minus any self-edges.
 	 */
 	public static final <T> Graph<T> irreflexive(final Graph<T> g) { 
-		final Graph<T> ret = union(Collections.singleton(g));
+		final Graph<T> ret = copy(g);
 		for(T n : g) { 
 			ret.removeEdge(n, n);
 		}
 		return ret;
 	}
 	
+	/**
+	 * Returns a new graph with the same nodes and edges as g.  A copy of a 
+	 * {@linkplain BitSetGraph} is a BitSetGraph over the same universe.
+	 * @return a new graph with the same nodes and edges as g.
+	 */
+	private static final <T> Graph<T> copy(Graph<T> g) { 
+		if (g instanceof BitSetGraph)
+			return new BitSetGraph<T>((BitSetGraph<T>) g);
+		return union(Collections.singleton(g));
+	}
+	
 	/**
 	 * Returns a new graph that is the union of the nodes and edges in the given 
 	 * collection of graphs.
@@ -0,0 +1,213 @@
+/******************************************************************************
+ * Copyright (c) 2009 - 2015 IBM Corporation.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     IBM Corporation - initial API and implementation
+ *****************************************************************************/
+/**
+ *
+ */
+package com.ibm.wala.memsat.util;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+
+import com.ibm.wala.util.graph.Graph;
+
+/**
+ * An immutable snapshot of a graph whose nodes are numbered densely,
+ * from 0 to the number of nodes minus one, in the iteration order of the
+ * original graph.  The edges are stored as arrays of successor indices,
+ * and reachability is computed with bit sets.
+ *
+ * <p>The {@linkplain #transitiveClosure() transitive closure} is computed by
+ * condensing the graph into its strongly connected components and propagating
+ * reachable sets through the components in reverse topological order.  This
+ * takes O(n + m) set unions of at most n bits each, instead of the O(n^3) edge
+ * lookups of the Floyd-Warshall algorithm.</p>
+ *
+ * @specfield nodes: [0..size) one->one T
+ * @specfield edges: nodes -> nodes
+ */
+public final class IndexedGraph<T> {
+	private final List<T> nodes;
+	private final Map<T, Integer> indices;
+	private final int[][] succs;
+	private BitSet[] closure;
+
+	/**
+	 * Creates an indexed snapshot of the given graph.
+	 * @effects this.nodes' = { i: int, n: T | n is the ith node returned by g.iterator() } and
+	 * this.edges' = { i, j: int | this.nodes[i]->this.nodes[j] in g.edges }
+	 */
+	public IndexedGraph(Graph<T> g) {
+		final int size = g.getNumberOfNodes();
+		this.nodes = new ArrayList<T>(size);
+		this.indices = new HashMap<T, Integer>(size * 4 / 3 + 1);
+		for(T n : g) {
+			indices.put(n, nodes.size());
+			nodes.add(n);
+		}
+		this.succs = new int[size][];
+		final int[] buf = new int[size];
+		for(int i = 0; i < size; i++) {
+			int count = 0;
+			for(Iterator<? extends T> itr = g.getSuccNodes(nodes.get(i)); itr.hasNext(); ) {
+				buf[count++] = indices.get(itr.next());
+			}
+			succs[i] = Arrays.copyOf(buf, count);
+		}
+	}
+
+	/**
+	 * Returns the number of nodes in this graph.
+	 * @return #this.nodes
+	 */
+	public int size() { return nodes.size(); }
+
+	/**
+	 * Returns the node with the given index.
+	 * @requires 0 <= index < this.size()
+	 * @return this.nodes[index]
+	 */
+	public T node(int index) { return nodes.get(index); }
+
+	/**
+	 * Returns the index of the given node, or -1 if the node is not in this graph.
+	 * @return some this.nodes.node => this.nodes.node else -1
+	 */
+	public int index(T node) {
+		final Integer index = indices.get(node);
+		return index == null ? -1 : index;
+	}
+
+	/**
+	 * Returns the indices of the successors of the node with the given index.
+	 * The returned array must not be modified.
+	 * @requires 0 <= index < this.size()
+	 * @return this.edges[index]
+	 */
+	public int[] successors(int index) { return succs[index]; }
+
+	/**
+	 * Returns the transitive closure of this graph, as an array that maps the
+	 * index of each node to the set of indices of the nodes reachable from it
+	 * by a path of one or more edges.  Nodes in the same strongly connected
+	 * component share the same set.  The returned array and sets must not be modified.
+	 * @return { r: [0..this.size()) -> BitSet | all i: [0..this.size()) | r[i] = i.^(this.edges) }
+	 */
+	public BitSet[] transitiveClosure() {
+		if (closure == null) {
+			closure = transitiveClosure(succs);
+		}
+		return closure;
+	}
+
+	/**
+	 * Returns the set of indices of the nodes reachable from the node with the given index
+	 * by a path of one or more edges.  The returned set must not be modified.
+	 * @requires 0 <= index < this.size()
+	 * @return index.^(this.edges)
+	 */
+	public BitSet reachable(int index) { return transitiveClosure()[index]; }
+
+	/**
+	 * Computes the transitive closure of the graph with the given successor arrays.  The strongly connected components
+	 * are found with an iterative version of Tarjan's algorithm, which emits each component
+	 * after all components reachable from it.  The set reachable from a component is therefore
+	 * final by the time the component is emitted:  it is the union of the members and reachable
+	 * sets of the components entered by its outgoing edges, plus its own members if the
+	 * component contains a cycle.  Nodes in the same component share the same set.
+	 * @requires all i: [0..succs.length) | succs[i] in [0..succs.length)
+	 * @return { r: [0..succs.length) -> BitSet | all i: [0..succs.length) | r[i] = i.^{ j, k: int | k in succs[j] } }
+	 */
+	static BitSet[] transitiveClosure(int[][] succs) {
+		final int size = succs.length;
+		final BitSet[] reach = new BitSet[size];
+		final int[] component = new int[size];		// index of the component containing each node, or -1 if not yet assigned
+		final int[] lowlink = new int[size], order = new int[size];
+		final int[] stack = new int[size], callStack = new int[size], edgeCursor = new int[size];
+		final List<BitSet> down = new ArrayList<BitSet>();	// members and reachable nodes of each component
+		Arrays.fill(order, -1);
+		Arrays.fill(component, -1);
+
+		int counter = 0, top = 0;
+		for(int root = 0; root < size; root++) {
+			if (order[root] >= 0) continue;
+			int depth = 0;
+			callStack[depth++] = root;
+			order[root] = lowlink[root] = counter++;
+			stack[top++] = root;
+			edgeCursor[root] = 0;
+			while(depth > 0) {
+				final int u = callStack[depth-1];
+				if (edgeCursor[u] < succs[u].length) {
+					final int v = succs[u][edgeCursor[u]++];
+					if (order[v] < 0) {
+						order[v] = lowlink[v] = counter++;
+						stack[top++] = v;
+						edgeCursor[v] = 0;
+						callStack[depth++] = v;
+					} else if (component[v] < 0) {
+						lowlink[u] = Math.min(lowlink[u], order[v]);
+					}
+				} else {
+					depth--;
+					if (depth > 0) {
+						final int parent = callStack[depth-1];
+						lowlink[parent] = Math.min(lowlink[parent], lowlink[u]);
+					}
+					if (lowlink[u] == order[u]) {
+						// u is the root of a component; pop its members off the stack
+						final int c = down.size();
+						final BitSet scc = new BitSet(size);
+						int w;
+						do {
+							w = stack[--top];
+							component[w] = c;
+							scc.set(w);
+						} while (w != u);
+
+						final BitSet r = new BitSet(size);
+						for(int x = scc.nextSetBit(0); x >= 0; x = scc.nextSetBit(x+1)) {
+							for(int y : succs[x]) {
+								if (component[y] == c)
+									r.or(scc);
+								else
+									r.or(down.get(component[y]));
+							}
+						}
+						final BitSet d = (BitSet) r.clone();
+						d.or(scc);
+						down.add(d);
+						for(int x = scc.nextSetBit(0); x >= 0; x = scc.nextSetBit(x+1)) {
+							reach[x] = r;
+						}
+					}
+				}
+			}
+		}
+		return reach;
+	}
+
+	/**
+	 * Returns a string view of this graph.
+	 * @return a string view of this graph.
+	 */
+	public String toString() {
+		final StringBuilder s = new StringBuilder("IndexedGraph {");
+		for(int i = 0, size = size(); i < size; i++) {
+			s.append(i == 0 ? " " : ", ").append(nodes.get(i)).append(" -> ").append(Arrays.toString(succs[i]));
+		}
+		return s.append(" }").toString();
+	}
+}
@@ -0,0 +1,588 @@
+/******************************************************************************
+ * Copyright (c) 2009 - 2015 IBM Corporation.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     IBM Corporation - initial API and implementation
+ *****************************************************************************/
+/**
+ *
+ */
+package com.ibm.wala.memsat.util;
+
+import java.lang.ref.ReferenceQueue;
+import java.lang.ref.WeakReference;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
+import java.util.Set;
+
+import kodkod.ast.BinaryExpression;
+import kodkod.ast.BinaryFormula;
+import kodkod.ast.BinaryIntExpression;
+import kodkod.ast.ComparisonFormula;
+import kodkod.ast.ExprToIntCast;
+import kodkod.ast.Expression;
+import kodkod.ast.Formula;
+import kodkod.ast.IfExpression;
+import kodkod.ast.IfIntExpression;
+import kodkod.ast.IntComparisonFormula;
+import kodkod.ast.IntExpression;
+import kodkod.ast.IntToExprCast;
+import kodkod.ast.NaryExpression;
+import kodkod.ast.NaryFormula;
+import kodkod.ast.NaryIntExpression;
+import kodkod.ast.Node;
+import kodkod.ast.NotFormula;
+import kodkod.ast.operator.ExprCastOperator;
+import kodkod.ast.operator.ExprCompOperator;
+import kodkod.ast.operator.ExprOperator;
+import kodkod.ast.operator.FormulaOperator;
+import kodkod.ast.operator.IntCastOperator;
+import kodkod.ast.operator.IntCompOperator;
+import kodkod.ast.operator.IntOperator;
+import kodkod.util.ints.Ints;
+
+/**
+ * A hash-consing factory for Kodkod nodes.  Every node returned by a method
+ * of this factory is the unique node, among the live nodes created by the factory,
+ * with the given operator and (identical) children.  Structurally equal terms that are
+ * built bottom-up through the factory are therefore the same object, so they take up
+ * space only once, and the caches of later passes over them (e.g. {@linkplain Nodes#simplify(Formula)}
+ * or the Kodkod translator) are hit instead of missed.
+ *
+ * <p>The factory also performs the constant folding that is possible without looking
+ * below the children:  e.g. <tt>and(Formula.TRUE, f)</tt> returns <tt>f</tt>, and
+ * <tt>thenElse(g, e, e)</tt> returns <tt>e</tt>.  Nodes are held weakly, so the table
+ * does not keep alive terms that are no longer in use.</p>
+ *
+ * <p>A factory is meant to be used for a single translation:  it is owned by the
+ * {@linkplain com.ibm.wala.memsat.representation.ConstantFactory constants} of the
+ * translation's expression factory, and it is reclaimed together with them.  Independent
+ * translations therefore never share or contend for a table.  The factory is safe for
+ * use by multiple threads, so that one translated program may be justified by several
+ * memory models at once.</p>
+ *
+ * @specfield nodes: set Node // live nodes created by this factory
+ * @invariant all disj n1, n2: nodes | n1.op != n2.op or n1.children != n2.children
+ */
+public final class NodeFactory {
+	private final Table table = new Table();
+
+	/**
+	 * Creates an empty node factory.
+	 * @effects no this.nodes'
+	 */
+	public NodeFactory() {}
+
+	/*------------------ FORMULAS ------------------ */
+
+	/**
+	 * Returns the negation of the given formula.
+	 * @return the unique node equivalent to f.not()
+	 */
+	public Formula not(Formula f) {
+		if (f==Formula.TRUE) return Formula.FALSE;
+		if (f==Formula.FALSE) return Formula.TRUE;
+		if (f instanceof NotFormula) return ((NotFormula)f).formula();
+		synchronized(table) {
+			final Node[] children = { f };
+			final int hash = hash(NotFormula.class, children);
+			final Node hit = table.lookup(hash, NotFormula.class, children);
+			return hit != null ? (Formula) hit : table.add(f.not(), hash);
+		}
+	}
+
+	/**
+	 * Returns the conjunction of the given formulas.
+	 * @return the unique node equivalent to a.and(b)
+	 */
+	public Formula and(Formula a, Formula b) {
+		if (a==Formula.TRUE || a==b) return b;
+		if (b==Formula.TRUE) return a;
+		if (a==Formula.FALSE || b==Formula.FALSE) return Formula.FALSE;
+		return compose(FormulaOperator.AND, a, b);
+	}
+
+	/**
+	 * Returns the disjunction of the given formulas.
+	 * @return the unique node equivalent to a.or(b)
+	 */
+	public Formula or(Formula a, Formula b) {
+		if (a==Formula.FALSE || a==b) return b;
+		if (b==Formula.FALSE) return a;
+		if (a==Formula.TRUE || b==Formula.TRUE) return Formula.TRUE;
+		return compose(FormulaOperator.OR, a, b);
+	}
+
+	/**
+	 * Returns the implication from a to b.
+	 * @return the unique node equivalent to a.implies(b)
+	 */
+	public Formula implies(Formula a, Formula b) {
+		if (a==Formula.TRUE) return b;
+		if (a==Formula.FALSE || b==Formula.TRUE || a==b) return Formula.TRUE;
+		if (b==Formula.FALSE) return not(a);
+		return compose(FormulaOperator.IMPLIES, a, b);
+	}
+
+	/**
+	 * Returns the equivalence of the given formulas.
+	 * @return the unique node equivalent to a.iff(b)
+	 */
+	public Formula iff(Formula a, Formula b) {
+		if (a==b) return Formula.TRUE;
+		if (a==Formula.TRUE) return b;
+		if (b==Formula.TRUE) return a;
+		if (a==Formula.FALSE) return not(b);
+		if (b==Formula.FALSE) return not(a);
+		return compose(FormulaOperator.IFF, a, b);
+	}
+
+	/**
+	 * Returns the conjunction of the given formulas.  Duplicates
+	 * and occurrences of Formula.TRUE are left out of the result.
+	 * @return the unique node equivalent to Formula.and(formulas)
+	 */
+	public Formula and(Collection<? extends Formula> formulas) {
+		return compose(FormulaOperator.AND, formulas, Formula.TRUE, Formula.FALSE);
+	}
+
+	/**
+	 * Returns the disjunction of the given formulas.  Duplicates
+	 * and occurrences of Formula.FALSE are left out of the result.
+	 * @return the unique node equivalent to Formula.or(formulas)
+	 */
+	public Formula or(Collection<? extends Formula> formulas) {
+		return compose(FormulaOperator.OR, formulas, Formula.FALSE, Formula.TRUE);
+	}
+
+	/**
+	 * Returns a formula stating that the given expressions are equal.
+	 * @requires a.arity = b.arity
+	 * @return the unique node equivalent to a.eq(b)
+	 */
+	public Formula eq(Expression a, Expression b) {
+		return compare(ExprCompOperator.EQUALS, a, b);
+	}
+
+	/**
+	 * Returns a formula stating that a is a subset of b.
+	 * @requires a.arity = b.arity
+	 * @return the unique node equivalent to a.in(b)
+	 */
+	public Formula in(Expression a, Expression b) {
+		return compare(ExprCompOperator.SUBSET, a, b);
+	}
+
+	/**
+	 * Returns a formula stating that the given int expressions are equal.
+	 * @return the unique node equivalent to a.eq(b)
+	 */
+	public Formula eq(IntExpression a, IntExpression b) {
+		if (a==b) return Formula.TRUE;
+		synchronized(table) {
+			final Node[] children = { a, b };
+			final int hash = hash(IntCompOperator.EQ, children);
+			final Node hit = table.lookup(hash, IntCompOperator.EQ, children);
+			return hit != null ? (Formula) hit : table.add(a.eq(b), hash);
+		}
+	}
+
+	/*------------------ EXPRESSIONS ------------------ */
+
+	/**
+	 * Returns the join of the given expressions.
+	 * @return the unique node equivalent to a.join(b)
+	 */
+	public Expression join(Expression a, Expression b) {
+		return compose(ExprOperator.JOIN, a, b);
+	}
+
+	/**
+	 * Returns the product of the given expressions.
+	 * @return the unique node equivalent to a.product(b)
+	 */
+	public Expression product(Expression a, Expression b) {
+		return compose(ExprOperator.PRODUCT, a, b);
+	}
+
+	/**
+	 * Returns the union of the given expressions.
+	 * @requires a.arity = b.arity
+	 * @return the unique node equivalent to a.union(b)
+	 */
+	public Expression union(Expression a, Expression b) {
+		return a==b ? a : compose(ExprOperator.UNION, a, b);
+	}
+
+	/**
+	 * Returns the difference of the given expressions.
+	 * @requires a.arity = b.arity
+	 * @return the unique node equivalent to a.difference(b)
+	 */
+	public Expression difference(Expression a, Expression b) {
+		return compose(ExprOperator.DIFFERENCE, a, b);
+	}
+
+	/**
+	 * Returns the relational override of a with b.
+	 * @requires a.arity = b.arity
+	 * @return the unique node equivalent to a.override(b)
+	 */
+	public Expression override(Expression a, Expression b) {
+		return a==b ? a : compose(ExprOperator.OVERRIDE, a, b);
+	}
+
+	/**
+	 * Returns the union of the given expressions.  Duplicates are left out of the result.
+	 * @requires !exprs.isEmpty() and all e: exprs | e.arity = exprs.iterator().next().arity
+	 * @return the unique node equivalent to Expression.union(exprs)
+	 * @throws IllegalArgumentException - exprs.isEmpty()
+	 */
+	public Expression union(Collection<? extends Expression> exprs) {
+		final Set<Expression> children = new LinkedHashSet<Expression>(exprs);
+		switch(children.size()) {
+		case 0 : throw new IllegalArgumentException("cannot take the union of an empty collection");
+		case 1 : return children.iterator().next();
+		default :
+			synchronized(table) {
+				final Node[] array = children.toArray(new Node[children.size()]);
+				final int hash = hash(ExprOperator.UNION, array);
+				final Node hit = table.lookup(hash, ExprOperator.UNION, array);
+				return hit != null ? (Expression) hit : table.add(Expression.union(children), hash);
+			}
+		}
+	}
+
+	/**
+	 * Returns the conditional expression with the given condition and branches.
+	 * @requires a.arity = b.arity
+	 * @return the unique node equivalent to cond.thenElse(a, b)
+	 */
+	public Expression thenElse(Formula cond, Expression a, Expression b) {
+		if (cond==Formula.TRUE || a==b) return a;
+		if (cond==Formula.FALSE) return b;
+		synchronized(table) {
+			final Node[] children = { cond, a, b };
+			final int hash = hash(IfExpression.class, children);
+			final Node hit = table.lookup(hash, IfExpression.class, children);
+			return hit != null ? (Expression) hit : table.add(cond.thenElse(a, b), hash);
+		}
+	}
+
+	/**
+	 * Returns the bitset representation of the given int expression.
+	 * @return the unique node equivalent to intExpr.toBitset()
+	 */
+	public Expression toBitset(IntExpression intExpr) {
+		synchronized(table) {
+			final Node[] children = { intExpr };
+			final int hash = hash(IntCastOperator.BITSETCAST, children);
+			final Node hit = table.lookup(hash, IntCastOperator.BITSETCAST, children);
+			return hit != null ? (Expression) hit : table.add(intExpr.toBitset(), hash);
+		}
+	}
+
+	/*------------------ INT EXPRESSIONS ------------------ */
+
+	/**
+	 * Returns the sum of the integer atoms in the given expression.
+	 * @return the unique node equivalent to expr.sum()
+	 */
+	public IntExpression sum(Expression expr) {
+		synchronized(table) {
+			final Node[] children = { expr };
+			final int hash = hash(ExprCastOperator.SUM, children);
+			final Node hit = table.lookup(hash, ExprCastOperator.SUM, children);
+			return hit != null ? (IntExpression) hit : table.add(expr.sum(), hash);
+		}
+	}
+
+	/**
+	 * Returns the conditional int expression with the given condition and branches.
+	 * @return the unique node equivalent to cond.thenElse(a, b)
+	 */
+	public IntExpression thenElse(Formula cond, IntExpression a, IntExpression b) {
+		if (cond==Formula.TRUE || a==b) return a;
+		if (cond==Formula.FALSE) return b;
+		synchronized(table) {
+			final Node[] children = { cond, a, b };
+			final int hash = hash(IfIntExpression.class, children);
+			final Node hit = table.lookup(hash, IfIntExpression.class, children);
+			return hit != null ? (IntExpression) hit : table.add(cond.thenElse(a, b), hash);
+		}
+	}
+
+	/**
+	 * Returns the bitwise or of the given int expressions.  Duplicates are left out of the result.
+	 * @requires !intExprs.isEmpty()
+	 * @return the unique node equivalent to IntExpression.or(intExprs)
+	 * @throws IllegalArgumentException - intExprs.isEmpty()
+	 */
+	public IntExpression bitOr(Collection<? extends IntExpression> intExprs) {
+		final Set<IntExpression> children = new LinkedHashSet<IntExpression>(intExprs);
+		switch(children.size()) {
+		case 0 : throw new IllegalArgumentException("cannot take the bitwise or of an empty collection");
+		case 1 : return children.iterator().next();
+		default :
+			synchronized(table) {
+				final Node[] array = children.toArray(new Node[children.size()]);
+				final int hash = hash(IntOperator.OR, array);
+				final Node hit = table.lookup(hash, IntOperator.OR, array);
+				return hit != null ? (IntExpression) hit : table.add(IntExpression.or(children), hash);
+			}
+		}
+	}
+
+	/*------------------ HELPERS ------------------ */
+
+	/**
+	 * Returns the unique node equivalent to a.compose(op, b).
+	 * @return the unique node equivalent to a.compose(op, b)
+	 */
+	private Formula compose(FormulaOperator op, Formula a, Formula b) {
+		synchronized(table) {
+			final Node[] children = { a, b };
+			final int hash = hash(op, children);
+			final Node hit = table.lookup(hash, op, children);
+			return hit != null ? (Formula) hit : table.add(a.compose(op, b), hash);
+		}
+	}
+
+	/**
+	 * Returns the unique node equivalent to Formula.compose(op, formulas), after removing
+	 * duplicates and occurrences of the given identity from the formulas.  If the formulas
+	 * contain the given zero, it is returned.
+	 * @requires op in AND + OR and (op = AND => identity = TRUE and zero = FALSE) and
+	 * (op = OR => identity = FALSE and zero = TRUE)
+	 * @return the unique node equivalent to Formula.compose(op, formulas)
+	 */
+	private Formula compose(FormulaOperator op, Collection<? extends Formula> formulas, Formula identity, Formula zero) {
+		final Set<Formula> children = new LinkedHashSet<Formula>();
+		for(Formula f : formulas) {
+			if (f==zero) return zero;
+			if (f!=identity) children.add(f);
+		}
+		switch(children.size()) {
+		case 0 : return identity;
+		case 1 : return children.iterator().next();
+		default :
+			synchronized(table) {
+				final Node[] array = children.toArray(new Node[children.size()]);
+				final int hash = hash(op, array);
+				final Node hit = table.lookup(hash, op, array);
+				return hit != null ? (Formula) hit : table.add(Formula.compose(op, children), hash);
+			}
+		}
+	}
+
+	/**
+	 * Returns the unique node equivalent to a.compare(op, b).
+	 * @return the unique node equivalent to a.compare(op, b)
+	 */
+	private Formula compare(ExprCompOperator op, Expression a, Expression b) {
+		if (a==b) return Formula.TRUE;
+		synchronized(table) {
+			final Node[] children = { a, b };
+			final int hash = hash(op, children);
+			final Node hit = table.lookup(hash, op, children);
+			return hit != null ? (Formula) hit : table.add(a.compare(op, b), hash);
+		}
+	}
+
+	/**
+	 * Returns the unique node equivalent to a.compose(op, b).
+	 * @return the unique node equivalent to a.compose(op, b)
+	 */
+	private Expression compose(ExprOperator op, Expression a, Expression b) {
+		synchronized(table) {
+			final Node[] children = { a, b };
+			final int hash = hash(op, children);
+			final Node hit = table.lookup(hash, op, children);
+			return hit != null ? (Expression) hit : table.add(a.compose(op, b), hash);
+		}
+	}
+
+	/**
+	 * Returns the super-fast hash of the identity hashcodes of the given operator and children.
+	 * @return super-fast hash of the identity hashcodes of the given operator and children.
+	 */
+	private static int hash(Object op, Node[] children) {
+		int hash = Ints.superFastHashIncremental(System.identityHashCode(op), 17);
+		for(Node child : children) {
+			hash = Ints.superFastHashIncremental(System.identityHashCode(child), hash);
+		}
+		return Ints.superFastHashAvalanche(hash);
+	}
+
+	/**
+	 * Returns true if the given node has the given operator and children.  Binary and n-ary
+	 * nodes with the same operator and children match each other, and the operator of
+	 * negations and conditionals is their class.
+	 * @return node.op = op and node.children = children
+	 */
+	private static boolean matches(Node node, Object op, Node[] children) {
+		if (node instanceof BinaryFormula) {
+			final BinaryFormula f = (BinaryFormula) node;
+			return f.op()==op && same(children, f.left(), f.right());
+		} else if (node instanceof NaryFormula) {
+			final NaryFormula f = (NaryFormula) node;
+			return f.op()==op && same(children, f);
+		} else if (node instanceof NotFormula) {
+			return op==NotFormula.class && same(children, ((NotFormula)node).formula());
+		} else if (node instanceof ComparisonFormula) {
+			final ComparisonFormula f = (ComparisonFormula) node;
+			return f.op()==op && same(children, f.left(), f.right());
+		} else if (node instanceof IntComparisonFormula) {
+			final IntComparisonFormula f = (IntComparisonFormula) node;
+			return f.op()==op && same(children, f.left(), f.right());
+		} else if (node instanceof BinaryExpression) {
+			final BinaryExpression e = (BinaryExpression) node;
+			return e.op()==op && same(children, e.left(), e.right());
+		} else if (node instanceof NaryExpression) {
+			final NaryExpression e = (NaryExpression) node;
+			return e.op()==op && same(children, e);
+		} else if (node instanceof IfExpression) {
+			final IfExpression e = (IfExpression) node;
+			return op==IfExpression.class && same(children, e.condition(), e.thenExpr(), e.elseExpr());
+		} else if (node instanceof IntToExprCast) {
+			final IntToExprCast e = (IntToExprCast) node;
+			return e.op()==op && same(children, e.intExpr());
+		} else if (node instanceof ExprToIntCast) {
+			final ExprToIntCast e = (ExprToIntCast) node;
+			return e.op()==op && same(children, e.expression());
+		} else if (node instanceof IfIntExpression) {
+			final IfIntExpression e = (IfIntExpression) node;
+			return op==IfIntExpression.class && same(children, e.condition(), e.thenExpr(), e.elseExpr());
+		} else if (node instanceof BinaryIntExpression) {
+			final BinaryIntExpression e = (BinaryIntExpression) node;
+			return e.op()==op && same(children, e.left(), e.right());
+		} else if (node instanceof NaryIntExpression) {
+			final NaryIntExpression e = (NaryIntExpression) node;
+			return e.op()==op && same(children, e);
+		}
+		return false;
+	}
+
+	/** @return children = [a] */
+	private static boolean same(Node[] children, Node a) {
+		return children.length==1 && children[0]==a;
+	}
+
+	/** @return children = [a, b] */
+	private static boolean same(Node[] children, Node a, Node b) {
+		return children.length==2 && children[0]==a && children[1]==b;
+	}
+
+	/** @return children = [a, b, c] */
+	private static boolean same(Node[] children, Node a, Node b, Node c) {
+		return children.length==3 && children[0]==a && children[1]==b && children[2]==c;
+	}
+
+	/** @return children = [ n | n in nodes ] */
+	private static boolean same(Node[] children, Iterable<? extends Node> nodes) {
+		int i = 0;
+		for(Iterator<? extends Node> itr = nodes.iterator(); itr.hasNext(); i++) {
+			if (i==children.length || children[i]!=itr.next()) return false;
+		}
+		return i==children.length;
+	}
+
+	/**
+	 * A weak hash table of nodes, keyed by their operators and children.
+	 * All accesses to a table must be synchronized on it.
+	 * @specfield nodes: set Node
+	 */
+	private static final class Table {
+		private final ReferenceQueue<Node> queue = new ReferenceQueue<Node>();
+		private Entry[] buckets = new Entry[1<<12];
+		private int size = 0;
+
+		/**
+		 * Returns the node in this table with the given hash, operator and children, if any.
+		 * Otherwise returns null.
+		 * @return { n: this.nodes | n.op = op and n.children = children }
+		 */
+		Node lookup(int hash, Object op, Node[] children) {
+			expunge();
+			for(Entry e = buckets[hash & (buckets.length-1)]; e != null; e = e.next) {
+				if (e.hash==hash) {
+					final Node node = e.get();
+					if (node != null && matches(node, op, children))
+						return node;
+				}
+			}
+			return null;
+		}
+
+		/**
+		 * Adds the given node, with the given hash, to this table and returns it.
+		 * @effects this.nodes' = this.nodes + node
+		 * @return node
+		 */
+		<N extends Node> N add(N node, int hash) {
+			if (size >= buckets.length - (buckets.length >>> 2)) {
+				resize();
+			}
+			final int index = hash & (buckets.length-1);
+			buckets[index] = new Entry(node, hash, buckets[index], queue);
+			size++;
+			return node;
+		}
+
+		/**
+		 * Removes the entries of nodes that have been garbage collected.
+		 * @effects removes the entries of nodes that have been garbage collected
+		 */
+		private void expunge() {
+			for(Object ref = queue.poll(); ref != null; ref = queue.poll()) {
+				final Entry dead = (Entry) ref;
+				final int index = dead.hash & (buckets.length-1);
+				Entry prev = null;
+				for(Entry e = buckets[index]; e != null; prev = e, e = e.next) {
+					if (e==dead) {
+						if (prev==null) buckets[index] = e.next;
+						else prev.next = e.next;
+						size--;
+						break;
+					}
+				}
+			}
+		}
+
+		/**
+		 * Doubles the number of buckets in this table.
+		 * @effects doubles the number of buckets in this table
+		 */
+		private void resize() {
+			final Entry[] old = buckets;
+			buckets = new Entry[old.length << 1];
+			for(Entry head : old) {
+				for(Entry e = head, next; e != null; e = next) {
+					next = e.next;
+					final int index = e.hash & (buckets.length-1);
+					e.next = buckets[index];
+					buckets[index] = e;
+				}
+			}
+		}
+	}
+
+	/**
+	 * A weak reference to a node, chained in a bucket of a {@linkplain Table}.
+	 */
+	private static final class Entry extends WeakReference<Node> {
+		final int hash;
+		Entry next;
+
+		Entry(Node node, int hash, Entry next, ReferenceQueue<Node> queue) {
+			super(node, queue);
+			this.hash = hash;
+			this.next = next;
+		}
+	}
+}
@@ -204,7 +204,26 @@ public final class Nodes {
 	 */
 	@SuppressWarnings("unchecked")
 	public static <N extends Node> N replaceAll(N node, final Map<? extends Node, ? extends Node> replacements) { 
-		final AbstractReplacer replacer = new AbstractReplacer(Collections.EMPTY_SET) {
+		return (N) node.accept(replacer(replacements));
+	}
+	
+	/**
+	 * Returns a replacer that replaces the nodes in replacements.keySet() 
+	 * with their corresponding values.  The replacer caches the replacement 
+	 * of every node it visits, so applying it to several nodes that share 
+	 * subnodes yields replacements that share the corresponding subnodes.
+	 * @requires all n: replacements.keySet() | 
+	 * 	n in Formula => replacements.get(n) in Formula &&
+	 *  n in Decl => replacements.get(n) in Decl &&
+	 *  n in Decls => replacements.get(n) in Decls &&
+	 *  n in IntExpression => replacements.get(n) in IntExpression &&
+	 *  n in Expression =>  replacements.get(n) in Expression && n.arity = replacements.get(n).arity
+	 * @return a replacer that replaces the nodes in replacement.keySet() 
+	 * with their corresponding values.
+	 */
+	@SuppressWarnings("unchecked")
+	public static AbstractReplacer replacer(final Map<? extends Node, ? extends Node> replacements) { 
+		return new AbstractReplacer(Collections.EMPTY_SET) {
 			protected <T extends Node> T cache(T node, T replacement) { 
 				if (replacements.containsKey(node)) { 
 					replacement = (T) replacements.get(node);
@@ -213,7 +232,6 @@ public final class Nodes {
 				return replacement;
 			}
 		};
-		return (N) node.accept(replacer);
 	}
 
 }
@@ -14,11 +14,8 @@
 package com.ibm.wala.memsat.util;
 
 import static com.ibm.wala.memsat.util.Graphs.reflexiveTransitiveClosure;
-import static com.ibm.wala.memsat.util.Graphs.transitiveClosure;
-import static com.ibm.wala.memsat.util.Graphs.union;
 
-import java.util.ArrayList;
-import java.util.Collection;
+import java.util.BitSet;
 import java.util.Collections;
 import java.util.EnumSet;
 import java.util.Iterator;
@@ -213,15 +210,50 @@ public final class Programs {
 	
 	/**
 	 * Returns the transitive closure of the union of the thread orders of all threads in info.threads.
+	 * The returned graph is a {@linkplain BitSetGraph} over the instructions in the thread orders and
+	 * actions of info.threads.
 	 * @return the transitive closure of the union of the thread orders of all threads in info.threads.
 	 */
 	public static Graph<InlinedInstruction> programOrder(WalaInformation info) { 
-		final Graph<CGNode> threads = info.threads();
-		final Collection<Graph<InlinedInstruction>> ords = new ArrayList<Graph<InlinedInstruction>>(threads.getNumberOfNodes());
-		for(CGNode t : threads) { 
-			ords.add(info.concurrentInformation(t).threadOrder());
+		return programOrder(info, universe(info));
+	}
+	
+	/**
+	 * Returns the instructions in the thread orders and actions of info.threads, in the order 
+	 * in which they are encountered when iterating over info.threads and their thread orders.
+	 * @return info.threads.threadOrder.nodes + info.threads.actions
+	 */
+	private static Set<InlinedInstruction> universe(WalaInformation info) { 
+		final Set<InlinedInstruction> universe = new LinkedHashSet<InlinedInstruction>();
+		for(CGNode t : info.threads()) { 
+			final WalaConcurrentInformation cInfo = info.concurrentInformation(t);
+			for(InlinedInstruction inst : cInfo.threadOrder()) { 
+				universe.add(inst);
+			}
+			universe.addAll(cInfo.actions());
+		}
+		return universe;
+	}
+	
+	/**
+	 * Returns the transitive closure of the union of the thread orders of all threads in info.threads,
+	 * as a graph over the given universe.
+	 * @requires info.threads.threadOrder.nodes in universe
+	 * @return the transitive closure of the union of the thread orders of all threads in info.threads.
+	 */
+	private static BitSetGraph<InlinedInstruction> programOrder(WalaInformation info, Set<InlinedInstruction> universe) { 
+		final BitSetGraph<InlinedInstruction> ord = new BitSetGraph<InlinedInstruction>(universe);
+		for(CGNode t : info.threads()) { 
+			final Graph<InlinedInstruction> threadOrd = info.concurrentInformation(t).threadOrder();
+			for(InlinedInstruction inst : threadOrd) { 
+				final int src = ord.indexOf(inst);
+				ord.addNode(inst);
+				for(Iterator<? extends InlinedInstruction> succs = threadOrd.getSuccNodes(inst); succs.hasNext(); ) { 
+					ord.addEdge(src, ord.indexOf(succs.next()));
+				}
+			}
 		}
-		return transitiveClosure(union(ords));
+		return ord.closure(false);
 	}
 	
 	/**
@@ -291,20 +323,29 @@ public final class Programs {
 	 * @return a graph that represents the upper bound on the execution order of the instructions in info.threads.
 	 */
 	public static Graph<InlinedInstruction> executionOrder(final WalaInformation info) { 
-		final Graph<InlinedInstruction> exec = programOrder(info);
+		final BitSetGraph<InlinedInstruction> exec = programOrder(info, universe(info));
 		final Graph<CGNode> threadOrd = reflexiveTransitiveClosure(info.threads());
+		final Map<CGNode, BitSet> actions = new LinkedHashMap<CGNode, BitSet>();
+		for(CGNode n : threadOrd) { 
+			final BitSet s = new BitSet(exec.universeSize());
+			for(InlinedInstruction inst : info.concurrentInformation(n).actions()) { 
+				s.set(exec.indexOf(inst));
+			}
+			actions.put(n, s);
+		}
 		for(CGNode n1 : threadOrd) { 		
-			final Set<InlinedInstruction> s1 = info.concurrentInformation(n1).actions();
+			final BitSet s1 = actions.get(n1);
+			final BitSet later = new BitSet(exec.universeSize());
 			for(CGNode n2 : threadOrd) { 
 				if (!threadOrd.hasEdge(n2, n1)) { 
-					final Set<InlinedInstruction> s2 = info.concurrentInformation(n2).actions();
-					for(InlinedInstruction i1 : s1) { 
-						for(InlinedInstruction i2 : s2) { 
-							exec.addEdge(i1, i2);
-						}
-					}	
+					later.or(actions.get(n2));
 				} 
 			}
+			if (!later.isEmpty()) { 
+				for(int i1 = s1.nextSetBit(0); i1 >= 0; i1 = s1.nextSetBit(i1+1)) { 
+					exec.addEdges(i1, later);
+				}
+			}
 		}
 		return exec;
 	}